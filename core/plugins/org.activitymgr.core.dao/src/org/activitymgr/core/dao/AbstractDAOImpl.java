@@ -2,8 +2,13 @@ package org.activitymgr.core.dao;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.activitymgr.core.orm.dialect.Dialect;
+import org.activitymgr.core.orm.dialect.DialectResolver;
+import org.activitymgr.core.util.IdentityMap;
+
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
@@ -13,6 +18,14 @@ public class AbstractDAOImpl {
 	@Inject
 	private Provider<Connection> tx;
 	
+	/** Database dialect resolver */
+	@Inject
+	private DialectResolver dialectResolver;
+
+	/** Identity map provider (bound to the transaction) */
+	@Inject
+	private Provider<IdentityMap> identityMap;
+	
 	/**
 	 * @return the active connection.
 	 */
@@ -20,6 +33,23 @@ public class AbstractDAOImpl {
 		return tx.get();
 	}
 
+	/**
+	 * @return the identity map of the active transaction.
+	 */
+	protected IdentityMap identityMap() {
+		return identityMap.get();
+	}
+
+	/**
+	 * @return the database dialect.
+	 * @throws SQLException
+	 *             thrown if a database access error occurs while the dialect
+	 *             is detected.
+	 */
+	protected Dialect dialect() throws SQLException {
+		return dialectResolver.getDialect(tx());
+	}
+
 	/**
 	 * Tries to close in a last attempt the {@link Statement}.
 	 * 
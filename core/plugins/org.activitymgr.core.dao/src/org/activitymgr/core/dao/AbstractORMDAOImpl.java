@@ -5,13 +5,21 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.orm.IDAO;
+import org.activitymgr.core.orm.IRowHandler;
+import org.activitymgr.core.util.IdentityMap;
 import org.apache.log4j.Logger;
 
 import com.google.inject.Inject;
@@ -24,12 +32,48 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 	@Inject
 	private IDAO<TYPE> wrapped;
 
+	/** Second level cache (only used if the DAO enables it) */
+	@Inject
+	private SecondLevelCache secondLevelCache;
+
 	private Map<String, String> columnNamesRequestFragmentByTableAlias = new HashMap<String, String>();
 	
 	@Override
+	@SuppressWarnings("unchecked")
 	public TYPE selectByPK(Object... pkValues) throws DAOException {
 		try {
-			return wrapped.selectByPK(tx(), pkValues);
+			// Rows already read or written by the transaction are served by
+			// the identity map (copies are returned so that the cached
+			// instance is only modified by the DAO writes)
+			IdentityMap identityMap = identityMap();
+			TYPE cached = (TYPE) identityMap.get(wrapped.getMappedClass(), pkValues);
+			if (cached != null) {
+				return wrapped.copy(cached);
+			}
+			TYPE result = null;
+			if (isSecondLevelCacheUsable(identityMap)) {
+				Class<TYPE> theClass = wrapped.getMappedClass();
+				Object key = Arrays.asList(pkValues.clone());
+				cached = (TYPE) secondLevelCache.get(theClass, key);
+				if (cached != null) {
+					result = wrapped.copy(cached);
+				}
+				else {
+					long generation = secondLevelCache.getGeneration(theClass);
+					result = wrapped.selectByPK(tx(), pkValues);
+					if (result != null) {
+						secondLevelCache.put(theClass, key,
+								wrapped.copy(result), generation);
+					}
+				}
+			}
+			else {
+				result = wrapped.selectByPK(tx(), pkValues);
+			}
+			if (result != null) {
+				identityMap.put(wrapped.getMappedClass(), pkValues, wrapped.copy(result));
+			}
+			return result;
 		} catch (SQLException e) {
 			throw new DAOException(null, e);
 		}
@@ -38,7 +82,9 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 	@Override
 	public boolean deleteByPK(Object... pkValues) throws DAOException {
 		try {
-			return wrapped.deleteByPK(tx(), pkValues);
+			identityMap().remove(wrapped.getMappedClass(), pkValues);
+			written();
+			return writer(pkValues).deleteByPK(tx(), pkValues);
 		} catch (SQLException e) {
 			throw new DAOException(null, e);
 		}
@@ -47,7 +93,8 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 	@Override
 	public boolean delete(TYPE instance) throws DAOException {
 		try {
-			return wrapped.delete(tx(), instance);
+			evict(instance);
+			return writer(instance).delete(tx(), instance);
 		} catch (SQLException e) {
 			throw new DAOException(null, e);
 		}
@@ -57,8 +104,15 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 	public int delete(String[] whereClauseAttributeNames,
 			Object[] whereClauseAttributeValues) throws DAOException {
 		try {
-			return wrapped.delete(tx(),
-					whereClauseAttributeNames, whereClauseAttributeValues);
+			// The deleted rows are unknown
+			identityMap().clear(wrapped.getMappedClass());
+			written();
+			int count = 0;
+			for (IDAO<TYPE> writer : writers()) {
+				count += writer.delete(tx(), whereClauseAttributeNames,
+						whereClauseAttributeValues);
+			}
+			return count;
 		} catch (SQLException e) {
 			throw new DAOException(null, e);
 		}
@@ -73,6 +127,16 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 		}
 	}
 
+	@Override
+	public TYPE selectUnique(String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues) throws DAOException {
+		Object key = Arrays.asList(Arrays.asList(whereClauseAttributeNames),
+				Arrays.asList(whereClauseAttributeValues));
+		TYPE[] result = selectCached(key, whereClauseAttributeNames,
+				whereClauseAttributeValues, null, 1);
+		return result.length > 0 ? result[0] : null;
+	}
+
 	@Override
 	public void dump(OutputStream out, String encoding,
 			String[] whereClauseAttributeNames,
@@ -100,10 +164,50 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 		}
 	}
 
+	@Override
+	public TYPE[] selectPage(String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			TYPE lastSeen, int pageSize) throws DAOException {
+		try {
+			return wrapped.selectPage(tx(), whereClauseAttributeNames,
+					whereClauseAttributeValues, orderByClauseItems, lastSeen,
+					pageSize);
+		} catch (SQLException e) {
+			throw new DAOException(null, e);
+		}
+	}
+
+	@Override
+	public <E extends Exception> int forEach(
+			String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			int fetchSize, IRowHandler<TYPE, E> handler) throws DAOException,
+			E {
+		try {
+			return wrapped.forEach(tx(), whereClauseAttributeNames,
+					whereClauseAttributeValues, orderByClauseItems, fetchSize,
+					handler);
+		} catch (SQLException e) {
+			throw new DAOException(null, e);
+		}
+	}
+
 	@Override
 	public TYPE update(TYPE value) throws DAOException {
 		try {
-			return wrapped.update(tx(), value);
+			return cache(writer(value).update(tx(), value));
+		} catch (SQLException e) {
+			throw new DAOException(null, e);
+		}
+	}
+
+	@Override
+	public TYPE update(TYPE value, String[] attributeNames)
+			throws DAOException {
+		try {
+			// The other attributes of the instance may differ from the row
+			evict(value);
+			return writer(value).update(tx(), value, attributeNames);
 		} catch (SQLException e) {
 			throw new DAOException(null, e);
 		}
@@ -112,7 +216,81 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 	@Override
 	public TYPE insert(TYPE value) throws DAOException {
 		try {
-			return wrapped.insert(tx(), value);
+			return cache(writer(value).insert(tx(), value));
+		} catch (SQLException e) {
+			throw new DAOException(null, e);
+		}
+	}
+
+	@Override
+	public TYPE[] insertAll(TYPE[] values) throws DAOException {
+		try {
+			written();
+			Map<IDAO<TYPE>, List<Integer>> groups = groupByWriter(values);
+			if (groups.size() == 1) {
+				return groups.keySet().iterator().next().insertAll(tx(), values);
+			}
+			TYPE[] result = values.clone();
+			for (Map.Entry<IDAO<TYPE>, List<Integer>> group : groups.entrySet()) {
+				TYPE[] inserted = group.getKey().insertAll(tx(),
+						subset(values, group.getValue()));
+				for (int i = 0; i < inserted.length; i++) {
+					result[group.getValue().get(i)] = inserted[i];
+				}
+			}
+			return result;
+		} catch (SQLException e) {
+			throw new DAOException(null, e);
+		}
+	}
+
+	@Override
+	public TYPE merge(TYPE value) throws DAOException {
+		try {
+			return cache(writer(value).merge(tx(), value));
+		} catch (SQLException e) {
+			throw new DAOException(null, e);
+		}
+	}
+
+	@Override
+	public TYPE[] updateAll(TYPE[] values) throws DAOException {
+		try {
+			// Bulk writes are not cached (imports would fill the map)
+			for (TYPE value : values) {
+				evict(value);
+			}
+			Map<IDAO<TYPE>, List<Integer>> groups = groupByWriter(values);
+			if (groups.size() == 1) {
+				return groups.keySet().iterator().next().updateAll(tx(), values);
+			}
+			TYPE[] result = values.clone();
+			for (Map.Entry<IDAO<TYPE>, List<Integer>> group : groups.entrySet()) {
+				TYPE[] updated = group.getKey().updateAll(tx(),
+						subset(values, group.getValue()));
+				for (int i = 0; i < updated.length; i++) {
+					result[group.getValue().get(i)] = updated[i];
+				}
+			}
+			return result;
+		} catch (SQLException e) {
+			throw new DAOException(null, e);
+		}
+	}
+
+	@Override
+	public int deleteAll(TYPE[] values) throws DAOException {
+		try {
+			for (TYPE value : values) {
+				evict(value);
+			}
+			int count = 0;
+			for (Map.Entry<IDAO<TYPE>, List<Integer>> group : groupByWriter(values).entrySet()) {
+				count += group.getKey().deleteAll(tx(),
+						group.getValue().size() == values.length ? values
+								: subset(values, group.getValue()));
+			}
+			return count;
 		} catch (SQLException e) {
 			throw new DAOException(null, e);
 		}
@@ -170,6 +348,210 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 		return super.tx();
 	}
 
+	/**
+	 * Returns the ORM DAO that writes a row. Sub classes that store their rows
+	 * in several tables (partitions) override this method and
+	 * {@link #writers()} ; the other requests read the table mapped by the DTO
+	 * class.
+	 * 
+	 * @param pkValues
+	 *            the primary key values of the row.
+	 * @return the ORM DAO.
+	 */
+	protected IDAO<TYPE> writer(Object[] pkValues) {
+		return wrapped;
+	}
+
+	/**
+	 * @return the ORM DAOs of all the tables in which the rows are stored.
+	 * @see #writer(Object[])
+	 */
+	protected Collection<IDAO<TYPE>> writers() {
+		return Collections.singleton(wrapped);
+	}
+
+	/**
+	 * @param value
+	 *            the row.
+	 * @return the ORM DAO that writes the row.
+	 * @see #writer(Object[])
+	 */
+	private IDAO<TYPE> writer(TYPE value) {
+		return writer(wrapped.getPrimaryKey(value));
+	}
+
+	/**
+	 * Groups rows by ORM DAO.
+	 * 
+	 * @param values
+	 *            the rows.
+	 * @return the indexes of the rows, by ORM DAO.
+	 */
+	private Map<IDAO<TYPE>, List<Integer>> groupByWriter(TYPE[] values) {
+		Map<IDAO<TYPE>, List<Integer>> groups = new LinkedHashMap<IDAO<TYPE>, List<Integer>>();
+		for (int i = 0; i < values.length; i++) {
+			IDAO<TYPE> writer = writer(values[i]);
+			List<Integer> group = groups.get(writer);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				groups.put(writer, group);
+			}
+			group.add(i);
+		}
+		if (groups.isEmpty()) {
+			groups.put(wrapped, new ArrayList<Integer>());
+		}
+		return groups;
+	}
+
+	/**
+	 * @param values
+	 *            the rows.
+	 * @param indexes
+	 *            the indexes of the rows to select.
+	 * @return the selected rows.
+	 */
+	private TYPE[] subset(TYPE[] values, List<Integer> indexes) {
+		TYPE[] selection = Arrays.copyOf(values, indexes.size());
+		for (int i = 0; i < selection.length; i++) {
+			selection[i] = values[indexes.get(i)];
+		}
+		return selection;
+	}
+
+	/**
+	 * Tells whether the second level cache must be used for the DTO class of
+	 * this DAO. Only nearly static reference data should be cached, as each
+	 * write of the class invalidates all its cached entries.
+	 * 
+	 * @return <code>true</code> if the second level cache is enabled.
+	 */
+	protected boolean isSecondLevelCacheEnabled() {
+		return false;
+	}
+
+	/**
+	 * Selects rows, using the second level cache if it is enabled.
+	 * 
+	 * @param key
+	 *            the cache key identifying the request and its parameters.
+	 * @param whereClauseAttributeNames
+	 *            the where clause attribute names.
+	 * @param whereClauseAttributeValues
+	 *            the where clause attribute values.
+	 * @param orderByClauseItems
+	 *            the order by clause items.
+	 * @param maxRows
+	 *            the maximum number of rows to return.
+	 * @return the selected rows.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	@SuppressWarnings("unchecked")
+	protected TYPE[] selectCached(Object key,
+			String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			int maxRows) throws DAOException {
+		if (!isSecondLevelCacheUsable(identityMap())) {
+			return select(whereClauseAttributeNames,
+					whereClauseAttributeValues, orderByClauseItems, maxRows);
+		}
+		Class<TYPE> theClass = wrapped.getMappedClass();
+		TYPE[] cached = (TYPE[]) secondLevelCache.get(theClass, key);
+		if (cached != null) {
+			return copy(cached);
+		}
+		long generation = secondLevelCache.getGeneration(theClass);
+		TYPE[] result = select(whereClauseAttributeNames,
+				whereClauseAttributeValues, orderByClauseItems, maxRows);
+		secondLevelCache.put(theClass, key, copy(result), generation);
+		return result;
+	}
+
+	/**
+	 * @param identityMap
+	 *            the identity map of the active transaction.
+	 * @return <code>true</code> if the second level cache can be used by the
+	 *         active transaction.
+	 */
+	private boolean isSecondLevelCacheUsable(IdentityMap identityMap) {
+		// A transaction that has written the class may read uncommitted rows
+		return isSecondLevelCacheEnabled()
+				&& !identityMap.isWritten(wrapped.getMappedClass());
+	}
+
+	/**
+	 * @param values
+	 *            the instances to copy.
+	 * @return the copies.
+	 */
+	private TYPE[] copy(TYPE[] values) {
+		TYPE[] copies = values.clone();
+		for (int i = 0; i < copies.length; i++) {
+			copies[i] = wrapped.copy(values[i]);
+		}
+		return copies;
+	}
+
+	/**
+	 * Registers a written instance in the identity map.
+	 * 
+	 * @param value
+	 *            the written instance.
+	 * @return the instance.
+	 */
+	private TYPE cache(TYPE value) {
+		written();
+		identityMap().put(wrapped.getMappedClass(),
+				wrapped.getPrimaryKey(value), wrapped.copy(value));
+		return value;
+	}
+
+	/**
+	 * Removes an instance from the identity map.
+	 * 
+	 * @param value
+	 *            the instance.
+	 */
+	private void evict(TYPE value) {
+		written();
+		identityMap().remove(wrapped.getMappedClass(),
+				wrapped.getPrimaryKey(value));
+	}
+
+	/**
+	 * Removes an instance from the identity map, given its primary key. This
+	 * method must be called by sub classes that update rows with their own
+	 * requests.
+	 * 
+	 * @param pkValues
+	 *            the primary key values.
+	 */
+	protected void evictByPK(Object... pkValues) {
+		written();
+		identityMap().remove(wrapped.getMappedClass(), pkValues);
+	}
+
+	/**
+	 * Invalidates the second level cache entries of the DTO class, now and at
+	 * the end of the transaction (other transactions may cache the previous
+	 * rows until the write is committed).
+	 */
+	private void written() {
+		if (isSecondLevelCacheEnabled()) {
+			final Class<TYPE> theClass = wrapped.getMappedClass();
+			secondLevelCache.invalidate(theClass);
+			if (identityMap().markWritten(theClass)) {
+				identityMap().runAtEndOfTransaction(new Runnable() {
+					@Override
+					public void run() {
+						secondLevelCache.invalidate(theClass);
+					}
+				});
+			}
+		}
+	}
+
 	/**
 	 * Builds a interval request (a request that handles a date interval).
 	 * 
@@ -214,6 +596,8 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 			request.append(insertWhereClause ? " where" : " and");
 			insertWhereClause = false;
 			interval.appendIntervalCriteria(request);
+			request.append(" and");
+			interval.appendYearCriteria(request, "ctb_year");
 		}
 		// Order by ?
 		if (orderByClause != null) {
@@ -233,6 +617,7 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 		}
 		// Bind interval parameters
 		paramIdx = interval.bindParameters(paramIdx, pStmt);
+		paramIdx = interval.bindYearParameters(paramIdx, pStmt);
 		return pStmt;
 	}
 
@@ -8,6 +8,7 @@ import org.activitymgr.core.dto.ReportCfg;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.impl.dao.CollaboratorDAOImpl;
 import org.activitymgr.core.impl.dao.ContributionDAOImpl;
+import org.activitymgr.core.impl.dao.ContributionRollupDAOImpl;
 import org.activitymgr.core.impl.dao.CoreDAOImpl;
 import org.activitymgr.core.impl.dao.DTOFactoryImpl;
 import org.activitymgr.core.impl.dao.DurationDAOImpl;
@@ -16,6 +17,8 @@ import org.activitymgr.core.impl.dao.ReportDAOImpl;
 import org.activitymgr.core.impl.dao.TaskDAOImpl;
 import org.activitymgr.core.orm.DAOFactory;
 import org.activitymgr.core.orm.IDAO;
+import org.activitymgr.core.orm.dialect.DialectResolver;
+import org.activitymgr.core.util.SqlStatistics;
 
 import com.google.inject.Binder;
 import com.google.inject.Inject;
@@ -26,11 +29,40 @@ import com.google.inject.TypeLiteral;
 
 public class CoreDAOModule implements Module {
 	
+	/** SQL statistics */
+	private final SqlStatistics sqlStatistics;
+
+	/**
+	 * Default constructor (no SQL statistics).
+	 */
+	public CoreDAOModule() {
+		this(new SqlStatistics());
+	}
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param sqlStatistics
+	 *            the SQL statistics (the transactional connections are
+	 *            instrumented with them by their provider).
+	 */
+	public CoreDAOModule(SqlStatistics sqlStatistics) {
+		this.sqlStatistics = sqlStatistics;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public void configure(Binder binder) {
 		// Bind DAOs
 		final DAOFactory daoFactory = new DAOFactory();
+		// The dialect is detected once and shared by all the DAOs
+		binder.bind(DialectResolver.class).toInstance(
+				daoFactory.getDialectResolver());
+		// Gives access to the DAOs of the partition tables
+		binder.bind(DAOFactory.class).toInstance(daoFactory);
+		// The second level cache is shared by all the transactions
+		binder.bind(SecondLevelCache.class).toInstance(new SecondLevelCache());
+		binder.bind(SqlStatistics.class).toInstance(sqlStatistics);
 		binder.bind(new TypeLiteral<IDAO<Collaborator>>() {
 		}).toProvider(new Provider<IDAO<Collaborator>>() {
 			@Inject(optional = true)
@@ -91,6 +123,8 @@ public class CoreDAOModule implements Module {
 				.in(Singleton.class);
 		binder.bind(IContributionDAO.class).to(ContributionDAOImpl.class)
 				.in(Singleton.class);
+		binder.bind(IContributionRollupDAO.class)
+				.to(ContributionRollupDAOImpl.class).in(Singleton.class);
 		binder.bind(IReportCfgDAO.class).to(ReportCfgDAOImpl.class)
 				.in(Singleton.class);
 
@@ -3,11 +3,13 @@ package org.activitymgr.core.dao;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Map;
+import java.util.SortedSet;
 
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Contribution;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.TaskContributionsSums;
+import org.activitymgr.core.orm.IRowHandler;
 
 public interface IContributionDAO extends IDAO<Contribution> {
 
@@ -27,6 +29,33 @@ public interface IContributionDAO extends IDAO<Contribution> {
 	Contribution[] getContributions(Collaborator contributor, Task task,
 			Calendar fromDate, Calendar toDate) throws DAOException;
 
+	/**
+	 * Parcourt les contributions associées aux paramétres spécifiés sans les
+	 * charger toutes en mémoire.
+	 * 
+	 * @param contributor
+	 *            le collaborateur associé aux contributions.
+	 * @param task
+	 *            la tache associée aux contributions.
+	 * @param fromDate
+	 *            la date de départ.
+	 * @param toDate
+	 *            la date de fin.
+	 * @param fetchSize
+	 *            le nombre de lignes lues à chaque aller-retour avec la base
+	 *            (<code>0</code> pour la valeur par défaut du driver).
+	 * @param handler
+	 *            le gestionnaire appelé pour chaque contribution.
+	 * @return le nombre de contributions parcourues.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 * @throws E
+	 *             levé par le gestionnaire.
+	 */
+	<E extends Exception> int getContributions(Collaborator contributor,
+			Task task, Calendar fromDate, Calendar toDate, int fetchSize,
+			IRowHandler<Contribution, E> handler) throws DAOException, E;
+
 	/**
 	 * @param contributor
 	 *            le collaborateur associé aux contributions.
@@ -92,4 +121,42 @@ public interface IContributionDAO extends IDAO<Contribution> {
 	 * @return the contributions interval.
 	 */
 	Calendar[] getContributionsInterval(String taskPath);
+
+	/**
+	 * Tells whether the contributions are partitioned by year (per year
+	 * tables and a <code>CONTRIBUTION</code> view on HSQLDB and H2, native
+	 * partitions on MySQL).
+	 * 
+	 * @return <code>true</code> if the contributions are partitioned.
+	 */
+	boolean isPartitioned();
+
+	/**
+	 * Returns the years that have their own partition. The contributions of
+	 * the other years are stored in a default partition.
+	 * 
+	 * @return the years (empty if the contributions are not partitioned).
+	 */
+	SortedSet<Integer> getPartitionYears();
+
+	/**
+	 * Forgets the partitions, which are read again from the database on next
+	 * use. Must be called once partitions have been created or dropped, and
+	 * when the application changes its database.
+	 */
+	void resetPartitions();
+
+	/**
+	 * Returns the table expression to use in a request that reads the
+	 * contributions of a date interval. The expression is aliased
+	 * <code>CONTRIBUTION</code> ; on HSQLDB and H2, it only reads the
+	 * partitions of the interval years.
+	 * 
+	 * @param fromDate
+	 *            the interval start date (optional).
+	 * @param toDate
+	 *            the interval end date (optional).
+	 * @return the table expression.
+	 */
+	String getTableExpression(Calendar fromDate, Calendar toDate);
 }
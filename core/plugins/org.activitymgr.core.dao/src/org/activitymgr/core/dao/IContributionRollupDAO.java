@@ -0,0 +1,72 @@
+package org.activitymgr.core.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.activitymgr.core.dto.Contribution;
+
+/**
+ * DAO managing the contribution rollup tables.
+ * <p>
+ * <code>CONTRIBUTION_MONTH</code> holds the contribution sums by task,
+ * contributor and month, <code>CONTRIBUTION_DAY</code> the contribution sums
+ * by task and day. They are kept in sync with the <code>CONTRIBUTION</code>
+ * table by the model manager, which must call
+ * {@link #removeFromRollups(Contribution[])} before deleting or updating
+ * contributions and {@link #addToRollups(Contribution[])} after inserting or
+ * updating them.
+ * </p>
+ */
+public interface IContributionRollupDAO {
+
+	/**
+	 * Adds contributions to the rollups.
+	 *
+	 * @param contributions
+	 *            the inserted (or updated) contributions.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void addToRollups(Contribution[] contributions) throws DAOException;
+
+	/**
+	 * Removes contributions from the rollups.
+	 * <p>
+	 * The durations are read from the <code>CONTRIBUTION</code> table, so this
+	 * method must be called before the contributions are deleted or updated.
+	 * Unknown contributions are ignored.
+	 * </p>
+	 *
+	 * @param contributions
+	 *            the contributions that are about to be deleted (or updated).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void removeFromRollups(Contribution[] contributions) throws DAOException;
+
+	/**
+	 * Rebuilds the rollups from the <code>CONTRIBUTION</code> table.
+	 *
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void rebuildRollups() throws DAOException;
+
+	/**
+	 * Checks that the rollups are consistent with the
+	 * <code>CONTRIBUTION</code> table.
+	 *
+	 * @param excludedYears
+	 *            the years that must not be checked (for instance the
+	 *            archived years, whose rollups are kept while their
+	 *            contributions are not in the <code>CONTRIBUTION</code> table
+	 *            anymore).
+	 * @return the inconsistencies description (empty if the rollups are
+	 *         consistent).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	List<String> checkRollups(Collection<Integer> excludedYears)
+			throws DAOException;
+
+}
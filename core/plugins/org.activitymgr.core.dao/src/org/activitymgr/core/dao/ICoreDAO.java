@@ -44,7 +44,7 @@ public interface ICoreDAO {
 	boolean tablesExist() throws DAOException;
 
 	/**
-	 * Vérifie si une table existe dans le modèle.
+	 * Vérifie si une table (ou une vue) existe dans le modèle.
 	 * 
 	 * @param tableName
 	 *            le nom de la table.
@@ -62,6 +62,60 @@ public interface ICoreDAO {
 	 */
 	void createTables() throws DAOException;
 
+	/**
+	 * Crée les tables du modèle de données, en partitionnant éventuellement
+	 * les contributions par année.
+	 * 
+	 * @param partitionContributions
+	 *            indique si les contributions doivent être partitionnées
+	 *            (voir {@link #partitionContributions()}).
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	void createTables(boolean partitionContributions) throws DAOException;
+
+	/**
+	 * Partitionne les contributions par année : les années présentes dans la
+	 * base, l'année courante et l'année suivante disposent de leur propre
+	 * partition, les autres années sont stockées dans une partition par
+	 * défaut.
+	 * <p>
+	 * Sur HSQLDB et H2, chaque partition est une table
+	 * (<code>CONTRIBUTION_aaaa</code> et <code>CONTRIBUTION_DEFAULT</code>)
+	 * et <code>CONTRIBUTION</code> devient une vue qui les réunit. Sur MySQL,
+	 * la table est partitionnée nativement (par intervalle sur
+	 * <code>CTB_YEAR</code>) ; les clés étrangères de la table sont
+	 * supprimées car InnoDB ne les supporte pas sur une table partitionnée.
+	 * </p>
+	 * <p>
+	 * Si les contributions sont déjà partitionnées, les années stockées dans
+	 * la partition par défaut (ainsi que l'année courante et l'année
+	 * suivante) reçoivent leur propre partition. La méthode doit être appelée
+	 * alors que la base n'est pas utilisée par d'autres instances de
+	 * l'application.
+	 * </p>
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	void partitionContributions() throws DAOException;
+
+	/**
+	 * Met à jour les tables d'une base créée par une version antérieure de
+	 * l'application (ajout et alimentation de la colonne
+	 * <code>CTB_DATE</code> et des index associés, création et alimentation
+	 * des tables <code>TASK_CLOSURE</code>, <code>CONTRIBUTION_MONTH</code>,
+	 * <code>CONTRIBUTION_DAY</code> et <code>TASK_TRIGRAM</code>,
+	 * réalimentation de la table <code>TASK_TRIGRAM</code> si elle ne contient
+	 * que les trigrammes, ajout et alimentation de la colonne
+	 * <code>TSK_SUBTASKS_COUNT</code>, ajout de la colonne
+	 * <code>TSK_VERSION</code>). Ne fait rien si les tables sont à jour.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	void upgradeTables() throws DAOException;
+
 	/**
 	 * Executes a SQL script.
 	 * 
@@ -91,4 +145,12 @@ public interface ICoreDAO {
 	 */
 	boolean isHsqlOrH2() throws DAOException;
 
+	/**
+	 * Oublie les informations propres à la base de données conservées en
+	 * mémoire (dialecte SQL, cache de second niveau, partitions des
+	 * contributions), qui seront relues lors de leur prochaine utilisation. Doit être appelé lorsque l'application change de base de
+	 * données.
+	 */
+	void resetDatabaseCaches();
+
 }
@@ -3,6 +3,8 @@ package org.activitymgr.core.dao;
 import java.io.OutputStream;
 import java.sql.ResultSet;
 
+import org.activitymgr.core.orm.IRowHandler;
+
 public interface IDAO<TYPE> {
 
 	public TYPE selectByPK(Object... pkValues) throws DAOException;
@@ -16,6 +18,9 @@ public interface IDAO<TYPE> {
 
 	public TYPE[] selectAll() throws DAOException;
 
+	public TYPE selectUnique(String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues) throws DAOException;
+
 	public void dump(OutputStream out, String encoding,
 			String[] whereClauseAttributeNames,
 			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
@@ -25,10 +30,31 @@ public interface IDAO<TYPE> {
 			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
 			int maxRows) throws DAOException;
 
+	public TYPE[] selectPage(String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			TYPE lastSeen, int pageSize) throws DAOException;
+
+	public <E extends Exception> int forEach(
+			String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			int fetchSize, IRowHandler<TYPE, E> handler) throws DAOException,
+			E;
+
 	public TYPE update(TYPE value) throws DAOException;
 
+	public TYPE update(TYPE value, String[] attributeNames)
+			throws DAOException;
+
 	public TYPE insert(TYPE value) throws DAOException;
 
+	public TYPE[] insertAll(TYPE[] values) throws DAOException;
+
+	public TYPE merge(TYPE value) throws DAOException;
+
+	public TYPE[] updateAll(TYPE[] values) throws DAOException;
+
+	public int deleteAll(TYPE[] values) throws DAOException;
+
 	public long countAll() throws DAOException;
 
 	public long count(String[] whereClauseAttributeNames,
@@ -5,5 +5,19 @@ import org.activitymgr.core.dto.Duration;
 public interface IDurationDAO extends IDAO<Duration> {
 
 	void createDuration(long durationId) throws DAOException;
+
+	/**
+	 * @return the durations, ordered by value.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	Duration[] getDurations() throws DAOException;
+
+	/**
+	 * @return the active durations, ordered by value.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	Duration[] getActiveDurations() throws DAOException;
 	
 }
@@ -1,7 +1,9 @@
 package org.activitymgr.core.dao;
 
 import java.util.Calendar;
+import java.util.Collection;
 
+import org.activitymgr.core.dto.Contribution;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.report.Report;
 import org.activitymgr.core.dto.report.ReportIntervalType;
@@ -30,12 +32,19 @@ public interface IReportDAO {
 	 * @param orderContributorsBy
 	 *            fields to use to order contributors (ignored if
 	 *            <code>byContributor</code> is <code>false</code>).
+	 * @param archivedContributions
+	 *            contributions that are not stored in the
+	 *            <code>CONTRIBUTION</code> table anymore but whose rollups are
+	 *            kept (optional). They are filtered like the database
+	 *            contributions, and only read if the report is not computed
+	 *            from the rollups.
 	 * @return
 	 */
 	Report buildReport(Calendar start, ReportIntervalType intervalType,
 			int intervalCount, Task rootTask, int taskDepth,
 			boolean onlyKeepTasksWithContributions, boolean byContributor,
 			boolean contributorCentricMode, long[] contributorIds,
-			String[] orderContributorsBy);
+			String[] orderContributorsBy,
+			Collection<Contribution> archivedContributions);
 
 }
@@ -26,6 +26,10 @@ public interface ITaskDAO extends IDAO<Task> {
 	 * applied on any nested task in the tree. This helps to implement dialogs
 	 * in which you can type a text and filter the resulting tree.
 	 * </p>
+	 * <p>
+	 * The filter is searched in the task codes and names, regardless of case
+	 * and accents, with the help of the trigram index.
+	 * </p>
 	 * 
 	 * @param taskPath
 	 *            the task path.
@@ -36,7 +40,9 @@ public interface ITaskDAO extends IDAO<Task> {
 	Task[] getSubTasks(String taskPath, String filter);
 
 	/**
-	 * Returns the first task matching the given filter.
+	 * Returns the first task matching the given filter (in the same way as
+	 * {@link #getSubTasks(String, String)}).
+	 * 
 	 * @param filter
 	 *            a string that filters tasks.
 	 * @return the matching task or null if no task matches.
@@ -92,12 +98,19 @@ public interface ITaskDAO extends IDAO<Task> {
 	 *            the task identifier for which we want to know the sums.
 	 * @param tasksPath
 	 *            the tasks path for which we want to know the sums.
-	 * @return the sub tasks sums (budget, initially consumed, ...)
+	 * @param fromDate
+	 *            the interval start date (optional) : the contributions
+	 *            before it are added to the initially consumed sum.
+	 * @param toDate
+	 *            the interval end date (optional) : the contributions after
+	 *            it are added to the estimated time to complete sum.
+	 * @return the sub tasks sums (budget, initially consumed, ...,
+	 *         contributions in the interval), computed in a single request.
 	 * @throws DAOException
 	 *             thrown if a technical error occurs.
 	 */
-	List<TaskSums> getTasksSums(Long taskId, String tasksPath)
-			throws DAOException;
+	List<TaskSums> getTasksSums(Long taskId, String tasksPath,
+			Calendar fromDate, Calendar toDate) throws DAOException;
 	
 	/**
 	 * Returns the max task tree depth.
@@ -108,5 +121,131 @@ public interface ITaskDAO extends IDAO<Task> {
 	 *             thrown if a technical error occurs.
 	 */
 	int getMaxTaskDepthUnder(String path) throws DAOException;
+
+	/**
+	 * Registers a new task in the task closure table (which holds a row for
+	 * each ancestor / descendant couple of the task tree, the task itself
+	 * included).
+	 * 
+	 * @param task
+	 *            the inserted task.
+	 * @param parentTask
+	 *            the parent task (<code>null</code> for a root task).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void insertInClosure(Task task, Task parentTask) throws DAOException;
+
+	/**
+	 * Moves a task and its sub tasks in the task closure table.
+	 * 
+	 * @param task
+	 *            the moved task.
+	 * @param destParentTask
+	 *            the new parent task (<code>null</code> if the task becomes
+	 *            a root task).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void moveInClosure(Task task, Task destParentTask) throws DAOException;
+
+	/**
+	 * Removes a task and its sub tasks from the task closure table. This
+	 * must be done before the tasks are deleted.
+	 * 
+	 * @param task
+	 *            the removed task.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void removeFromClosure(Task task) throws DAOException;
+
+	/**
+	 * Rebuilds the task closure table from the task paths.
+	 * 
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void rebuildClosure() throws DAOException;
+
+	/**
+	 * Updates the index keys (the sequences of 1 to 3 characters) of a task
+	 * code and name in the search index. This must be done when a task is
+	 * created or when its code or name changes.
+	 * 
+	 * @param task
+	 *            the task.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void updateSearchIndex(Task task) throws DAOException;
+
+	/**
+	 * Removes a task and its sub tasks from the search index. This must be
+	 * done before the tasks are removed from the closure table.
+	 * 
+	 * @param task
+	 *            the removed task.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void removeFromSearchIndex(Task task) throws DAOException;
+
+	/**
+	 * Rebuilds the search index from the task codes and names.
+	 * 
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void rebuildSearchIndex() throws DAOException;
+
+	/**
+	 * Adds a delta to the maintained sub tasks count of a task.
+	 * 
+	 * @param taskId
+	 *            the task identifier.
+	 * @param delta
+	 *            the number of added sub tasks (negative if sub tasks are
+	 *            removed).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void updateSubTasksCount(long taskId, int delta) throws DAOException;
+
+	/**
+	 * Updates the estimated time to complete of a task, following a
+	 * contribution change.
+	 * <p>
+	 * The task version is incremented, so that a copy read before the change
+	 * can't overwrite the new value.
+	 * </p>
+	 * 
+	 * @param taskId
+	 *            the task identifier.
+	 * @param todo
+	 *            the new estimated time to complete.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void updateTodo(long taskId, long todo) throws DAOException;
+
+	/**
+	 * Checks that the maintained sub tasks counts are consistent with the task
+	 * paths.
+	 * 
+	 * @return the inconsistencies description (empty if the counts are
+	 *         consistent).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	List<String> checkSubTasksCounts() throws DAOException;
+
+	/**
+	 * Rebuilds the maintained sub tasks counts from the task paths.
+	 * 
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void rebuildSubTasksCounts() throws DAOException;
 	
 }
@@ -2,47 +2,113 @@ package org.activitymgr.core.dao;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
+import org.activitymgr.core.util.EpochDay;
+
 public class IntervalRequestHelper {
 	
-	/** Formatteur de date */
-	private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd"); //$NON-NLS-1$
+	private final boolean hasFromDate;
+
+	private final boolean hasToDate;
 
-	private Calendar fromDate;
+	private int fromDateKey;
 
-	private Calendar toDate;
+	private int toDateKey;
 
-	private String fromDateStr;
+	private int fromYear;
 
-	private String toDateStr;
+	private int toYear;
+
+	/** <code>true</code> if the interval is made of whole months */
+	private boolean monthAligned = true;
 
 	public IntervalRequestHelper(Calendar fromDate, Calendar toDate) {
-		this.fromDate = fromDate;
-		this.toDate = toDate;
-		this.fromDateStr = fromDate != null ? sdf.format(fromDate.getTime())
-				: null;
-		this.toDateStr = toDate != null ? sdf.format(toDate.getTime()) : null;
+		this(fromDate != null ? Integer.valueOf(EpochDay.of(fromDate)) : null,
+				toDate != null ? Integer.valueOf(EpochDay.of(toDate)) : null);
+	}
+
+	/**
+	 * Builds an interval of {@link EpochDay epoch days}.
+	 * 
+	 * @param fromDay
+	 *            the interval start date (<code>null</code> if the interval
+	 *            has no start date).
+	 * @param toDay
+	 *            the interval end date (<code>null</code> if the interval has
+	 *            no end date).
+	 */
+	public IntervalRequestHelper(Integer fromDay, Integer toDay) {
+		hasFromDate = fromDay != null;
+		hasToDate = toDay != null;
+		if (hasFromDate) {
+			fromDateKey = EpochDay.toDateKey(fromDay);
+			fromYear = fromDateKey / 10000;
+			monthAligned = fromDateKey % 100 == 1;
+		}
+		if (hasToDate) {
+			toDateKey = EpochDay.toDateKey(toDay);
+			toYear = toDateKey / 10000;
+			monthAligned &= EpochDay.getDayOfMonth(toDay + 1) == 1;
+		}
+	}
+
+	/**
+	 * Converts a date to the <code>yyyyMMdd</code> format of the
+	 * <code>CTB_DATE</code> column.
+	 * 
+	 * @param date
+	 *            the date to convert.
+	 * @return the converted date.
+	 */
+	public static int toDateKey(Calendar date) {
+		return date.get(Calendar.YEAR) * 10000
+				+ (date.get(Calendar.MONTH) + 1) * 100
+				+ date.get(Calendar.DAY_OF_MONTH);
 	}
 
 	public boolean hasIntervalCriteria() {
-		return fromDate != null || toDate != null;
+		return hasFromDate || hasToDate;
 	}
 	
+	/**
+	 * Tells whether the interval is made of whole months, in which case the
+	 * monthly contribution rollup may be used.
+	 * 
+	 * @return <code>true</code> if the interval starts on the first day of a
+	 *         month and ends on the last day of a month (or is open).
+	 */
+	public boolean isMonthAligned() {
+		return monthAligned;
+	}
+
 	public void appendIntervalCriteria(StringBuffer request) {
+		appendIntervalCriteria(request, "ctb_date");
+	}
+
+	/**
+	 * Appends the interval criteria on a date column. Their parameters are
+	 * bound by {@link #bindParameters(int, PreparedStatement)}.
+	 * 
+	 * @param request
+	 *            the request buffer.
+	 * @param dateColumn
+	 *            the date column (<code>yyyyMMdd</code> format).
+	 */
+	public void appendIntervalCriteria(StringBuffer request, String dateColumn) {
 		if (hasIntervalCriteria()) {
-			request.append(" (ctb_year*10000 + ( ctb_month*100 + ctb_day ))");
+			// Range predicates on the date column (that may use the indexes)
+			request.append(' ').append(dateColumn);
 			// If both dates are specified
-			if (fromDate != null && toDate != null) {
-				if (!fromDateStr.equals(toDateStr)) {
+			if (hasFromDate && hasToDate) {
+				if (fromDateKey != toDateKey) {
 					request.append(" between ? and ?");
 				} else {
 					request.append(" = ?");
 				}
 			}
 			// Else if only 'from' specified (toDate == null)
-			else if (fromDate != null) {
+			else if (hasFromDate) {
 				request.append(" >= ?");
 			}
 			// Else if only 'to' specified (fromDate == null)
@@ -56,24 +122,72 @@ public class IntervalRequestHelper {
 		int index = startIdx;
 		if (hasIntervalCriteria()) {
 			// If both dates are specified
-			if (fromDate != null && toDate != null) {
-				if (!fromDateStr.equals(toDateStr)) {
-					pStmt.setString(index++, fromDateStr);
-					pStmt.setString(index++, toDateStr);
+			if (hasFromDate && hasToDate) {
+				if (fromDateKey != toDateKey) {
+					pStmt.setInt(index++, fromDateKey);
+					pStmt.setInt(index++, toDateKey);
 				} else {
-					pStmt.setString(index++, fromDateStr);
+					pStmt.setInt(index++, fromDateKey);
 				}
 			}
 			// Else if only 'from' specified (toDate == null)
-			else if (fromDate != null) {
-				pStmt.setString(index++, fromDateStr);
+			else if (hasFromDate) {
+				pStmt.setInt(index++, fromDateKey);
 			}
 			// Else if only 'to' specified (fromDate == null)
 			else {
-				pStmt.setString(index++, toDateStr);
+				pStmt.setInt(index++, toDateKey);
 			}
 		}
 		return index;
 	}
 
+	/**
+	 * Appends the interval criteria on a year column. Combined with the
+	 * criteria on the date column, they are redundant, but they let the
+	 * database skip the partitions (or the primary key ranges) of the years
+	 * that are out of the interval. Their parameters are bound by
+	 * {@link #bindYearParameters(int, PreparedStatement)}.
+	 * 
+	 * @param request
+	 *            the request buffer.
+	 * @param yearColumn
+	 *            the year column.
+	 */
+	public void appendYearCriteria(StringBuffer request, String yearColumn) {
+		if (hasIntervalCriteria()) {
+			request.append(' ').append(yearColumn);
+			if (hasFromDate && hasToDate) {
+				request.append(" between ? and ?");
+			} else if (hasFromDate) {
+				request.append(" >= ?");
+			} else {
+				request.append(" <= ?");
+			}
+		}
+	}
+
+	/**
+	 * Binds the parameters of the criteria appended by
+	 * {@link #appendYearCriteria(StringBuffer, String)}.
+	 * 
+	 * @param startIdx
+	 *            the index of the first parameter.
+	 * @param pStmt
+	 *            the statement.
+	 * @return the index of the next parameter.
+	 * @throws SQLException
+	 *             thrown if a parameter cannot be bound.
+	 */
+	public int bindYearParameters(final int startIdx, PreparedStatement pStmt) throws SQLException {
+		int index = startIdx;
+		if (hasFromDate) {
+			pStmt.setInt(index++, fromYear);
+		}
+		if (hasToDate) {
+			pStmt.setInt(index++, toYear);
+		}
+		return index;
+	}
+
 }
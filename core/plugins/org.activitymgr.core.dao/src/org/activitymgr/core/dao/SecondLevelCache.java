@@ -0,0 +1,262 @@
+package org.activitymgr.core.dao;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Second level cache, shared by all the transactions.
+ * <p>
+ * Holds nearly static reference data (durations, collaborators, tasks) in one
+ * size bounded region per DTO class, the least recently used entries being
+ * evicted first. The DAO writes invalidate the whole region of the written
+ * class, when the write occurs and once more at the end of the writing
+ * transaction, and the transactions that have written a class do not
+ * populate its region (the rows they read may not be committed).
+ * </p>
+ * <p>
+ * A region keeps a generation number that is incremented by each
+ * invalidation, so that a value read from the database before an
+ * invalidation cannot be registered after it.
+ * </p>
+ */
+public class SecondLevelCache {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(SecondLevelCache.class);
+
+	/** Default maximum number of entries of a region */
+	public static final int DEFAULT_REGION_SIZE = 1000;
+
+	/** Number of lookups between two statistics logs */
+	private static final int STATISTICS_LOG_PERIOD = 1000;
+
+	/** Maximum number of entries of a region */
+	private final int regionSize;
+
+	/** Regions by class */
+	private final Map<Class<?>, Region> regions = new HashMap<Class<?>, Region>();
+
+	/**
+	 * Default constructor.
+	 */
+	public SecondLevelCache() {
+		this(DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param regionSize
+	 *            the maximum number of entries of a region.
+	 */
+	public SecondLevelCache(int regionSize) {
+		if (regionSize <= 0)
+			throw new IllegalArgumentException("Invalid region size : "
+					+ regionSize);
+		this.regionSize = regionSize;
+	}
+
+	/**
+	 * Looks up a value.
+	 * 
+	 * @param theClass
+	 *            the DTO class.
+	 * @param key
+	 *            the value key.
+	 * @return the cached value or <code>null</code> if it is unknown.
+	 */
+	public synchronized Object get(Class<?> theClass, Object key) {
+		Region region = region(theClass);
+		Object value = region.get(key);
+		if (value != null)
+			region.hits++;
+		else
+			region.misses++;
+		if (log.isDebugEnabled()
+				&& (region.hits + region.misses) % STATISTICS_LOG_PERIOD == 0) {
+			log.debug(theClass.getSimpleName() + " : " + region);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the current generation of a region. It must be retrieved before
+	 * reading the value to cache from the database.
+	 * 
+	 * @param theClass
+	 *            the DTO class.
+	 * @return the region generation.
+	 */
+	public synchronized long getGeneration(Class<?> theClass) {
+		return region(theClass).generation;
+	}
+
+	/**
+	 * Registers a value, unless the region has been invalidated since the
+	 * given generation.
+	 * 
+	 * @param theClass
+	 *            the DTO class.
+	 * @param key
+	 *            the value key.
+	 * @param value
+	 *            the value.
+	 * @param generation
+	 *            the region generation retrieved before reading the value.
+	 */
+	public synchronized void put(Class<?> theClass, Object key, Object value,
+			long generation) {
+		Region region = region(theClass);
+		if (region.generation == generation)
+			region.put(key, value);
+	}
+
+	/**
+	 * Invalidates the region of a class.
+	 * 
+	 * @param theClass
+	 *            the DTO class.
+	 */
+	public synchronized void invalidate(Class<?> theClass) {
+		Region region = regions.get(theClass);
+		if (region != null) {
+			region.clear();
+			region.generation++;
+		}
+	}
+
+	/**
+	 * Invalidates all the regions.
+	 */
+	public synchronized void invalidateAll() {
+		for (Region region : regions.values()) {
+			region.clear();
+			region.generation++;
+		}
+	}
+
+	/**
+	 * @param theClass
+	 *            the DTO class.
+	 * @return the number of lookups served by the region.
+	 */
+	public synchronized long getHits(Class<?> theClass) {
+		Region region = regions.get(theClass);
+		return region != null ? region.hits : 0;
+	}
+
+	/**
+	 * @param theClass
+	 *            the DTO class.
+	 * @return the number of lookups that the region could not serve.
+	 */
+	public synchronized long getMisses(Class<?> theClass) {
+		Region region = regions.get(theClass);
+		return region != null ? region.misses : 0;
+	}
+
+	/**
+	 * @param theClass
+	 *            the DTO class.
+	 * @return the hit ratio of the region (between 0 and 1).
+	 */
+	public synchronized double getHitRatio(Class<?> theClass) {
+		Region region = regions.get(theClass);
+		return region != null ? region.getHitRatio() : 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuffer buf = new StringBuffer();
+		for (Map.Entry<Class<?>, Region> entry : regions.entrySet()) {
+			if (buf.length() > 0)
+				buf.append(", ");
+			buf.append(entry.getKey().getSimpleName()).append(" : ")
+					.append(entry.getValue());
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * @param theClass
+	 *            the DTO class.
+	 * @return the region of the class (created if it does not exist).
+	 */
+	private Region region(Class<?> theClass) {
+		Region region = regions.get(theClass);
+		if (region == null) {
+			region = new Region(regionSize);
+			regions.put(theClass, region);
+		}
+		return region;
+	}
+
+	/**
+	 * Cache region (least recently used entries first).
+	 */
+	@SuppressWarnings("serial")
+	private static class Region extends LinkedHashMap<Object, Object> {
+
+		/** Maximum number of entries */
+		private final int maxSize;
+
+		/** Invalidations count */
+		long generation;
+
+		/** Lookups served by the region */
+		long hits;
+
+		/** Lookups that the region could not serve */
+		long misses;
+
+		/**
+		 * Default constructor.
+		 * 
+		 * @param maxSize
+		 *            the maximum number of entries.
+		 */
+		Region(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+			return size() > maxSize;
+		}
+
+		/**
+		 * @return the hit ratio (between 0 and 1).
+		 */
+		double getHitRatio() {
+			long lookups = hits + misses;
+			return lookups > 0 ? (double) hits / lookups : 0;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.AbstractMap#toString()
+		 */
+		@Override
+		public String toString() {
+			return "size=" + size() + ", hits=" + hits + ", misses=" + misses
+					+ ", hit ratio=" + Math.round(getHitRatio() * 100) + "%";
+		}
+
+	}
+
+}
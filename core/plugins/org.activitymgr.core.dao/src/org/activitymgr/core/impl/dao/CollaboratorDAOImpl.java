@@ -9,17 +9,32 @@ import java.util.Calendar;
 import org.activitymgr.core.dao.AbstractORMDAOImpl;
 import org.activitymgr.core.dao.DAOException;
 import org.activitymgr.core.dao.ICollaboratorDAO;
+import org.activitymgr.core.dao.IContributionDAO;
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.util.Strings;
 import org.apache.log4j.Logger;
 
+import com.google.inject.Inject;
+
 public class CollaboratorDAOImpl extends AbstractORMDAOImpl<Collaborator> implements
 		ICollaboratorDAO {
 
 	/** Logger */
 	private static Logger log = Logger.getLogger(CollaboratorDAOImpl.class);
 
+	/** Contributions DAO */
+	@Inject
+	private IContributionDAO contributionDAO;
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.AbstractORMDAOImpl#isSecondLevelCacheEnabled()
+	 */
+	@Override
+	protected boolean isSecondLevelCacheEnabled() {
+		return true;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.activitymgr.core.IDbMgr#getContributors(org.activitymgr.core.beans.Task, java.util.Calendar, java.util.Calendar)
 	 */
@@ -33,7 +48,9 @@ public class CollaboratorDAOImpl extends AbstractORMDAOImpl<Collaborator> implem
 			StringBuffer request = new StringBuffer();
 			request.append("select distinct (ctb_contributor), ");
 			request.append(getColumnNamesRequestFragment(null));
-			request.append(" from CONTRIBUTION, COLLABORATOR");
+			request.append(" from ");
+			request.append(contributionDAO.getTableExpression(fromDate, toDate));
+			request.append(", COLLABORATOR");
 			if (task != null) {
 				request.append(", TASK");
 			}
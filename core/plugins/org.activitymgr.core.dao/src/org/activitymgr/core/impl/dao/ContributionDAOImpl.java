@@ -3,15 +3,19 @@ package org.activitymgr.core.impl.dao;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import org.activitymgr.core.dao.AbstractORMDAOImpl;
 import org.activitymgr.core.dao.DAOException;
@@ -21,15 +25,67 @@ import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Contribution;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.TaskContributionsSums;
+import org.activitymgr.core.orm.DAOFactory;
+import org.activitymgr.core.orm.IDAO;
+import org.activitymgr.core.orm.IRowHandler;
 import org.activitymgr.core.util.Strings;
 import org.apache.log4j.Logger;
 
+import com.google.inject.Inject;
+
+/**
+ * Contributions DAO.
+ * <p>
+ * The contributions may be partitioned by year (see
+ * {@link org.activitymgr.core.dao.ICoreDAO#partitionContributions()}). On
+ * HSQLDB and H2, each year that has its own partition is stored in a
+ * <code>CONTRIBUTION_yyyy</code> table, the other years in the
+ * <code>CONTRIBUTION_DEFAULT</code> table, and <code>CONTRIBUTION</code> is a
+ * view that gathers all these tables. The writes are routed to the table of
+ * the contribution year, and the interval requests only read the tables of
+ * the interval years. On MySQL, the table is natively partitioned and the
+ * database does the routing.
+ * </p>
+ * <p>
+ * The partitions are read on first use and kept until the application
+ * changes its database (see
+ * {@link org.activitymgr.core.dao.ICoreDAO#resetDatabaseCaches()}) ; they
+ * must therefore only be changed while the database is not used by other
+ * instances of the application.
+ * </p>
+ */
 public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implements
 		IContributionDAO {
 
 	/** Logger */
 	private static Logger log = Logger.getLogger(ContributionDAOImpl.class);
 
+	/** Default partition table (HSQLDB and H2) */
+	static final String DEFAULT_PARTITION = "CONTRIBUTION_DEFAULT"; //$NON-NLS-1$
+
+	/** Contribution columns */
+	static final String COLUMNS = "CTB_YEAR, CTB_MONTH, CTB_DAY, CTB_DATE, CTB_CONTRIBUTOR, CTB_TASK, CTB_DURATION"; //$NON-NLS-1$
+
+	/** Contributions ORM DAO */
+	@Inject
+	private IDAO<Contribution> orm;
+
+	/** ORM DAOs factory (for the partition tables) */
+	@Inject
+	private DAOFactory daoFactory;
+
+	/** Partitions (<code>null</code> until they are read) */
+	private volatile Partitions partitions;
+
+	/**
+	 * @param year
+	 *            the year.
+	 * @return the name of the partition table of the year (HSQLDB and H2).
+	 */
+	static String getPartitionTable(int year) {
+		return "CONTRIBUTION_" + year; //$NON-NLS-1$
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -41,39 +97,68 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 	@Override
 	public Contribution[] getContributions(Collaborator contributor, Task task,
 			Calendar fromDate, Calendar toDate) throws DAOException {
+		final ArrayList<Contribution> list = new ArrayList<Contribution>();
+		getContributions(contributor, task, fromDate, toDate, 0,
+				new IRowHandler<Contribution, RuntimeException>() {
+					@Override
+					public void handle(Contribution contribution) {
+						list.add(contribution);
+					}
+				});
+		return (Contribution[]) list.toArray(new Contribution[list.size()]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.activitymgr.core.dao.IContributionDAO#getContributions(org.activitymgr
+	 * .core.dto.Collaborator, org.activitymgr.core.dto.Task,
+	 * java.util.Calendar, java.util.Calendar, int,
+	 * org.activitymgr.core.orm.IRowHandler)
+	 */
+	@Override
+	public <E extends Exception> int getContributions(Collaborator contributor,
+			Task task, Calendar fromDate, Calendar toDate, int fetchSize,
+			IRowHandler<Contribution, E> handler) throws DAOException, E {
 		PreparedStatement pStmt = null;
 		ResultSet rs = null;
 		try {
 			// Build the request
-			String orderBy = "ctb_year, ctb_month, ctb_day, ctb_contributor";
+			String orderBy = "ctb_date, ctb_contributor";
 			if (task != null) {
 				orderBy += ", tsk_path, tsk_number";
 			}
 			pStmt = buildContributionsRequest(task, contributor, fromDate,
 					toDate,
 					getColumnNamesRequestFragment(null), orderBy);
+			dialect().setFetchSize(pStmt, fetchSize);
 
 			// Exécution de la requête
 			rs = pStmt.executeQuery();
 
-			// Extraction du résultat
-			ArrayList<Contribution> list = new ArrayList<Contribution>();
+			// Parcours du résultat
+			int count = 0;
 			while (rs.next()) {
-				list.add(read(rs, 1));
+				handler.handle(read(rs, 1));
+				count++;
 			}
-			Contribution[] result = (Contribution[]) list.toArray(new Contribution[list.size()]);
 
-			// Fermeture du ResultSet
+			// Fermeture du ResultSet (un curseur en streaming bloque la
+			// connexion)
+			rs.close();
+			rs = null;
 			pStmt.close();
 			pStmt = null;
 
 			// Retour du résultat
-			return result;
+			return count;
 		} catch (SQLException e) {
 			log.info("Incident SQL", e); //$NON-NLS-1$
 			throw new DAOException(
 					Strings.getString("DbMgr.errors.CONTRIBUTIONS_SELECTION_FAILURE"), e); //$NON-NLS-1$
 		} finally {
+			lastAttemptClose(rs);
 			lastAttemptToClose(pStmt);
 		}
 	}
@@ -169,19 +254,25 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 			Map<Long, TaskContributionsSums> result = new HashMap<Long, TaskContributionsSums>();
 			IntervalRequestHelper interval = new IntervalRequestHelper(fromDate, toDate);
 			
+			// The sums are read from the rollups : the monthly one if the
+			// interval is made of whole months, the daily one otherwise
+			String table = "CONTRIBUTION_DAY";
+			String prefix = "ctd_";
+			if (interval.isMonthAligned()) {
+				table = "CONTRIBUTION_MONTH";
+				prefix = "ctm_";
+			}
+
 			// Prepare the request
 			StringBuffer request = new StringBuffer();
-			request.append("select pt.tsk_id, pt.tsk_number, sum(ctb_duration), count(ctb_duration) ");
-			request.append("from TASK pt left join (");
-			{
-				request.append("TASK lt left join CONTRIBUTION on (ctb_task=lt.tsk_id");
-				if (interval.hasIntervalCriteria()) {
-					request.append(" and ");
-					interval.appendIntervalCriteria(request);
-				}
-				request.append(")");
+			request.append("select pt.tsk_id, pt.tsk_number, sum(" + prefix + "duration), sum(" + prefix + "count) ");
+			request.append("from TASK pt join TASK_CLOSURE on tcl_ancestor=pt.tsk_id");
+			request.append(" left join " + table + " on (" + prefix + "task=tcl_descendant");
+			if (interval.hasIntervalCriteria()) {
+				request.append(" and ");
+				interval.appendIntervalCriteria(request, prefix + "date");
 			}
-			request.append(") on (pt.tsk_id=lt.tsk_id or lt.tsk_path like concat(pt.tsk_path, pt.tsk_number, '%'))");
+			request.append(")");
 			request.append(" where ");
 			if (taskId != null) {
 				request.append("pt.tsk_id=?");
@@ -258,7 +349,7 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 		// Préparation de la requête
 		StringBuffer request = new StringBuffer("select ")
 				.append(fieldsToSelect);
-		request.append(" from CONTRIBUTION");
+		request.append(" from ").append(getTableExpression(fromDate, toDate));
 		if (task != null) {
 			request.append(", TASK");
 		}
@@ -276,12 +367,27 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 		ResultSet rs = null;
 		try {
 			// Build the SQL request
-			pStmt = tx().prepareStatement("select distinct(ctb_year) as year from CONTRIBUTION order by year");
+			String request = "select distinct(ctb_year) as year from CONTRIBUTION order by year";
+			Partitions partitions = partitions();
+			if (partitions.perYearTables) {
+				// A year table is only read through its primary key index
+				StringBuffer buf = new StringBuffer("select distinct(ctb_year) as year from ").append(DEFAULT_PARTITION);
+				for (int year : partitions.years) {
+					buf.append(" union select min(ctb_year) from ").append(getPartitionTable(year));
+				}
+				buf.append(" order by year");
+				request = buf.toString();
+			}
+			pStmt = tx().prepareStatement(request);
 
 			// Exécution de le requête et extraction du résultat
 			rs = pStmt.executeQuery();
 			while (rs.next()) {
-				years.add(rs.getInt(1));
+				int year = rs.getInt(1);
+				// Empty year tables return null
+				if (!rs.wasNull()) {
+					years.add(year);
+				}
 			}
 			pStmt.close();
 			pStmt = null;
@@ -308,14 +414,38 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 		try {
 			boolean filterByTaskPath = taskPath != null && !"".equals(taskPath);
 			// Build the SQL request
-			String request = "select count(*),min(ctb_year*10000+ctb_month*100+ctb_day),max(ctb_year*10000+ctb_month*100+ctb_day) from CONTRIBUTION";
+			String criteria = "";
 			if (filterByTaskPath) {
-				request += " join TASK on ctb_task=tsk_id where tsk_path like ? or concat(tsk_path, tsk_number)=?";
+				criteria = " join TASK on ctb_task=tsk_id where tsk_path like ? or " + dialect().concat("tsk_path", "tsk_number") + "=?";
+			}
+			String request = "select count(*),min(ctb_date),max(ctb_date) from CONTRIBUTION" + criteria;
+			Partitions partitions = partitions();
+			List<String> tables = new ArrayList<String>();
+			if (partitions.perYearTables) {
+				// The aggregates are computed table by table (so that each
+				// table uses its own indexes), then merged
+				tables.add(DEFAULT_PARTITION);
+				for (int year : partitions.years) {
+					tables.add(getPartitionTable(year));
+				}
+				StringBuffer buf = new StringBuffer("select sum(cnt),min(mindate),max(maxdate) from (");
+				for (int i = 0; i < tables.size(); i++) {
+					if (i > 0) {
+						buf.append(" union all ");
+					}
+					buf.append("select count(*) as cnt,min(ctb_date) as mindate,max(ctb_date) as maxdate from ");
+					buf.append(tables.get(i)).append(criteria);
+				}
+				buf.append(") p");
+				request = buf.toString();
 			}
 			pStmt = tx().prepareStatement(request);
 			if (filterByTaskPath) {
-				pStmt.setString(1, taskPath + '%');
-				pStmt.setString(2, taskPath);
+				int paramIdx = 1;
+				for (int i = 0; i < Math.max(1, tables.size()); i++) {
+					pStmt.setString(paramIdx++, taskPath + '%');
+					pStmt.setString(paramIdx++, taskPath);
+				}
 			}
 			// Exécution de le requête et extraction du résultat
 			Calendar[] result = null;
@@ -326,13 +456,8 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 				if (contributionsCount > 0) {
 					// Else parse the result
 					result = new Calendar[2];
-					SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-					Date start = sdf.parse(rs.getString(2));
-					result[0] = new GregorianCalendar();
-					result[0].setTime(start);
-					Date end = sdf.parse(rs.getString(3));
-					result[1] = new GregorianCalendar();
-					result[1].setTime(end);
+					result[0] = fromDateKey(rs.getInt(2));
+					result[1] = fromDateKey(rs.getInt(3));
 				}
 			}
 			pStmt.close();
@@ -345,14 +470,222 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 			throw new DAOException(
 					"Erreur lors de la récupération des années de contributions",
 					e);
-		} catch (ParseException e) {
-			log.info("Unexpected parse error", e); //$NON-NLS-1$
-			throw new DAOException(
-					"Unexpected error while parsing a date",
-					e);
 		} finally {
 			lastAttemptToClose(pStmt);
 		}
 	}
 
-}
\ No newline at end of file
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#isPartitioned()
+	 */
+	@Override
+	public boolean isPartitioned() {
+		return partitions().partitioned;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#getPartitionYears()
+	 */
+	@Override
+	public SortedSet<Integer> getPartitionYears() {
+		return Collections.unmodifiableSortedSet(partitions().years);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#resetPartitions()
+	 */
+	@Override
+	public void resetPartitions() {
+		partitions = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#getTableExpression(java.util.Calendar, java.util.Calendar)
+	 */
+	@Override
+	public String getTableExpression(Calendar fromDate, Calendar toDate) {
+		Partitions partitions = partitions();
+		if (!partitions.perYearTables) {
+			return "CONTRIBUTION";
+		}
+		int fromYear = fromDate != null ? fromDate.get(Calendar.YEAR) : Integer.MIN_VALUE;
+		int toYear = toDate != null ? toDate.get(Calendar.YEAR) : Integer.MAX_VALUE;
+		List<String> tables = new ArrayList<String>();
+		boolean readDefault = false;
+		if (fromYear <= toYear) {
+			for (int year : partitions.years.subSet(fromYear, true, toYear, true)) {
+				tables.add(getPartitionTable(year));
+			}
+			for (int year : partitions.defaultYears) {
+				readDefault |= year >= fromYear && year <= toYear;
+			}
+		}
+		// The default partition is also read if no other table is (the
+		// request remains valid and returns no row)
+		if (readDefault || tables.isEmpty()) {
+			tables.add(0, DEFAULT_PARTITION);
+		}
+		if (tables.size() == 1) {
+			return tables.get(0) + " CONTRIBUTION";
+		}
+		StringBuffer buf = new StringBuffer("(");
+		for (int i = 0; i < tables.size(); i++) {
+			if (i > 0) {
+				buf.append(" union all ");
+			}
+			buf.append("select ").append(COLUMNS).append(" from ").append(tables.get(i));
+		}
+		return buf.append(") CONTRIBUTION").toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.AbstractORMDAOImpl#writer(java.lang.Object[])
+	 */
+	@Override
+	protected IDAO<Contribution> writer(Object[] pkValues) {
+		Partitions partitions = partitions();
+		if (!partitions.perYearTables) {
+			return super.writer(pkValues);
+		}
+		// The year is the first primary key attribute
+		int year = ((Number) pkValues[0]).intValue();
+		if (partitions.years.contains(year)) {
+			return daoFactory.getDAO(orm.getMappedClass(), getPartitionTable(year));
+		}
+		partitions.defaultYears.add(year);
+		return daoFactory.getDAO(orm.getMappedClass(), DEFAULT_PARTITION);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.AbstractORMDAOImpl#writers()
+	 */
+	@Override
+	protected Collection<IDAO<Contribution>> writers() {
+		Partitions partitions = partitions();
+		if (!partitions.perYearTables) {
+			return super.writers();
+		}
+		List<IDAO<Contribution>> writers = new ArrayList<IDAO<Contribution>>();
+		writers.add(daoFactory.getDAO(orm.getMappedClass(), DEFAULT_PARTITION));
+		for (int year : partitions.years) {
+			writers.add(daoFactory.getDAO(orm.getMappedClass(), getPartitionTable(year)));
+		}
+		return writers;
+	}
+
+	/**
+	 * @return the partitions (read from the database on first use).
+	 * @throws DAOException
+	 *             thrown if the partitions cannot be read.
+	 */
+	private Partitions partitions() throws DAOException {
+		Partitions result = partitions;
+		if (result == null) {
+			try {
+				result = readPartitions();
+			} catch (SQLException e) {
+				log.info("Incident SQL", e); //$NON-NLS-1$
+				throw new DAOException("Contribution partitions read failure", e); //$NON-NLS-1$
+			}
+			partitions = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the partitions from the database.
+	 * 
+	 * @return the partitions.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private Partitions readPartitions() throws SQLException {
+		Partitions result = new Partitions();
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			if (dialect().isHsqlOrH2()) {
+				rs = tx().getMetaData().getTables(null, null, "CONTRIBUTION%", //$NON-NLS-1$
+						new String[] { "TABLE" }); //$NON-NLS-1$
+				while (rs.next()) {
+					String name = rs.getString("TABLE_NAME").toUpperCase(); //$NON-NLS-1$
+					if (DEFAULT_PARTITION.equals(name)) {
+						result.partitioned = true;
+					} else if (name.matches("CONTRIBUTION_[0-9]{4}")) { //$NON-NLS-1$
+						result.years.add(Integer.parseInt(name.substring(13)));
+					}
+				}
+				rs.close();
+				rs = null;
+				result.perYearTables = result.partitioned;
+				if (result.partitioned) {
+					// Years stored in the default partition
+					pStmt = tx().prepareStatement("select distinct(ctb_year) from " + DEFAULT_PARTITION); //$NON-NLS-1$
+					rs = pStmt.executeQuery();
+					while (rs.next()) {
+						result.defaultYears.add(rs.getInt(1));
+					}
+					pStmt.close();
+					pStmt = null;
+				} else {
+					result.years.clear();
+				}
+			} else {
+				pStmt = tx().prepareStatement("select partition_name from information_schema.partitions" //$NON-NLS-1$
+						+ " where table_schema=database() and table_name='CONTRIBUTION' and partition_name is not null"); //$NON-NLS-1$
+				rs = pStmt.executeQuery();
+				while (rs.next()) {
+					result.partitioned = true;
+					String name = rs.getString(1);
+					// Partitions are named 'p' + year (except the default one)
+					if (name.matches("p[0-9]{4}")) { //$NON-NLS-1$
+						result.years.add(Integer.parseInt(name.substring(1)));
+					}
+				}
+				pStmt.close();
+				pStmt = null;
+			}
+			return result;
+		} finally {
+			lastAttemptClose(rs);
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Contributions partitions.
+	 */
+	private static class Partitions {
+
+		/** <code>true</code> if the contributions are partitioned */
+		private boolean partitioned;
+
+		/**
+		 * <code>true</code> if the partitions are tables (on HSQLDB and H2)
+		 */
+		private boolean perYearTables;
+
+		/** Years that have their own partition */
+		private NavigableSet<Integer> years = new TreeSet<Integer>();
+
+		/**
+		 * Years of the contributions stored in the default partition (it may
+		 * also contain years whose writes have been rolled back)
+		 */
+		private Set<Integer> defaultYears = new ConcurrentSkipListSet<Integer>();
+
+	}
+
+	/**
+	 * Converts a <code>CTB_DATE</code> column value to a date.
+	 * 
+	 * @param dateKey
+	 *            the date in the <code>yyyyMMdd</code> format.
+	 * @return the date.
+	 */
+	private static Calendar fromDateKey(int dateKey) {
+		return new GregorianCalendar(dateKey / 10000, (dateKey / 100) % 100 - 1,
+				dateKey % 100);
+	}
+
+}
@@ -0,0 +1,446 @@
+package org.activitymgr.core.impl.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.activitymgr.core.dao.AbstractDAOImpl;
+import org.activitymgr.core.dao.DAOException;
+import org.activitymgr.core.dao.IContributionRollupDAO;
+import org.activitymgr.core.dto.Contribution;
+import org.apache.log4j.Logger;
+
+/**
+ * Contribution rollups DAO.
+ * <p>
+ * The rollup rows are never read back before they are written : each
+ * contribution change is turned into duration and count deltas by rollup row,
+ * that are added to the rows with the dialect increment request (so that
+ * concurrent transactions updating the same row don't conflict). The rows
+ * whose count falls to zero are then removed.
+ * </p>
+ */
+public class ContributionRollupDAOImpl extends AbstractDAOImpl implements
+		IContributionRollupDAO {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ContributionRollupDAOImpl.class);
+
+	/** Maximum number of contributions whose durations are read by request */
+	private static final int MAX_KEYS_PER_REQUEST = 100;
+
+	/** Monthly rollup columns (the deltas, the key, then the other columns) */
+	private static final String[] MONTH_COLUMNS = new String[] {
+			"ctm_duration", "ctm_count", "ctm_task", "ctm_date", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"ctm_contributor", "ctm_year", "ctm_month" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	/** Monthly rollup primary key columns */
+	private static final String[] MONTH_PK_COLUMNS = new String[] {
+			"ctm_task", "ctm_date", "ctm_contributor" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	/** Daily rollup columns (the deltas, the key, then the other columns) */
+	private static final String[] DAY_COLUMNS = new String[] {
+			"ctd_duration", "ctd_count", "ctd_task", "ctd_date", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"ctd_year", "ctd_month", "ctd_day" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	/** Daily rollup primary key columns */
+	private static final String[] DAY_PK_COLUMNS = new String[] {
+			"ctd_task", "ctd_date" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionRollupDAO#addToRollups(org.activitymgr.core.dto.Contribution[])
+	 */
+	@Override
+	public void addToRollups(Contribution[] contributions) throws DAOException {
+		Map<List<Long>, long[]> monthDeltas = new LinkedHashMap<List<Long>, long[]>();
+		Map<List<Long>, long[]> dayDeltas = new LinkedHashMap<List<Long>, long[]>();
+		for (Contribution contribution : contributions) {
+			addDelta(monthDeltas, dayDeltas, contribution.getTaskId(),
+					contribution.getContributorId(), contribution.getYear(),
+					contribution.getMonth(), contribution.getDay(),
+					contribution.getDurationId(), 1);
+		}
+		applyDeltas(monthDeltas, dayDeltas);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionRollupDAO#removeFromRollups(org.activitymgr.core.dto.Contribution[])
+	 */
+	@Override
+	public void removeFromRollups(Contribution[] contributions)
+			throws DAOException {
+		Map<List<Long>, long[]> monthDeltas = new LinkedHashMap<List<Long>, long[]>();
+		Map<List<Long>, long[]> dayDeltas = new LinkedHashMap<List<Long>, long[]>();
+		PreparedStatement pStmt = null;
+		try {
+			// The stored durations are the ones that were added to the rollups
+			// (they are read by chunks of contributions, in one request per
+			// chunk)
+			for (int start = 0; start < contributions.length; start += MAX_KEYS_PER_REQUEST) {
+				int end = Math.min(contributions.length, start
+						+ MAX_KEYS_PER_REQUEST);
+				StringBuffer request = new StringBuffer(
+						"select ctb_task, ctb_contributor, ctb_year, ctb_month, ctb_day, ctb_duration from CONTRIBUTION where "); //$NON-NLS-1$
+				for (int i = start; i < end; i++) {
+					if (i != start)
+						request.append(" or "); //$NON-NLS-1$
+					request.append("(ctb_year=? and ctb_month=? and ctb_day=? and ctb_contributor=? and ctb_task=?)"); //$NON-NLS-1$
+				}
+				pStmt = tx().prepareStatement(request.toString());
+				int idx = 1;
+				for (int i = start; i < end; i++) {
+					Contribution contribution = contributions[i];
+					pStmt.setInt(idx++, contribution.getYear());
+					pStmt.setInt(idx++, contribution.getMonth());
+					pStmt.setInt(idx++, contribution.getDay());
+					pStmt.setLong(idx++, contribution.getContributorId());
+					pStmt.setLong(idx++, contribution.getTaskId());
+				}
+				ResultSet rs = pStmt.executeQuery();
+				while (rs.next()) {
+					addDelta(monthDeltas, dayDeltas, rs.getLong(1),
+							rs.getLong(2), rs.getInt(3), rs.getInt(4),
+							rs.getInt(5), -rs.getLong(6), -1);
+				}
+				rs.close();
+				pStmt.close();
+				pStmt = null;
+			}
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+		applyDeltas(monthDeltas, dayDeltas);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionRollupDAO#rebuildRollups()
+	 */
+	@Override
+	public void rebuildRollups() throws DAOException {
+		Statement stmt = null;
+		try {
+			stmt = tx().createStatement();
+			stmt.executeUpdate("delete from CONTRIBUTION_MONTH"); //$NON-NLS-1$
+			int count = stmt.executeUpdate("insert into CONTRIBUTION_MONTH (ctm_task, ctm_contributor, ctm_year, ctm_month, ctm_date, ctm_duration, ctm_count)" //$NON-NLS-1$
+					+ " select ctb_task, ctb_contributor, ctb_year, ctb_month, ctb_year*10000+ctb_month*100+1, sum(ctb_duration), count(ctb_duration)" //$NON-NLS-1$
+					+ " from CONTRIBUTION group by ctb_task, ctb_contributor, ctb_year, ctb_month"); //$NON-NLS-1$
+			log.info(count + " monthly rollup row(s) built"); //$NON-NLS-1$
+			stmt.executeUpdate("delete from CONTRIBUTION_DAY"); //$NON-NLS-1$
+			count = stmt.executeUpdate("insert into CONTRIBUTION_DAY (ctd_task, ctd_year, ctd_month, ctd_day, ctd_date, ctd_duration, ctd_count)" //$NON-NLS-1$
+					+ " select ctb_task, ctb_year, ctb_month, ctb_day, ctb_date, sum(ctb_duration), count(ctb_duration)" //$NON-NLS-1$
+					+ " from CONTRIBUTION group by ctb_task, ctb_year, ctb_month, ctb_day, ctb_date"); //$NON-NLS-1$
+			log.info(count + " daily rollup row(s) built"); //$NON-NLS-1$
+			stmt.close();
+			stmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(stmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionRollupDAO#checkRollups(java.util.Collection)
+	 */
+	@Override
+	public List<String> checkRollups(Collection<Integer> excludedYears)
+			throws DAOException {
+		List<String> result = new ArrayList<String>();
+		String ctbYears = yearsCriteria("ctb_year", excludedYears, " where "); //$NON-NLS-1$ //$NON-NLS-2$
+		String ctmYears = yearsCriteria("ctm_year", excludedYears, " and "); //$NON-NLS-1$ //$NON-NLS-2$
+		String ctdYears = yearsCriteria("ctd_year", excludedYears, " and "); //$NON-NLS-1$ //$NON-NLS-2$
+		Statement stmt = null;
+		try {
+			stmt = tx().createStatement();
+			// Missing or wrong monthly rows
+			checkRollup(stmt, result, "CONTRIBUTION_MONTH", //$NON-NLS-1$
+					"select rtask, rcontributor, rdate, rduration, rcount, ctm_duration, ctm_count from (" //$NON-NLS-1$
+							+ "select ctb_task rtask, ctb_contributor rcontributor, ctb_year*10000+ctb_month*100+1 rdate, sum(ctb_duration) rduration, count(ctb_duration) rcount" //$NON-NLS-1$
+							+ " from CONTRIBUTION" + ctbYears + " group by ctb_task, ctb_contributor, ctb_year, ctb_month) ref" //$NON-NLS-1$
+							+ " left join CONTRIBUTION_MONTH on (ctm_task=rtask and ctm_contributor=rcontributor and ctm_date=rdate)" //$NON-NLS-1$
+							+ " where ctm_task is null or ctm_duration<>rduration or ctm_count<>rcount"); //$NON-NLS-1$
+			// Orphan monthly rows
+			checkRollup(stmt, result, "CONTRIBUTION_MONTH", //$NON-NLS-1$
+					"select ctm_task, ctm_contributor, ctm_date, 0, 0, ctm_duration, ctm_count from CONTRIBUTION_MONTH" //$NON-NLS-1$
+							+ " where not exists (select 1 from CONTRIBUTION where ctb_task=ctm_task and ctb_contributor=ctm_contributor and ctb_year=ctm_year and ctb_month=ctm_month)" + ctmYears); //$NON-NLS-1$
+			// Missing or wrong daily rows
+			checkRollup(stmt, result, "CONTRIBUTION_DAY", //$NON-NLS-1$
+					"select rtask, 0, rdate, rduration, rcount, ctd_duration, ctd_count from (" //$NON-NLS-1$
+							+ "select ctb_task rtask, ctb_date rdate, sum(ctb_duration) rduration, count(ctb_duration) rcount" //$NON-NLS-1$
+							+ " from CONTRIBUTION" + ctbYears + " group by ctb_task, ctb_date) ref" //$NON-NLS-1$
+							+ " left join CONTRIBUTION_DAY on (ctd_task=rtask and ctd_date=rdate)" //$NON-NLS-1$
+							+ " where ctd_task is null or ctd_duration<>rduration or ctd_count<>rcount"); //$NON-NLS-1$
+			// Orphan daily rows
+			checkRollup(stmt, result, "CONTRIBUTION_DAY", //$NON-NLS-1$
+					"select ctd_task, 0, ctd_date, 0, 0, ctd_duration, ctd_count from CONTRIBUTION_DAY" //$NON-NLS-1$
+							+ " where not exists (select 1 from CONTRIBUTION where ctb_task=ctd_task and ctb_date=ctd_date)" + ctdYears); //$NON-NLS-1$
+			stmt.close();
+			stmt = null;
+			return result;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(stmt);
+		}
+	}
+
+	/**
+	 * Builds a criteria that excludes some years.
+	 *
+	 * @param column
+	 *            the year column.
+	 * @param years
+	 *            the excluded years.
+	 * @param prefix
+	 *            the prefix of the criteria (<code>where</code> or
+	 *            <code>and</code>).
+	 * @return the criteria (empty if no year is excluded).
+	 */
+	private static String yearsCriteria(String column, Collection<Integer> years, String prefix) {
+		if (years == null || years.isEmpty()) {
+			return ""; //$NON-NLS-1$
+		}
+		StringBuffer buf = new StringBuffer(prefix).append(column).append(" not in ("); //$NON-NLS-1$
+		String separator = ""; //$NON-NLS-1$
+		for (int year : years) {
+			buf.append(separator).append(year);
+			separator = ", "; //$NON-NLS-1$
+		}
+		return buf.append(')').toString();
+	}
+
+	/**
+	 * Runs a consistency check request and registers the inconsistencies.
+	 *
+	 * @param stmt
+	 *            the statement to use.
+	 * @param result
+	 *            the inconsistencies list.
+	 * @param table
+	 *            the checked rollup table.
+	 * @param request
+	 *            the check request, that must return the task, the
+	 *            contributor (0 for the daily rollup), the date, the expected
+	 *            sum and count, and the actual sum and count.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private void checkRollup(Statement stmt, List<String> result,
+			String table, String request) throws SQLException {
+		ResultSet rs = stmt.executeQuery(request);
+		try {
+			while (rs.next()) {
+				StringBuffer buf = new StringBuffer(table);
+				buf.append("(task=").append(rs.getLong(1)); //$NON-NLS-1$
+				long contributorId = rs.getLong(2);
+				if (contributorId != 0) {
+					buf.append(", contributor=").append(contributorId); //$NON-NLS-1$
+				}
+				buf.append(", date=").append(rs.getInt(3)); //$NON-NLS-1$
+				buf.append(") : expected ").append(sums(rs, 4)); //$NON-NLS-1$
+				buf.append(", found ").append(sums(rs, 6)); //$NON-NLS-1$
+				result.add(buf.toString());
+			}
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * @param rs
+	 *            the result set.
+	 * @param idx
+	 *            the sum column index (followed by the count column).
+	 * @return the sum and the count as a string.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private static String sums(ResultSet rs, int idx) throws SQLException {
+		long sum = rs.getLong(idx);
+		if (rs.wasNull()) {
+			return "none"; //$NON-NLS-1$
+		}
+		return sum + "/" + rs.getLong(idx + 1); //$NON-NLS-1$
+	}
+
+	/**
+	 * Registers a contribution delta.
+	 *
+	 * @param monthDeltas
+	 *            the monthly deltas.
+	 * @param dayDeltas
+	 *            the daily deltas.
+	 * @param taskId
+	 *            the contribution task identifier.
+	 * @param contributorId
+	 *            the contributor identifier.
+	 * @param year
+	 *            the contribution year.
+	 * @param month
+	 *            the contribution month.
+	 * @param day
+	 *            the contribution day.
+	 * @param duration
+	 *            the duration delta.
+	 * @param count
+	 *            the count delta.
+	 */
+	private static void addDelta(Map<List<Long>, long[]> monthDeltas,
+			Map<List<Long>, long[]> dayDeltas, long taskId,
+			long contributorId, int year, int month, int day, long duration,
+			int count) {
+		List<Long> monthKey = Arrays.asList(taskId, contributorId,
+				(long) year, (long) month);
+		List<Long> dayKey = Arrays.asList(taskId, (long) year, (long) month,
+				(long) day);
+		addDelta(monthDeltas, monthKey, duration, count);
+		addDelta(dayDeltas, dayKey, duration, count);
+	}
+
+	/**
+	 * Registers a delta for a rollup row.
+	 *
+	 * @param deltas
+	 *            the deltas.
+	 * @param key
+	 *            the rollup row key.
+	 * @param duration
+	 *            the duration delta.
+	 * @param count
+	 *            the count delta.
+	 */
+	private static void addDelta(Map<List<Long>, long[]> deltas,
+			List<Long> key, long duration, int count) {
+		long[] delta = deltas.get(key);
+		if (delta == null) {
+			delta = new long[2];
+			deltas.put(key, delta);
+		}
+		delta[0] += duration;
+		delta[1] += count;
+	}
+
+	/**
+	 * Applies the deltas to the rollup tables.
+	 *
+	 * @param monthDeltas
+	 *            the monthly deltas (by task, contributor, year and month).
+	 * @param dayDeltas
+	 *            the daily deltas (by task, year, month and day).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	private void applyDeltas(Map<List<Long>, long[]> monthDeltas,
+			Map<List<Long>, long[]> dayDeltas) throws DAOException {
+		try {
+			String[] deltaColumns = new String[] { MONTH_COLUMNS[0], MONTH_COLUMNS[1] };
+			String incrementRequest = dialect().buildIncrementRequest(
+					"CONTRIBUTION_MONTH", MONTH_COLUMNS, MONTH_PK_COLUMNS, deltaColumns); //$NON-NLS-1$
+			for (Map.Entry<List<Long>, long[]> entry : monthDeltas.entrySet()) {
+				List<Long> key = entry.getKey();
+				long year = key.get(2);
+				long month = key.get(3);
+				applyDelta(entry.getValue(), incrementRequest,
+						"delete from CONTRIBUTION_MONTH where ctm_task=? and ctm_date=? and ctm_contributor=? and ctm_count<=0", //$NON-NLS-1$
+						new long[] { key.get(0), year * 10000 + month * 100 + 1, key.get(1) },
+						new long[] { year, month });
+			}
+			deltaColumns = new String[] { DAY_COLUMNS[0], DAY_COLUMNS[1] };
+			incrementRequest = dialect().buildIncrementRequest(
+					"CONTRIBUTION_DAY", DAY_COLUMNS, DAY_PK_COLUMNS, deltaColumns); //$NON-NLS-1$
+			for (Map.Entry<List<Long>, long[]> entry : dayDeltas.entrySet()) {
+				List<Long> key = entry.getKey();
+				long year = key.get(1);
+				long month = key.get(2);
+				long day = key.get(3);
+				applyDelta(entry.getValue(), incrementRequest,
+						"delete from CONTRIBUTION_DAY where ctd_task=? and ctd_date=? and ctd_count<=0", //$NON-NLS-1$
+						new long[] { key.get(0), year * 10000 + month * 100 + day },
+						new long[] { year, month, day });
+			}
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Applies a delta to a rollup row.
+	 *
+	 * @param delta
+	 *            the duration and count deltas.
+	 * @param incrementRequest
+	 *            the request that inserts the row or adds the deltas to it
+	 *            (deltas, key values, then other values).
+	 * @param deleteRequest
+	 *            the request that removes the row if it is empty (key
+	 *            values).
+	 * @param keyValues
+	 *            the row key values.
+	 * @param otherValues
+	 *            the other row values.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private void applyDelta(long[] delta, String incrementRequest,
+			String deleteRequest, long[] keyValues, long[] otherValues)
+			throws SQLException {
+		if (delta[1] == 0 && delta[0] == 0) {
+			return;
+		}
+		PreparedStatement pStmt = tx().prepareStatement(incrementRequest);
+		try {
+			pStmt.setLong(1, delta[0]);
+			pStmt.setLong(2, delta[1]);
+			bind(pStmt, bind(pStmt, 3, keyValues), otherValues);
+			pStmt.executeUpdate();
+			pStmt.close();
+			// A removal may empty the row (or insert a row with a negative
+			// count if it was missing) : the empty rows are removed
+			if (delta[1] < 0) {
+				pStmt = tx().prepareStatement(deleteRequest);
+				bind(pStmt, 1, keyValues);
+				pStmt.executeUpdate();
+				pStmt.close();
+			}
+			pStmt = null;
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Binds parameters.
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param startIdx
+	 *            the first parameter index.
+	 * @param values
+	 *            the values.
+	 * @return the next parameter index.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private static int bind(PreparedStatement pStmt, int startIdx,
+			long[] values) throws SQLException {
+		int idx = startIdx;
+		for (long value : values) {
+			pStmt.setLong(idx++, value);
+		}
+		return idx;
+	}
+
+}
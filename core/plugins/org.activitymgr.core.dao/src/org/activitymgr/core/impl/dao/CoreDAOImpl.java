@@ -32,18 +32,33 @@ import java.io.InputStream;
 import java.io.LineNumberReader;
 import java.io.StringReader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.activitymgr.core.dao.AbstractDAOImpl;
 import org.activitymgr.core.dao.DAOException;
+import org.activitymgr.core.dao.IContributionDAO;
+import org.activitymgr.core.dao.IContributionRollupDAO;
 import org.activitymgr.core.dao.ICoreDAO;
-import org.activitymgr.core.util.DbHelper;
+import org.activitymgr.core.dao.ITaskDAO;
+import org.activitymgr.core.dao.SecondLevelCache;
+import org.activitymgr.core.orm.dialect.DialectResolver;
 import org.activitymgr.core.util.StringHelper;
 import org.activitymgr.core.util.Strings;
 import org.apache.log4j.Logger;
 
+import com.google.inject.Inject;
+
 /**
  * Classe offrant les services de base de persistence de l'application.
  * TODO 2236 -> 1865 -> 1558 -> 1125
@@ -53,6 +68,26 @@ public class CoreDAOImpl extends AbstractDAOImpl implements ICoreDAO {
 	/** Logger */
 	private static Logger log = Logger.getLogger(CoreDAOImpl.class);
 
+	/** Second level cache */
+	@Inject
+	private SecondLevelCache secondLevelCache;
+
+	/** Database dialect resolver */
+	@Inject
+	private DialectResolver dialectResolver;
+
+	/** Task DAO */
+	@Inject
+	private ITaskDAO taskDAO;
+
+	/** Contribution rollups DAO */
+	@Inject
+	private IContributionRollupDAO rollupDAO;
+
+	/** Contributions DAO */
+	@Inject
+	private IContributionDAO contributionDAO;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -84,7 +119,7 @@ public class CoreDAOImpl extends AbstractDAOImpl implements ICoreDAO {
 			rs = con
 					.getMetaData()
 					.getTables(null, null, tableName,
-					new String[] { "TABLE" }); //$NON-NLS-1$
+					new String[] { "TABLE", "VIEW" }); //$NON-NLS-1$ //$NON-NLS-2$
 
 			// Récupération du résultat
 			boolean exists = rs.next();
@@ -108,6 +143,10 @@ public class CoreDAOImpl extends AbstractDAOImpl implements ICoreDAO {
 	 */
 	@Override
 	public void createTables() throws DAOException {
+		// Les partitions des contributions ne sont pas connues du script
+		if (isHsqlOrH2() && contributionDAO.isPartitioned())
+			dropContributionPartitions();
+
 		// Lecture du fichier SQL de création de la BDD
 		String batchName = isHsqlOrH2() ? "hsqldb.sql" : "mysqldb.sql"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		InputStream in = CoreDAOImpl.class.getResourceAsStream(batchName);
@@ -119,15 +158,548 @@ public class CoreDAOImpl extends AbstractDAOImpl implements ICoreDAO {
 					Strings.getString("DbMgr.errors.SQL_TABLE_CREATION_FAILURE"), null); //$NON-NLS-1$
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.dao.ICoreDAO#createTables(boolean)
+	 */
+	@Override
+	public void createTables(boolean partitionContributions)
+			throws DAOException {
+		createTables();
+		if (partitionContributions)
+			partitionContributions();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.dao.ICoreDAO#partitionContributions()
+	 */
+	@Override
+	public void partitionContributions() throws DAOException {
+		boolean partitioned = contributionDAO.isPartitioned();
+		SortedSet<Integer> existingYears = contributionDAO.getPartitionYears();
+		// Years that receive their own partition : the years stored in the
+		// default partition (or in the table if it is not partitioned yet),
+		// the current year and the next one
+		int currentYear = new GregorianCalendar().get(Calendar.YEAR);
+		SortedSet<Integer> years = new TreeSet<Integer>();
+		years.add(currentYear);
+		years.add(currentYear + 1);
+		StringBuffer script = new StringBuffer();
+		if (isHsqlOrH2()) {
+			String defaultPartition = ContributionDAOImpl.DEFAULT_PARTITION;
+			years.addAll(getContributionYears(partitioned ? defaultPartition
+					: "CONTRIBUTION", Integer.MIN_VALUE)); //$NON-NLS-1$
+			years.removeAll(existingYears);
+			log.info("Partitioning CONTRIBUTION table, new partitions : " + years); //$NON-NLS-1$
+			if (!partitioned) {
+				// The table becomes the default partition
+				script.append("alter table CONTRIBUTION rename to ").append(defaultPartition).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			for (int year : years) {
+				String table = ContributionDAOImpl.getPartitionTable(year);
+				String prefix = "CTB" + year; //$NON-NLS-1$
+				script.append("create table ").append(table).append(" (\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				script.append("	CTB_YEAR          integer not null,\n"); //$NON-NLS-1$
+				script.append("	CTB_MONTH         integer not null,\n"); //$NON-NLS-1$
+				script.append("	CTB_DAY           integer not null,\n"); //$NON-NLS-1$
+				script.append("	CTB_DATE          integer not null,\n"); //$NON-NLS-1$
+				script.append("	CTB_CONTRIBUTOR   integer not null,\n"); //$NON-NLS-1$
+				script.append("	CTB_TASK          integer not null,\n"); //$NON-NLS-1$
+				script.append("	CTB_DURATION      integer not null,\n"); //$NON-NLS-1$
+				script.append("    constraint ").append(prefix).append("_PK primary key (CTB_YEAR, CTB_MONTH, CTB_DAY, CTB_CONTRIBUTOR, CTB_TASK),\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				script.append("    constraint ").append(prefix).append("_YEAR_CK check (CTB_YEAR=").append(year).append("),\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				script.append("    constraint ").append(prefix).append("_CONTRIBUTOR_FK foreign key (CTB_CONTRIBUTOR) references COLLABORATOR (CLB_ID),\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				script.append("    constraint ").append(prefix).append("_TASK_FK foreign key (CTB_TASK) references TASK (TSK_ID),\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				script.append("    constraint ").append(prefix).append("_DURATION_FK foreign key (CTB_DURATION) references DURATION (DUR_ID)\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				script.append(");\n"); //$NON-NLS-1$
+				script.append("create index ").append(prefix).append("_CONTRIBUTOR_DATE_IDX on ").append(table).append(" (CTB_CONTRIBUTOR, CTB_DATE);\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				script.append("create index ").append(prefix).append("_TASK_DATE_IDX on ").append(table).append(" (CTB_TASK, CTB_DATE);\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				script.append("create index ").append(prefix).append("_DURATION_IDX on ").append(table).append(" (CTB_DURATION);\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				// The year contributions are moved from the default partition
+				script.append("insert into ").append(table).append(" (").append(ContributionDAOImpl.COLUMNS) //$NON-NLS-1$ //$NON-NLS-2$
+						.append(") select ").append(ContributionDAOImpl.COLUMNS).append(" from ").append(defaultPartition) //$NON-NLS-1$ //$NON-NLS-2$
+						.append(" where CTB_YEAR=").append(year).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				script.append("delete from ").append(defaultPartition).append(" where CTB_YEAR=").append(year).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			// The view gathers all the partitions
+			years.addAll(existingYears);
+			script.append("drop view if exists CONTRIBUTION;\n"); //$NON-NLS-1$
+			script.append("create view CONTRIBUTION as select ").append(ContributionDAOImpl.COLUMNS).append(" from ").append(defaultPartition); //$NON-NLS-1$ //$NON-NLS-2$
+			for (int year : years) {
+				script.append("\n	union all select ").append(ContributionDAOImpl.COLUMNS).append(" from ").append(ContributionDAOImpl.getPartitionTable(year)); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			script.append(";\n"); //$NON-NLS-1$
+		} else {
+			if (!partitioned) {
+				years.addAll(getContributionYears("CONTRIBUTION", Integer.MIN_VALUE)); //$NON-NLS-1$
+				log.info("Partitioning CONTRIBUTION table, partitions : " + years); //$NON-NLS-1$
+				// InnoDB doesn't support foreign keys on partitioned tables
+				script.append("alter table CONTRIBUTION drop foreign key CTB_CONTRIBUTOR_FK;\n"); //$NON-NLS-1$
+				script.append("alter table CONTRIBUTION drop foreign key CTB_TASK_FK;\n"); //$NON-NLS-1$
+				script.append("alter table CONTRIBUTION drop foreign key CTB_DURATION_FK;\n"); //$NON-NLS-1$
+				script.append("alter table CONTRIBUTION partition by range (CTB_YEAR) ("); //$NON-NLS-1$
+			} else {
+				// Only the years that are stored in the default partition
+				// (the years greater than the last partition) are handled
+				int lastYear = existingYears.isEmpty() ? Integer.MIN_VALUE : existingYears.last();
+				years.addAll(getContributionYears("CONTRIBUTION", lastYear)); //$NON-NLS-1$
+				years = years.tailSet(lastYear + 1);
+				log.info("Partitioning CONTRIBUTION table, new partitions : " + years); //$NON-NLS-1$
+				if (years.isEmpty())
+					return;
+				script.append("alter table CONTRIBUTION reorganize partition pmax into ("); //$NON-NLS-1$
+			}
+			for (int year : years) {
+				script.append("\n	partition p").append(year).append(" values less than (").append(year + 1).append("),"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			script.append("\n	partition pmax values less than maxvalue);\n"); //$NON-NLS-1$
+		}
+		executeScript(script.toString());
+	}
+
+	/**
+	 * Supprime la vue <code>CONTRIBUTION</code> et les tables des partitions
+	 * des contributions (HSQLDB et H2).
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private void dropContributionPartitions() throws DAOException {
+		StringBuffer script = new StringBuffer();
+		script.append("drop view if exists CONTRIBUTION;\n"); //$NON-NLS-1$
+		for (int year : contributionDAO.getPartitionYears()) {
+			script.append("drop table ").append(ContributionDAOImpl.getPartitionTable(year)).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		script.append("drop table ").append(ContributionDAOImpl.DEFAULT_PARTITION).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		executeScript(script.toString());
+	}
+
+	/**
+	 * Retourne les années des contributions d'une table.
+	 * 
+	 * @param tableName
+	 *            le nom de la table.
+	 * @param afterYear
+	 *            seules les années supérieures sont retournées.
+	 * @return les années.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private SortedSet<Integer> getContributionYears(String tableName,
+			int afterYear) throws DAOException {
+		SortedSet<Integer> years = new TreeSet<Integer>();
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			pStmt = tx().prepareStatement("select distinct(ctb_year) from " + tableName + " where ctb_year>?"); //$NON-NLS-1$ //$NON-NLS-2$
+			pStmt.setInt(1, afterYear);
+			rs = pStmt.executeQuery();
+			while (rs.next())
+				years.add(rs.getInt(1));
+			pStmt.close();
+			pStmt = null;
+			return years;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(null, e);
+		} finally {
+			lastAttemptClose(rs);
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.dao.ICoreDAO#upgradeTables()
+	 */
+	@Override
+	public void upgradeTables() throws DAOException {
+		if (!columnExists("CONTRIBUTION", "CTB_DATE")) //$NON-NLS-1$ //$NON-NLS-2$
+			addContributionDateColumn();
+		if (!tableExists("TASK_CLOSURE")) //$NON-NLS-1$
+			createTaskClosureTable();
+		if (!tableExists("CONTRIBUTION_MONTH")) //$NON-NLS-1$
+			createContributionRollupTables();
+		if (!tableExists("TASK_TRIGRAM")) //$NON-NLS-1$
+			createTaskTrigramTable();
+		else if (!taskTrigramTableHasShortKeys())
+			rebuildTaskTrigramTable();
+		if (!columnExists("TASK", "TSK_SUBTASKS_COUNT")) //$NON-NLS-1$ //$NON-NLS-2$
+			addTaskSubTasksCountColumn();
+		if (!columnExists("TASK", "TSK_VERSION")) //$NON-NLS-1$ //$NON-NLS-2$
+			addTaskVersionColumn();
+	}
+
+	/**
+	 * Ajoute et alimente la colonne <code>CTB_DATE</code> et les index
+	 * associés.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private void addContributionDateColumn() throws DAOException {
+		log.info("Adding CTB_DATE column to CONTRIBUTION table"); //$NON-NLS-1$
+		// The upgrade modifies every contribution
+		identityMap().clearInstances();
+		secondLevelCache.invalidateAll();
+		boolean hsqlOrH2 = isHsqlOrH2();
+		Statement stmt = null;
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			// The column is added as nullable so that the table remains
+			// usable while it is being filled
+			stmt = tx().createStatement();
+			stmt.executeUpdate("alter table CONTRIBUTION add column CTB_DATE integer"); //$NON-NLS-1$
+
+			// Backfill, one year at a time so that each request only locks
+			// a part of the table
+			List<Integer> years = new ArrayList<Integer>();
+			rs = stmt.executeQuery("select distinct(ctb_year) from CONTRIBUTION"); //$NON-NLS-1$
+			while (rs.next())
+				years.add(rs.getInt(1));
+			rs.close();
+			rs = null;
+			pStmt = tx().prepareStatement(
+					"update CONTRIBUTION set ctb_date=ctb_year*10000+ctb_month*100+ctb_day where ctb_year=?"); //$NON-NLS-1$
+			for (Integer year : years) {
+				pStmt.setInt(1, year);
+				int count = pStmt.executeUpdate();
+				log.info("  " + year + " : " + count + " contribution(s) updated"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			pStmt.close();
+			pStmt = null;
+
+			// Constraint & indexes
+			stmt.executeUpdate(hsqlOrH2 ? "alter table CONTRIBUTION alter column CTB_DATE set not null" //$NON-NLS-1$
+					: "alter table CONTRIBUTION modify CTB_DATE integer(8) not null"); //$NON-NLS-1$
+			Set<String> indexes = getIndexNames("CONTRIBUTION"); //$NON-NLS-1$
+			if (!indexes.contains("CTB_CONTRIBUTOR_DATE_IDX")) //$NON-NLS-1$
+				stmt.executeUpdate("create index CTB_CONTRIBUTOR_DATE_IDX on CONTRIBUTION (CTB_CONTRIBUTOR, CTB_DATE)"); //$NON-NLS-1$
+			if (!indexes.contains("CTB_TASK_DATE_IDX")) //$NON-NLS-1$
+				stmt.executeUpdate("create index CTB_TASK_DATE_IDX on CONTRIBUTION (CTB_TASK, CTB_DATE)"); //$NON-NLS-1$
+			// The former indexes are covered by the new ones (unless the
+			// database uses them for a foreign key, in which case they are
+			// kept)
+			for (String index : new String[] { "CTB_CONTRIBUTOR_IDX", "CTB_TASK_IDX" }) { //$NON-NLS-1$ //$NON-NLS-2$
+				if (indexes.contains(index)) {
+					try {
+						stmt.executeUpdate("drop index " + index //$NON-NLS-1$
+								+ (hsqlOrH2 ? "" : " on CONTRIBUTION")); //$NON-NLS-1$ //$NON-NLS-2$
+					} catch (SQLException e) {
+						log.info("Index " + index + " kept : " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+				}
+			}
+			stmt.close();
+			stmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException("Database table upgrade failure", e); //$NON-NLS-1$
+		} finally {
+			lastAttemptClose(rs);
+			lastAttemptToClose(pStmt);
+			lastAttemptToClose(stmt);
+		}
+	}
+
+	/**
+	 * Crée et alimente la table <code>TASK_CLOSURE</code>.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private void createTaskClosureTable() throws DAOException {
+		log.info("Creating TASK_CLOSURE table"); //$NON-NLS-1$
+		StringBuffer script = new StringBuffer();
+		if (isHsqlOrH2()) {
+			script.append("create table TASK_CLOSURE (\n"); //$NON-NLS-1$
+			script.append("	TCL_ANCESTOR      integer not null,\n"); //$NON-NLS-1$
+			script.append("	TCL_DESCENDANT    integer not null,\n"); //$NON-NLS-1$
+			script.append("	TCL_DEPTH         integer not null,\n"); //$NON-NLS-1$
+			script.append("    constraint TCL_PK primary key (TCL_ANCESTOR, TCL_DESCENDANT),\n"); //$NON-NLS-1$
+			script.append("    constraint TCL_ANCESTOR_FK foreign key (TCL_ANCESTOR) references TASK (TSK_ID),\n"); //$NON-NLS-1$
+			script.append("    constraint TCL_DESCENDANT_FK foreign key (TCL_DESCENDANT) references TASK (TSK_ID)\n"); //$NON-NLS-1$
+			script.append(");\n"); //$NON-NLS-1$
+			script.append("create index TCL_DESCENDANT_IDX on TASK_CLOSURE (TCL_DESCENDANT, TCL_DEPTH);\n"); //$NON-NLS-1$
+		} else {
+			script.append("create table TASK_CLOSURE (\n"); //$NON-NLS-1$
+			script.append("	TCL_ANCESTOR      integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("	TCL_DESCENDANT    integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("	TCL_DEPTH         integer(3) not null,\n"); //$NON-NLS-1$
+			script.append("    index TCL_DESCENDANT_IDX (TCL_DESCENDANT, TCL_DEPTH),\n"); //$NON-NLS-1$
+			script.append("    constraint TCL_PK primary key (TCL_ANCESTOR, TCL_DESCENDANT),\n"); //$NON-NLS-1$
+			script.append("    constraint TCL_ANCESTOR_FK foreign key (TCL_ANCESTOR) references TASK (TSK_ID),\n"); //$NON-NLS-1$
+			script.append("    constraint TCL_DESCENDANT_FK foreign key (TCL_DESCENDANT) references TASK (TSK_ID)\n"); //$NON-NLS-1$
+			script.append(") engine=innodb;\n"); //$NON-NLS-1$
+		}
+		executeScript(script.toString());
+		taskDAO.rebuildClosure();
+	}
+
+	/**
+	 * Crée et alimente les tables <code>CONTRIBUTION_MONTH</code> et
+	 * <code>CONTRIBUTION_DAY</code>.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private void createContributionRollupTables() throws DAOException {
+		log.info("Creating CONTRIBUTION_MONTH and CONTRIBUTION_DAY tables"); //$NON-NLS-1$
+		StringBuffer script = new StringBuffer();
+		if (isHsqlOrH2()) {
+			script.append("create table CONTRIBUTION_MONTH (\n"); //$NON-NLS-1$
+			script.append("	CTM_TASK          integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_CONTRIBUTOR   integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_YEAR          integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_MONTH         integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_DATE          integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_DURATION      integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_COUNT         integer not null,\n"); //$NON-NLS-1$
+			script.append("    constraint CTM_PK primary key (CTM_TASK, CTM_DATE, CTM_CONTRIBUTOR),\n"); //$NON-NLS-1$
+			script.append("    constraint CTM_TASK_FK foreign key (CTM_TASK) references TASK (TSK_ID),\n"); //$NON-NLS-1$
+			script.append("    constraint CTM_CONTRIBUTOR_FK foreign key (CTM_CONTRIBUTOR) references COLLABORATOR (CLB_ID)\n"); //$NON-NLS-1$
+			script.append(");\n"); //$NON-NLS-1$
+			script.append("create index CTM_CONTRIBUTOR_DATE_IDX on CONTRIBUTION_MONTH (CTM_CONTRIBUTOR, CTM_DATE);\n"); //$NON-NLS-1$
+			script.append("create table CONTRIBUTION_DAY (\n"); //$NON-NLS-1$
+			script.append("	CTD_TASK          integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_YEAR          integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_MONTH         integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_DAY           integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_DATE          integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_DURATION      integer not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_COUNT         integer not null,\n"); //$NON-NLS-1$
+			script.append("    constraint CTD_PK primary key (CTD_TASK, CTD_DATE),\n"); //$NON-NLS-1$
+			script.append("    constraint CTD_TASK_FK foreign key (CTD_TASK) references TASK (TSK_ID)\n"); //$NON-NLS-1$
+			script.append(");\n"); //$NON-NLS-1$
+		} else {
+			script.append("create table CONTRIBUTION_MONTH (\n"); //$NON-NLS-1$
+			script.append("	CTM_TASK          integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_CONTRIBUTOR   integer(3) not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_YEAR          integer(4) not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_MONTH         integer(2) not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_DATE          integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_DURATION      integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("	CTM_COUNT         integer(4) not null,\n"); //$NON-NLS-1$
+			script.append("    index CTM_CONTRIBUTOR_DATE_IDX (CTM_CONTRIBUTOR, CTM_DATE),\n"); //$NON-NLS-1$
+			script.append("    constraint CTM_PK primary key (CTM_TASK, CTM_DATE, CTM_CONTRIBUTOR),\n"); //$NON-NLS-1$
+			script.append("    constraint CTM_TASK_FK foreign key (CTM_TASK) references TASK (TSK_ID),\n"); //$NON-NLS-1$
+			script.append("    constraint CTM_CONTRIBUTOR_FK foreign key (CTM_CONTRIBUTOR) references COLLABORATOR (CLB_ID)\n"); //$NON-NLS-1$
+			script.append(") engine=innodb;\n"); //$NON-NLS-1$
+			script.append("create table CONTRIBUTION_DAY (\n"); //$NON-NLS-1$
+			script.append("	CTD_TASK          integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_YEAR          integer(4) not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_MONTH         integer(2) not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_DAY           integer(2) not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_DATE          integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_DURATION      integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("	CTD_COUNT         integer(4) not null,\n"); //$NON-NLS-1$
+			script.append("    constraint CTD_PK primary key (CTD_TASK, CTD_DATE),\n"); //$NON-NLS-1$
+			script.append("    constraint CTD_TASK_FK foreign key (CTD_TASK) references TASK (TSK_ID)\n"); //$NON-NLS-1$
+			script.append(") engine=innodb;\n"); //$NON-NLS-1$
+		}
+		executeScript(script.toString());
+		rollupDAO.rebuildRollups();
+	}
+
+	/**
+	 * Crée et alimente la table <code>TASK_TRIGRAM</code>.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private void createTaskTrigramTable() throws DAOException {
+		log.info("Creating TASK_TRIGRAM table"); //$NON-NLS-1$
+		StringBuffer script = new StringBuffer();
+		if (isHsqlOrH2()) {
+			script.append("create table TASK_TRIGRAM (\n"); //$NON-NLS-1$
+			script.append("	TTG_TRIGRAM       varchar(3) not null,\n"); //$NON-NLS-1$
+			script.append("	TTG_TASK          integer    not null,\n"); //$NON-NLS-1$
+			script.append("    constraint TTG_PK primary key (TTG_TRIGRAM, TTG_TASK),\n"); //$NON-NLS-1$
+			script.append("    constraint TTG_TASK_FK foreign key (TTG_TASK) references TASK (TSK_ID)\n"); //$NON-NLS-1$
+			script.append(");\n"); //$NON-NLS-1$
+			script.append("create index TTG_TASK_IDX on TASK_TRIGRAM (TTG_TASK);\n"); //$NON-NLS-1$
+		} else {
+			script.append("create table TASK_TRIGRAM (\n"); //$NON-NLS-1$
+			script.append("	TTG_TRIGRAM       varchar(3) binary not null,\n"); //$NON-NLS-1$
+			script.append("	TTG_TASK          integer(8) not null,\n"); //$NON-NLS-1$
+			script.append("    index TTG_TASK_IDX (TTG_TASK),\n"); //$NON-NLS-1$
+			script.append("    constraint TTG_PK primary key (TTG_TRIGRAM, TTG_TASK),\n"); //$NON-NLS-1$
+			script.append("    constraint TTG_TASK_FK foreign key (TTG_TASK) references TASK (TSK_ID)\n"); //$NON-NLS-1$
+			script.append(") engine=innodb;\n"); //$NON-NLS-1$
+		}
+		executeScript(script.toString());
+		taskDAO.rebuildSearchIndex();
+	}
+
+	/**
+	 * Indique si la table <code>TASK_TRIGRAM</code> contient les séquences de
+	 * 1 et 2 caractères des codes et noms de taches (les versions antérieures
+	 * n'y stockaient que les trigrammes). Seule la première tache est
+	 * contrôlée.
+	 * 
+	 * @return un booléen indiquant si la table est à jour.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private boolean taskTrigramTableHasShortKeys() throws DAOException {
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			pStmt = tx().prepareStatement("select tsk_id, tsk_code, tsk_name from TASK where tsk_id=(select min(tsk_id) from TASK)"); //$NON-NLS-1$
+			rs = pStmt.executeQuery();
+			if (!rs.next())
+				return true;
+			long taskId = rs.getLong(1);
+			Set<String> keys = StringHelper.getIndexKeys(StringHelper
+					.toSearchKey(rs.getString(2)));
+			keys.addAll(StringHelper.getIndexKeys(StringHelper
+					.toSearchKey(rs.getString(3))));
+			rs.close();
+			rs = null;
+			pStmt.close();
+			pStmt = null;
+
+			pStmt = tx().prepareStatement("select count(*) from TASK_TRIGRAM where ttg_task=?"); //$NON-NLS-1$
+			pStmt.setLong(1, taskId);
+			rs = pStmt.executeQuery();
+			rs.next();
+			boolean upToDate = rs.getInt(1) == keys.size();
+			rs.close();
+			rs = null;
+			pStmt.close();
+			pStmt = null;
+			return upToDate;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(null, e);
+		} finally {
+			lastAttemptClose(rs);
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Réalimente la table <code>TASK_TRIGRAM</code>.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private void rebuildTaskTrigramTable() throws DAOException {
+		log.info("Rebuilding TASK_TRIGRAM table"); //$NON-NLS-1$
+		taskDAO.rebuildSearchIndex();
+	}
+
+	/**
+	 * Ajoute et alimente la colonne <code>TSK_SUBTASKS_COUNT</code>.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private void addTaskSubTasksCountColumn() throws DAOException {
+		log.info("Adding TSK_SUBTASKS_COUNT column to TASK table"); //$NON-NLS-1$
+		// The upgrade modifies every task
+		identityMap().clearInstances();
+		secondLevelCache.invalidateAll();
+		executeScript(isHsqlOrH2() ? "alter table TASK add column TSK_SUBTASKS_COUNT integer default 0 not null;\n" //$NON-NLS-1$
+				: "alter table TASK add column TSK_SUBTASKS_COUNT integer(3) not null default 0;\n"); //$NON-NLS-1$
+		taskDAO.rebuildSubTasksCounts();
+	}
+
+	/**
+	 * Ajoute la colonne <code>TSK_VERSION</code>.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private void addTaskVersionColumn() throws DAOException {
+		log.info("Adding TSK_VERSION column to TASK table"); //$NON-NLS-1$
+		// The cached tasks don't have their version
+		identityMap().clearInstances();
+		secondLevelCache.invalidateAll();
+		executeScript(isHsqlOrH2() ? "alter table TASK add column TSK_VERSION integer default 0 not null;\n" //$NON-NLS-1$
+				: "alter table TASK add column TSK_VERSION integer(10) not null default 0;\n"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Vérifie si une colonne existe dans une table.
+	 * 
+	 * @param tableName
+	 *            le nom de la table.
+	 * @param columnName
+	 *            le nom de la colonne.
+	 * @return un booléen indiquant si la colonne existe.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private boolean columnExists(String tableName, String columnName)
+			throws DAOException {
+		ResultSet rs = null;
+		try {
+			rs = tx().getMetaData().getColumns(null, null, tableName,
+					columnName);
+			boolean exists = rs.next();
+			rs.close();
+			rs = null;
+			return exists;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(null, e);
+		} finally {
+			lastAttemptClose(rs);
+		}
+	}
+
+	/**
+	 * Retourne les noms des index d'une table.
+	 * 
+	 * @param tableName
+	 *            le nom de la table.
+	 * @return les noms des index (en majuscules).
+	 * @throws SQLException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private Set<String> getIndexNames(String tableName) throws SQLException {
+		Set<String> names = new HashSet<String>();
+		ResultSet rs = tx().getMetaData().getIndexInfo(null, null, tableName,
+				false, false);
+		try {
+			while (rs.next()) {
+				String name = rs.getString("INDEX_NAME"); //$NON-NLS-1$
+				if (name != null)
+					names.add(name.toUpperCase());
+			}
+		} finally {
+			rs.close();
+		}
+		return names;
+	}
+
 	@Override
 	public boolean isHsqlOrH2() {
 		try {
-			return DbHelper.isHsqlOrH2(tx());
+			return dialect().isHsqlOrH2();
 		} catch (SQLException e) {
 			throw new IllegalStateException(e);
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.dao.ICoreDAO#resetDatabaseCaches()
+	 */
+	@Override
+	public void resetDatabaseCaches() {
+		dialectResolver.reset();
+		secondLevelCache.invalidateAll();
+		contributionDAO.resetPartitions();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -155,6 +727,10 @@ public class CoreDAOImpl extends AbstractDAOImpl implements ICoreDAO {
 	 */
 	@Override
 	public void executeScript(String scriptContent) throws DAOException {
+		// The script may modify any row (or table)
+		identityMap().clearInstances();
+		secondLevelCache.invalidateAll();
+		contributionDAO.resetPartitions();
 		Statement stmt = null;
 		try {
 			// Découpage et exécution du batch
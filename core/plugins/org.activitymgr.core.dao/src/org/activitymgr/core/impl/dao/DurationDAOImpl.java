@@ -5,12 +5,23 @@ import org.activitymgr.core.dao.DAOException;
 import org.activitymgr.core.dao.IDurationDAO;
 import org.activitymgr.core.dto.Duration;
 import org.activitymgr.core.dto.IDTOFactory;
+import org.activitymgr.core.orm.query.AscendantOrderByClause;
 
 import com.google.inject.Inject;
 
 public class DurationDAOImpl extends AbstractORMDAOImpl<Duration> implements
 		IDurationDAO {
 	
+	/** Cache key of the durations list */
+	private static final String ALL_DURATIONS = "all";
+
+	/** Cache key of the active durations list */
+	private static final String ACTIVE_DURATIONS = "active";
+
+	/** Durations order */
+	private static final Object[] BY_ID = new Object[] { new AscendantOrderByClause(
+			"id") };
+
 	/** Bean factory */
 	@Inject
 	private IDTOFactory factory;
@@ -21,4 +32,24 @@ public class DurationDAOImpl extends AbstractORMDAOImpl<Duration> implements
 		duration.setId(durationId);
 		insert(duration);
 	}
+
+	@Override
+	public Duration[] getDurations() throws DAOException {
+		return selectCached(ALL_DURATIONS, null, null, BY_ID, -1);
+	}
+
+	@Override
+	public Duration[] getActiveDurations() throws DAOException {
+		return selectCached(ACTIVE_DURATIONS, new String[] { "isActive" },
+				new Object[] { Boolean.TRUE }, BY_ID, -1);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.AbstractORMDAOImpl#isSecondLevelCacheEnabled()
+	 */
+	@Override
+	protected boolean isSecondLevelCacheEnabled() {
+		return true;
+	}
+
 }
\ No newline at end of file
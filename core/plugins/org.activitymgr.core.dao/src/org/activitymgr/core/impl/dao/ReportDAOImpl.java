@@ -6,6 +6,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,15 +16,18 @@ import java.util.Map;
 import org.activitymgr.core.dao.AbstractDAOImpl;
 import org.activitymgr.core.dao.DAOException;
 import org.activitymgr.core.dao.ICollaboratorDAO;
+import org.activitymgr.core.dao.IContributionDAO;
 import org.activitymgr.core.dao.IReportDAO;
 import org.activitymgr.core.dao.ITaskDAO;
 import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.TaskSums;
 import org.activitymgr.core.dto.report.Report;
 import org.activitymgr.core.dto.report.ReportIntervalType;
 import org.activitymgr.core.dto.report.ReportItem;
-import org.activitymgr.core.util.DateHelper;
+import org.activitymgr.core.orm.dialect.Dialect;
+import org.activitymgr.core.util.EpochDay;
 import org.activitymgr.core.util.Strings;
 import org.apache.log4j.Logger;
 
@@ -31,12 +37,18 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 
 	/** Logger */
 	private static Logger log = Logger.getLogger(ReportDAOImpl.class);
+
+	/** Number of contribution rows read at each database round trip */
+	private static final int CONTRIBUTIONS_FETCH_SIZE = 1000;
 	
 	@Inject
 	private ITaskDAO taskDAO;
 	
 	@Inject
 	private ICollaboratorDAO collaboratorDAO;
+
+	@Inject
+	private IContributionDAO contributionDAO;
 	
 
 	@Override
@@ -44,7 +56,8 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			int intervalCount, Task rootTask, int taskDepth,
 			boolean onlyKeepTasksWithContributions, boolean byContributor,
 			boolean contributorCentricMode, long[] contributorIds,
-			String[] orderContributorsBy) {		
+			String[] orderContributorsBy,
+			Collection<Contribution> archivedContributions) {		
 		
 		/*
 		 * Retrieve contributors
@@ -60,27 +73,28 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			Map<Long, TaskSums> tasksByIdCache = new HashMap<Long, TaskSums>();
 			Map<String, TaskSums> tasksByFullPathCache = new HashMap<String, TaskSums>();
 			List<TaskSums> orderedTasks = new ArrayList<TaskSums>();
+			Dialect dialect = dialect();
 			// Register sub tasks
 			if (taskDepth > 0) {
 				StringWriter request = new StringWriter()
 					.append("select ")
 					.append("sum(leaftask.tsk_budget), sum(leaftask.tsk_initial_cons), sum(leaftask.tsk_todo), (count(leaftask.tsk_id)-1), ")
 					.append(taskDAO.getColumnNamesRequestFragment("activitytask"))
-					.append(" from TASK activitytask, TASK leaftask ")
-					.append("where ")
-					.append("(leaftask.tsk_id=activitytask.tsk_id or leaftask.tsk_path like concat(activitytask.tsk_path, activitytask.tsk_number, '%')) ");
-				if (rootPath != null) {
-					request.append("and concat(activitytask.tsk_path, activitytask.tsk_number) like ? ");
+					.append(" from TASK activitytask ");
+				if (rootTask != null) {
+					request.append("join TASK_CLOSURE roottree on (roottree.tcl_descendant=activitytask.tsk_id and roottree.tcl_ancestor=?) ");
 				}
-				request.append("and length(activitytask.tsk_path)<=? ")
+				request.append("join TASK_CLOSURE activitytree on activitytree.tcl_ancestor=activitytask.tsk_id ")
+					.append("join TASK leaftask on leaftask.tsk_id=activitytree.tcl_descendant ")
+					.append("where length(activitytask.tsk_path)<=? ")
 					.append("group by activitytask.tsk_id ");
 				request.append("order by ");
 				// This helps to ensure parent tasks will be sorted before children tasks
-				appendOrderByTaskPathFragment(request, "activitytask", taskDepth);
+				appendOrderByTaskPathFragment(dialect, request, "activitytask", taskDepth);
 				pStmt = tx().prepareStatement(request.toString());
 				int paramIdx = 1;
-				if (rootPath != null) {
-					pStmt.setString(paramIdx++, rootPath + "%");
+				if (rootTask != null) {
+					pStmt.setLong(paramIdx++, rootTask.getId());
 				}
 				
 				pStmt.setInt(paramIdx++, activityPathLength-2);
@@ -110,23 +124,32 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			/*
 			 * Interval computation
 			 */
-			int startYear = start.get(Calendar.YEAR);
-			int startMonth = start.get(Calendar.MONTH) + 1;
-			int startDay = start.get(Calendar.DATE);
-			int startDate = startYear*10000+startMonth*100+startDay;
+			int startDay = EpochDay.of(start);
+			int startDate = EpochDay.toDateKey(startDay);
+			int startYear = startDate / 10000;
 			
-			Calendar end = (Calendar) start.clone();
-			end.add(intervalType.getIntType(), intervalCount);
-			end.add(Calendar.DATE, -1);
-			int endYear = end.get(Calendar.YEAR);
-			int endMonth = end.get(Calendar.MONTH) + 1;
-			int endDay = end.get(Calendar.DATE);
-			int endDate = endYear*10000+endMonth*100+endDay;
+			int endDay = EpochDay.add(startDay, intervalType.getIntType(), intervalCount) - 1;
+			int endDate = EpochDay.toDateKey(endDay);
+			int endYear = endDate / 10000;
 		
 			/*
 			 * Retrieve contributions
 			 */
 			boolean byActivity = (taskDepth > 0);
+			// The contributions are read from the monthly rollup if the
+			// report is made of whole months, and from the daily rollup if
+			// the contributors are not needed
+			String ctbTable = contributionDAO.getTableExpression(start, EpochDay.toCalendar(endDay));
+			String ctb = "ctb_";
+			if ((intervalType == ReportIntervalType.MONTH || intervalType == ReportIntervalType.YEAR)
+					&& startDate % 100 == 1) {
+				ctbTable = "CONTRIBUTION_MONTH";
+				ctb = "ctm_";
+			} else if (!byContributor
+					&& (contributorIds == null || contributorIds.length == 0)) {
+				ctbTable = "CONTRIBUTION_DAY";
+				ctb = "ctd_";
+			}
 			// Prepare the request
 			StringWriter sw = new StringWriter();
 			sw.append("select ");
@@ -139,16 +162,16 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			switch (intervalType) {
 			case WEEK:
 			case DAY:
-				sw.append("ctb_day, ");
+				sw.append(ctb + "day, ");
 				collaboratorFieldsIndex++;
 			case MONTH:
-				sw.append("ctb_month, ");
+				sw.append(ctb + "month, ");
 				collaboratorFieldsIndex++;
 			case YEAR :
-				sw.append("ctb_year, ");
+				sw.append(ctb + "year, ");
 				collaboratorFieldsIndex++;
 			}
-			sw.append("sum(ctb_duration)");
+			sw.append("sum(" + ctb + "duration)");
 			collaboratorFieldsIndex++;
 			// Append contributor if needed
 			if (byContributor) {
@@ -161,22 +184,23 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			}
 			
 			sw.append("\nfrom TASK as ctbtask ");
-			sw.append("\n\tleft join CONTRIBUTION on ctbtask.tsk_id = ctb_task ");
+			if (rootTask != null) {
+				sw.append("\n\tjoin TASK_CLOSURE as roottree on (roottree.tcl_descendant=ctbtask.tsk_id and roottree.tcl_ancestor=?) ");
+			}
+			sw.append("\n\tleft join " + ctbTable + " on ctbtask.tsk_id = " + ctb + "task ");
 			if (byContributor) {
-				sw.append("\n\tleft join COLLABORATOR on clb_id = ctb_contributor ");
+				sw.append("\n\tleft join COLLABORATOR on clb_id = " + ctb + "contributor ");
 			}
 			if (byActivity) {
-				sw.append("\n\tleft join TASK as activity on (ctbtask.tsk_id=activity.tsk_id or left(ctbtask.tsk_path, ?) = concat(activity.tsk_path, activity.tsk_number)) ");
+				// The activity is the task itself or one of its ancestors
+				sw.append("\n\tleft join TASK_CLOSURE as activitytree on activitytree.tcl_descendant=ctbtask.tsk_id ");
+				sw.append("\n\tleft join TASK as activity on activity.tsk_id=activitytree.tcl_ancestor ");
 			}
 
 			// WHERE
 			sw.append("\nwhere true ");
-			// Filter 
-			if (rootTask != null) {
-				sw.append("and (ctbtask.tsk_id=? or left(ctbtask.tsk_path, ?) = ?) ");
-			}
 			if (contributorIds != null && contributorIds.length > 0) {
-				sw.append("and ctb_contributor in (");
+				sw.append("and " + ctb + "contributor in (");
 				for (int i=0; i<contributorIds.length; i++) {
 					if (i > 0) {
 						sw.append(", ");
@@ -200,17 +224,19 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 				}
 				sw.append(") ");
 			}
-			sw.append("and (ctb_year*10000+ctb_month*100+ctb_day) between ? and ?");
+			sw.append("and " + ctb + "date between ? and ?");
+			// Redundant year criteria (partitions pruning)
+			sw.append(" and " + ctb + "year between ? and ?");
 			// GROUP BY
-			sw.append("\ngroup by ctb_year");
+			sw.append("\ngroup by " + ctb + "year");
 			if (byContributor) {
 				sw.append(", clb_id");
 			}
 			if (intervalType != ReportIntervalType.YEAR) {
-				sw.append(", ctb_month");
+				sw.append(", " + ctb + "month");
 			}
 			if (intervalType == ReportIntervalType.WEEK || intervalType == ReportIntervalType.DAY) {
-				sw.append(", ctb_day");
+				sw.append(", " + ctb + "day");
 			}
 			if (taskDepth > 0) {
 				sw.append(", activity.tsk_id");
@@ -231,11 +257,11 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 				if (byActivity){
 					if (contributorCentricMode) {
 						sw.append(clbFragment);
-						appendOrderByTaskPathFragment(sw, "activity", taskDepth);
+						appendOrderByTaskPathFragment(dialect, sw, "activity", taskDepth);
 						sw.append(", ");
 					}
 					else {
-						appendOrderByTaskPathFragment(sw, "activity", taskDepth);
+						appendOrderByTaskPathFragment(dialect, sw, "activity", taskDepth);
 						sw.append(", ");
 						sw.append(clbFragment);
 					}
@@ -246,30 +272,26 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			}
 			// If byContributor == false, orderByContributor can be ignored
 			else if (byActivity) {
-				appendOrderByTaskPathFragment(sw, "activity", taskDepth);
+				appendOrderByTaskPathFragment(dialect, sw, "activity", taskDepth);
 				sw.append(", ");
 			}
-			sw.append("ctb_year");
+			sw.append(ctb + "year");
 			if (intervalType != ReportIntervalType.YEAR) {
-				sw.append(", ctb_month");
+				sw.append(", " + ctb + "month");
 			}
 			if (intervalType == ReportIntervalType.WEEK || intervalType == ReportIntervalType.DAY) {
-				sw.append(", ctb_day");
+				sw.append(", " + ctb + "day");
 			}
 			
 			String sql = sw.toString();
 			//System.out.println(sql);
 			
-			// Build the request
+			// Build the request (contributions are streamed)
 			pStmt = tx().prepareStatement(sql);
+			dialect().setFetchSize(pStmt, CONTRIBUTIONS_FETCH_SIZE);
 			int idx = 1;
-			if (byActivity) {
-				pStmt.setInt(idx++, activityPathLength);
-			}
 			if (rootTask != null) {
 				pStmt.setLong(idx++, rootTask.getId());
-				pStmt.setInt(idx++, rootPath.length());
-				pStmt.setString(idx++, rootPath);
 			}
 			if (contributorIds != null && contributorIds.length > 0) {
 				for (Long contributorId : contributorIds) {
@@ -280,138 +302,116 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 				pStmt.setInt(idx++, activityPathLength-2);
 				pStmt.setInt(idx++, activityPathLength-2);
 			}
-			pStmt.setLong(idx++, startDate);
-			pStmt.setLong(idx++, endDate);
+			pStmt.setInt(idx++, startDate);
+			pStmt.setInt(idx++, endDate);
+			pStmt.setInt(idx++, startYear);
+			pStmt.setInt(idx++, endYear);
 
 			// Exécution de la requête
-			int orderedTaskIndex = 0;
 			rs = pStmt.executeQuery();
-			Report report = new Report(start, intervalType, intervalCount, rootTask, taskDepth, byContributor, contributorCentricMode);
-			ReportItem reportItem = null;
+			Report report = new Report(startDay, intervalType, intervalCount, rootTask, taskDepth, byContributor, contributorCentricMode);
+			// In task centric mode (or without contributors which is
+			// equivalent), the tasks without contributions may be kept
+			ReportBuilder builder = new ReportBuilder(report, startDay, rootPath,
+					orderedTasks, tasksByFullPathCache, byActivity,
+					byContributor, !onlyKeepTasksWithContributions
+							&& byActivity
+							&& (!contributorCentricMode || !byContributor));
+			// The archived contributions are included in the rollups
+			boolean mergeArchivedContributions = "ctb_".equals(ctb)
+					&& archivedContributions != null
+					&& !archivedContributions.isEmpty();
+			// If archived contributions must be merged, the rows are sorted
+			// once they are all read, otherwise they are streamed
+			List<ReportRow> rows = mergeArchivedContributions ? new ArrayList<ReportRow>() : null;
 			Map<Long, Collaborator> collaboratorsMap = new HashMap<Long, Collaborator>();
 			while (rs.next()) {
-				Collaborator contributor = null;
-				TaskSums contributedTask = null;
+				ReportRow row = new ReportRow();
 				idx = 1;
 				if (byActivity) {
 					long id = rs.getLong(idx++);
-					contributedTask = tasksByIdCache.get(id);
+					row.activity = tasksByIdCache.get(id);
 				}
 				if (byContributor) {
 					long id = rs.getLong(collaboratorFieldsIndex);
-					contributor = collaboratorsMap.get(id);
-					if (contributor == null) {
-						contributor = collaboratorDAO.read(rs, collaboratorFieldsIndex);
-						collaboratorsMap.put(id, contributor);
-					}
-				}
-				// See whether a new item must be created
-				boolean newItem = false;
-				if (reportItem == null) {
-					newItem = true;
-				} else {
-					if (byActivity && !contributedTask.equals(reportItem.getContributedTask())) {
-						newItem = true;
-					}
-					if (byContributor && !reportItem.getContributor().equals(contributor)) {
-						newItem = true;
-					}
-				}
-				if (newItem) {
-					// If no task is present, simply create a report item
-					if (!byActivity) {
-						reportItem = new ReportItem(report, contributor, null);
-					}
-					else {
-						// If in task centric mode (or without contributors which is equivalent), may have to insert rows without contributions
-						// before adding new report line
-						if (!onlyKeepTasksWithContributions
-								&& orderedTasks.size() > 0
-								&& (!contributorCentricMode || !byContributor)) {
-							if (!contributedTask.equals(orderedTasks.get(orderedTaskIndex))) {
-								// If the last report item was about the same task, we must skeep the corresponding value
-								// in the ordered task list
-								if (reportItem != null && reportItem.getContributedTask().equals(orderedTasks.get(orderedTaskIndex))) {
-									orderedTaskIndex++;
-								}
-								// Add empty rows (empty means without contributions, but these rows may be associated
-								// to budgets for example).
-								TaskSums cursor = null;
-								while (!(cursor = orderedTasks.get(orderedTaskIndex)).equals(contributedTask)) {
-									if (cursor.isLeaf()) {
-										Task[] tasks = buildTasksList(rootPath,
-												tasksByFullPathCache, cursor.getTask().getFullPath());
-										new ReportItem(report, null, cursor,
-												tasks);
-									}
-									orderedTaskIndex++;
-								}
-							}
-						}
-						// Add report item
-						Task[] tasks = buildTasksList(rootPath,
-								tasksByFullPathCache, contributedTask.getTask()
-										.getFullPath());
-						reportItem = new ReportItem(report, contributor,
-								contributedTask, tasks);
+					row.contributor = collaboratorsMap.get(id);
+					if (row.contributor == null) {
+						row.contributor = collaboratorDAO.read(rs, collaboratorFieldsIndex);
+						collaboratorsMap.put(id, row.contributor);
 					}
 				}
 				
 				// Read date
-				int year = 0;
-				int month = 1;
-				int day = 1;
 				switch (intervalType) {
 				case WEEK:
 				case DAY:
-					day = rs.getInt(idx++);
+					row.day = rs.getInt(idx++);
 				case MONTH:
-					month = rs.getInt(idx++);
+					row.month = rs.getInt(idx++);
 				case YEAR :
-					year = rs.getInt(idx++);
+					row.year = rs.getInt(idx++);
 				}
-				
-				// Compute index
-				int intervalIdx = 0;
-				switch (intervalType) {
-				case WEEK:
-				case DAY:
-					Calendar date = Calendar.getInstance(start.getTimeZone());
-					date.set(Calendar.DATE, day);
-					date.set(Calendar.MONTH, month-1);
-					date.set(Calendar.YEAR, year);
-					intervalIdx = DateHelper.countDaysBetween(start, date);
-					if (intervalType == ReportIntervalType.WEEK) {
-						intervalIdx = intervalIdx/7;
-					}
-					break;
-				case MONTH:
-					intervalIdx = (year-startYear)*12 + month - startMonth;
-					break;
-				case YEAR :
-					intervalIdx = year-startYear;
-				}
-
-				// Register contribution
-				reportItem.addToContributionSum(intervalIdx, rs.getLong(idx++));
-			}
-
-			// Empty rows may have to be added at the end of the report (only in task centric mode or equivalent) 
-			if (!onlyKeepTasksWithContributions && byActivity
-					&& (!contributorCentricMode || !byContributor)) {
-				while (++orderedTaskIndex < orderedTasks.size()) {
-					TaskSums cursor = orderedTasks.get(orderedTaskIndex);
-					if (cursor.isLeaf()) {
-						Task[] tasks = buildTasksList(rootPath,
-								tasksByFullPathCache, cursor.getTask().getFullPath());
-						new ReportItem(report, null, cursor, tasks);
-					}
+				row.duration = rs.getLong(idx++);
+				if (rows != null) {
+					rows.add(row);
+				} else {
+					builder.add(row);
 				}
 			}
 
 			// Fermeture du ResultSet
 			pStmt.close();
 			pStmt = null;
+
+			// Merge the archived contributions
+			if (rows != null) {
+				Map<Long, Task> tasksCache = new HashMap<Long, Task>();
+				for (Contribution contribution : archivedContributions) {
+					if (contribution.getDateKey() < startDate
+							|| contribution.getDateKey() > endDate
+							|| !contains(contributorIds, contribution.getContributorId())) {
+						continue;
+					}
+					Task task = tasksCache.get(contribution.getTaskId());
+					if (task == null) {
+						task = taskDAO.selectByPK(contribution.getTaskId());
+						tasksCache.put(contribution.getTaskId(), task);
+					}
+					String fullPath = task.getFullPath();
+					if (!fullPath.startsWith(rootPath)) {
+						continue;
+					}
+					ReportRow row = new ReportRow();
+					if (byActivity) {
+						// The activity is the task ancestor at the report
+						// depth (or the task itself if it is not so deep)
+						row.activity = tasksByFullPathCache.get(fullPath.length() > activityPathLength ? fullPath.substring(0, activityPathLength) : fullPath);
+						if (row.activity == null) {
+							continue;
+						}
+					}
+					if (byContributor) {
+						row.contributor = collaboratorsMap.get(contribution.getContributorId());
+						if (row.contributor == null) {
+							row.contributor = collaboratorDAO.selectByPK(contribution.getContributorId());
+							collaboratorsMap.put(contribution.getContributorId(), row.contributor);
+						}
+					}
+					row.year = contribution.getYear();
+					row.month = contribution.getMonth();
+					row.day = contribution.getDay();
+					row.duration = contribution.getDurationId();
+					rows.add(row);
+				}
+				// Same order as the SQL request
+				Collections.sort(rows, new ReportRowComparator(orderedTasks,
+						byContributor ? getContributorRanks(orderContributorsBy) : null,
+						byActivity, byContributor, contributorCentricMode));
+				for (ReportRow row : rows) {
+					builder.add(row);
+				}
+			}
+			builder.complete();
 			
 			return report;
 
@@ -424,13 +424,61 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 		}
 	}
 
-	private void appendOrderByTaskPathFragment(StringWriter request,
-			String alias, int taskDepth) {
-		request.append("concat(").append(alias).append(".tsk_path, ").append(alias).append(".tsk_number, '");
+	/**
+	 * Returns the contributors ranks in the report order.
+	 * 
+	 * @param orderContributorsBy
+	 *            fields to use to order contributors.
+	 * @return the ranks by contributor identifier, or <code>null</code> if
+	 *         the contributors are ordered by identifier.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private Map<Long, Integer> getContributorRanks(String[] orderContributorsBy) throws SQLException {
+		if (orderContributorsBy == null || orderContributorsBy.length == 0) {
+			return null;
+		}
+		StringBuffer request = new StringBuffer("select clb_id from COLLABORATOR order by ");
+		for (String orderContributorsByItem : orderContributorsBy) {
+			request.append(collaboratorDAO.getColumnName(orderContributorsByItem)).append(", ");
+		}
+		request.append("clb_id");
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement(request.toString());
+			ResultSet rs = pStmt.executeQuery();
+			Map<Long, Integer> ranks = new HashMap<Long, Integer>();
+			while (rs.next()) {
+				ranks.put(rs.getLong(1), ranks.size());
+			}
+			pStmt.close();
+			pStmt = null;
+			return ranks;
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	private static boolean contains(long[] contributorIds, long contributorId) {
+		if (contributorIds == null || contributorIds.length == 0) {
+			return true;
+		}
+		for (long id : contributorIds) {
+			if (id == contributorId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void appendOrderByTaskPathFragment(Dialect dialect,
+			StringWriter request, String alias, int taskDepth) {
+		StringBuffer padding = new StringBuffer("'");
 		for (int i=0; i<taskDepth; i++) {
-			request.append("00");
+			padding.append("00");
 		}
-		request.append("')");
+		padding.append("'");
+		request.append(dialect.concat(alias + ".tsk_path", alias + ".tsk_number", padding.toString()));
 	}
 
 	private Task[] buildTasksList(String rootPath,
@@ -450,4 +498,220 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 		return tasks;
 	}
 
+	/**
+	 * Contributions sum of a report item at a given date.
+	 */
+	private static class ReportRow {
+		
+		/** Contributed activity (if the report is built by activity) */
+		TaskSums activity;
+		
+		/** Contributor (if the report is built by contributor) */
+		Collaborator contributor;
+
+		int year = 0;
+		
+		int month = 1;
+		
+		int day = 1;
+		
+		long duration;
+		
+	}
+
+	/**
+	 * Sorts the report rows like the report request.
+	 */
+	private static class ReportRowComparator implements Comparator<ReportRow> {
+
+		/** Tasks ranks by identifier */
+		private final Map<Long, Integer> taskRanks = new HashMap<Long, Integer>();
+
+		/** Contributors ranks by identifier (<code>null</code> to sort them by identifier) */
+		private final Map<Long, Integer> contributorRanks;
+
+		private final boolean byActivity;
+
+		private final boolean byContributor;
+
+		private final boolean contributorCentricMode;
+
+		ReportRowComparator(List<TaskSums> orderedTasks,
+				Map<Long, Integer> contributorRanks, boolean byActivity,
+				boolean byContributor, boolean contributorCentricMode) {
+			for (TaskSums taskSums : orderedTasks) {
+				taskRanks.put(taskSums.getTask().getId(), taskRanks.size());
+			}
+			this.contributorRanks = contributorRanks;
+			this.byActivity = byActivity;
+			this.byContributor = byContributor;
+			this.contributorCentricMode = contributorCentricMode;
+		}
+
+		@Override
+		public int compare(ReportRow r1, ReportRow r2) {
+			int byTask = byActivity ? compare(taskRanks.get(r1.activity.getTask().getId()), taskRanks.get(r2.activity.getTask().getId())) : 0;
+			int byClb = 0;
+			if (byContributor) {
+				long id1 = r1.contributor.getId();
+				long id2 = r2.contributor.getId();
+				byClb = contributorRanks != null ? compare(contributorRanks.get(id1), contributorRanks.get(id2)) : compare(id1, id2);
+			}
+			int result = contributorCentricMode ? (byClb != 0 ? byClb : byTask) : (byTask != 0 ? byTask : byClb);
+			if (result == 0) {
+				result = compare(r1.year * 10000 + r1.month * 100 + r1.day, r2.year * 10000 + r2.month * 100 + r2.day);
+			}
+			return result;
+		}
+
+		private static int compare(long l1, long l2) {
+			return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+		}
+
+	}
+
+	/**
+	 * Builds the report items from the report rows.
+	 * <p>
+	 * The rows must be sorted like the report items.
+	 * </p>
+	 */
+	private class ReportBuilder {
+
+		private final Report report;
+
+		/** Report start date ({@link EpochDay epoch day}) */
+		private final int start;
+
+		/** Report start year */
+		private final int startYear;
+
+		/** Report start month */
+		private final int startMonth;
+
+		private final String rootPath;
+
+		private final List<TaskSums> orderedTasks;
+
+		private final Map<String, TaskSums> tasksByFullPathCache;
+
+		private final boolean byActivity;
+
+		private final boolean byContributor;
+
+		/** <code>true</code> if the tasks without contributions must be kept */
+		private final boolean addEmptyRows;
+
+		/** Current report item */
+		private ReportItem reportItem;
+
+		/** Index of the current task in the ordered tasks */
+		private int orderedTaskIndex = 0;
+
+		ReportBuilder(Report report, int start, String rootPath,
+				List<TaskSums> orderedTasks,
+				Map<String, TaskSums> tasksByFullPathCache,
+				boolean byActivity, boolean byContributor, boolean addEmptyRows) {
+			this.report = report;
+			this.start = start;
+			this.startYear = EpochDay.getYear(start);
+			this.startMonth = EpochDay.getMonth(start);
+			this.rootPath = rootPath;
+			this.orderedTasks = orderedTasks;
+			this.tasksByFullPathCache = tasksByFullPathCache;
+			this.byActivity = byActivity;
+			this.byContributor = byContributor;
+			this.addEmptyRows = addEmptyRows;
+		}
+
+		void add(ReportRow row) {
+			Collaborator contributor = row.contributor;
+			TaskSums contributedTask = row.activity;
+			// See whether a new item must be created
+			boolean newItem = false;
+			if (reportItem == null) {
+				newItem = true;
+			} else {
+				if (byActivity && !contributedTask.equals(reportItem.getContributedTask())) {
+					newItem = true;
+				}
+				if (byContributor && !reportItem.getContributor().equals(contributor)) {
+					newItem = true;
+				}
+			}
+			if (newItem) {
+				// If no task is present, simply create a report item
+				if (!byActivity) {
+					reportItem = new ReportItem(report, contributor, null);
+				}
+				else {
+					// If in task centric mode (or without contributors which is equivalent), may have to insert rows without contributions
+					// before adding new report line
+					if (addEmptyRows && orderedTasks.size() > 0) {
+						if (!contributedTask.equals(orderedTasks.get(orderedTaskIndex))) {
+							// If the last report item was about the same task, we must skeep the corresponding value
+							// in the ordered task list
+							if (reportItem != null && reportItem.getContributedTask().equals(orderedTasks.get(orderedTaskIndex))) {
+								orderedTaskIndex++;
+							}
+							// Add empty rows (empty means without contributions, but these rows may be associated
+							// to budgets for example).
+							TaskSums cursor = null;
+							while (!(cursor = orderedTasks.get(orderedTaskIndex)).equals(contributedTask)) {
+								if (cursor.isLeaf()) {
+									Task[] tasks = buildTasksList(rootPath,
+											tasksByFullPathCache, cursor.getTask().getFullPath());
+									new ReportItem(report, null, cursor,
+											tasks);
+								}
+								orderedTaskIndex++;
+							}
+						}
+					}
+					// Add report item
+					Task[] tasks = buildTasksList(rootPath,
+							tasksByFullPathCache, contributedTask.getTask()
+									.getFullPath());
+					reportItem = new ReportItem(report, contributor,
+							contributedTask, tasks);
+				}
+			}
+			
+			// Compute index
+			int intervalIdx = 0;
+			switch (report.getIntervalType()) {
+			case WEEK:
+			case DAY:
+				intervalIdx = EpochDay.of(row.year, row.month, row.day) - start;
+				if (report.getIntervalType() == ReportIntervalType.WEEK) {
+					intervalIdx = intervalIdx/7;
+				}
+				break;
+			case MONTH:
+				intervalIdx = (row.year-startYear)*12 + row.month - startMonth;
+				break;
+			case YEAR :
+				intervalIdx = row.year-startYear;
+			}
+
+			// Register contribution
+			reportItem.addToContributionSum(intervalIdx, row.duration);
+		}
+
+		void complete() {
+			// Empty rows may have to be added at the end of the report (only in task centric mode or equivalent) 
+			if (addEmptyRows) {
+				while (++orderedTaskIndex < orderedTasks.size()) {
+					TaskSums cursor = orderedTasks.get(orderedTaskIndex);
+					if (cursor.isLeaf()) {
+						Task[] tasks = buildTasksList(rootPath,
+								tasksByFullPathCache, cursor.getTask().getFullPath());
+						new ReportItem(report, null, cursor, tasks);
+					}
+				}
+			}
+		}
+
+	}
+
 }
@@ -4,16 +4,22 @@ import java.io.StringWriter;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.activitymgr.core.dao.AbstractORMDAOImpl;
 import org.activitymgr.core.dao.DAOException;
 import org.activitymgr.core.dao.ITaskDAO;
+import org.activitymgr.core.dao.IntervalRequestHelper;
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskContributionsSums;
 import org.activitymgr.core.dto.misc.TaskSearchFilter;
 import org.activitymgr.core.dto.misc.TaskSums;
 import org.activitymgr.core.util.StringHelper;
@@ -28,42 +34,26 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 
 	/** Logger */
 	private static Logger log = Logger.getLogger(TaskDAOImpl.class);
-	
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.AbstractORMDAOImpl#isSecondLevelCacheEnabled()
+	 */
+	@Override
+	protected boolean isSecondLevelCacheEnabled() {
+		return true;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.activitymgr.core.IDbMgr#subTasksCount(long)
 	 */
 	@Override
 	public int getSubTasksCount(long parentTaskId) throws DAOException {
-		PreparedStatement pStmt = null;
-		ResultSet rs = null;
-		try {
-			// Request preparation
-			pStmt = tx().prepareStatement(
-					"select theTask.tsk_id, count(subTask.tsk_id)"
-				+ " from TASK as theTask left join TASK as subTask on subTask.tsk_path = concat(theTask.tsk_path, theTask.tsk_number) where theTask.tsk_id=? group by theTask.tsk_id");
-			pStmt.setLong(1, parentTaskId);
-
-			// Exécution de la requête
-			rs = pStmt.executeQuery();
-
-			// Préparation du résultat
-			if (!rs.next())
-				throw new DAOException(
-						Strings.getString("DbMgr.errors.SQL_EMPTY_QUERY_RESULT"), null); //$NON-NLS-1$
-			int result = rs.getInt(2);
-
-			// Fermeture du ResultSet
-			pStmt.close();
-			pStmt = null;
-
-			// Retour du résultat
-			return result;
-		} catch (SQLException e) {
-			log.info("Incident SQL", e); //$NON-NLS-1$
-			throw new DAOException(e.getMessage(), e);
-		} finally {
-			lastAttemptToClose(pStmt);
-		}
+		// The count is maintained in the task row, which is cached
+		Task task = selectByPK(parentTaskId);
+		if (task == null)
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.SQL_EMPTY_QUERY_RESULT"), null); //$NON-NLS-1$
+		return task.getSubTasksCount();
 	}
 
 	@Override
@@ -71,20 +61,35 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 		PreparedStatement pStmt = null;
 		ResultSet rs = null;
 		try {
-			StringWriter buf = new StringWriter();
-			buf.append("select distinct ").append(getColumnNamesRequestFragment("subtask")).append(" from TASK as subtask");
-			buf.append(" inner join TASK filteredTask on (");
-			buf.append("   left(concat(filteredTask.tsk_path, filteredTask.tsk_number), length(subtask.tsk_path) + 2) = concat(subtask.tsk_path, subtask.tsk_number)");
-			buf.append("   or left(concat(subtask.tsk_path, subtask.tsk_number), length(filteredTask.tsk_path) + 2) = concat(filteredTask.tsk_path, filteredTask.tsk_number)");
-			buf.append(" )");
-			buf.append(" where subtask.tsk_path=? and (filteredTask.tsk_name like ? or filteredTask.tsk_code like ?) order by subtask.tsk_number");
-			
+			// A sub task is kept if one of its descendants or one of its
+			// ancestors (itself included) matches the filter
+			String searchKey = StringHelper.toSearchKey(filter != null ? filter : ""); //$NON-NLS-1$
+			// Every task matches an empty filter
+			boolean allSubTasks = "".equals(searchKey); //$NON-NLS-1$
+			Set<String> subTaskNumbers = new HashSet<String>();
+			for (Task task : allSubTasks ? Collections.<Task> emptyList()
+					: getTaskCandidates(searchKey)) {
+				if (matches(task, searchKey)) {
+					String fullPath = task.getFullPath();
+					if (parentTaskPath.startsWith(fullPath)) {
+						// The parent task or one of its ancestors matches
+						allSubTasks = true;
+						break;
+					} else if (fullPath.startsWith(parentTaskPath)) {
+						// A sub task or one of its descendants matches
+						subTaskNumbers.add(fullPath.substring(
+								parentTaskPath.length(),
+								parentTaskPath.length() + 2));
+					}
+				}
+			}
+
 			// Request preparation
+			StringWriter buf = new StringWriter();
+			buf.append("select ").append(getColumnNamesRequestFragment("subtask")).append(" from TASK as subtask");
+			buf.append(" where subtask.tsk_path=? order by subtask.tsk_number");
 			pStmt = tx().prepareStatement(buf.toString());
 			pStmt.setString(1, parentTaskPath);
-			String sqlFilter = "%" + filter + "%";
-			pStmt.setString(2, sqlFilter);
-			pStmt.setString(3, sqlFilter);
 
 			// Exécution de la requête
 			rs = pStmt.executeQuery();
@@ -92,7 +97,10 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 			// Préparation du résultat
 			Collection<Task> result = new ArrayList<Task>();
 			while (rs.next()) {
-				result.add(read(rs, 1));
+				Task subTask = read(rs, 1);
+				if (allSubTasks || subTaskNumbers.contains(subTask.getNumberAsHex())) {
+					result.add(subTask);
+				}
 			}
 
 			// Fermeture du ResultSet
@@ -111,43 +119,91 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 
 	@Override
 	public Task getFirstTaskMatching(String filter) {
-		// select  distinct st.TSK_ID, st.TSK_PATH, st.TSK_NUMBER, st.TSK_CODE from task st inner join TASK t on left(concat(t.tsk_path, t.tsk_number), length(concat(st.tsk_path, st.tsk_number))) = concat(st.tsk_path, st.tsk_number) where st.tsk_path='01090304' and t.tsk_name like concat('%', 'CCAP', '%') order by st.tsk_number; 
-		PreparedStatement pStmt = null;
-		ResultSet rs = null;
 		try {
-			StringWriter buf = new StringWriter();
-			buf.append("select ").append(getColumnNamesRequestFragment("t")).append(" from TASK as t");
-			buf.append(" where t.tsk_name like ? or t.tsk_code like ? order by t.tsk_path, t.tsk_number");
-			
-			// Request preparation
-			pStmt = tx().prepareStatement(buf.toString());
-			String sqlFilter = "%" + filter + "%";
-			pStmt.setString(1, sqlFilter);
-			pStmt.setString(2, sqlFilter);
-
-			// Exécution de la requête
-			rs = pStmt.executeQuery();
-
-			// Préparation du résultat
-			Task result = null;
-			if (rs.next()) {
-				result = read(rs, 1);
+			// Every task matches an empty filter : the first one is the first
+			// root task
+			String searchKey = StringHelper.toSearchKey(filter != null ? filter : ""); //$NON-NLS-1$
+			if ("".equals(searchKey)) { //$NON-NLS-1$
+				Task[] rootTasks = getSubTasks("", null); //$NON-NLS-1$
+				return rootTasks.length > 0 ? rootTasks[0] : null;
 			}
-
-			// Fermeture du ResultSet
-			pStmt.close();
-			pStmt = null;
-
-			// Retour du résultat
-			return result;
+			// The candidates are ordered by path
+			for (Task task : getTaskCandidates(searchKey)) {
+				if (matches(task, searchKey)) {
+					return task;
+				}
+			}
+			return null;
 		} catch (SQLException e) {
 			log.info("Incident SQL", e); //$NON-NLS-1$
 			throw new DAOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the tasks that may contain a given search key in their code or
+	 * name, ordered by path.
+	 * <p>
+	 * The candidates are the tasks that own every lookup key of the search key
+	 * in the trigram index (the intersection of the posting lists), they
+	 * still have to be checked with {@link #matches(Task, String)}. As the
+	 * sequences of 1 and 2 characters are indexed too, a key shorter than a
+	 * trigram is looked up as is. If the key is empty, every task is a
+	 * candidate.
+	 * </p>
+	 * 
+	 * @param searchKey
+	 *            the search key.
+	 * @return the candidate tasks.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @see StringHelper#toSearchKey(String)
+	 */
+	private List<Task> getTaskCandidates(String searchKey) throws SQLException {
+		Set<String> keys = StringHelper.getLookupKeys(searchKey);
+		StringWriter buf = new StringWriter();
+		buf.append("select ").append(getColumnNamesRequestFragment("t")).append(" from TASK as t");
+		if (!keys.isEmpty()) {
+			buf.append(" join (select ttg_task from TASK_TRIGRAM where ttg_trigram in (");
+			for (int i = 0; i < keys.size(); i++) {
+				buf.append(i > 0 ? ", ?" : "?");
+			}
+			buf.append(") group by ttg_task having count(ttg_task)=?) as candidate on candidate.ttg_task=t.tsk_id");
+		}
+		buf.append(" order by t.tsk_path, t.tsk_number");
+		PreparedStatement pStmt = tx().prepareStatement(buf.toString());
+		try {
+			int idx = 1;
+			for (String key : keys) {
+				pStmt.setString(idx++, key);
+			}
+			if (!keys.isEmpty()) {
+				pStmt.setInt(idx++, keys.size());
+			}
+			ResultSet rs = pStmt.executeQuery();
+			List<Task> result = new ArrayList<Task>();
+			while (rs.next()) {
+				result.add(read(rs, 1));
+			}
+			return result;
 		} finally {
-			lastAttemptToClose(pStmt);
+			pStmt.close();
 		}
 	}
 
+	/**
+	 * @param task
+	 *            the task.
+	 * @param searchKey
+	 *            the search key.
+	 * @return <code>true</code> if the task code or name contains the search
+	 *         key.
+	 */
+	private static boolean matches(Task task, String searchKey) {
+		return StringHelper.toSearchKey(task.getCode()).contains(searchKey)
+				|| StringHelper.toSearchKey(task.getName()).contains(searchKey);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -156,6 +212,13 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 	 */
 	@Override
 	public long[] getTaskIds(TaskSearchFilter filter) throws DAOException {
+		// Les recherches de sous-chaînes s'appuient sur l'index des trigrammes
+		switch (filter.getCriteriaIndex()) {
+		case TaskSearchFilter.STARTS_WITH_CRITERIA_IDX:
+		case TaskSearchFilter.ENDS_WITH_CRITERIA_IDX:
+		case TaskSearchFilter.CONTAINS_CRITERIA_IDX:
+			return searchTaskIds(filter);
+		}
 		PreparedStatement pStmt = null;
 		ResultSet rs = null;
 		try {
@@ -179,11 +242,6 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 			case TaskSearchFilter.IS_EQUAL_TO_CRITERIA_IDX:
 				request.append("=?"); //$NON-NLS-1$
 				break;
-			case TaskSearchFilter.STARTS_WITH_CRITERIA_IDX:
-			case TaskSearchFilter.ENDS_WITH_CRITERIA_IDX:
-			case TaskSearchFilter.CONTAINS_CRITERIA_IDX:
-				request.append(" like ?"); //$NON-NLS-1$
-				break;
 			default:
 				throw new DAOException(
 						Strings.getString(
@@ -192,24 +250,7 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 			// Préparation de la requête
 			log.debug("Search request : '" + request + "'"); //$NON-NLS-1$ //$NON-NLS-2$
 			pStmt = tx().prepareStatement(request.toString());
-			String parameter = null;
-			switch (filter.getCriteriaIndex()) {
-			case TaskSearchFilter.IS_EQUAL_TO_CRITERIA_IDX:
-				parameter = filter.getFieldValue();
-				break;
-			case TaskSearchFilter.STARTS_WITH_CRITERIA_IDX:
-				parameter = filter.getFieldValue() + "%"; //$NON-NLS-1$
-				break;
-			case TaskSearchFilter.ENDS_WITH_CRITERIA_IDX:
-				parameter = "%" + filter.getFieldValue(); //$NON-NLS-1$
-				break;
-			case TaskSearchFilter.CONTAINS_CRITERIA_IDX:
-				parameter = "%" + filter.getFieldValue() + "%"; //$NON-NLS-1$ //$NON-NLS-2$
-				break;
-			default:
-				throw new DAOException(
-						"Unknown criteria index '" + filter.getCriteriaIndex() + "'.", null); //$NON-NLS-1$ //$NON-NLS-2$
-			}
+			String parameter = filter.getFieldValue();
 			log.debug("Search parameter : '" + parameter + "'"); //$NON-NLS-1$ //$NON-NLS-2$
 			pStmt.setString(1, parameter);
 
@@ -241,6 +282,65 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 		}
 	}
 
+	/**
+	 * Recherche les taches dont le code ou le nom commence par, se termine
+	 * par ou contient la valeur du filtre (sans tenir compte de la casse ni
+	 * des accents).
+	 * 
+	 * @param filter
+	 *            le filtre de recherche.
+	 * @return les identifiants des taches correspondant au filtre.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private long[] searchTaskIds(TaskSearchFilter filter) throws DAOException {
+		try {
+			String searchKey = StringHelper.toSearchKey(filter.getFieldValue());
+			log.debug("Search key : '" + searchKey + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+			List<Long> list = new ArrayList<Long>();
+			for (Task task : getTaskCandidates(searchKey)) {
+				String value = null;
+				switch (filter.getFieldIndex()) {
+				case TaskSearchFilter.TASK_NAME_FIELD_IDX:
+					value = task.getName();
+					break;
+				case TaskSearchFilter.TASK_CODE_FIELD_IDX:
+					value = task.getCode();
+					break;
+				default:
+					throw new DAOException(
+							"Unknown field index '" + filter.getFieldIndex() + "'.", null); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				value = StringHelper.toSearchKey(value);
+				boolean matches = false;
+				switch (filter.getCriteriaIndex()) {
+				case TaskSearchFilter.STARTS_WITH_CRITERIA_IDX:
+					matches = value.startsWith(searchKey);
+					break;
+				case TaskSearchFilter.ENDS_WITH_CRITERIA_IDX:
+					matches = value.endsWith(searchKey);
+					break;
+				default:
+					matches = value.contains(searchKey);
+				}
+				if (matches) {
+					list.add(task.getId());
+				}
+			}
+
+			// Préparation du résultat
+			long[] taskIds = new long[list.size()];
+			for (int i = 0; i < taskIds.length; i++) {
+				taskIds[i] = list.get(i);
+			}
+			return taskIds;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.TASKS_SELECTION_FAILURE"), e); //$NON-NLS-1$
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -326,10 +426,11 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 	}
 
 	/* (non-Javadoc)
-	 * @see org.activitymgr.core.dao.ITaskDAO#getTasksSums(java.lang.Long, java.lang.String)
+	 * @see org.activitymgr.core.dao.ITaskDAO#getTasksSums(java.lang.Long, java.lang.String, java.util.Calendar, java.util.Calendar)
 	 */
 	@Override
-	public List<TaskSums> getTasksSums(Long taskId, String tasksPath) throws DAOException {
+	public List<TaskSums> getTasksSums(Long taskId, String tasksPath,
+			Calendar fromDate, Calendar toDate) throws DAOException {
 		if (taskId != null && tasksPath != null) {
 			throw new IllegalStateException("Both task Id and task path cannot be specified");
 		}
@@ -338,48 +439,86 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 		try {
 			List<TaskSums> result = new ArrayList<TaskSums>();
 
+			IntervalRequestHelper interval = new IntervalRequestHelper(fromDate, toDate);
+			String mainTaskCriteria = taskId != null ? "tsk_id=?" : "tsk_path=?";
+
 			/**
-			 * Budget, initialy consummed, etc sums computation (all what is independant
-			 * from contributions)
+			 * Budget, initialy consummed, etc sums computation, plus the
+			 * contributions sums (before, within and after the interval) that
+			 * are computed for each sub task by conditional aggregation of
+			 * the daily rollup, so that the tree is only walked once
 			 */
 			StringBuffer request = new StringBuffer()
 					.append("select ")
 					.append("sum(leaftask.tsk_budget), sum(leaftask.tsk_initial_cons), sum(leaftask.tsk_todo), count(leaftask.tsk_id), ")
+					.append("sum(ctb.past_sum), sum(ctb.consumed_sum), sum(ctb.contributions_nb), sum(ctb.future_sum), ")
 					.append(getColumnNamesRequestFragment("maintask"))
-					.append(" from TASK maintask, TASK leaftask ")
-					.append("where ");
-			// Task id case
-			if (taskId != null) {
-				request.append("maintask.tsk_id=?");
-			}
-			// Task path case
-			else {
-				request.append("maintask.tsk_path=?");
-			}
-			if (taskId != null || tasksPath != null) {
-				request.append(" and ");
-			}
-			request.append("(maintask.tsk_id=leaftask.tsk_id or leaftask.tsk_path like concat(maintask.tsk_path, maintask.tsk_number, '%'))")
-				.append(" group by maintask.tsk_id ")
-				.append(" order by maintask.tsk_number");
+					.append(" from TASK maintask")
+					.append(" join TASK_CLOSURE on tcl_ancestor=maintask.tsk_id")
+					.append(" join TASK leaftask on leaftask.tsk_id=tcl_descendant")
+					.append(" left join (select ctd_task, ");
+			// Contributions before the interval
+			if (fromDate != null) {
+				request.append("sum(case when ctd_date<? then ctd_duration else 0 end) as past_sum, ");
+			} else {
+				request.append("0 as past_sum, ");
+			}
+			// Contributions within the interval
+			if (interval.hasIntervalCriteria()) {
+				StringBuffer criteria = new StringBuffer();
+				interval.appendIntervalCriteria(criteria, "ctd_date");
+				request.append("sum(case when").append(criteria).append(" then ctd_duration else 0 end) as consumed_sum, ");
+				request.append("sum(case when").append(criteria).append(" then ctd_count else 0 end) as contributions_nb, ");
+			} else {
+				request.append("sum(ctd_duration) as consumed_sum, sum(ctd_count) as contributions_nb, ");
+			}
+			// Contributions after the interval
+			if (toDate != null) {
+				request.append("sum(case when ctd_date>? then ctd_duration else 0 end) as future_sum");
+			} else {
+				request.append("0 as future_sum");
+			}
+			// Only the contributions of the considered sub trees are read
+			request.append(" from CONTRIBUTION_DAY")
+					.append(" join TASK_CLOSURE ctbtree on ctbtree.tcl_descendant=ctd_task")
+					.append(" join TASK ctbroot on ctbroot.tsk_id=ctbtree.tcl_ancestor")
+					.append(" where ctbroot.").append(mainTaskCriteria)
+					.append(" group by ctd_task) as ctb on ctb.ctd_task=leaftask.tsk_id")
+					.append(" where maintask.").append(mainTaskCriteria)
+					.append(" group by maintask.tsk_id ")
+					.append(" order by maintask.tsk_number");
 			pStmt = tx().prepareStatement(request.toString());
 			int paramIdx = 1;
-			if (taskId != null) {
-				pStmt.setLong(paramIdx++, taskId);
+			if (fromDate != null) {
+				pStmt.setInt(paramIdx++, IntervalRequestHelper.toDateKey(fromDate));
+			}
+			paramIdx = interval.bindParameters(paramIdx, pStmt);
+			paramIdx = interval.bindParameters(paramIdx, pStmt);
+			if (toDate != null) {
+				pStmt.setInt(paramIdx++, IntervalRequestHelper.toDateKey(toDate));
 			}
-			if (tasksPath != null) {
-				pStmt.setString(paramIdx++, tasksPath);
+			for (int i = 0; i < 2; i++) {
+				if (taskId != null) {
+					pStmt.setLong(paramIdx++, taskId);
+				} else {
+					pStmt.setString(paramIdx++, tasksPath);
+				}
 			}
 			rs = pStmt.executeQuery();
 			
 			while (rs.next()) {
 				TaskSums sums = new TaskSums();
 				sums.setBudgetSum(rs.getLong(1));
-				sums.setInitiallyConsumedSum(rs.getLong(2));
-				sums.setTodoSum(rs.getLong(3));
-				sums.setLeaf(rs.getLong(4) == 1);
-				Task task = read(rs, 5);
+				sums.setInitiallyConsumedSum(rs.getLong(2) + rs.getLong(5));
+				sums.setTodoSum(rs.getLong(3) + rs.getLong(8));
+				Task task = read(rs, 9);
+				sums.setLeaf(task.getSubTasksCount() == 0);
 				sums.setTask(task);
+				TaskContributionsSums contributionsSums = new TaskContributionsSums();
+				contributionsSums.setTaskId(task.getId());
+				contributionsSums.setConsumedSum(rs.getLong(6));
+				contributionsSums.setContributionsNb(rs.getLong(7));
+				sums.setContributionsSums(contributionsSums);
 				result.add(sums);
 			}
 			// Close the statement
@@ -434,4 +573,393 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 		}
 	}
 
-}
\ No newline at end of file
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#insertInClosure(org.activitymgr.core.dto.Task, org.activitymgr.core.dto.Task)
+	 */
+	@Override
+	public void insertInClosure(Task task, Task parentTask) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			// The task is its own descendant
+			pStmt = tx().prepareStatement("insert into TASK_CLOSURE (tcl_ancestor, tcl_descendant, tcl_depth) values (?, ?, 0)"); //$NON-NLS-1$
+			pStmt.setLong(1, task.getId());
+			pStmt.setLong(2, task.getId());
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+
+			// And the descendant of its parent's ancestors
+			if (parentTask != null) {
+				pStmt = tx().prepareStatement("insert into TASK_CLOSURE (tcl_ancestor, tcl_descendant, tcl_depth)" //$NON-NLS-1$
+						+ " select tcl_ancestor, ?, tcl_depth+1 from TASK_CLOSURE where tcl_descendant=?"); //$NON-NLS-1$
+				pStmt.setLong(1, task.getId());
+				pStmt.setLong(2, parentTask.getId());
+				pStmt.executeUpdate();
+				pStmt.close();
+				pStmt = null;
+			}
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#moveInClosure(org.activitymgr.core.dto.Task, org.activitymgr.core.dto.Task)
+	 */
+	@Override
+	public void moveInClosure(Task task, Task destParentTask) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			// Detach the sub tree from the former ancestors : for each sub
+			// task, the rows to remove are the ones that are deeper than the
+			// moved task
+			List<long[]> subTree = getSubTree(task);
+			pStmt = tx().prepareStatement("delete from TASK_CLOSURE where tcl_descendant=? and tcl_depth>?"); //$NON-NLS-1$
+			for (long[] subTask : subTree) {
+				pStmt.setLong(1, subTask[0]);
+				pStmt.setLong(2, subTask[1]);
+				pStmt.addBatch();
+			}
+			pStmt.executeBatch();
+			pStmt.close();
+			pStmt = null;
+
+			// Attach it to the new ones
+			if (destParentTask != null) {
+				pStmt = tx().prepareStatement("insert into TASK_CLOSURE (tcl_ancestor, tcl_descendant, tcl_depth)" //$NON-NLS-1$
+						+ " select p.tcl_ancestor, c.tcl_descendant, p.tcl_depth+c.tcl_depth+1" //$NON-NLS-1$
+						+ " from TASK_CLOSURE p, TASK_CLOSURE c where p.tcl_descendant=? and c.tcl_ancestor=?"); //$NON-NLS-1$
+				pStmt.setLong(1, destParentTask.getId());
+				pStmt.setLong(2, task.getId());
+				pStmt.executeUpdate();
+				pStmt.close();
+				pStmt = null;
+			}
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#removeFromClosure(org.activitymgr.core.dto.Task)
+	 */
+	@Override
+	public void removeFromClosure(Task task) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			List<long[]> subTree = getSubTree(task);
+			pStmt = tx().prepareStatement("delete from TASK_CLOSURE where tcl_descendant=?"); //$NON-NLS-1$
+			for (long[] subTask : subTree) {
+				pStmt.setLong(1, subTask[0]);
+				pStmt.addBatch();
+			}
+			pStmt.executeBatch();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#rebuildClosure()
+	 */
+	@Override
+	public void rebuildClosure() throws DAOException {
+		Statement stmt = null;
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = tx().createStatement();
+			stmt.executeUpdate("delete from TASK_CLOSURE"); //$NON-NLS-1$
+			stmt.executeUpdate("insert into TASK_CLOSURE (tcl_ancestor, tcl_descendant, tcl_depth) select tsk_id, tsk_id, 0 from TASK"); //$NON-NLS-1$
+			rs = stmt.executeQuery("select max(length(tsk_path)) from TASK"); //$NON-NLS-1$
+			int maxPathLength = rs.next() ? rs.getInt(1) : 0;
+			rs.close();
+			rs = null;
+			stmt.close();
+			stmt = null;
+
+			// Level by level, each task inherits the ancestors of its parent
+			pStmt = tx().prepareStatement("insert into TASK_CLOSURE (tcl_ancestor, tcl_descendant, tcl_depth)" //$NON-NLS-1$
+					+ " select tcl_ancestor, subtask.tsk_id, tcl_depth+1 from TASK subtask" //$NON-NLS-1$
+					+ " join TASK parenttask on subtask.tsk_path=" + dialect().concat("parenttask.tsk_path", "parenttask.tsk_number") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ " join TASK_CLOSURE on tcl_descendant=parenttask.tsk_id" //$NON-NLS-1$
+					+ " where length(subtask.tsk_path)=?"); //$NON-NLS-1$
+			for (int pathLength = 2; pathLength <= maxPathLength; pathLength += 2) {
+				pStmt.setInt(1, pathLength);
+				int count = pStmt.executeUpdate();
+				log.debug("Closure rows for path length " + pathLength + " : " + count); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptClose(rs);
+			lastAttemptToClose(stmt);
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#updateSearchIndex(org.activitymgr.core.dto.Task)
+	 */
+	@Override
+	public void updateSearchIndex(Task task) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from TASK_TRIGRAM where ttg_task=?"); //$NON-NLS-1$
+			pStmt.setLong(1, task.getId());
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+
+			pStmt = tx().prepareStatement("insert into TASK_TRIGRAM (ttg_trigram, ttg_task) values (?, ?)"); //$NON-NLS-1$
+			addToSearchIndex(pStmt, task.getId(), task.getCode(), task.getName());
+			pStmt.executeBatch();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#removeFromSearchIndex(org.activitymgr.core.dto.Task)
+	 */
+	@Override
+	public void removeFromSearchIndex(Task task) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from TASK_TRIGRAM where ttg_task in (select tcl_descendant from TASK_CLOSURE where tcl_ancestor=?)"); //$NON-NLS-1$
+			pStmt.setLong(1, task.getId());
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#rebuildSearchIndex()
+	 */
+	@Override
+	public void rebuildSearchIndex() throws DAOException {
+		Statement stmt = null;
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = tx().createStatement();
+			stmt.executeUpdate("delete from TASK_TRIGRAM"); //$NON-NLS-1$
+			pStmt = tx().prepareStatement("insert into TASK_TRIGRAM (ttg_trigram, ttg_task) values (?, ?)"); //$NON-NLS-1$
+			rs = stmt.executeQuery("select tsk_id, tsk_code, tsk_name from TASK"); //$NON-NLS-1$
+			while (rs.next()) {
+				addToSearchIndex(pStmt, rs.getLong(1), rs.getString(2), rs.getString(3));
+			}
+			rs.close();
+			rs = null;
+			pStmt.executeBatch();
+			pStmt.close();
+			pStmt = null;
+			stmt.close();
+			stmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptClose(rs);
+			lastAttemptToClose(stmt);
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Adds the index keys of a task code and name to an insert batch.
+	 * 
+	 * @param pStmt
+	 *            the insert statement (trigram, then task identifier).
+	 * @param taskId
+	 *            the task identifier.
+	 * @param code
+	 *            the task code.
+	 * @param name
+	 *            the task name.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private static void addToSearchIndex(PreparedStatement pStmt, long taskId,
+			String code, String name) throws SQLException {
+		Set<String> keys = StringHelper.getIndexKeys(StringHelper
+				.toSearchKey(code));
+		keys.addAll(StringHelper.getIndexKeys(StringHelper
+				.toSearchKey(name)));
+		for (String key : keys) {
+			pStmt.setString(1, key);
+			pStmt.setLong(2, taskId);
+			pStmt.addBatch();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#updateSubTasksCount(long, int)
+	 */
+	@Override
+	public void updateSubTasksCount(long taskId, int delta)
+			throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("update TASK set tsk_subtasks_count=tsk_subtasks_count+? where tsk_id=?"); //$NON-NLS-1$
+			pStmt.setInt(1, delta);
+			pStmt.setLong(2, taskId);
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+			evictByPK(taskId);
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#updateTodo(long, long)
+	 */
+	@Override
+	public void updateTodo(long taskId, long todo) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("update TASK set tsk_todo=?, tsk_version=tsk_version+1 where tsk_id=?"); //$NON-NLS-1$
+			pStmt.setLong(1, todo);
+			pStmt.setLong(2, taskId);
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+			evictByPK(taskId);
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#checkSubTasksCounts()
+	 */
+	@Override
+	public List<String> checkSubTasksCounts() throws DAOException {
+		try {
+			List<String> result = new ArrayList<String>();
+			for (long[] counts : getWrongSubTasksCounts()) {
+				result.add("TASK(id=" + counts[0] + ") : expected " + counts[2] //$NON-NLS-1$ //$NON-NLS-2$
+						+ " sub tasks, found " + counts[1]); //$NON-NLS-1$
+			}
+			return result;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#rebuildSubTasksCounts()
+	 */
+	@Override
+	public void rebuildSubTasksCounts() throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			// The counts are computed before the update as MySQL doesn't
+			// allow to update a table from a sub query on the same table
+			List<long[]> wrongCounts = getWrongSubTasksCounts();
+			pStmt = tx().prepareStatement("update TASK set tsk_subtasks_count=? where tsk_id=?"); //$NON-NLS-1$
+			for (long[] counts : wrongCounts) {
+				pStmt.setInt(1, (int) counts[2]);
+				pStmt.setLong(2, counts[0]);
+				pStmt.addBatch();
+				evictByPK(counts[0]);
+			}
+			pStmt.executeBatch();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(e.getMessage(), e);
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Returns the tasks which maintained sub tasks count is wrong.
+	 * 
+	 * @return the task identifiers, the maintained sub tasks count and the
+	 *         actual sub tasks count.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private List<long[]> getWrongSubTasksCounts() throws SQLException {
+		List<long[]> result = new ArrayList<long[]>();
+		PreparedStatement pStmt = tx().prepareStatement("select thetask.tsk_id, thetask.tsk_subtasks_count, count(subtask.tsk_id)" //$NON-NLS-1$
+				+ " from TASK thetask left join TASK subtask on subtask.tsk_path=" + dialect().concat("thetask.tsk_path", "thetask.tsk_number") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ " group by thetask.tsk_id, thetask.tsk_subtasks_count" //$NON-NLS-1$
+				+ " order by thetask.tsk_id"); //$NON-NLS-1$
+		try {
+			ResultSet rs = pStmt.executeQuery();
+			while (rs.next()) {
+				long[] counts = new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) };
+				if (counts[1] != counts[2]) {
+					result.add(counts);
+				}
+			}
+		} finally {
+			pStmt.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the sub tree of a given task, the task itself included.
+	 * 
+	 * @param task
+	 *            the task.
+	 * @return the sub tasks identifiers and depth (relatively to the given
+	 *         task).
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	private List<long[]> getSubTree(Task task) throws SQLException {
+		List<long[]> result = new ArrayList<long[]>();
+		PreparedStatement pStmt = tx().prepareStatement("select tcl_descendant, tcl_depth from TASK_CLOSURE where tcl_ancestor=?"); //$NON-NLS-1$
+		try {
+			pStmt.setLong(1, task.getId());
+			ResultSet rs = pStmt.executeQuery();
+			while (rs.next()) {
+				result.add(new long[] { rs.getLong(1), rs.getLong(2) });
+			}
+		} finally {
+			pStmt.close();
+		}
+		return result;
+	}
+
+}
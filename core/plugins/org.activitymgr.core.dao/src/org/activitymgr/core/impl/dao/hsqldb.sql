@@ -1,6 +1,10 @@
 drop table if exists REPORT_CONFIG;
+drop table if exists CONTRIBUTION_DAY;
+drop table if exists CONTRIBUTION_MONTH;
 drop table if exists CONTRIBUTION;
 drop table if exists DURATION;
+drop table if exists TASK_TRIGRAM;
+drop table if exists TASK_CLOSURE;
 drop table if exists TASK;
 drop table if exists COLLABORATOR;
 
@@ -30,12 +34,39 @@ create table TASK (
 	TSK_INITIAL_CONS integer      not null,
 	TSK_TODO         integer      not null,
 	TSK_COMMENT      varchar(255),
+	TSK_SUBTASKS_COUNT integer    not null,
+	TSK_VERSION      integer      not null,
     constraint TSK_PK primary key (TSK_ID)
 );
 create index TSK_PATH_IDX on TASK (TSK_PATH);
 create unique index TSK_PATH_NUMBER_IDX on TASK (TSK_PATH, TSK_NUMBER);
 create unique index TSK_PATH_CODE_IDX on TASK (TSK_PATH, TSK_CODE);
 
+--------------------------------------------------------------
+-- Fermeture transitive de l'arborescence des taches
+--------------------------------------------------------------
+create table TASK_CLOSURE (
+	TCL_ANCESTOR      integer not null,
+	TCL_DESCENDANT    integer not null,
+	TCL_DEPTH         integer not null,
+    constraint TCL_PK primary key (TCL_ANCESTOR, TCL_DESCENDANT),
+    constraint TCL_ANCESTOR_FK foreign key (TCL_ANCESTOR) references TASK (TSK_ID),
+    constraint TCL_DESCENDANT_FK foreign key (TCL_DESCENDANT) references TASK (TSK_ID)
+);
+create index TCL_DESCENDANT_IDX on TASK_CLOSURE (TCL_DESCENDANT, TCL_DEPTH);
+
+--------------------------------------------------------------
+-- Index des trigrammes (et des squences de 1 et 2 caractres) des
+-- codes et noms de taches
+--------------------------------------------------------------
+create table TASK_TRIGRAM (
+	TTG_TRIGRAM       varchar(3) not null,
+	TTG_TASK          integer    not null,
+    constraint TTG_PK primary key (TTG_TRIGRAM, TTG_TASK),
+    constraint TTG_TASK_FK foreign key (TTG_TASK) references TASK (TSK_ID)
+);
+create index TTG_TASK_IDX on TASK_TRIGRAM (TTG_TASK);
+
 --------------------------------------------------------------
 -- Dur�es
 --------------------------------------------------------------
@@ -52,6 +83,7 @@ create table CONTRIBUTION (
 	CTB_YEAR          integer not null,
 	CTB_MONTH         integer not null,
 	CTB_DAY           integer not null,
+	CTB_DATE          integer not null,
 	CTB_CONTRIBUTOR   integer not null,
 	CTB_TASK          integer not null,
 	CTB_DURATION      integer not null,
@@ -60,10 +92,42 @@ create table CONTRIBUTION (
     constraint CTB_TASK_FK foreign key (CTB_TASK) references TASK (TSK_ID),
     constraint CTB_DURATION_FK foreign key (CTB_DURATION) references DURATION (DUR_ID)
 );
-create index CTB_CONTRIBUTOR_IDX on CONTRIBUTION (CTB_CONTRIBUTOR);
-create index CTB_TASK_IDX on CONTRIBUTION (CTB_TASK);
+create index CTB_CONTRIBUTOR_DATE_IDX on CONTRIBUTION (CTB_CONTRIBUTOR, CTB_DATE);
+create index CTB_TASK_DATE_IDX on CONTRIBUTION (CTB_TASK, CTB_DATE);
 create index CTB_DURATION_IDX on CONTRIBUTION (CTB_DURATION);
 
+--------------------------------------------------------------
+-- Cumuls des contributions par tache, collaborateur et mois
+--------------------------------------------------------------
+create table CONTRIBUTION_MONTH (
+	CTM_TASK          integer not null,
+	CTM_CONTRIBUTOR   integer not null,
+	CTM_YEAR          integer not null,
+	CTM_MONTH         integer not null,
+	CTM_DATE          integer not null,
+	CTM_DURATION      integer not null,
+	CTM_COUNT         integer not null,
+    constraint CTM_PK primary key (CTM_TASK, CTM_DATE, CTM_CONTRIBUTOR),
+    constraint CTM_TASK_FK foreign key (CTM_TASK) references TASK (TSK_ID),
+    constraint CTM_CONTRIBUTOR_FK foreign key (CTM_CONTRIBUTOR) references COLLABORATOR (CLB_ID)
+);
+create index CTM_CONTRIBUTOR_DATE_IDX on CONTRIBUTION_MONTH (CTM_CONTRIBUTOR, CTM_DATE);
+
+--------------------------------------------------------------
+-- Cumuls des contributions par tache et jour
+--------------------------------------------------------------
+create table CONTRIBUTION_DAY (
+	CTD_TASK          integer not null,
+	CTD_YEAR          integer not null,
+	CTD_MONTH         integer not null,
+	CTD_DAY           integer not null,
+	CTD_DATE          integer not null,
+	CTD_DURATION      integer not null,
+	CTD_COUNT         integer not null,
+    constraint CTD_PK primary key (CTD_TASK, CTD_DATE),
+    constraint CTD_TASK_FK foreign key (CTD_TASK) references TASK (TSK_ID)
+);
+
 --------------------------------------------------------------
 -- Report configurations
 --------------------------------------------------------------
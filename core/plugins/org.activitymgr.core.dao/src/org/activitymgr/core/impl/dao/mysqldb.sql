@@ -1,6 +1,10 @@
 drop table if exists REPORT_CONFIG;
+drop table if exists CONTRIBUTION_DAY;
+drop table if exists CONTRIBUTION_MONTH;
 drop table if exists CONTRIBUTION;
 drop table if exists DURATION;
+drop table if exists TASK_TRIGRAM;
+drop table if exists TASK_CLOSURE;
 drop table if exists TASK;
 drop table if exists COLLABORATOR;
 
@@ -30,6 +34,8 @@ create table TASK (
 	TSK_INITIAL_CONS integer(   8) not null,
 	TSK_TODO         integer(   8) not null,
 	TSK_COMMENT      text,
+	TSK_SUBTASKS_COUNT integer(3) not null,
+	TSK_VERSION      integer(  10) not null,
     index TSK_PATH_IDX (TSK_PATH),
     index TSK_FULLPATH_IDX (TSK_PATH, TSK_NUMBER),
     index TSK_PATH_CODE_IDX (TSK_PATH, TSK_CODE),
@@ -40,6 +46,31 @@ create table TASK (
     	unique (TSK_PATH, TSK_CODE) 
 ) engine=innodb;
 
+-- ------------------------------------------------------------
+-- Fermeture transitive de l'arborescence des taches
+-- ------------------------------------------------------------
+create table TASK_CLOSURE (
+	TCL_ANCESTOR      integer(8) not null,
+	TCL_DESCENDANT    integer(8) not null,
+	TCL_DEPTH         integer(3) not null,
+    index TCL_DESCENDANT_IDX (TCL_DESCENDANT, TCL_DEPTH),
+    constraint TCL_PK primary key (TCL_ANCESTOR, TCL_DESCENDANT),
+    constraint TCL_ANCESTOR_FK foreign key (TCL_ANCESTOR) references TASK (TSK_ID),
+    constraint TCL_DESCENDANT_FK foreign key (TCL_DESCENDANT) references TASK (TSK_ID)
+) engine=innodb;
+
+-- ------------------------------------------------------------
+-- Index des trigrammes (et des squences de 1 et 2 caractres) des
+-- codes et noms de taches
+-- ------------------------------------------------------------
+create table TASK_TRIGRAM (
+	TTG_TRIGRAM       varchar(3) binary not null,
+	TTG_TASK          integer(8) not null,
+    index TTG_TASK_IDX (TTG_TASK),
+    constraint TTG_PK primary key (TTG_TRIGRAM, TTG_TASK),
+    constraint TTG_TASK_FK foreign key (TTG_TASK) references TASK (TSK_ID)
+) engine=innodb;
+
 -- ------------------------------------------------------------
 -- Dur�es
 -- ------------------------------------------------------------
@@ -56,11 +87,12 @@ create table CONTRIBUTION (
 	CTB_YEAR          integer(4) not null,
 	CTB_MONTH         integer(2) not null,
 	CTB_DAY           integer(2) not null,
+	CTB_DATE          integer(8) not null,
 	CTB_CONTRIBUTOR   integer(3) not null,
 	CTB_TASK          integer(8) not null,
 	CTB_DURATION      integer(3) not null,
-    index CTB_CONTRIBUTOR_IDX (CTB_CONTRIBUTOR),
-    index CTB_TASK_IDX (CTB_TASK),
+    index CTB_CONTRIBUTOR_DATE_IDX (CTB_CONTRIBUTOR, CTB_DATE),
+    index CTB_TASK_DATE_IDX (CTB_TASK, CTB_DATE),
     index CTB_DURATION_IDX (CTB_DURATION),
     constraint CTB_PK primary key (CTB_YEAR, CTB_MONTH, CTB_DAY, CTB_CONTRIBUTOR, CTB_TASK),
     constraint CTB_CONTRIBUTOR_FK foreign key (CTB_CONTRIBUTOR) references COLLABORATOR (CLB_ID),
@@ -68,6 +100,38 @@ create table CONTRIBUTION (
     constraint CTB_DURATION_FK foreign key (CTB_DURATION) references DURATION (DUR_ID)
 ) engine=innodb;
 
+-- ------------------------------------------------------------
+-- Cumuls des contributions par tache, collaborateur et mois
+-- ------------------------------------------------------------
+create table CONTRIBUTION_MONTH (
+	CTM_TASK          integer(8) not null,
+	CTM_CONTRIBUTOR   integer(3) not null,
+	CTM_YEAR          integer(4) not null,
+	CTM_MONTH         integer(2) not null,
+	CTM_DATE          integer(8) not null,
+	CTM_DURATION      integer(8) not null,
+	CTM_COUNT         integer(4) not null,
+    index CTM_CONTRIBUTOR_DATE_IDX (CTM_CONTRIBUTOR, CTM_DATE),
+    constraint CTM_PK primary key (CTM_TASK, CTM_DATE, CTM_CONTRIBUTOR),
+    constraint CTM_TASK_FK foreign key (CTM_TASK) references TASK (TSK_ID),
+    constraint CTM_CONTRIBUTOR_FK foreign key (CTM_CONTRIBUTOR) references COLLABORATOR (CLB_ID)
+) engine=innodb;
+
+-- ------------------------------------------------------------
+-- Cumuls des contributions par tache et jour
+-- ------------------------------------------------------------
+create table CONTRIBUTION_DAY (
+	CTD_TASK          integer(8) not null,
+	CTD_YEAR          integer(4) not null,
+	CTD_MONTH         integer(2) not null,
+	CTD_DAY           integer(2) not null,
+	CTD_DATE          integer(8) not null,
+	CTD_DURATION      integer(8) not null,
+	CTD_COUNT         integer(4) not null,
+    constraint CTD_PK primary key (CTD_TASK, CTD_DATE),
+    constraint CTD_TASK_FK foreign key (CTD_TASK) references TASK (TSK_ID)
+) engine=innodb;
+
 --------------------------------------------------------------
 -- Report configurations
 --------------------------------------------------------------
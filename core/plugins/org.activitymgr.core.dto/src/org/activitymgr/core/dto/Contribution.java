@@ -34,6 +34,7 @@ import org.activitymgr.core.orm.annotation.Column;
 import org.activitymgr.core.orm.annotation.ColumnNamePrefix;
 import org.activitymgr.core.orm.annotation.PrimaryKey;
 import org.activitymgr.core.orm.annotation.Table;
+import org.activitymgr.core.util.EpochDay;
 
 /**
  * Contribution d'un collaborateur à une tache.
@@ -67,6 +68,14 @@ public class Contribution {
 	/** Durée */
 	@Column("DURATION")
 	private long durationId;
+
+	/**
+	 * Date au format <code>yyyyMMdd</code> (redondante avec l'année, le mois
+	 * et le jour, elle permet de filtrer les contributions par intervalle en
+	 * utilisant les index).
+	 */
+	@Column("DATE")
+	private int dateKey;
 	
 	/**
 	 * Default constructor.
@@ -146,6 +155,7 @@ public class Contribution {
 	 */
 	public void setDay(int day) {
 		this.day = day;
+		updateDateKey();
 	}
 
 	/**
@@ -163,6 +173,7 @@ public class Contribution {
 	 */
 	public void setMonth(int month) {
 		this.month = month;
+		updateDateKey();
 	}
 
 	/**
@@ -180,6 +191,44 @@ public class Contribution {
 	 */
 	public void setYear(int year) {
 		this.year = year;
+		updateDateKey();
+	}
+
+	/**
+	 * @return la date de la contribution au format <code>yyyyMMdd</code>.
+	 */
+	public int getDateKey() {
+		return dateKey;
+	}
+
+	/**
+	 * @return la date de la contribution (nombre de jours depuis le
+	 *         01/01/1970, cf. {@link EpochDay}).
+	 */
+	public int getEpochDay() {
+		return EpochDay.of(year, month, day);
+	}
+
+	/**
+	 * Définit la date de la contribution.
+	 * 
+	 * @param epochDay
+	 *            la nouvelle date (nombre de jours depuis le 01/01/1970, cf.
+	 *            {@link EpochDay}).
+	 */
+	public void setEpochDay(int epochDay) {
+		int dateKey = EpochDay.toDateKey(epochDay);
+		this.year = dateKey / 10000;
+		this.month = (dateKey / 100) % 100;
+		this.day = dateKey % 100;
+		this.dateKey = dateKey;
+	}
+
+	/**
+	 * Met à jour la date au format <code>yyyyMMdd</code>.
+	 */
+	private void updateDateKey() {
+		dateKey = year * 10000 + month * 100 + day;
 	}
 
 	/**
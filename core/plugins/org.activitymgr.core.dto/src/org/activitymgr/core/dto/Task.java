@@ -32,6 +32,7 @@ import org.activitymgr.core.orm.annotation.Column;
 import org.activitymgr.core.orm.annotation.ColumnNamePrefix;
 import org.activitymgr.core.orm.annotation.Converter;
 import org.activitymgr.core.orm.annotation.Table;
+import org.activitymgr.core.orm.annotation.Version;
 import org.activitymgr.core.util.StringHelper;
 
 /**
@@ -67,6 +68,14 @@ public class Task extends SimpleIdentityBean {
 	/** Commentaire sur la tache */
 	private String comment;
 
+	/** Nombre de sous-taches */
+	@Column("SUBTASKS_COUNT")
+	private int subTasksCount;
+
+	/** Version de la tache (incrémentée à chaque mise à jour) */
+	@Version
+	private int version;
+
 	/**
 	 * Default constructor.
 	 * <p>
@@ -135,6 +144,20 @@ public class Task extends SimpleIdentityBean {
 		return todo;
 	}
 
+	/**
+	 * @return le nombre de sous-taches de la tâche.
+	 */
+	public int getSubTasksCount() {
+		return subTasksCount;
+	}
+
+	/**
+	 * @return la version de la tâche.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
 	/**
 	 * Définit le code de la tâche.
 	 * 
@@ -205,6 +228,26 @@ public class Task extends SimpleIdentityBean {
 		this.todo = todo;
 	}
 
+	/**
+	 * Définit le nombre de sous-taches de la tache.
+	 * 
+	 * @param subTasksCount
+	 *            le nouveau nombre de sous-taches.
+	 */
+	public void setSubTasksCount(int subTasksCount) {
+		this.subTasksCount = subTasksCount;
+	}
+
+	/**
+	 * Définit la version de la tache.
+	 * 
+	 * @param version
+	 *            la nouvelle version.
+	 */
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
 	/**
 	 * Construit le chemin complet de la tâche.
 	 * 
@@ -5,19 +5,30 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-import org.activitymgr.core.orm.IConverter;
+import org.activitymgr.core.orm.IByteConverter;
 import org.activitymgr.core.util.StringHelper;
 
-public class TaskNumberConverter implements IConverter<Byte> {
+public class TaskNumberConverter implements IByteConverter {
 
 	@Override
 	public void bind(PreparedStatement stmt, int index, Byte value)
 			throws SQLException {
+		bindByte(stmt, index, value);
+	}
+
+	@Override
+	public void bindByte(PreparedStatement stmt, int index, byte value)
+			throws SQLException {
 		stmt.setString(index, StringHelper.toHex(value));
 	}
 
 	@Override
 	public Byte readValue(ResultSet rs, int index) throws SQLException {
+		return readByte(rs, index);
+	}
+
+	@Override
+	public byte readByte(ResultSet rs, int index) throws SQLException {
 		return StringHelper.toByte(rs.getString(index));
 	}
 
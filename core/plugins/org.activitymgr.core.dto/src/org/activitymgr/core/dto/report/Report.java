@@ -10,13 +10,16 @@ import java.util.List;
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.TaskSums;
+import org.activitymgr.core.util.EpochDay;
 import org.activitymgr.core.util.StringHelper;
 
 public class Report {
 	
 	private static final String NON_REPEATED_AMOUNT = "-.--";
 
-	private final Collection<Calendar> dates = new ArrayList<Calendar>();
+	private final int[] days;
+
+	private Collection<Calendar> dates;
 	
 	private final ReportIntervalType intervalType;
 	
@@ -33,17 +36,19 @@ public class Report {
 	private int intervalCount;
 
 	public Report(Calendar start, ReportIntervalType intervalType, int intervalCount, Task rootTask, int taskDepth, boolean byContributor, boolean isContributorCentric) {
+		this(EpochDay.of(start), intervalType, intervalCount, rootTask, taskDepth, byContributor, isContributorCentric);
+	}
+
+	public Report(int start, ReportIntervalType intervalType, int intervalCount, Task rootTask, int taskDepth, boolean byContributor, boolean isContributorCentric) {
 		this.intervalType = intervalType;
 		this.rootTask = rootTask;
 		this.taskDepth = taskDepth;
 		this.byContributor = byContributor;
 		this.isContributorCentric = isContributorCentric;
 		this.intervalCount = intervalCount;
-		Calendar date = (Calendar) start.clone();
+		this.days = new int[intervalCount];
 		for (int i=0; i<intervalCount; i++) {
-			Calendar d = (Calendar) date.clone();
-			dates.add(d);
-			date.add(intervalType.getIntType(), 1);
+			days[i] = EpochDay.add(start, intervalType.getIntType(), i);
 		}
 	}
 	
@@ -76,9 +81,25 @@ public class Report {
 	}
 
 	public Collection<Calendar> getDates() {
+		if (dates == null) {
+			Collection<Calendar> result = new ArrayList<Calendar>(days.length);
+			for (int day : days) {
+				result.add(EpochDay.toCalendar(day));
+			}
+			dates = result;
+		}
 		return dates;
 	}
 
+	/**
+	 * @param intervalIdx
+	 *            the interval index.
+	 * @return the interval start date ({@link EpochDay epoch day}).
+	 */
+	public int getDay(int intervalIdx) {
+		return days[intervalIdx];
+	}
+
 	private static final int TASK_PATH_PAD = 15;
 	private static final int TASK_NAME_PAD = 15;
 	private static final int BUDGET_NAME_PAD = 7;
@@ -133,7 +154,7 @@ public class Report {
 					appendCellLeft(sw, NON_REPEATED_AMOUNT, INITIALLY_CONSUMMED_NAME_PAD);
 				}
 			}
-			for (int i=0; i<dates.size(); i++) {
+			for (int i=0; i<days.length; i++) {
 				sums[i] += item.getContributionSum(i);
 				appendCellLeft(sw, StringHelper.hundredthToEntry(item.getContributionSum(i)), CONTRIBUTION_PAD);
 			}
@@ -167,7 +188,7 @@ public class Report {
 			appendCellLeft(sw, StringHelper.hundredthToEntry(budgetSum), BUDGET_NAME_PAD);
 			appendCellLeft(sw, StringHelper.hundredthToEntry(initiallyConsumedSum), INITIALLY_CONSUMMED_NAME_PAD);
 		}
-		for (int i=0; i<dates.size(); i++) {
+		for (int i=0; i<days.length; i++) {
 			appendCellLeft(sw, StringHelper.hundredthToEntry(sums[i]), CONTRIBUTION_PAD);
 		}
 		if (taskDepth > 0 && !isContributorCentric) {
@@ -229,7 +250,7 @@ public class Report {
 			break;
 		}
 		SimpleDateFormat sdf = new SimpleDateFormat(format);
-		for (Calendar date : dates) {
+		for (Calendar date : getDates()) {
 			appendCellLeft(sw, sdf.format(date.getTime()), CONTRIBUTION_PAD);
 		}
 		if (taskDepth > 0 && !isContributorCentric) {
@@ -1,13 +1,58 @@
 package org.activitymgr.core.model;
 
+import java.io.File;
+
 import org.activitymgr.core.dao.CoreDAOModule;
 import org.activitymgr.core.model.impl.ModelMgrImpl;
+import org.activitymgr.core.model.impl.archive.ContributionArchive;
+import org.activitymgr.core.util.SqlStatistics;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Singleton;
 
 public class CoreModelModule extends AbstractModule {
 
+	/** SQL statistics */
+	private final SqlStatistics sqlStatistics;
+
+	/** Contributions archive directory */
+	private final File archiveDirectory;
+
+	/**
+	 * Default constructor (no SQL statistics).
+	 */
+	public CoreModelModule() {
+		this(new SqlStatistics());
+	}
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param sqlStatistics
+	 *            the SQL statistics exposed by the model manager (the
+	 *            transactional connections are instrumented with them by
+	 *            their provider).
+	 */
+	public CoreModelModule(SqlStatistics sqlStatistics) {
+		this(sqlStatistics, null);
+	}
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param sqlStatistics
+	 *            the SQL statistics exposed by the model manager (the
+	 *            transactional connections are instrumented with them by
+	 *            their provider).
+	 * @param archiveDirectory
+	 *            the directory where the contributions of the closed years
+	 *            are archived (<code>null</code> disables the archive).
+	 */
+	public CoreModelModule(SqlStatistics sqlStatistics, File archiveDirectory) {
+		this.sqlStatistics = sqlStatistics;
+		this.archiveDirectory = archiveDirectory;
+	}
+
 //	public static interface IPostInjectionListener {
 //		
 //		void afterInjection() throws Exception;
@@ -17,9 +62,12 @@ public class CoreModelModule extends AbstractModule {
 	@Override
 	protected void configure() {
 		// Bind DAO layer
-		CoreDAOModule daoModule = new CoreDAOModule();
+		CoreDAOModule daoModule = new CoreDAOModule(sqlStatistics);
 		daoModule.configure(binder());
 		
+		// Bind contributions archive
+		bind(ContributionArchive.class).toInstance(new ContributionArchive(archiveDirectory));
+
 		// Bind core ModelManager
 		bind(IModelMgr.class).to(ModelMgrImpl.class).in(Singleton.class);
 		
@@ -27,6 +27,7 @@
  */
 package org.activitymgr.core.model;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -47,6 +48,7 @@ import org.activitymgr.core.dto.misc.TaskSearchFilter;
 import org.activitymgr.core.dto.misc.TaskSums;
 import org.activitymgr.core.dto.report.Report;
 import org.activitymgr.core.dto.report.ReportIntervalType;
+import org.activitymgr.core.util.SqlStatistics.StatementStatistics;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.xml.sax.SAXException;
 
@@ -103,6 +105,11 @@ public interface IModelMgr {
 
 	/**
 	 * Crée une contribution.
+	 * <p>
+	 * Si le reste à faire de la tache est mis à jour, la version de la tache est
+	 * incrémentée : une tache lue auparavant doit être relue pour pouvoir être
+	 * modifiée ou supprimée (cf. {@link #updateTask(Task)}).
+	 * </p>
 	 * 
 	 * @param contribution
 	 *            la contribution à créer.
@@ -163,6 +170,134 @@ public interface IModelMgr {
 	 */
 	void createTables();
 
+	/**
+	 * Crée les tables du modèle de données, en partitionnant éventuellement
+	 * les contributions par année.
+	 * 
+	 * @param partitionContributions
+	 *            indique si les contributions doivent être partitionnées.
+	 * @see #partitionContributions()
+	 */
+	void createTables(boolean partitionContributions);
+
+	/**
+	 * Partitionne les contributions par année (les années présentes dans la
+	 * base, l'année courante et l'année suivante disposent de leur propre
+	 * partition). Peut être appelée à nouveau pour créer les partitions des
+	 * nouvelles années.
+	 */
+	void partitionContributions();
+
+	/**
+	 * Met à jour les tables d'une base créée par une version antérieure de
+	 * l'application.
+	 * 
+	 */
+	void upgradeTables();
+
+	/**
+	 * Oublie les informations propres à la base de données conservées en
+	 * mémoire. Doit être appelé lorsque l'application change de base de
+	 * données (à l'ouverture et à la fermeture de la base).
+	 * 
+	 * <p>
+	 * L'archive des contributions de la base précédente est désactivée ;
+	 * celle de la nouvelle base doit être définie au travers de
+	 * {@link #setArchiveDirectory(File)}.
+	 * </p>
+	 */
+	void resetDatabaseCaches();
+
+	/**
+	 * Définit le répertoire d'archive des contributions de la base de données
+	 * courante (paramètre de connexion à la base).
+	 * 
+	 * @param directory
+	 *            le répertoire d'archive (<code>null</code> pour désactiver
+	 *            l'archive).
+	 * @see #archiveContributions(int)
+	 */
+	void setArchiveDirectory(File directory);
+
+	/**
+	 * Retourne les statistiques des requêtes SQL (vides si les connexions
+	 * transactionnelles ne sont pas instrumentées).
+	 * 
+	 * @return les statistiques par forme de requête, les plus coûteuses en
+	 *         premier.
+	 */
+	List<StatementStatistics> getSqlStatistics();
+
+	/**
+	 * Reconstruit les tables de cumuls des contributions (par tache,
+	 * collaborateur et mois, et par tache et jour).
+	 */
+	void rebuildContributionRollups();
+
+	/**
+	 * Vérifie la cohérence des tables de cumuls des contributions avec les
+	 * contributions.
+	 * 
+	 * @return la liste des incohérences détectées (vide si les cumuls sont
+	 *         cohérents).
+	 */
+	List<String> checkContributionRollups();
+
+	/**
+	 * Retourne les années dont les contributions sont archivées.
+	 * 
+	 * <p>
+	 * Les contributions archivées ne sont plus stockées en base de données
+	 * (seuls leurs cumuls y sont conservés), mais restent visibles au travers
+	 * des méthodes de lecture du modèle (contributions, consommés, rapports,
+	 * ...). Elles ne peuvent en revanche plus être modifiées.
+	 * </p>
+	 * 
+	 * @return la liste des années archivées.
+	 */
+	Collection<Integer> getArchivedYears();
+
+	/**
+	 * Archive les contributions d'une année close : les contributions sont
+	 * écrites dans l'archive puis supprimées de la base de données.
+	 * 
+	 * @param year
+	 *            l'année à archiver (antérieure à l'année courante).
+	 * @throws ModelException
+	 *             levé dans le cas où aucune archive n'est configurée, où
+	 *             l'année n'est pas close ou si elle est déjà archivée.
+	 * @throws IOException
+	 *             levé en cas d'incident d'écriture de l'archive.
+	 */
+	void archiveContributions(int year) throws ModelException, IOException;
+
+	/**
+	 * Restaure en base de données les contributions archivées d'une année.
+	 * 
+	 * @param year
+	 *            l'année à restaurer.
+	 * @throws ModelException
+	 *             levé dans le cas où aucune archive n'est configurée ou si
+	 *             l'année n'est pas archivée.
+	 * @throws IOException
+	 *             levé en cas d'incident de lecture de l'archive.
+	 */
+	void restoreContributions(int year) throws ModelException, IOException;
+
+	/**
+	 * Reconstruit les nombres de sous-taches maintenus dans les taches.
+	 */
+	void rebuildSubTasksCounts();
+
+	/**
+	 * Vérifie la cohérence des nombres de sous-taches maintenus dans les
+	 * taches avec l'arborescence des taches.
+	 * 
+	 * @return la liste des incohérences détectées (vide si les nombres de
+	 *         sous-taches sont cohérents).
+	 */
+	List<String> checkSubTasksCounts();
+
 	/**
 	 * Crée une nouvelle tache.
 	 * 
@@ -663,6 +798,11 @@ public interface IModelMgr {
 
 	/**
 	 * Supprime une contribution.
+	 * <p>
+	 * Si le reste à faire de la tache est mis à jour, la version de la tache est
+	 * incrémentée : une tache lue auparavant doit être relue pour pouvoir être
+	 * modifiée ou supprimée (cf. {@link #updateTask(Task)}).
+	 * </p>
 	 * 
 	 * @param contribution
 	 *            la contribution à supprimer.
@@ -679,8 +819,11 @@ public interface IModelMgr {
 	 * 
 	 * @param contributions
 	 *            les contributions à supprimer.
+	 * @throws ModelException
+	 *             levé dans le cas où une contribution est archivée.
 	 */
-	void removeContributions(Contribution[] contributions);
+	void removeContributions(Contribution[] contributions)
+			throws ModelException;
 
 	/**
 	 * Supprime une durée du référentiel de durées.
@@ -704,7 +847,8 @@ public interface IModelMgr {
 	 *            la tache à supprimer.
 	 * @throws ModelException
 	 *             levé en cas de violation d'une contrainte d'intégrité du
-	 *             modèle.
+	 *             modèle, ou si la tache a changé en base de données depuis
+	 *             sa lecture (cf. {@link #updateTask(Task)}).
 	 */
 	void removeTask(Task task) throws ModelException;
 
@@ -729,6 +873,11 @@ public interface IModelMgr {
 
 	/**
 	 * Modifie les attributs d'une contribution.
+	 * <p>
+	 * Si le reste à faire de la tache est mis à jour, la version de la tache est
+	 * incrémentée : une tache lue auparavant doit être relue pour pouvoir être
+	 * modifiée ou supprimée (cf. {@link #updateTask(Task)}).
+	 * </p>
 	 * 
 	 * @param contribution
 	 *            la contribution à modifier.
@@ -777,13 +926,20 @@ public interface IModelMgr {
 	 * autorisée que pour les champs autres que le chemin et le numéro de la
 	 * tache.
 	 * </p>
+	 * <p>
+	 * La tache ne doit pas avoir changé en base de données depuis sa lecture
+	 * (sa version est comparée). Cela inclut la mise à jour de son reste à
+	 * faire par la création, la modification ou la suppression d'une
+	 * contribution : une tache lue avant une telle opération doit être relue.
+	 * </p>
 	 * 
 	 * @param task
 	 *            la tache à mettre à jour.
 	 * @return la tache mise à jour.
 	 * @throws ModelException
 	 *             levé dans le cas ou le chemin ou le numéro de la tache ont
-	 *             changé.
+	 *             changé, ou si la tache a changé en base de données depuis
+	 *             sa lecture.
 	 */
 	Task updateTask(Task task) throws ModelException;
 
@@ -28,21 +28,29 @@
 package org.activitymgr.core.model.impl;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.text.SimpleDateFormat;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -51,10 +59,12 @@ import javax.xml.parsers.SAXParserFactory;
 import org.activitymgr.core.dao.DAOException;
 import org.activitymgr.core.dao.ICollaboratorDAO;
 import org.activitymgr.core.dao.IContributionDAO;
+import org.activitymgr.core.dao.IContributionRollupDAO;
 import org.activitymgr.core.dao.ICoreDAO;
 import org.activitymgr.core.dao.IDurationDAO;
 import org.activitymgr.core.dao.IReportCfgDAO;
 import org.activitymgr.core.dao.IReportDAO;
+import org.activitymgr.core.dao.IntervalRequestHelper;
 import org.activitymgr.core.dao.ITaskDAO;
 import org.activitymgr.core.dao.TaskDAOCache;
 import org.activitymgr.core.dto.Collaborator;
@@ -65,7 +75,6 @@ import org.activitymgr.core.dto.ReportCfg;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.IntervalContributions;
 import org.activitymgr.core.dto.misc.TaskContributions;
-import org.activitymgr.core.dto.misc.TaskContributionsSums;
 import org.activitymgr.core.dto.misc.TaskSearchFilter;
 import org.activitymgr.core.dto.misc.TaskSums;
 import org.activitymgr.core.dto.report.Report;
@@ -78,16 +87,24 @@ import org.activitymgr.core.model.XLSModelException;
 import org.activitymgr.core.model.impl.XlsImportHelper.IXLSHandler;
 import org.activitymgr.core.model.impl.XlsImportHelper.XLSCell;
 import org.activitymgr.core.model.impl.XmlHelper.ModelMgrDelegate;
+import org.activitymgr.core.model.impl.archive.ContributionArchive;
+import org.activitymgr.core.model.impl.archive.ContributionSegment;
 import org.activitymgr.core.model.impl.report.ReflectiveReportColumnComputer;
 import org.activitymgr.core.model.impl.report.TaskPathReportColumnComputer;
+import org.activitymgr.core.orm.IRowHandler;
+import org.activitymgr.core.orm.OptimisticLockException;
 import org.activitymgr.core.orm.query.AscendantOrderByClause;
 import org.activitymgr.core.orm.query.DescendantOrderByClause;
 import org.activitymgr.core.orm.query.InStatement;
 import org.activitymgr.core.orm.query.LikeStatement;
 import org.activitymgr.core.util.DateHelper;
+import org.activitymgr.core.util.SqlStatistics;
+import org.activitymgr.core.util.SqlStatistics.StatementStatistics;
+import org.activitymgr.core.util.EpochDay;
 import org.activitymgr.core.util.StringFormatException;
 import org.activitymgr.core.util.StringHelper;
 import org.activitymgr.core.util.Strings;
+import org.activitymgr.core.util.TransactionHooks;
 import org.activitymgr.core.util.WorkbookBuilder;
 import org.apache.commons.beanutils.BeanUtilsBean2;
 import org.apache.log4j.Logger;
@@ -105,6 +122,7 @@ import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 
 /**
  * Gestionnaire du modèle.
@@ -118,6 +136,21 @@ public class ModelMgrImpl implements IModelMgr {
 	/** Logger */
 	private static Logger log = Logger.getLogger(ModelMgrImpl.class);
 
+	/** Number of contributions buffered before being inserted during an import */
+	private static final int IMPORT_BATCH_SIZE = 500;
+
+	/** Number of contributions read at each database round trip during an export */
+	private static final int EXPORT_FETCH_SIZE = 1000;
+
+	/** Task attributes updated when a task is renumbered or moved */
+	private static final String[] TASK_PATH_ATTRIBUTES = new String[] { "path", "number" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * Task attributes updated when a task is modified (the sub tasks count is
+	 * maintained by the DAO and must not be overwritten by a stale copy)
+	 */
+	private static final String[] TASK_UPDATABLE_ATTRIBUTES = new String[] { "code", "name", "budget", "initiallyConsumed", "todo", "comment" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+
 	/** DAO */
 	@Inject
 	private ICoreDAO dao;
@@ -138,6 +171,10 @@ public class ModelMgrImpl implements IModelMgr {
 	@Inject
 	private IContributionDAO contributionDAO;
 
+	/** Contribution rollups DAO */
+	@Inject
+	private IContributionRollupDAO rollupDAO;
+
 	/** Reports DAO */
 	@Inject
 	private IReportDAO reportDAO;
@@ -149,6 +186,18 @@ public class ModelMgrImpl implements IModelMgr {
 	/** Bean factory */
 	@Inject
 	private IDTOFactory factory;
+
+	/** Contributions archive */
+	@Inject
+	private ContributionArchive archive;
+
+	/** Transaction hooks provider (bound to the current transaction) */
+	@Inject
+	private Provider<TransactionHooks> transactionHooks;
+
+	/** SQL statistics */
+	@Inject
+	private SqlStatistics sqlStatistics;
 	
 	/** Report columns computers map */
 	private Map<String, IReportColumnComputer> defaultReportColumnComputers = new HashMap<String, IReportColumnComputer>();
@@ -180,6 +229,232 @@ public class ModelMgrImpl implements IModelMgr {
 		dao.createTables();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#createTables(boolean)
+	 */
+	@Override
+	public void createTables(boolean partitionContributions) {
+		dao.createTables(partitionContributions);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#partitionContributions()
+	 */
+	@Override
+	public void partitionContributions() {
+		dao.partitionContributions();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.IModelMgr#upgradeTables()
+	 */
+	@Override
+	public void upgradeTables() {
+		dao.upgradeTables();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#resetDatabaseCaches()
+	 */
+	@Override
+	public void resetDatabaseCaches() {
+		dao.resetDatabaseCaches();
+		// The archive belongs to the previous database
+		archive.setDirectory(null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#setArchiveDirectory(java.io.File)
+	 */
+	@Override
+	public void setArchiveDirectory(File directory) {
+		archive.setDirectory(directory);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#getSqlStatistics()
+	 */
+	@Override
+	public List<StatementStatistics> getSqlStatistics() {
+		return sqlStatistics.snapshot();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#rebuildContributionRollups()
+	 */
+	@Override
+	public void rebuildContributionRollups() {
+		rollupDAO.rebuildRollups();
+		// The rollups of the archived years are rebuilt from the archive
+		for (int year : archive.getYears()) {
+			ContributionSegment segment = getArchivedSegment(year);
+			List<Contribution> contributions = new ArrayList<Contribution>();
+			for (int i = 0; i < segment.size(); i++) {
+				contributions.add(segment.getContribution(i, factory));
+				if (contributions.size() >= IMPORT_BATCH_SIZE || i == segment.size() - 1) {
+					rollupDAO.addToRollups(contributions.toArray(new Contribution[contributions.size()]));
+					contributions.clear();
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#checkContributionRollups()
+	 */
+	@Override
+	public List<String> checkContributionRollups() {
+		// The contributions of the archived years are not in the database
+		return rollupDAO.checkRollups(archive.getYears());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#getArchivedYears()
+	 */
+	@Override
+	public Collection<Integer> getArchivedYears() {
+		return archive.getYears();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#archiveContributions(int)
+	 */
+	@Override
+	public void archiveContributions(final int year) throws ModelException,
+			IOException {
+		if (!archive.isEnabled()) {
+			throw new ModelException(
+					Strings.getString("ModelMgr.errors.NO_ARCHIVE_DIRECTORY")); //$NON-NLS-1$
+		}
+		if (year >= Calendar.getInstance().get(Calendar.YEAR)) {
+			throw new ModelException(Strings.getString(
+					"ModelMgr.errors.YEAR_NOT_CLOSED", String.valueOf(year))); //$NON-NLS-1$
+		}
+		if (archive.isArchived(year)) {
+			throw new ModelException(Strings.getString(
+					"ModelMgr.errors.YEAR_ALREADY_ARCHIVED", String.valueOf(year))); //$NON-NLS-1$
+		}
+		// Contributions retrieval (the rollups are kept)
+		final List<Contribution> contributions = new ArrayList<Contribution>();
+		contributionDAO.getContributions(null, null, new GregorianCalendar(
+				year, 0, 1), new GregorianCalendar(year, 11, 31),
+				EXPORT_FETCH_SIZE, new IRowHandler<Contribution, DAOException>() {
+					@Override
+					public void handle(Contribution contribution) {
+						contributions.add(contribution);
+					}
+				});
+		// The segment is written before the contributions are deleted, and
+		// only published once the deletion is committed
+		archive.writePending(ContributionSegment.build(year, contributions));
+		transactionHooks.get().register(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					archive.publish(year);
+				} catch (IOException e) {
+					log.error("Archived contributions of " + year + " couldn't be published", e); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					archive.discard(year);
+				} catch (IOException e) {
+					log.error("Archived contributions of " + year + " couldn't be discarded", e); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		});
+		contributionDAO.delete(new String[] { "year" }, new Object[] { year }); //$NON-NLS-1$
+		log.info(contributions.size() + " contribution(s) of " + year + " archived"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#restoreContributions(int)
+	 */
+	@Override
+	public void restoreContributions(final int year) throws ModelException,
+			IOException {
+		if (!archive.isEnabled()) {
+			throw new ModelException(
+					Strings.getString("ModelMgr.errors.NO_ARCHIVE_DIRECTORY")); //$NON-NLS-1$
+		}
+		if (!archive.isArchived(year)) {
+			throw new ModelException(Strings.getString(
+					"ModelMgr.errors.YEAR_NOT_ARCHIVED", String.valueOf(year))); //$NON-NLS-1$
+		}
+		// Contributions insertion (the rollups already hold them)
+		ContributionSegment segment = archive.getSegment(year);
+		List<Contribution> contributions = new ArrayList<Contribution>();
+		for (int i = 0; i < segment.size(); i++) {
+			contributions.add(segment.getContribution(i, factory));
+			if (contributions.size() >= IMPORT_BATCH_SIZE || i == segment.size() - 1) {
+				contributionDAO.insertAll(contributions.toArray(new Contribution[contributions.size()]));
+				contributions.clear();
+			}
+		}
+		// The segment is kept as a backup, once the insertions are committed
+		transactionHooks.get().register(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					archive.remove(year, true);
+				} catch (IOException e) {
+					log.error("Restored contributions of " + year + " couldn't be removed from the archive", e); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				// The year remains archived
+			}
+		});
+		log.info(segment.size() + " contribution(s) of " + year + " restored"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#rebuildSubTasksCounts()
+	 */
+	@Override
+	public void rebuildSubTasksCounts() {
+		taskDAO.rebuildSubTasksCounts();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#checkSubTasksCounts()
+	 */
+	@Override
+	public List<String> checkSubTasksCounts() {
+		return taskDAO.checkSubTasksCounts();
+	}
+
 	/**
 	 * Substitue une partie du chemin d'un groupe de tache et de leurs
 	 * sous-taches par un nouvelle valeur.
@@ -217,7 +492,7 @@ public class ModelMgrImpl implements IModelMgr {
 			task.setPath(buf.toString());
 			log.debug(" - new path : '" + task.getPath() + "'"); //$NON-NLS-1$ //$NON-NLS-2$
 			// Mise à jour
-			taskDAO.update(task);
+			taskDAO.update(task, TASK_PATH_ATTRIBUTES);
 		}
 	}
 
@@ -241,11 +516,11 @@ public class ModelMgrImpl implements IModelMgr {
 			// La suite des controles n'est donc exécutée que si la tache
 			// n'admet
 			// pas de sous-tâches
-			if (getSubTasksCount(task.getId()) == 0) {
+			if (task.getSubTasksCount() == 0) {
 				// Une tache ne peut admettre une sous-tache que si elle
 				// n'est pas déja associée à un consommé (ie: à des
 				// contributions)
-				long contribsNb = contributionDAO.getContributionsCount(null, task, null,
+				long contribsNb = getContributionsCount(null, task, null,
 						null);
 				if (contribsNb != 0)
 					throw new ModelException(
@@ -270,11 +545,12 @@ public class ModelMgrImpl implements IModelMgr {
 	 * 
 	 * @param task
 	 *            la copie de la tache en mémoire.
+	 * @return la tache telle qu'elle est en base de données.
 	 * @throws ModelException
 	 *             levé dans la cas ou la tache de destination ne peut recevoir
 	 *             de sous-tache.
 	 */
-	private void checkTaskPath(Task task)
+	private Task checkTaskPath(Task task)
 			throws ModelException {
 		boolean noErrorOccured = false;
 		Task _task = null;
@@ -299,6 +575,32 @@ public class ModelMgrImpl implements IModelMgr {
 				log.error("     db fullath = " + _task.getPath() + "/" + _task.getNumber()); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 		}
+		return _task;
+	}
+
+	/**
+	 * Met à jour des attributs d'une tache fournie par l'appelant. La mise à
+	 * jour échoue si la tache a été modifiée ou supprimée depuis sa lecture
+	 * (sa version ne correspond plus à celle de la base de données).
+	 * 
+	 * @param task
+	 *            la tache à mettre à jour (sa version est incrémentée).
+	 * @param attributeNames
+	 *            les attributs à mettre à jour.
+	 * @return la tache mise à jour.
+	 * @throws ModelException
+	 *             levé dans le cas où la tache a été modifiée ou supprimée.
+	 */
+	private Task updateTaskAttributes(Task task, String[] attributeNames)
+			throws ModelException {
+		try {
+			return taskDAO.update(task, attributeNames);
+		} catch (DAOException e) {
+			if (e.getCause() instanceof OptimisticLockException)
+				throw new ModelException(
+						Strings.getString("ModelMgr.errors.TASK_CONCURRENT_UPDATE")); //$NON-NLS-1$
+			throw e;
+		}
 	}
 
 	/**
@@ -351,6 +653,36 @@ public class ModelMgrImpl implements IModelMgr {
 			boolean updateEstimatedTimeToComlete) throws 
 			ModelException {
 		log.info("createContribution(" + contribution + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+		Task task = checkContribution(contribution);
+
+		// Contribution creation
+		contribution = contributionDAO.insert(contribution);
+		rollupDAO.addToRollups(new Contribution[] { contribution });
+
+		// Faut-il mettre à jour automatiquement le RAF de la tache ?
+		if (updateEstimatedTimeToComlete) {
+			// Mise à jour du RAF de la tache
+			long newEtc = task.getTodo() - contribution.getDurationId();
+			task.setTodo(newEtc > 0 ? newEtc : 0);
+			taskDAO.updateTodo(task.getId(), task.getTodo());
+		}
+
+		// Retour du résultat
+		return contribution;
+	}
+
+	/**
+	 * Vérifie qu'une contribution peut être créée.
+	 * 
+	 * @param contribution
+	 *            la contribution à vérifier.
+	 * @return la tache associée à la contribution.
+	 * @throws ModelException
+	 *             levé si la contribution est invalide.
+	 */
+	private Task checkContribution(Contribution contribution)
+			throws ModelException {
+		checkNotArchived(contribution);
 		// La tache ne peut accepter une contribution que
 		// si elle n'admet aucune sous-tache
 		if (getSubTasksCount(contribution.getTaskId()) > 0)
@@ -363,20 +695,23 @@ public class ModelMgrImpl implements IModelMgr {
 			throw new ModelException(
 					Strings.getString("ModelMgr.errors.INVALID_DURATION")); //$NON-NLS-1$
 		}
+		return task;
+	}
 
-		// Contribution creation
-		contribution = contributionDAO.insert(contribution);
-
-		// Faut-il mettre à jour automatiquement le RAF de la tache ?
-		if (updateEstimatedTimeToComlete) {
-			// Mise à jour du RAF de la tache
-			long newEtc = task.getTodo() - contribution.getDurationId();
-			task.setTodo(newEtc > 0 ? newEtc : 0);
-			taskDAO.update(task);
+	/**
+	 * Insère les contributions en attente (par batch) et vide la liste.
+	 * 
+	 * @param contributions
+	 *            les contributions à insérer.
+	 */
+	private void flushContributions(List<Contribution> contributions) {
+		if (!contributions.isEmpty()) {
+			Contribution[] array = contributions
+					.toArray(new Contribution[contributions.size()]);
+			contributionDAO.insertAll(array);
+			rollupDAO.addToRollups(array);
+			contributions.clear();
 		}
-
-		// Retour du résultat
-		return contribution;
 	}
 
 	/*
@@ -495,7 +830,13 @@ public class ModelMgrImpl implements IModelMgr {
 		task.setNumber(taskNumber);
 
 		// Création de la tache
-		return taskDAO.insert(task);
+		task.setSubTasksCount(0);
+		task = taskDAO.insert(task);
+		taskDAO.insertInClosure(task, parentTask);
+		if (parentTask != null)
+			taskDAO.updateSubTasksCount(parentTask.getId(), 1);
+		taskDAO.updateSearchIndex(task);
+		return task;
 	}
 
 	/*
@@ -521,6 +862,8 @@ public class ModelMgrImpl implements IModelMgr {
 		try {
 			// Création du gestionnaire de modèle de données
 			final ModelMgrImpl modelMgr = this;
+			// Les contributions sont insérées par batch
+			final List<Contribution> pendingContributions = new ArrayList<Contribution>();
 			ModelMgrDelegate modelMgrDelegate = new ModelMgrDelegate() {
 				Map<String, Task> taskCache = new HashMap<String, Task>();
 				Map<String, Collaborator> collaboratorsCache = new HashMap<String, Collaborator>();
@@ -540,6 +883,9 @@ public class ModelMgrImpl implements IModelMgr {
 
 				public Task createTask(Task parentTask, Task task)
 						throws ModelException {
+					// La création d'une tache dépend des contributions
+					// de la tache parent
+					modelMgr.flushContributions(pendingContributions);
 					task = modelMgr.createTask(parentTask, task);
 					String taskPath = modelMgr.buildTaskCodePath(task);
 					taskCache.put(taskPath, task);
@@ -548,7 +894,13 @@ public class ModelMgrImpl implements IModelMgr {
 
 				public Contribution createContribution(Contribution contribution)
 						throws ModelException {
-					return modelMgr.createContribution(contribution, false);
+					log.info("createContribution(" + contribution + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+					modelMgr.checkContribution(contribution);
+					pendingContributions.add(contribution);
+					if (pendingContributions.size() >= IMPORT_BATCH_SIZE) {
+						modelMgr.flushContributions(pendingContributions);
+					}
+					return contribution;
 				}
 
 				public Task getTaskByCodePath(String codePath)
@@ -590,6 +942,7 @@ public class ModelMgrImpl implements IModelMgr {
 			InputSource is = new InputSource(in);
 			is.setSystemId(""); // Pour empâcher la levée d'erreur associé à l'URI de la DTD //$NON-NLS-1$
 			reader.parse(is);
+			flushContributions(pendingContributions);
 
 			// Fermeture du flux de données
 			in.close();
@@ -616,7 +969,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 * @see org.activitymgr.core.IModelMgr#exportToXML(java.io.OutputStream)
 	 */
 	@Override
-	public void exportToXML(OutputStream out) throws IOException {
+	public void exportToXML(final OutputStream out) throws IOException {
 		// Entête XML
 		XmlHelper.println(out, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"); //$NON-NLS-1$
 		XmlHelper.println(out, "<!DOCTYPE model SYSTEM \"activitymgr.dtd\">"); //$NON-NLS-1$
@@ -683,7 +1036,7 @@ public class ModelMgrImpl implements IModelMgr {
 		}
 		// Exportation des collaborateurs
 		Collaborator[] collaborators = getCollaborators();
-		Map<Long, String> collaboratorsLoginsMap = new HashMap<Long, String>();
+		final Map<Long, String> collaboratorsLoginsMap = new HashMap<Long, String>();
 		if (collaborators.length > 0) {
 			XmlHelper.startXmlNode(out, "  ", XmlHelper.COLLABORATORS_NODE); //$NON-NLS-1$
 			for (int i = 0; i < collaborators.length; i++) {
@@ -706,15 +1059,18 @@ public class ModelMgrImpl implements IModelMgr {
 			XmlHelper.endXmlNode(out, "  ", XmlHelper.COLLABORATORS_NODE); //$NON-NLS-1$
 		}
 		// Exportation des taches
-		Map<Long, String> tasksCodePathMap = new HashMap<Long, String>();
+		final Map<Long, String> tasksCodePathMap = new HashMap<Long, String>();
 		exportSubTasksToXML(out, INDENT, null, "", tasksCodePathMap); //$NON-NLS-1$
-		// Exportation des contributions
-		Contribution[] contributions = contributionDAO.getContributions(null, null, null,
-				null);
-		if (contributions.length > 0) {
-			XmlHelper.startXmlNode(out, "  ", XmlHelper.CONTRIBUTIONS_NODE); //$NON-NLS-1$
-			for (int i = 0; i < contributions.length; i++) {
-				Contribution contribution = contributions[i];
+		// Exportation des contributions (parcourues sans être toutes chargées
+		// en mémoire)
+		IRowHandler<Contribution, IOException> contributionsHandler = new IRowHandler<Contribution, IOException>() {
+			boolean first = true;
+			@Override
+			public void handle(Contribution contribution) throws IOException {
+				if (first) {
+					XmlHelper.startXmlNode(out, "  ", XmlHelper.CONTRIBUTIONS_NODE); //$NON-NLS-1$
+					first = false;
+				}
 				XmlHelper.print(out, "    <"); //$NON-NLS-1$
 				XmlHelper.print(out, XmlHelper.CONTRIBUTION_NODE);
 				XmlHelper.printTextAttribute(out, XmlHelper.YEAR_ATTRIBUTE,
@@ -735,6 +1091,19 @@ public class ModelMgrImpl implements IModelMgr {
 								.getTaskId())));
 				XmlHelper.endXmlNode(out, "    ", XmlHelper.CONTRIBUTION_NODE); //$NON-NLS-1$
 			}
+		};
+		// Les contributions archivées sont exportées en premier
+		int contributionsCount = 0;
+		for (int year : archive.getYears()) {
+			ContributionSegment segment = getArchivedSegment(year);
+			for (int i = 0; i < segment.size(); i++) {
+				contributionsHandler.handle(segment.getContribution(i, factory));
+				contributionsCount++;
+			}
+		}
+		contributionsCount += contributionDAO.getContributions(null, null,
+				null, null, EXPORT_FETCH_SIZE, contributionsHandler);
+		if (contributionsCount > 0) {
 			XmlHelper.endXmlNode(out, "  ", XmlHelper.CONTRIBUTIONS_NODE); //$NON-NLS-1$
 		}
 		XmlHelper.endXmlNode(out, "", "model"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -829,8 +1198,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Collaborator getCollaborator(String login) {
-		Collaborator[] collaborators = collaboratorDAO.select(new String[] { "login" }, new Object[] { login }, null, -1);
-		return collaborators.length > 0 ? collaborators[0] : null;
+		return collaboratorDAO.selectUnique(new String[] { "login" }, new Object[] { login });
 	}
 
 	/*
@@ -911,7 +1279,17 @@ public class ModelMgrImpl implements IModelMgr {
 		// Control sur la date
 		checkInterval(fromDate, toDate);
 		// Récupération du total
-		return contributionDAO.getContributionsSum(contributor, task, fromDate, toDate);
+		long sum = contributionDAO.getContributionsSum(contributor, task, fromDate, toDate);
+		Collection<Integer> years = getArchivedYears(fromDate, toDate);
+		if (!years.isEmpty()) {
+			Long contributorId = contributor != null ? contributor.getId() : null;
+			Set<Long> taskIds = task != null ? getTaskIds(task) : null;
+			for (int year : years) {
+				sum += getArchivedSegment(year).sum(toFromKey(fromDate),
+						toToKey(toDate), contributorId, taskIds);
+			}
+		}
+		return sum;
 	}
 
 	/*
@@ -928,7 +1306,17 @@ public class ModelMgrImpl implements IModelMgr {
 		// Control sur la date
 		checkInterval(fromDate, toDate);
 		// Récupération du compte
-		return contributionDAO.getContributionsCount(contributor, task, fromDate, toDate);
+		int count = contributionDAO.getContributionsCount(contributor, task, fromDate, toDate);
+		Collection<Integer> years = getArchivedYears(fromDate, toDate);
+		if (!years.isEmpty()) {
+			Long contributorId = contributor != null ? contributor.getId() : null;
+			Set<Long> taskIds = task != null ? getTaskIds(task) : null;
+			for (int year : years) {
+				count += getArchivedSegment(year).count(toFromKey(fromDate),
+						toToKey(toDate), contributorId, taskIds);
+			}
+		}
+		return count;
 	}
 
 	/*
@@ -951,7 +1339,75 @@ public class ModelMgrImpl implements IModelMgr {
 		checkInterval(fromDate, toDate);
 
 		// Retour du résultat
-		return contributionDAO.getContributions(contributor, task, fromDate, toDate);
+		return selectContributions(contributor, task, fromDate, toDate);
+	}
+
+	/**
+	 * Retourne les contributions (archivées ou non) associées aux paramètres
+	 * spécifiés, dans l'ordre des contributions de la base de données (date,
+	 * collaborateur et tache).
+	 * 
+	 * @param contributor
+	 *            le collaborateur associé aux contributions (optionnel).
+	 * @param task
+	 *            la tache associée aux contributions (optionnel).
+	 * @param fromDate
+	 *            la date de départ (optionnelle).
+	 * @param toDate
+	 *            la date de fin (optionnelle).
+	 * @return les contributions.
+	 */
+	private Contribution[] selectContributions(Collaborator contributor,
+			Task task, Calendar fromDate, Calendar toDate) {
+		Contribution[] contributions = contributionDAO.getContributions(contributor, task, fromDate, toDate);
+		List<Contribution> archived = getArchivedContributions(
+				getArchivedYears(fromDate, toDate), contributor, task,
+				fromDate, toDate);
+		if (archived.isEmpty()) {
+			return contributions;
+		}
+		if (task != null) {
+			// Sub task contributions are sorted by task path
+			Set<Long> taskIds = new HashSet<Long>();
+			for (Contribution contribution : archived) {
+				taskIds.add(contribution.getTaskId());
+			}
+			long[] ids = new long[taskIds.size()];
+			int idx = 0;
+			for (long taskId : taskIds) {
+				ids[idx++] = taskId;
+			}
+			final Map<Long, String> paths = new HashMap<Long, String>();
+			for (Task theTask : getTasks(ids)) {
+				paths.put(theTask.getId(), theTask.getFullPath());
+			}
+			Collections.sort(archived, new Comparator<Contribution>() {
+				@Override
+				public int compare(Contribution c1, Contribution c2) {
+					int result = c1.getDateKey() - c2.getDateKey();
+					if (result == 0) {
+						result = c1.getContributorId() < c2.getContributorId() ? -1 : (c1.getContributorId() == c2.getContributorId() ? 0 : 1);
+					}
+					if (result == 0) {
+						result = paths.get(c1.getTaskId()).compareTo(paths.get(c2.getTaskId()));
+					}
+					return result;
+				}
+			});
+		}
+		// Merge (the archived and the database contributions are sorted by
+		// date)
+		Contribution[] result = new Contribution[contributions.length + archived.size()];
+		int i = 0;
+		int j = 0;
+		for (int k = 0; k < result.length; k++) {
+			if (j == archived.size() || (i < contributions.length && contributions[i].getDateKey() <= archived.get(j).getDateKey())) {
+				result[k] = contributions[i++];
+			} else {
+				result[k] = archived.get(j++);
+			}
+		}
+		return result;
 	}
 
 	/*
@@ -965,7 +1421,31 @@ public class ModelMgrImpl implements IModelMgr {
 	public Collaborator[] getContributors(Task task, Calendar fromDate,
 			Calendar toDate) throws ModelException {
 		checkInterval(fromDate, toDate);
-		return collaboratorDAO.getContributors(task, fromDate, toDate);
+		Collaborator[] contributors = collaboratorDAO.getContributors(task, fromDate, toDate);
+		List<Contribution> archived = getArchivedContributions(
+				getArchivedYears(fromDate, toDate), null, task, fromDate,
+				toDate);
+		if (archived.isEmpty()) {
+			return contributors;
+		}
+		Map<Long, Collaborator> contributorsMap = new HashMap<Long, Collaborator>();
+		for (Collaborator contributor : contributors) {
+			contributorsMap.put(contributor.getId(), contributor);
+		}
+		for (Contribution contribution : archived) {
+			if (!contributorsMap.containsKey(contribution.getContributorId())) {
+				contributorsMap.put(contribution.getContributorId(), collaboratorDAO.selectByPK(contribution.getContributorId()));
+			}
+		}
+		// Same order as the database contributors
+		contributors = contributorsMap.values().toArray(new Collaborator[contributorsMap.size()]);
+		Arrays.sort(contributors, new Comparator<Collaborator>() {
+			@Override
+			public int compare(Collaborator c1, Collaborator c2) {
+				return c1.getLogin().compareTo(c2.getLogin());
+			}
+		});
+		return contributors;
 	}
 
 	/**
@@ -986,6 +1466,208 @@ public class ModelMgrImpl implements IModelMgr {
 					Strings.getString("ModelMgr.errors.FROM_DATE_MUST_BE_BEFORE_TO_DATE")); //$NON-NLS-1$
 	}
 
+	/**
+	 * Checks that contributions don't belong to an archived year.
+	 * 
+	 * @param contributions
+	 *            the contributions to check.
+	 * @throws ModelException
+	 *             thrown if a contribution belongs to an archived year.
+	 */
+	private void checkNotArchived(Contribution... contributions)
+			throws ModelException {
+		for (Contribution contribution : contributions) {
+			if (archive.isArchived(contribution.getYear())) {
+				throw new ModelException(Strings.getString(
+						"ModelMgr.errors.ARCHIVED_CONTRIBUTIONS_CANNOT_BE_MODIFIED", //$NON-NLS-1$
+						String.valueOf(contribution.getYear())));
+			}
+		}
+	}
+
+	/**
+	 * Returns the archived years of an interval.
+	 * 
+	 * @param fromDate
+	 *            start of the interval (optional).
+	 * @param toDate
+	 *            end of the interval (optional).
+	 * @return the archived years.
+	 */
+	private Collection<Integer> getArchivedYears(Calendar fromDate,
+			Calendar toDate) {
+		Collection<Integer> years = archive.getYears();
+		if (years.isEmpty() || (fromDate == null && toDate == null)) {
+			return years;
+		}
+		List<Integer> result = new ArrayList<Integer>();
+		for (int year : years) {
+			if ((fromDate == null || year >= fromDate.get(Calendar.YEAR))
+					&& (toDate == null || year <= toDate.get(Calendar.YEAR))) {
+				result.add(year);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the segment of an archived year.
+	 * 
+	 * @param year
+	 *            the year.
+	 * @return the segment.
+	 */
+	private ContributionSegment getArchivedSegment(int year) {
+		try {
+			return archive.getSegment(year);
+		} catch (IOException e) {
+			log.error("Archive read failure", e); //$NON-NLS-1$
+			throw new IllegalStateException(
+					"Couldn't read the archived contributions of " + year, e);
+		}
+	}
+
+	/**
+	 * Returns the archived contributions associated to the given parameters,
+	 * sorted by date.
+	 * 
+	 * @param years
+	 *            the archived years to read.
+	 * @param contributor
+	 *            the contributor (optional).
+	 * @param task
+	 *            the task ; the contributions of its sub tasks are returned
+	 *            too (optional).
+	 * @param fromDate
+	 *            start of the interval (optional).
+	 * @param toDate
+	 *            end of the interval (optional).
+	 * @return the archived contributions.
+	 */
+	private List<Contribution> getArchivedContributions(
+			Collection<Integer> years, Collaborator contributor, Task task,
+			Calendar fromDate, Calendar toDate) {
+		List<Contribution> result = new ArrayList<Contribution>();
+		if (years.isEmpty()) {
+			return result;
+		}
+		Set<Long> taskIds = task != null ? getTaskIds(task) : null;
+		int fromKey = toFromKey(fromDate);
+		int toKey = toToKey(toDate);
+		for (int year : years) {
+			ContributionSegment segment = getArchivedSegment(year);
+			for (int i = segment.indexOf(fromKey); i < segment.size()
+					&& segment.getDateKey(i) <= toKey; i++) {
+				if ((contributor == null || segment.getContributorId(i) == contributor.getId())
+						&& (taskIds == null || taskIds.contains(segment.getTaskId(i)))) {
+					result.add(segment.getContribution(i, factory));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param fromDate
+	 *            start of an interval (optional).
+	 * @return the start of the interval in the <code>yyyyMMdd</code> format.
+	 */
+	private static int toFromKey(Calendar fromDate) {
+		return fromDate != null ? IntervalRequestHelper.toDateKey(fromDate) : 0;
+	}
+
+	/**
+	 * @param toDate
+	 *            end of an interval (optional).
+	 * @return the end of the interval in the <code>yyyyMMdd</code> format.
+	 */
+	private static int toToKey(Calendar toDate) {
+		return toDate != null ? IntervalRequestHelper.toDateKey(toDate) : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @param task
+	 *            the task.
+	 * @return the identifiers of the task and of its sub tasks.
+	 */
+	private Set<Long> getTaskIds(Task task) {
+		Set<Long> result = new HashSet<Long>();
+		result.add(task.getId());
+		for (Task subTask : taskDAO.select(new String[] { PATH_ATTRIBUTE }, new Object[] { new LikeStatement(task.getFullPath() + "%") }, null, -1)) { //$NON-NLS-1$
+			result.add(subTask.getId());
+		}
+		return result;
+	}
+
+	/**
+	 * Archived contributions of several years, read on demand.
+	 */
+	private class ArchivedContributions extends AbstractCollection<Contribution> {
+
+		/** Archived years */
+		private final Collection<Integer> years;
+
+		/**
+		 * Default constructor.
+		 * 
+		 * @param years
+		 *            the archived years.
+		 */
+		private ArchivedContributions(Collection<Integer> years) {
+			this.years = years;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#size()
+		 */
+		@Override
+		public int size() {
+			int size = 0;
+			for (int year : years) {
+				size += getArchivedSegment(year).size();
+			}
+			return size;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#iterator()
+		 */
+		@Override
+		public Iterator<Contribution> iterator() {
+			final Iterator<Integer> yearsIterator = years.iterator();
+			return new Iterator<Contribution>() {
+				private ContributionSegment segment;
+				private int idx;
+
+				@Override
+				public boolean hasNext() {
+					while (segment == null || idx >= segment.size()) {
+						if (!yearsIterator.hasNext()) {
+							return false;
+						}
+						segment = getArchivedSegment(yearsIterator.next());
+						idx = 0;
+					}
+					return true;
+				}
+
+				@Override
+				public Contribution next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return segment.getContribution(idx++, factory);
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1006,10 +1688,11 @@ public class ModelMgrImpl implements IModelMgr {
 
 		// Control sur la date
 		checkInterval(fromDate, toDate);
-		int daysCount = DateHelper.countDaysBetween(fromDate, toDate) + 1;
+		int fromDay = EpochDay.of(fromDate);
+		int daysCount = EpochDay.of(toDate) - fromDay + 1;
 
 		// Récupération des contributions
-		Contribution[] contributionsArray = contributionDAO.getContributions(contributor,
+		Contribution[] contributionsArray = selectContributions(contributor,
 				task, fromDate, toDate);
 
 		// Rangement des contributions par identifiant de tache
@@ -1028,10 +1711,7 @@ public class ModelMgrImpl implements IModelMgr {
 				taskContributionsCache.put(contribution.getTaskId(),
 						taskContributions);
 			}
-			Calendar contributionDate = new GregorianCalendar(
-					contribution.getYear(), contribution.getMonth() - 1,
-					contribution.getDay());
-			int idx = DateHelper.countDaysBetween(fromDate, contributionDate);
+			int idx = contribution.getEpochDay() - fromDay;
 			taskContributions.getContributions()[idx] = contribution;
 		}
 
@@ -1082,8 +1762,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Duration[] getDurations() {
-		return durationDAO.select(null, null,
-				new Object[] { new AscendantOrderByClause("id") }, -1);
+		return durationDAO.getDurations();
 	}
 
 	/*
@@ -1093,9 +1772,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Duration[] getActiveDurations() {
-		return durationDAO.select(
-				new String[] { "isActive" }, new Object[] { Boolean.TRUE },
-				new Object[] { new AscendantOrderByClause("id") }, -1);
+		return durationDAO.getActiveDurations();
 	}
 
 	/*
@@ -1250,8 +1927,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Task getTask(String taskPath, String taskCode) {
-		Task[] tasks = taskDAO.select(new String[] { PATH_ATTRIBUTE, CODE_ATTRIBUTE }, new Object[] { taskPath, taskCode }, null, -1);
-		return tasks.length > 0 ? tasks[0] : null;
+		return taskDAO.selectUnique(new String[] { PATH_ATTRIBUTE, CODE_ATTRIBUTE }, new Object[] { taskPath, taskCode });
 	}
 
 	/*
@@ -1353,45 +2029,10 @@ public class ModelMgrImpl implements IModelMgr {
 	
 	private List<TaskSums> getSubTasksSums(Long taskId, String tasksPath, Calendar fromDate,
 			Calendar toDate) {
-		// Compute sums
-		List<TaskSums> tasksSums = taskDAO.getTasksSums(taskId, tasksPath);
-
-		// Add contributions
-		Map<Long, TaskContributionsSums> contributionSums = contributionDAO.getTasksSums(taskId, tasksPath, fromDate, toDate);
-		for (TaskSums taskSums : tasksSums) {
-			long theTaskId = taskSums.getTask().getId();
-			taskSums.setContributionsSums(contributionSums.get(theTaskId));
-		}
-		
-		// If a start date has been specified, initially consumed must be fixed by adding past contributions
-		if (fromDate != null) {
-			Calendar date = (Calendar) fromDate.clone();
-			date.add(Calendar.DATE, -1);
-			Map<Long, TaskContributionsSums> pastContributionsSums = contributionDAO.getTasksSums(taskId, tasksPath, null, date);
-			for (TaskSums taskSums : tasksSums) {
-				long theTaskId = taskSums.getTask().getId();
-				taskSums.setInitiallyConsumedSum(taskSums.getInitiallyConsumedSum() + pastContributionsSums.get(theTaskId).getConsumedSum());
-			}
-		}
-		
-		// If an end date has been specified, estimated time to complete must be fixed by adding future contributions
-		if (toDate != null) {
-			Calendar date = (Calendar) toDate.clone();
-			date.add(Calendar.DATE, +1);
-			Map<Long, TaskContributionsSums> futureContributionsSums = contributionDAO.getTasksSums(taskId, tasksPath, date, null);
-			for (TaskSums taskSums : tasksSums) {
-				long theTaskId = taskSums.getTask().getId();
-				try {
-				taskSums.setTodoSum(taskSums.getTodoSum() + futureContributionsSums.get(theTaskId).getConsumedSum());
-				}
-				catch (NullPointerException e) {
-					throw e;
-				}
-			}
-		}
-		
-		// Return the result
-		return tasksSums;
+		// Compute sums (the contributions before the start date are added to
+		// the initially consumed, the ones after the end date to the
+		// estimated time to complete)
+		return taskDAO.getTasksSums(taskId, tasksPath, fromDate, toDate);
 	}
 	
 	/*
@@ -1444,12 +2085,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public void moveDownTask(Task task) throws ModelException {
-		// Le chemin de la tache et son numéro ne doivent pas avoir changés
-		// pour pouvoir invoquer cette méthode (la modification des
-		// attributs
-		// n'est autorisée que pour les champs autres que le chemin et le
-		// numéro.
-		checkTaskPath(task);
+		// La version de la tache est vérifiée lors de l'inversion
 
 		// Recherche de la tache à descendre (incrémentation du numéro)
 		byte taskToMoveUpNumber = (byte) (task.getNumber() + 1);
@@ -1472,9 +2108,7 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public void moveTaskUpOrDown(Task task, int newTaskNumber)
 			throws ModelException {
-		// Le chemin de la tache et son numéro ne doivent pas avoir changés
-		// pour pouvoir invoquer cette méthode
-		checkTaskPath(task);
+		// La version de la tache est vérifiée lors de la première inversion
 
 		// Pour que la méthode fonctionne, il faut que le nombre
 		// cible soit différent du nombre courant
@@ -1514,12 +2148,9 @@ public class ModelMgrImpl implements IModelMgr {
 		 * Controles d'intégrité.
 		 */
 
-		// Le chemin de la tache et son numéro ne doivent pas avoir changés
-		// pour pouvoir invoquer cette méthode (la modification des
-		// attributs
-		// n'est autorisée que pour les champs autres que le chemin et le
-		// numéro.
-		checkTaskPath(task);
+		// Le chemin de la tache de destination et son numéro ne doivent pas
+		// avoir changés (la version de la tache déplacée est vérifiée lors
+		// de sa mise à jour)
 		if (destParentTask != null)
 			checkTaskPath(destParentTask);
 
@@ -1563,11 +2194,16 @@ public class ModelMgrImpl implements IModelMgr {
 		byte number = taskDAO.newTaskNumber(destPath);
 		task.setPath(destPath);
 		task.setNumber(number);
-		taskDAO.update(task);
+		updateTaskAttributes(task, TASK_PATH_ATTRIBUTES);
+		if (srcParentTask != null)
+			taskDAO.updateSubTasksCount(srcParentTask.getId(), -1);
+		if (destParentTask != null)
+			taskDAO.updateSubTasksCount(destParentTask.getId(), 1);
 
 		// Déplacement des sous-taches
 		changeTasksPaths(subTasksToMove, initialTaskFullPath.length(),
 				task.getFullPath());
+		taskDAO.moveInClosure(task, destParentTask);
 
 		// Reconstruction des numéros de tâches d'où la tâche provenait
 		// et qui a laissé un 'trou' en étant déplacée
@@ -1583,12 +2219,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public void moveUpTask(Task task) throws ModelException {
-		// Le chemin de la tache et son numéro ne doivent pas avoir changés
-		// pour pouvoir invoquer cette méthode (la modification des
-		// attributs
-		// n'est autorisée que pour les champs autres que le chemin et le
-		// numéro.
-		checkTaskPath(task);
+		// La version de la tache est vérifiée lors de l'inversion
 
 		// Recherche de la tache à monter (décrémentation du numéro)
 		byte taskToMoveDownNumber = (byte) (task.getNumber() - 1);
@@ -1620,7 +2251,7 @@ public class ModelMgrImpl implements IModelMgr {
 				task.setNumber(expectedNumber);
 				String fullPath = task.getFullPath();
 				changeTasksPaths(subTasks, fullPath.length(), fullPath);
-				taskDAO.update(task);
+				taskDAO.update(task, TASK_PATH_ATTRIBUTES);
 			}
 		}
 	}
@@ -1656,9 +2287,11 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public void removeContribution(Contribution contribution,
 			boolean updateEstimatedTimeToComlete) throws ModelException {
+		checkNotArchived(contribution);
 		// Faut-il mettre à jour automatiquement le RAF de la tache ?
 		if (!updateEstimatedTimeToComlete) {
 			// Suppression de la contribution
+			rollupDAO.removeFromRollups(new Contribution[] { contribution });
 			contributionDAO.delete(contribution);
 		} else {
 			// Récupération des éléments de la contribution
@@ -1685,11 +2318,12 @@ public class ModelMgrImpl implements IModelMgr {
 							Strings.getString("ModelMgr.errors.CONTRIBUTION_UPDATE_DETECTED")); //$NON-NLS-1$
 
 				// Suppression de la contribution
+				rollupDAO.removeFromRollups(new Contribution[] { contribution });
 				contributionDAO.delete(contribution);
 
 				// Mise à jour du RAF de la tache
 				task.setTodo(task.getTodo() + contribution.getDurationId());
-				taskDAO.update(task);
+				taskDAO.updateTodo(task.getId(), task.getTodo());
 			}
 		}
 	}
@@ -1702,10 +2336,12 @@ public class ModelMgrImpl implements IModelMgr {
 	 * .beans.Contribution[])
 	 */
 	@Override
-	public void removeContributions(Contribution[] contributions) {
-		// Suppression de la contribution
-		for (int i = 0; i < contributions.length; i++)
-			contributionDAO.delete(contributions[i]);
+	public void removeContributions(Contribution[] contributions)
+			throws ModelException {
+		checkNotArchived(contributions);
+		// Suppression des contributions
+		rollupDAO.removeFromRollups(contributions);
+		contributionDAO.deleteAll(contributions);
 	}
 
 	/*
@@ -1724,6 +2360,9 @@ public class ModelMgrImpl implements IModelMgr {
 
 		// Vérification de la non utilisation de la durée
 		boolean isUsed = contributionDAO.count(new String[] { "durationId" }, new Object[] { duration.getId()}) > 0;
+		for (Iterator<Integer> it = archive.getYears().iterator(); !isUsed && it.hasNext(); ) {
+			isUsed = getArchivedSegment(it.next()).containsDuration(duration.getId());
+		}
 		if (isUsed)
 			throw new ModelException(
 					Strings.getString("ModelMgr.errors.UNMOVEABLE_DURATION")); //$NON-NLS-1$
@@ -1741,10 +2380,6 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public synchronized void removeTask(Task task) throws ModelException {
-		// Vérification de l'adéquation des attibuts de la tache avec les
-		// données en base
-		checkTaskPath(task);
-
 		// Vérification que la tache n'est pas utilisé
 		long contribsNb = getContributionsCount(null, task, null, null);
 		if (contribsNb != 0)
@@ -1755,11 +2390,22 @@ public class ModelMgrImpl implements IModelMgr {
 		// numéros de taches
 		Task parentTask = getParentTask(task);
 
+		// Remove the sub tree from the search index and from the closure (both
+		// are read by task identifier)
+		taskDAO.removeFromSearchIndex(task);
+		taskDAO.removeFromClosure(task);
+
+		// Delete the task (the deletion fails if the task has been modified
+		// or deleted, in which case its path may be wrong : the transaction
+		// is rolled back before the sub tasks are deleted using that path)
+		if (!taskDAO.delete(task))
+			throw new ModelException(
+					Strings.getString("ModelMgr.errors.TASK_CONCURRENT_UPDATE")); //$NON-NLS-1$
+
 		// Delete sub tasks
 		taskDAO.delete(new String[] { PATH_ATTRIBUTE }, new Object[] { new LikeStatement(task.getFullPath() + "%") });
-
-		// Delete the task
-		taskDAO.delete(task);
+		if (parentTask != null)
+			taskDAO.updateSubTasksCount(parentTask.getId(), -1);
 
 		// Reconstruction des numéros de taches
 		rebuildSubtasksNumbers(parentTask);
@@ -1773,8 +2419,11 @@ public class ModelMgrImpl implements IModelMgr {
 	 *            la 1° tache.
 	 * @param task2
 	 *            la 2nde tache.
+	 * @throws ModelException
+	 *             levé dans le cas où la 1° tache a été modifiée ou
+	 *             supprimée.
 	 */
-	private void toggleTasks(Task task1, Task task2) {
+	private void toggleTasks(Task task1, Task task2) throws ModelException {
 		byte task1InitialNumber = task1.getNumber();
 		byte task2InitialNumber = task2.getNumber();
 		String task1InitialFullpath = task1.getFullPath();
@@ -1784,21 +2433,22 @@ public class ModelMgrImpl implements IModelMgr {
 		Task[] task1subTasks = getSubTasks(task1);
 		Task[] task2subTasks = getSubTasks(task2);
 
-		// Changement des numéros de la tache 1 avec une valeur fictive
+		// Changement des numéros de la tache 1 avec une valeur fictive (la
+		// version de la tache 1 est vérifiée avant toute autre modification)
 		task1.setNumber((byte) 0);
-		taskDAO.update(task1);
+		updateTaskAttributes(task1, TASK_PATH_ATTRIBUTES);
 		changeTasksPaths(task1subTasks, task1InitialFullpath.length(),
 				task1.getFullPath());
 
 		// Changement des numéros de la tache 2
 		task2.setNumber(task1InitialNumber);
-		taskDAO.update(task2);
+		taskDAO.update(task2, TASK_PATH_ATTRIBUTES);
 		changeTasksPaths(task2subTasks, task2InitialFullpath.length(),
 				task2.getFullPath());
 
 		// Changement des numéros de la tache 1
 		task1.setNumber(task2InitialNumber);
-		taskDAO.update(task1);
+		updateTaskAttributes(task1, TASK_PATH_ATTRIBUTES);
 		changeTasksPaths(task1subTasks, task1InitialFullpath.length(),
 				task1.getFullPath());
 	}
@@ -1842,6 +2492,7 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public Contribution updateContribution(Contribution contribution,
 			boolean updateEstimatedTimeToComlete) throws ModelException {
+		checkNotArchived(contribution);
 		// La durée existe-t-elle ?
 		if (getDuration(contribution.getDurationId()) == null) {
 			throw new ModelException(
@@ -1852,7 +2503,9 @@ public class ModelMgrImpl implements IModelMgr {
 		// Faut-il mettre à jour automatiquement le RAF de la tache ?
 		if (!updateEstimatedTimeToComlete) {
 			// Mise à jour des données
+			rollupDAO.removeFromRollups(new Contribution[] { contribution });
 			result = contributionDAO.update(contribution);
+			rollupDAO.addToRollups(new Contribution[] { result });
 		} else {
 			// Récupération des éléments de la contribution
 			Collaborator contributor = getCollaborator(contribution
@@ -1873,12 +2526,14 @@ public class ModelMgrImpl implements IModelMgr {
 				long newDuration = contribution.getDurationId();
 
 				// Mise à jour de la contribution
+				rollupDAO.removeFromRollups(new Contribution[] { contribution });
 				result = contributionDAO.update(contribution);
+				rollupDAO.addToRollups(new Contribution[] { result });
 
 				// Mise à jour du RAF de la tache
 				long newEtc = task.getTodo() + oldDuration - newDuration;
 				task.setTodo(newEtc > 0 ? newEtc : 0);
-				taskDAO.update(task);
+				taskDAO.updateTodo(task.getId(), task.getTodo());
 			}
 		}
 
@@ -1901,14 +2556,18 @@ public class ModelMgrImpl implements IModelMgr {
 		if (getSubTasksCount(newContributionTask.getId()) > 0)
 			throw new ModelException(
 					Strings.getString("ModelMgr.errors.A_TASK_WITH_SUBTASKS_CANNOT_ACCEPT_CONTRIBUTIONS")); //$NON-NLS-1$
+		checkNotArchived(contributions);
 
-		// Mise à jour des identifiants de tâche
+		// Mise à jour des identifiants de tâche (l'identifiant de tâche fait
+		// partie de la clé primaire, les contributions sont donc supprimées
+		// puis réinsérées)
+		rollupDAO.removeFromRollups(contributions);
+		contributionDAO.deleteAll(contributions);
 		for (int i = 0; i < contributions.length; i++) {
-			Contribution contribution = contributions[i];
-			contributionDAO.delete(contribution);
-			contribution.setTaskId(newContributionTask.getId());
-			contributionDAO.insert(contribution);
+			contributions[i].setTaskId(newContributionTask.getId());
 		}
+		contributionDAO.insertAll(contributions);
+		rollupDAO.addToRollups(contributions);
 
 		// Retour de la tache modifiée
 		return contributions;
@@ -1946,12 +2605,9 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Task updateTask(Task task) throws ModelException {
-		// Le chemin de la tache et son numéro ne doivent pas avoir changés
-		// pour pouvoir invoquer cette méthode (la modification des
-		// attributs
-		// n'est autorisée que pour les champs autres que le chemin et le
-		// numéro.
-		checkTaskPath(task);
+		// Le chemin de la tache et son numéro ne peuvent pas être modifiés
+		// par cette méthode ; la version de la tache (vérifiée lors de la
+		// mise à jour) garantit qu'ils n'ont pas changé en base
 
 		// Check sur l'unicité du code pour le chemin considéré
 		Task parentTask = getParentTask(task);
@@ -1961,16 +2617,20 @@ public class ModelMgrImpl implements IModelMgr {
 			throw new ModelException(
 					Strings.getString("ModelMgr.errors.TASK_CODE_ALREADY_IN_USE")); //$NON-NLS-1$
 
-		// Mise à jour des données
-		task = taskDAO.update(task);
+		// Mise à jour des données (le nombre de sous-taches est maintenu
+		// par le DAO)
+		task = updateTaskAttributes(task, TASK_UPDATABLE_ATTRIBUTES);
+		// The sub tasks count is maintained by the DAO (it may have changed
+		// since the task was read)
+		task.setSubTasksCount(taskDAO.getSubTasksCount(task.getId()));
+		taskDAO.updateSearchIndex(task);
 
 		// Retour de la tache modifiée
 		return task;
 	}
 
 	private Task getTask(String taskPath, byte taskNumber) {
-		Task[] tasks = taskDAO.select(new String[] { PATH_ATTRIBUTE, "number" }, new Object[] { taskPath, taskNumber }, null, -1);
-		return tasks.length > 0 ? tasks[0] : null;
+		return taskDAO.selectUnique(new String[] { PATH_ATTRIBUTE, "number" }, new Object[] { taskPath, taskNumber });
 	}
 
 	private Task[] getTasks(long[] tasksIds) {
@@ -2170,7 +2830,13 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Collection<Integer> getContributionYears() {
-		return contributionDAO.getContributionYears();
+		Collection<Integer> years = contributionDAO.getContributionYears();
+		if (archive.getYears().isEmpty()) {
+			return years;
+		}
+		Set<Integer> result = new TreeSet<Integer>(years);
+		result.addAll(archive.getYears());
+		return new ArrayList<Integer>(result);
 	}
 
 	/* (non-Javadoc)
@@ -2219,7 +2885,7 @@ public class ModelMgrImpl implements IModelMgr {
 		// is considered
 		Calendar[] interval = null;
 		if (start == null || intervalCount == null) {
-			interval = contributionDAO.getContributionsInterval(rootTask != null ? rootTask.getFullPath() : null);
+			interval = getContributionsInterval(rootTask);
 			// If no interval is found and if no start has been given, it not possible to continue
 			if (start == null && interval == null) {
 				throw new ModelException("No contributions found");
@@ -2248,10 +2914,10 @@ public class ModelMgrImpl implements IModelMgr {
 				intervalCount = (end.get(Calendar.YEAR) - start.get(Calendar.YEAR)) * 12 + (end.get(Calendar.MONTH) - start.get(Calendar.MONTH));
 				break;
 			case WEEK:
-				intervalCount = DateHelper.countDaysBetween(start, end) / 7;
+				intervalCount = (EpochDay.of(end) - EpochDay.of(start)) / 7;
 				break;
 			case DAY:
-				intervalCount = DateHelper.countDaysBetween(start, end);
+				intervalCount = EpochDay.of(end) - EpochDay.of(start);
 			}
 		} else if (intervalCount < 0) {
 			throw new ModelException(
@@ -2270,10 +2936,14 @@ public class ModelMgrImpl implements IModelMgr {
 		if (dryRun) {
 			return null;
 		} else {
+			Calendar end = (Calendar) start.clone();
+			end.add(intervalType.getIntType(), intervalCount);
+			Collection<Integer> archivedYears = getArchivedYears(start, end);
 			return reportDAO.buildReport(start, intervalType, intervalCount,
 					rootTask, taskDepth, onlyKeepTasksWithContributions,
 					byContributor, contributorCentricMode, contributorIds,
-					orderContributorsBy);
+					orderContributorsBy,
+					archivedYears.isEmpty() ? null : new ArchivedContributions(archivedYears));
 		}
 	}
 
@@ -2532,14 +3202,46 @@ public class ModelMgrImpl implements IModelMgr {
 
 	@Override
 	public Calendar[] getContributionsInterval(Long rootTaskId) {
-		String rootTaskPath = null;
-		if (rootTaskId != null) {
-			Task rootTask = getTask(rootTaskId);
-			if (rootTask != null) {
-				rootTaskPath = rootTask.getFullPath();
+		return getContributionsInterval(rootTaskId != null ? getTask(rootTaskId) : null);
+	}
+
+	/**
+	 * Returns the contributions interval (archived contributions included).
+	 * 
+	 * @param rootTask
+	 *            the root task (optional).
+	 * @return the interval, or <code>null</code> if there is no contribution.
+	 */
+	private Calendar[] getContributionsInterval(Task rootTask) {
+		Calendar[] interval = contributionDAO.getContributionsInterval(rootTask != null ? rootTask.getFullPath() : null);
+		SortedSet<Integer> years = archive.getYears();
+		if (years.isEmpty()) {
+			return interval;
+		}
+		Set<Long> taskIds = rootTask != null ? getTaskIds(rootTask) : null;
+		int minKey = interval != null ? IntervalRequestHelper.toDateKey(interval[0]) : Integer.MAX_VALUE;
+		int maxKey = interval != null ? IntervalRequestHelper.toDateKey(interval[1]) : 0;
+		for (int year : years) {
+			int[] range = getArchivedSegment(year).getDateRange(taskIds);
+			if (range != null) {
+				minKey = Math.min(minKey, range[0]);
+				maxKey = Math.max(maxKey, range[1]);
 			}
 		}
-		return contributionDAO.getContributionsInterval(rootTaskPath);
+		if (maxKey == 0) {
+			return null;
+		}
+		return new Calendar[] { fromDateKey(minKey), fromDateKey(maxKey) };
+	}
+
+	/**
+	 * @param dateKey
+	 *            the date in the <code>yyyyMMdd</code> format.
+	 * @return the date.
+	 */
+	private static Calendar fromDateKey(int dateKey) {
+		return new GregorianCalendar(dateKey / 10000, (dateKey / 100) % 100 - 1,
+				dateKey % 100);
 	}
 
 	/*
@@ -0,0 +1,310 @@
+package org.activitymgr.core.model.impl.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Contributions archive.
+ * <p>
+ * The contributions of the closed years may be moved from the database to
+ * an archive directory, that holds one {@link ContributionSegment} file per
+ * archived year (<code>contributions-&lt;year&gt;.seg</code>). The segment
+ * files are written once and never modified : a restored year keeps its
+ * segment as a backup (<code>.restored</code> suffix) until it is archived
+ * again.
+ * </p>
+ * <p>
+ * A segment is first written as a pending file (<code>.pending</code>
+ * suffix), which is only published once the deletion of the archived rows
+ * is committed, and discarded if it is rolled back. A pending file left by
+ * a crash is ignored : it is kept for a manual recovery.
+ * </p>
+ * <p>
+ * The archived years are listed when the archive is first used. The
+ * segments are read on demand and kept in memory as long as the memory
+ * allows it.
+ * </p>
+ * <p>
+ * An archive without directory is disabled : it has no archived years.
+ * The directory belongs to the database the application is connected to :
+ * it is part of the connection settings and is changed (or disabled) when
+ * the application opens another database.
+ * </p>
+ */
+public class ContributionArchive {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ContributionArchive.class);
+
+	/** Segment file name pattern */
+	private static final Pattern SEGMENT_PATTERN = Pattern
+			.compile("contributions-([0-9]{4})\\.seg"); //$NON-NLS-1$
+
+	/** Archive directory (<code>null</code> if the archive is disabled) */
+	private volatile File directory;
+
+	/** Archived years (lazily listed) */
+	private volatile SortedSet<Integer> years;
+
+	/** Segments cache */
+	private final ConcurrentMap<Integer, SoftReference<ContributionSegment>> segments = new ConcurrentHashMap<Integer, SoftReference<ContributionSegment>>();
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param directory
+	 *            the archive directory (<code>null</code> to disable the
+	 *            archive).
+	 */
+	public ContributionArchive(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Changes the archive directory. The archived years and the segments of
+	 * the previous directory are forgotten.
+	 *
+	 * @param directory
+	 *            the archive directory (<code>null</code> to disable the
+	 *            archive).
+	 */
+	public synchronized void setDirectory(File directory) {
+		this.directory = directory;
+		years = null;
+		segments.clear();
+	}
+
+	/**
+	 * @return <code>true</code> if an archive directory is configured.
+	 */
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * @return the archived years.
+	 */
+	public SortedSet<Integer> getYears() {
+		SortedSet<Integer> result = years;
+		if (result == null) {
+			synchronized (this) {
+				result = years;
+				if (result == null) {
+					result = listYears();
+					years = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param year
+	 *            the year.
+	 * @return <code>true</code> if the contributions of the year are
+	 *         archived.
+	 */
+	public boolean isArchived(int year) {
+		return getYears().contains(year);
+	}
+
+	/**
+	 * Returns the segment of an archived year.
+	 *
+	 * @param year
+	 *            the year.
+	 * @return the segment.
+	 * @throws IOException
+	 *             thrown if the segment cannot be read.
+	 */
+	public ContributionSegment getSegment(int year) throws IOException {
+		SoftReference<ContributionSegment> ref = segments.get(year);
+		ContributionSegment segment = ref != null ? ref.get() : null;
+		if (segment == null) {
+			InputStream in = new BufferedInputStream(new FileInputStream(
+					getSegmentFile(year)));
+			try {
+				segment = ContributionSegment.read(in);
+			} finally {
+				in.close();
+			}
+			if (segment.getYear() != year) {
+				throw new IOException("Segment of year " + segment.getYear()
+						+ " found instead of " + year);
+			}
+			segments.put(year, new SoftReference<ContributionSegment>(segment));
+		}
+		return segment;
+	}
+
+	/**
+	 * Writes the segment of a year in a pending file. The year is not
+	 * archived until the segment is {@link #publish(int) published}.
+	 *
+	 * @param segment
+	 *            the segment.
+	 * @throws IOException
+	 *             thrown if the year is already archived (or being
+	 *             archived) or if the segment cannot be written.
+	 */
+	public synchronized void writePending(ContributionSegment segment)
+			throws IOException {
+		int year = segment.getYear();
+		File file = getSegmentFile(year);
+		File pendingFile = getPendingFile(year);
+		if (file.exists()) {
+			throw new IOException(file + " already exists");
+		}
+		if (pendingFile.exists()) {
+			throw new IOException(pendingFile + " already exists");
+		}
+		File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Couldn't create " + directory);
+		}
+		FileOutputStream out = new FileOutputStream(pendingFile);
+		boolean written = false;
+		try {
+			BufferedOutputStream buffer = new BufferedOutputStream(out);
+			segment.write(buffer);
+			buffer.flush();
+			out.getFD().sync();
+			written = true;
+		} finally {
+			out.close();
+			if (!written) {
+				pendingFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Publishes the pending segment of a year : the year becomes archived.
+	 *
+	 * @param year
+	 *            the year.
+	 * @throws IOException
+	 *             thrown if the pending file cannot be renamed.
+	 */
+	public synchronized void publish(int year) throws IOException {
+		File file = getSegmentFile(year);
+		File pendingFile = getPendingFile(year);
+		if (!pendingFile.renameTo(file)) {
+			throw new IOException("Couldn't rename " + pendingFile + " to " + file);
+		}
+		log.info("Contributions of " + year + " archived in " + file); //$NON-NLS-1$ //$NON-NLS-2$
+		SortedSet<Integer> newYears = new TreeSet<Integer>(getYears());
+		newYears.add(year);
+		years = Collections.unmodifiableSortedSet(newYears);
+	}
+
+	/**
+	 * Discards the pending segment of a year.
+	 *
+	 * @param year
+	 *            the year.
+	 * @throws IOException
+	 *             thrown if the pending file cannot be deleted.
+	 */
+	public synchronized void discard(int year) throws IOException {
+		File pendingFile = getPendingFile(year);
+		if (pendingFile.exists() && !pendingFile.delete()) {
+			throw new IOException("Couldn't delete " + pendingFile);
+		}
+	}
+
+	/**
+	 * Removes the segment of a year.
+	 *
+	 * @param year
+	 *            the year.
+	 * @param backup
+	 *            <code>true</code> if the segment file must be kept as a
+	 *            backup.
+	 * @throws IOException
+	 *             thrown if the segment file cannot be removed.
+	 */
+	public synchronized void remove(int year, boolean backup)
+			throws IOException {
+		File file = getSegmentFile(year);
+		File backupFile = new File(file.getParentFile(), file.getName() + ".restored"); //$NON-NLS-1$
+		if (backup) {
+			if (backupFile.exists() && !backupFile.delete()) {
+				throw new IOException("Couldn't delete " + backupFile);
+			}
+			if (!file.renameTo(backupFile)) {
+				throw new IOException("Couldn't rename " + file + " to " + backupFile);
+			}
+		} else if (!file.delete()) {
+			throw new IOException("Couldn't delete " + file);
+		}
+		segments.remove(year);
+		SortedSet<Integer> newYears = new TreeSet<Integer>(getYears());
+		newYears.remove(year);
+		years = Collections.unmodifiableSortedSet(newYears);
+	}
+
+	/**
+	 * @return the years of the segment files found in the archive directory.
+	 */
+	private SortedSet<Integer> listYears() {
+		SortedSet<Integer> result = new TreeSet<Integer>();
+		File directory = this.directory;
+		if (directory != null) {
+			String[] names = directory.list(new FilenameFilter() {
+				@Override
+				public boolean accept(File dir, String name) {
+					return SEGMENT_PATTERN.matcher(name).matches();
+				}
+			});
+			if (names != null) {
+				for (String name : names) {
+					Matcher matcher = SEGMENT_PATTERN.matcher(name);
+					matcher.matches();
+					result.add(Integer.parseInt(matcher.group(1)));
+				}
+			}
+		}
+		return Collections.unmodifiableSortedSet(result);
+	}
+
+	/**
+	 * @param year
+	 *            the year.
+	 * @return the segment file of the year.
+	 */
+	private File getSegmentFile(int year) {
+		File directory = this.directory;
+		if (directory == null) {
+			throw new IllegalStateException("No archive directory");
+		}
+		return new File(directory, "contributions-" + year + ".seg"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * @param year
+	 *            the year.
+	 * @return the pending segment file of the year.
+	 */
+	private File getPendingFile(int year) {
+		File file = getSegmentFile(year);
+		return new File(file.getParentFile(), file.getName() + ".pending"); //$NON-NLS-1$
+	}
+
+}
@@ -0,0 +1,444 @@
+package org.activitymgr.core.model.impl.archive;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.IDTOFactory;
+
+/**
+ * Archived contributions of a year.
+ * <p>
+ * The contributions are stored by column (dates, contributors, tasks and
+ * durations), sorted by date, contributor and task. The date range of an
+ * interval is found by a binary search on the dates column.
+ * </p>
+ * <p>
+ * Once serialized, a segment is a GZIP stream made of :
+ * <ul>
+ * <li>a header (magic number, format version, year and contributions
+ * count) ;</li>
+ * <li>the dates column : the day of each contribution (<code>month*100 +
+ * day</code>), encoded as the difference with the previous one ;</li>
+ * <li>the contributors, tasks and durations columns.</li>
+ * </ul>
+ * Each value is encoded as a variable length integer (7 bits per byte), so
+ * that the small values (the dates differences, the identifiers, the
+ * durations) only need one or two bytes before compression.
+ * </p>
+ * <p>
+ * A segment is immutable.
+ * </p>
+ */
+public class ContributionSegment {
+
+	/** Magic number ("AMCS") */
+	private static final int MAGIC = 0x414D4353;
+
+	/** Format version */
+	private static final byte VERSION = 1;
+
+	/** Contributions order */
+	private static final Comparator<Contribution> ORDER = new Comparator<Contribution>() {
+		@Override
+		public int compare(Contribution c1, Contribution c2) {
+			int result = compare(c1.getDateKey(), c2.getDateKey());
+			if (result == 0) {
+				result = compare(c1.getContributorId(), c2.getContributorId());
+			}
+			if (result == 0) {
+				result = compare(c1.getTaskId(), c2.getTaskId());
+			}
+			return result;
+		}
+
+		private int compare(long l1, long l2) {
+			return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+		}
+	};
+
+	/** Year */
+	private final int year;
+
+	/** Dates (<code>yyyyMMdd</code>) */
+	private final int[] dateKeys;
+
+	/** Contributors identifiers */
+	private final long[] contributorIds;
+
+	/** Tasks identifiers */
+	private final long[] taskIds;
+
+	/** Durations */
+	private final long[] durationIds;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param year
+	 *            the year.
+	 * @param size
+	 *            the contributions count.
+	 */
+	private ContributionSegment(int year, int size) {
+		this.year = year;
+		dateKeys = new int[size];
+		contributorIds = new long[size];
+		taskIds = new long[size];
+		durationIds = new long[size];
+	}
+
+	/**
+	 * Builds a segment.
+	 *
+	 * @param year
+	 *            the year.
+	 * @param contributions
+	 *            the contributions of the year.
+	 * @return the segment.
+	 */
+	public static ContributionSegment build(int year,
+			Collection<Contribution> contributions) {
+		Contribution[] sorted = contributions
+				.toArray(new Contribution[contributions.size()]);
+		Arrays.sort(sorted, ORDER);
+		ContributionSegment segment = new ContributionSegment(year,
+				sorted.length);
+		for (int i = 0; i < sorted.length; i++) {
+			Contribution contribution = sorted[i];
+			if (contribution.getYear() != year) {
+				throw new IllegalArgumentException("Contribution " + contribution
+						+ " doesn't belong to year " + year);
+			}
+			segment.dateKeys[i] = contribution.getDateKey();
+			segment.contributorIds[i] = contribution.getContributorId();
+			segment.taskIds[i] = contribution.getTaskId();
+			segment.durationIds[i] = contribution.getDurationId();
+		}
+		return segment;
+	}
+
+	/**
+	 * @return the year.
+	 */
+	public int getYear() {
+		return year;
+	}
+
+	/**
+	 * @return the contributions count.
+	 */
+	public int size() {
+		return dateKeys.length;
+	}
+
+	/**
+	 * Returns the index of the first contribution of a date or after a date.
+	 *
+	 * @param dateKey
+	 *            the date (<code>yyyyMMdd</code>).
+	 * @return the contribution index (or {@link #size()} if all the
+	 *         contributions are before the date).
+	 */
+	public int indexOf(int dateKey) {
+		int low = 0;
+		int high = dateKeys.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (dateKeys[middle] < dateKey) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param idx
+	 *            the contribution index.
+	 * @return the contribution date (<code>yyyyMMdd</code>).
+	 */
+	public int getDateKey(int idx) {
+		return dateKeys[idx];
+	}
+
+	/**
+	 * @param idx
+	 *            the contribution index.
+	 * @return the contributor identifier.
+	 */
+	public long getContributorId(int idx) {
+		return contributorIds[idx];
+	}
+
+	/**
+	 * @param idx
+	 *            the contribution index.
+	 * @return the task identifier.
+	 */
+	public long getTaskId(int idx) {
+		return taskIds[idx];
+	}
+
+	/**
+	 * @param idx
+	 *            the contribution index.
+	 * @return the duration.
+	 */
+	public long getDurationId(int idx) {
+		return durationIds[idx];
+	}
+
+	/**
+	 * Counts the contributions of a date interval.
+	 *
+	 * @param fromKey
+	 *            the interval start (<code>yyyyMMdd</code>).
+	 * @param toKey
+	 *            the interval end (<code>yyyyMMdd</code>).
+	 * @param contributorId
+	 *            the contributor identifier (<code>null</code> for all the
+	 *            contributors).
+	 * @param taskIds
+	 *            the tasks identifiers (<code>null</code> for all the tasks).
+	 * @return the contributions count.
+	 */
+	public int count(int fromKey, int toKey, Long contributorId,
+			Set<Long> taskIds) {
+		int count = 0;
+		for (int i = indexOf(fromKey); i < dateKeys.length
+				&& dateKeys[i] <= toKey; i++) {
+			if (matches(i, contributorId, taskIds)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Sums the durations of the contributions of a date interval.
+	 *
+	 * @param fromKey
+	 *            the interval start (<code>yyyyMMdd</code>).
+	 * @param toKey
+	 *            the interval end (<code>yyyyMMdd</code>).
+	 * @param contributorId
+	 *            the contributor identifier (<code>null</code> for all the
+	 *            contributors).
+	 * @param taskIds
+	 *            the tasks identifiers (<code>null</code> for all the tasks).
+	 * @return the durations sum.
+	 */
+	public long sum(int fromKey, int toKey, Long contributorId,
+			Set<Long> taskIds) {
+		long sum = 0;
+		for (int i = indexOf(fromKey); i < dateKeys.length
+				&& dateKeys[i] <= toKey; i++) {
+			if (matches(i, contributorId, taskIds)) {
+				sum += durationIds[i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @param durationId
+	 *            the duration.
+	 * @return <code>true</code> if a contribution of the segment has this
+	 *         duration.
+	 */
+	public boolean containsDuration(long durationId) {
+		for (long value : durationIds) {
+			if (value == durationId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the dates of the first and of the last contributions. As the
+	 * contributions are sorted by date, the segment is only read from each
+	 * end up to the first matching contribution.
+	 *
+	 * @param taskIds
+	 *            the tasks identifiers (<code>null</code> for all the tasks).
+	 * @return the first and the last dates (<code>yyyyMMdd</code>), or
+	 *         <code>null</code> if no contribution matches.
+	 */
+	public int[] getDateRange(Set<Long> taskIds) {
+		int first = 0;
+		while (first < dateKeys.length && !matches(first, null, taskIds)) {
+			first++;
+		}
+		if (first == dateKeys.length) {
+			return null;
+		}
+		int last = dateKeys.length - 1;
+		while (!matches(last, null, taskIds)) {
+			last--;
+		}
+		return new int[] { dateKeys[first], dateKeys[last] };
+	}
+
+	/**
+	 * @param idx
+	 *            the contribution index.
+	 * @param contributorId
+	 *            the contributor identifier (<code>null</code> for all the
+	 *            contributors).
+	 * @param taskIds
+	 *            the tasks identifiers (<code>null</code> for all the tasks).
+	 * @return <code>true</code> if the contribution matches.
+	 */
+	private boolean matches(int idx, Long contributorId, Set<Long> taskIds) {
+		return (contributorId == null || contributorIds[idx] == contributorId
+				.longValue())
+				&& (taskIds == null || taskIds.contains(this.taskIds[idx]));
+	}
+
+	/**
+	 * Builds a contribution.
+	 *
+	 * @param idx
+	 *            the contribution index.
+	 * @param factory
+	 *            the DTO factory.
+	 * @return the contribution.
+	 */
+	public Contribution getContribution(int idx, IDTOFactory factory) {
+		int dateKey = dateKeys[idx];
+		Contribution contribution = factory.newContribution();
+		contribution.setYear(dateKey / 10000);
+		contribution.setMonth((dateKey / 100) % 100);
+		contribution.setDay(dateKey % 100);
+		contribution.setContributorId(contributorIds[idx]);
+		contribution.setTaskId(taskIds[idx]);
+		contribution.setDurationId(durationIds[idx]);
+		return contribution;
+	}
+
+	/**
+	 * Writes the segment.
+	 *
+	 * @param out
+	 *            the output stream (not closed by this method).
+	 * @throws IOException
+	 *             thrown if an I/O error occurs.
+	 */
+	public void write(OutputStream out) throws IOException {
+		GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+		DataOutputStream data = new DataOutputStream(gzip);
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		data.writeInt(year);
+		data.writeInt(dateKeys.length);
+		int previousDay = 0;
+		for (int dateKey : dateKeys) {
+			int day = dateKey - year * 10000;
+			writeVarLong(data, day - previousDay);
+			previousDay = day;
+		}
+		writeColumn(data, contributorIds);
+		writeColumn(data, taskIds);
+		writeColumn(data, durationIds);
+		data.flush();
+		gzip.finish();
+	}
+
+	/**
+	 * Reads a segment.
+	 *
+	 * @param in
+	 *            the input stream (not closed by this method).
+	 * @return the segment.
+	 * @throws IOException
+	 *             thrown if an I/O error occurs or if the stream is not a
+	 *             valid segment.
+	 */
+	public static ContributionSegment read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new GZIPInputStream(in, 8192));
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not a contributions segment");
+		}
+		byte version = data.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported contributions segment version : " + version);
+		}
+		int year = data.readInt();
+		int size = data.readInt();
+		if (size < 0) {
+			throw new IOException("Invalid contributions count : " + size);
+		}
+		ContributionSegment segment = new ContributionSegment(year, size);
+		int day = 0;
+		for (int i = 0; i < size; i++) {
+			day += (int) readVarLong(data);
+			segment.dateKeys[i] = year * 10000 + day;
+		}
+		readColumn(data, segment.contributorIds);
+		readColumn(data, segment.taskIds);
+		readColumn(data, segment.durationIds);
+		return segment;
+	}
+
+	private static void writeColumn(DataOutputStream out, long[] values)
+			throws IOException {
+		for (long value : values) {
+			writeVarLong(out, value);
+		}
+	}
+
+	private static void readColumn(DataInputStream in, long[] values)
+			throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = readVarLong(in);
+		}
+	}
+
+	/**
+	 * Writes a positive value on as many bytes as needed (7 bits per byte,
+	 * the high bit telling whether another byte follows).
+	 */
+	private static void writeVarLong(DataOutputStream out, long value)
+			throws IOException {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value : " + value);
+		}
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		int b;
+		do {
+			if (shift > 63) {
+				throw new IOException("Malformed variable length integer");
+			}
+			b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+}
@@ -1,8 +1,12 @@
 package org.activitymgr.core.orm;
 
+import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 
+import org.activitymgr.core.orm.dialect.DialectResolver;
 import org.activitymgr.core.orm.impl.AnnotationBasedMappingConfiguration;
 import org.activitymgr.core.orm.impl.DAOImpl;
 import org.activitymgr.core.orm.impl.IMappgingConfiguration;
@@ -19,9 +23,18 @@ public class DAOFactory {
 
 	/** Liste des mappers */
 	private HashMap<Class<?>, DAOImpl<?>> mappers = new HashMap<Class<?>, DAOImpl<?>>();
+
+	/** Mappers of classes mapped on another table, by class and table name */
+	private HashMap<List<Object>, DAOImpl<?>> tableMappers = new HashMap<List<Object>, DAOImpl<?>>();
 		
 	/** Mapping configuration */
 	private IMappgingConfiguration mappingConfiguration;
+
+	/** Number of rows sent in each JDBC batch */
+	private int batchSize = DAOImpl.DEFAULT_BATCH_SIZE;
+
+	/** Database dialect resolver (shared by the DAOs) */
+	private DialectResolver dialectResolver = new DialectResolver();
 	
 	/**
 	 * Constructeur par d�faut.
@@ -48,10 +61,84 @@ public class DAOFactory {
 	public synchronized <TYPE> IDAO<TYPE> getDAO(Class<TYPE> theClass) {
 		DAOImpl<TYPE> mapper = (DAOImpl<TYPE>) mappers.get(theClass);
 		if (mapper==null) {
-			mapper = new DAOImpl<TYPE>(mappingConfiguration, theClass);
+			mapper = new DAOImpl<TYPE>(mappingConfiguration, theClass, dialectResolver);
+			mapper.setBatchSize(batchSize);
 			mappers.put(theClass, mapper);
 		}
 		return mapper;
 	}
 
+	/**
+	 * Returns the mapper of a class on another table than its mapped table.
+	 * The table must have the same columns as the mapped table (it may for
+	 * instance be a partition of the mapped table).
+	 * @param theClass the mapped class.
+	 * @param tableName the table name.
+	 * @return the mapper of the class on the table.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <TYPE> IDAO<TYPE> getDAO(Class<TYPE> theClass, final String tableName) {
+		List<Object> key = Arrays.<Object>asList(theClass, tableName);
+		DAOImpl<TYPE> mapper = (DAOImpl<TYPE>) tableMappers.get(key);
+		if (mapper==null) {
+			final IMappgingConfiguration mapping = mappingConfiguration;
+			mapper = new DAOImpl<TYPE>(new IMappgingConfiguration() {
+				@Override
+				public String getSQLTableName(Class<?> theClass) {
+					return tableName;
+				}
+				@Override
+				public String getSQLColumnName(Class<?> theClass, Field attribute) {
+					return mapping.getSQLColumnName(theClass, attribute);
+				}
+				@Override
+				public List<Field> getPrimaryKeyAttributes(Class<?> theClass) {
+					return mapping.getPrimaryKeyAttributes(theClass);
+				}
+				@Override
+				public Field getAutoGeneratedAttribute(Class<?> theClass) {
+					return mapping.getAutoGeneratedAttribute(theClass);
+				}
+				@Override
+				public Field getVersionAttribute(Class<?> theClass) {
+					return mapping.getVersionAttribute(theClass);
+				}
+				@Override
+				public Class<? extends IConverter<?>> getAttributeConverter(
+						Class<?> theClass, Field attribute) {
+					return mapping.getAttributeConverter(theClass, attribute);
+				}
+			}, theClass, dialectResolver);
+			mapper.setBatchSize(batchSize);
+			tableMappers.put(key, mapper);
+		}
+		return mapper;
+	}
+
+	/**
+	 * Sets the number of rows sent in each JDBC batch by the DAOs
+	 * <code>insertAll</code>, <code>updateAll</code> and
+	 * <code>deleteAll</code> methods.
+	 * @param batchSize the batch size.
+	 */
+	public synchronized void setBatchSize(int batchSize) {
+		for (DAOImpl<?> mapper : mappers.values()) {
+			mapper.setBatchSize(batchSize);
+		}
+		for (DAOImpl<?> mapper : tableMappers.values()) {
+			mapper.setBatchSize(batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Returns the database dialect resolver shared by the DAOs (the dialect
+	 * is detected once, a factory must therefore be used with a single
+	 * database).
+	 * @return the dialect resolver.
+	 */
+	public DialectResolver getDialectResolver() {
+		return dialectResolver;
+	}
+
 }
@@ -0,0 +1,20 @@
+package org.activitymgr.core.orm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converter able to bind and read raw <code>boolean</code> values.
+ * <p>
+ * When a <code>boolean</code> attribute is mapped with such a converter, the ORM
+ * uses these methods instead of the boxed ones.
+ * </p>
+ */
+public interface IBooleanConverter extends IConverter<Boolean> {
+
+	void bindBoolean(PreparedStatement stmt, int index, boolean value) throws SQLException;
+
+	boolean readBoolean(ResultSet rs, int index) throws SQLException;
+
+}
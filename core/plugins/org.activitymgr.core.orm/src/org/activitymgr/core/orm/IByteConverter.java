@@ -0,0 +1,20 @@
+package org.activitymgr.core.orm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converter able to bind and read raw <code>byte</code> values.
+ * <p>
+ * When a <code>byte</code> attribute is mapped with such a converter, the ORM
+ * uses these methods instead of the boxed ones.
+ * </p>
+ */
+public interface IByteConverter extends IConverter<Byte> {
+
+	void bindByte(PreparedStatement stmt, int index, byte value) throws SQLException;
+
+	byte readByte(ResultSet rs, int index) throws SQLException;
+
+}
@@ -30,10 +30,31 @@ public interface IDAO<TYPE> {
 			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
 			int maxRows) throws SQLException;
 
+	public TYPE[] selectPage(Connection con,
+			String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			TYPE lastSeen, int pageSize) throws SQLException;
+
+	public <E extends Exception> int forEach(Connection con,
+			String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			int fetchSize, IRowHandler<TYPE, E> handler) throws SQLException, E;
+
 	public TYPE update(Connection con, TYPE value) throws SQLException;
 
+	public TYPE update(Connection con, TYPE value, String[] attributeNames)
+			throws SQLException;
+
 	public TYPE insert(Connection con, TYPE value) throws SQLException;
 
+	public TYPE[] insertAll(Connection con, TYPE[] values) throws SQLException;
+
+	public TYPE merge(Connection con, TYPE value) throws SQLException;
+
+	public TYPE[] updateAll(Connection con, TYPE[] values) throws SQLException;
+
+	public int deleteAll(Connection con, TYPE[] values) throws SQLException;
+
 	public long countAll(Connection con) throws SQLException;
 
 	public long count(Connection con, String[] whereClauseAttributeNames,
@@ -47,5 +68,13 @@ public interface IDAO<TYPE> {
 
 	public TYPE newInstance();
 
+	public Class<TYPE> getMappedClass();
+
+	public Object[] getPrimaryKey(TYPE instance);
+
+	public TYPE copy(TYPE instance);
+
+	public QueryCacheStatistics getQueryCacheStatistics();
+
 }
 
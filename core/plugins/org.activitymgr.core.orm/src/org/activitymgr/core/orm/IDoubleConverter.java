@@ -0,0 +1,20 @@
+package org.activitymgr.core.orm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converter able to bind and read raw <code>double</code> values.
+ * <p>
+ * When a <code>double</code> attribute is mapped with such a converter, the ORM
+ * uses these methods instead of the boxed ones.
+ * </p>
+ */
+public interface IDoubleConverter extends IConverter<Double> {
+
+	void bindDouble(PreparedStatement stmt, int index, double value) throws SQLException;
+
+	double readDouble(ResultSet rs, int index) throws SQLException;
+
+}
@@ -0,0 +1,20 @@
+package org.activitymgr.core.orm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converter able to bind and read raw <code>float</code> values.
+ * <p>
+ * When a <code>float</code> attribute is mapped with such a converter, the ORM
+ * uses these methods instead of the boxed ones.
+ * </p>
+ */
+public interface IFloatConverter extends IConverter<Float> {
+
+	void bindFloat(PreparedStatement stmt, int index, float value) throws SQLException;
+
+	float readFloat(ResultSet rs, int index) throws SQLException;
+
+}
@@ -0,0 +1,20 @@
+package org.activitymgr.core.orm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converter able to bind and read raw <code>int</code> values.
+ * <p>
+ * When an <code>int</code> attribute is mapped with such a converter, the ORM
+ * uses these methods instead of the boxed ones.
+ * </p>
+ */
+public interface IIntConverter extends IConverter<Integer> {
+
+	void bindInt(PreparedStatement stmt, int index, int value) throws SQLException;
+
+	int readInt(ResultSet rs, int index) throws SQLException;
+
+}
@@ -0,0 +1,20 @@
+package org.activitymgr.core.orm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converter able to bind and read raw <code>long</code> values.
+ * <p>
+ * When a <code>long</code> attribute is mapped with such a converter, the ORM
+ * uses these methods instead of the boxed ones.
+ * </p>
+ */
+public interface ILongConverter extends IConverter<Long> {
+
+	void bindLong(PreparedStatement stmt, int index, long value) throws SQLException;
+
+	long readLong(ResultSet rs, int index) throws SQLException;
+
+}
@@ -0,0 +1,20 @@
+package org.activitymgr.core.orm;
+
+/**
+ * Callback receiving the rows of a streamed selection, one at a time.
+ * <p>
+ * The rows are read while the handler is called ; with a streaming driver
+ * (MySQL), the handler must not issue other requests on the same connection.
+ * </p>
+ *
+ * @param <TYPE>
+ *            the mapped class.
+ * @param <E>
+ *            the exception the handler may throw (use
+ *            {@link RuntimeException} if none).
+ */
+public interface IRowHandler<TYPE, E extends Exception> {
+
+	void handle(TYPE instance) throws E;
+
+}
@@ -0,0 +1,20 @@
+package org.activitymgr.core.orm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converter able to bind and read raw <code>short</code> values.
+ * <p>
+ * When a <code>short</code> attribute is mapped with such a converter, the ORM
+ * uses these methods instead of the boxed ones.
+ * </p>
+ */
+public interface IShortConverter extends IConverter<Short> {
+
+	void bindShort(PreparedStatement stmt, int index, short value) throws SQLException;
+
+	short readShort(ResultSet rs, int index) throws SQLException;
+
+}
@@ -0,0 +1,23 @@
+package org.activitymgr.core.orm;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when a versioned row cannot be updated because it has been updated
+ * or deleted since the instance was read.
+ */
+public class OptimisticLockException extends SQLException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param message
+	 *            the message.
+	 */
+	public OptimisticLockException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,69 @@
+package org.activitymgr.core.orm;
+
+/**
+ * Statistics of the compiled requests cache of a DAO.
+ * <p>
+ * The dynamic requests (select, count and delete requests with a custom
+ * where clause) are generated once per shape ; further calls with the same
+ * shape only bind their parameters.
+ * </p>
+ */
+public class QueryCacheStatistics {
+
+	/** Requests served from the cache */
+	private final long hits;
+
+	/** Requests that had to be generated */
+	private final long misses;
+
+	/** Number of compiled requests in the cache */
+	private final int size;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param hits
+	 *            the requests served from the cache.
+	 * @param misses
+	 *            the requests that had to be generated.
+	 * @param size
+	 *            the number of compiled requests in the cache.
+	 */
+	public QueryCacheStatistics(long hits, long misses, int size) {
+		this.hits = hits;
+		this.misses = misses;
+		this.size = size;
+	}
+
+	/**
+	 * @return the number of requests served from the cache.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of requests that had to be generated.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of compiled requests in the cache.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "hits=" + hits + ", misses=" + misses + ", size=" + size;
+	}
+
+}
@@ -0,0 +1,22 @@
+package org.activitymgr.core.orm.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the version attribute of a mapped class (<code>int</code> or
+ * <code>long</code>).
+ * <p>
+ * The updates and the deletions of an instance then only succeed if the row
+ * still holds the version of the instance, and the updates increment it.
+ * </p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Version {
+
+}
@@ -0,0 +1,256 @@
+package org.activitymgr.core.orm.dialect;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Database dialect.
+ * <p>
+ * Gathers what differs from one supported database to another : generated
+ * keys retrieval, limit clause, upsert requests, multi-row inserts and string
+ * functions. The default implementations follow the SQL standard ; the
+ * dialect of a database is resolved once with {@link DialectResolver}.
+ * </p>
+ */
+public abstract class Dialect {
+
+	/**
+	 * Builds the dialect matching a database.
+	 *
+	 * @param metaData
+	 *            the database meta data.
+	 * @return the dialect (MySQL dialect if the database is unknown).
+	 * @throws SQLException
+	 *             thrown if a database access error occurs.
+	 */
+	public static Dialect forDatabase(DatabaseMetaData metaData)
+			throws SQLException {
+		String productName = metaData.getDatabaseProductName();
+		if (H2Dialect.PRODUCT_NAME.equals(productName)) {
+			return new H2Dialect();
+		} else if (HSQLDBDialect.PRODUCT_NAME.equals(productName)) {
+			return new HSQLDBDialect(metaData.getDatabaseMajorVersion());
+		} else {
+			String url = metaData.getURL();
+			return new MySQLDialect(url != null
+					&& url.indexOf(MySQLDialect.CURSOR_FETCH_PROPERTY) >= 0);
+		}
+	}
+
+	/**
+	 * @return the dialect name.
+	 */
+	public abstract String getName();
+
+	/**
+	 * @return <code>true</code> if the database is an HSQLDB or H2 database
+	 *         (these databases share the same creation script).
+	 */
+	public boolean isHsqlOrH2() {
+		return false;
+	}
+
+	/**
+	 * @return <code>true</code> if the key generated by an insert can be read
+	 *         with <code>getGeneratedKeys()</code> (otherwise
+	 *         {@link #getLastGeneratedKeyRequest()} must be executed).
+	 */
+	public boolean supportsGeneratedKeys() {
+		return true;
+	}
+
+	/**
+	 * @return the request returning the last key generated on the
+	 *         connection, used when {@link #supportsGeneratedKeys()} returns
+	 *         <code>false</code>.
+	 */
+	public abstract String getLastGeneratedKeyRequest();
+
+	/**
+	 * @return <code>true</code> if <code>getGeneratedKeys()</code> returns
+	 *         one key per row after a batch of inserts (most drivers only
+	 *         return the last key).
+	 */
+	public boolean supportsBatchGeneratedKeys() {
+		return false;
+	}
+
+	/**
+	 * @return <code>true</code> if an insert request may hold several rows in
+	 *         its values clause.
+	 */
+	public boolean supportsMultiRowInsert() {
+		return true;
+	}
+
+	/**
+	 * Builds an insert request.
+	 *
+	 * @param tableName
+	 *            the table name.
+	 * @param columnNames
+	 *            the inserted columns.
+	 * @param rows
+	 *            the number of inserted rows (greater than one requires
+	 *            {@link #supportsMultiRowInsert()}).
+	 * @return the request (the parameters are the columns of the first row,
+	 *         then the columns of the second row...).
+	 */
+	public String buildInsertRequest(String tableName, String[] columnNames,
+			int rows) {
+		StringBuffer buf = new StringBuffer("insert into ").append(tableName)
+				.append(" (");
+		appendList(buf, columnNames, null);
+		buf.append(") values ");
+		for (int i = 0; i < rows; i++) {
+			if (i != 0)
+				buf.append(", ");
+			appendParameters(buf, columnNames.length);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Builds an upsert request (a request inserting a row or updating it if
+	 * its primary key already exists).
+	 *
+	 * @param tableName
+	 *            the table name.
+	 * @param columnNames
+	 *            all the columns (the parameters are bound in this order).
+	 * @param pkColumnNames
+	 *            the primary key columns.
+	 * @return the request.
+	 */
+	public abstract String buildUpsertRequest(String tableName,
+			String[] columnNames, String[] pkColumnNames);
+
+	/**
+	 * Builds an increment request (a request inserting a row or, if its
+	 * primary key already exists, adding the values of some columns to the
+	 * existing ones). The row is inserted or incremented atomically.
+	 * <p>
+	 * All the columns must be integer columns.
+	 * </p>
+	 *
+	 * @param tableName
+	 *            the table name.
+	 * @param columnNames
+	 *            all the columns (the parameters are bound in this order).
+	 * @param pkColumnNames
+	 *            the primary key columns.
+	 * @param incrementedColumnNames
+	 *            the columns whose values are added to the existing ones
+	 *            (the other columns are overwritten).
+	 * @return the request.
+	 */
+	public abstract String buildIncrementRequest(String tableName,
+			String[] columnNames, String[] pkColumnNames,
+			String[] incrementedColumnNames);
+
+	/**
+	 * Appends a limit clause.
+	 *
+	 * @param buf
+	 *            the request buffer.
+	 * @param withOffset
+	 *            <code>true</code> if an offset parameter follows the limit
+	 *            parameter.
+	 */
+	public void appendLimit(StringBuffer buf, boolean withOffset) {
+		buf.append(" limit ?");
+		if (withOffset)
+			buf.append(" offset ?");
+	}
+
+	/**
+	 * Builds a string concatenation expression.
+	 *
+	 * @param expressions
+	 *            the SQL expressions to concatenate.
+	 * @return the SQL expression.
+	 */
+	public String concat(String... expressions) {
+		StringBuffer buf = new StringBuffer("(");
+		appendList(buf, expressions, " || ");
+		return buf.append(')').toString();
+	}
+
+	/**
+	 * Builds an expression returning the leftmost characters of a string.
+	 *
+	 * @param expression
+	 *            the string SQL expression.
+	 * @param length
+	 *            the length SQL expression.
+	 * @return the SQL expression.
+	 */
+	public String left(String expression, String length) {
+		return "substring(" + expression + ", 1, " + length + ")";
+	}
+
+	/**
+	 * Sets the fetch size of a statement so that its result set is streamed
+	 * instead of being fully loaded in memory by the driver.
+	 *
+	 * @param pStmt
+	 *            the statement (with the default forward only / read only
+	 *            result set type).
+	 * @param fetchSize
+	 *            the fetch size (<code>0</code> keeps the driver default).
+	 * @throws SQLException
+	 *             thrown if a database access error occurs.
+	 */
+	public void setFetchSize(PreparedStatement pStmt, int fetchSize)
+			throws SQLException {
+		if (fetchSize > 0)
+			pStmt.setFetchSize(fetchSize);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+	/**
+	 * Appends a list of items.
+	 *
+	 * @param buf
+	 *            the buffer.
+	 * @param items
+	 *            the items.
+	 * @param separator
+	 *            the separator (<code>", "</code> if <code>null</code>).
+	 */
+	protected static void appendList(StringBuffer buf, String[] items,
+			String separator) {
+		for (int i = 0; i < items.length; i++) {
+			if (i != 0)
+				buf.append(separator != null ? separator : ", ");
+			buf.append(items[i]);
+		}
+	}
+
+	/**
+	 * Appends a parenthesized list of parameters.
+	 *
+	 * @param buf
+	 *            the buffer.
+	 * @param count
+	 *            the number of parameters.
+	 */
+	protected static void appendParameters(StringBuffer buf, int count) {
+		buf.append('(');
+		for (int i = 0; i < count; i++) {
+			buf.append(i == 0 ? "?" : ", ?");
+		}
+		buf.append(')');
+	}
+
+}
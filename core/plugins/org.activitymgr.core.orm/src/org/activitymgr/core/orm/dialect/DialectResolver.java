@@ -0,0 +1,50 @@
+package org.activitymgr.core.orm.dialect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Dialect resolver.
+ * <p>
+ * Detects the database product on the first connection it is given and keeps
+ * the resulting dialect until {@link #reset()} is called ; the resolver must
+ * therefore be reset when the application switches to another data source.
+ * </p>
+ */
+public class DialectResolver {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(DialectResolver.class);
+
+	/** Resolved dialect */
+	private volatile Dialect dialect;
+
+	/**
+	 * Returns the dialect of the database.
+	 *
+	 * @param con
+	 *            a connection to the database (only used for the first call).
+	 * @return the dialect.
+	 * @throws SQLException
+	 *             thrown if a database access error occurs.
+	 */
+	public Dialect getDialect(Connection con) throws SQLException {
+		Dialect result = dialect;
+		if (result == null) {
+			result = Dialect.forDatabase(con.getMetaData());
+			log.info("Database dialect : " + result);
+			dialect = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets the resolved dialect, which is detected again on next use.
+	 */
+	public void reset() {
+		dialect = null;
+	}
+
+}
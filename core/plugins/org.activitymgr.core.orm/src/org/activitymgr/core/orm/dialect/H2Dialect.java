@@ -0,0 +1,111 @@
+package org.activitymgr.core.orm.dialect;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * H2 dialect.
+ */
+public class H2Dialect extends Dialect {
+
+	/** Database product name */
+	static final String PRODUCT_NAME = "H2";
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.orm.dialect.Dialect#getName()
+	 */
+	@Override
+	public String getName() {
+		return PRODUCT_NAME;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.orm.dialect.Dialect#isHsqlOrH2()
+	 */
+	@Override
+	public boolean isHsqlOrH2() {
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#getLastGeneratedKeyRequest()
+	 */
+	@Override
+	public String getLastGeneratedKeyRequest() {
+		return "call identity()";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#buildUpsertRequest(java.lang
+	 * .String, java.lang.String[], java.lang.String[])
+	 */
+	@Override
+	public String buildUpsertRequest(String tableName, String[] columnNames,
+			String[] pkColumnNames) {
+		StringBuffer buf = new StringBuffer("merge into ").append(tableName)
+				.append(" (");
+		appendList(buf, columnNames, null);
+		buf.append(") key (");
+		appendList(buf, pkColumnNames, null);
+		buf.append(") values ");
+		appendParameters(buf, columnNames.length);
+		return buf.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#buildIncrementRequest(java.
+	 * lang.String, java.lang.String[], java.lang.String[], java.lang.String[])
+	 */
+	@Override
+	public String buildIncrementRequest(String tableName,
+			String[] columnNames, String[] pkColumnNames,
+			String[] incrementedColumnNames) {
+		// H2 has no 'merge using' : the merged row is selected from the
+		// parameters joined with the existing row (the parameters are typed
+		// as the select columns must be)
+		List<String> incrementedColumns = Arrays.asList(incrementedColumnNames);
+		StringBuffer buf = new StringBuffer("merge into ").append(tableName)
+				.append(" (");
+		appendList(buf, columnNames, null);
+		buf.append(") key (");
+		appendList(buf, pkColumnNames, null);
+		buf.append(") select ");
+		for (int i = 0; i < columnNames.length; i++) {
+			if (i != 0)
+				buf.append(", ");
+			buf.append("vals.").append(columnNames[i]);
+			if (incrementedColumns.contains(columnNames[i])) {
+				buf.append("+coalesce(").append(tableName).append('.')
+						.append(columnNames[i]).append(", 0)");
+			}
+		}
+		buf.append(" from (select ");
+		for (int i = 0; i < columnNames.length; i++) {
+			if (i != 0)
+				buf.append(", ");
+			buf.append("cast(? as bigint) ").append(columnNames[i]);
+		}
+		buf.append(") vals left join ").append(tableName).append(" on ");
+		for (int i = 0; i < pkColumnNames.length; i++) {
+			if (i != 0)
+				buf.append(" and ");
+			buf.append(tableName).append('.').append(pkColumnNames[i])
+					.append("=vals.").append(pkColumnNames[i]);
+		}
+		return buf.toString();
+	}
+
+}
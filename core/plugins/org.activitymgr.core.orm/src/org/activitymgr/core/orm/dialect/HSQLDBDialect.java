@@ -0,0 +1,162 @@
+package org.activitymgr.core.orm.dialect;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * HSQLDB dialect.
+ */
+public class HSQLDBDialect extends Dialect {
+
+	/** Database product name */
+	static final String PRODUCT_NAME = "HSQL Database Engine";
+
+	/** Database major version */
+	private final int majorVersion;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param majorVersion
+	 *            the database major version.
+	 */
+	public HSQLDBDialect(int majorVersion) {
+		this.majorVersion = majorVersion;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.orm.dialect.Dialect#getName()
+	 */
+	@Override
+	public String getName() {
+		return PRODUCT_NAME + " " + majorVersion;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.orm.dialect.Dialect#isHsqlOrH2()
+	 */
+	@Override
+	public boolean isHsqlOrH2() {
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.orm.dialect.Dialect#supportsGeneratedKeys()
+	 */
+	@Override
+	public boolean supportsGeneratedKeys() {
+		// Generated keys are only supported since HSQLDB 2.0
+		return majorVersion >= 2;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#getLastGeneratedKeyRequest()
+	 */
+	@Override
+	public String getLastGeneratedKeyRequest() {
+		return "call identity()";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#buildUpsertRequest(java.lang
+	 * .String, java.lang.String[], java.lang.String[])
+	 */
+	@Override
+	public String buildUpsertRequest(String tableName, String[] columnNames,
+			String[] pkColumnNames) {
+		return buildMergeRequest(tableName, columnNames, pkColumnNames,
+				new String[0], "?");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#buildIncrementRequest(java.
+	 * lang.String, java.lang.String[], java.lang.String[], java.lang.String[])
+	 */
+	@Override
+	public String buildIncrementRequest(String tableName,
+			String[] columnNames, String[] pkColumnNames,
+			String[] incrementedColumnNames) {
+		// Without a cast, HSQLDB types the parameters as character strings
+		// and '+' concatenates them
+		return buildMergeRequest(tableName, columnNames, pkColumnNames,
+				incrementedColumnNames, "cast(? as bigint)");
+	}
+
+	/**
+	 * Builds a merge request.
+	 *
+	 * @param tableName
+	 *            the table name.
+	 * @param columnNames
+	 *            all the columns (the parameters are bound in this order).
+	 * @param pkColumnNames
+	 *            the primary key columns.
+	 * @param incrementedColumnNames
+	 *            the columns whose values are added to the existing ones.
+	 * @param parameter
+	 *            the parameter expression.
+	 * @return the request.
+	 */
+	private static String buildMergeRequest(String tableName,
+			String[] columnNames, String[] pkColumnNames,
+			String[] incrementedColumnNames, String parameter) {
+		List<String> pkColumns = Arrays.asList(pkColumnNames);
+		List<String> incrementedColumns = Arrays.asList(incrementedColumnNames);
+		StringBuffer buf = new StringBuffer("merge into ").append(tableName)
+				.append(" using (values (");
+		for (int i = 0; i < columnNames.length; i++) {
+			if (i != 0)
+				buf.append(", ");
+			buf.append(parameter);
+		}
+		buf.append(")) as vals (");
+		appendList(buf, columnNames, null);
+		buf.append(") on ");
+		for (int i = 0; i < pkColumnNames.length; i++) {
+			if (i != 0)
+				buf.append(" and ");
+			buf.append(tableName).append('.').append(pkColumnNames[i])
+					.append("=vals.").append(pkColumnNames[i]);
+		}
+		boolean first = true;
+		for (String columnName : columnNames) {
+			if (!pkColumns.contains(columnName)) {
+				buf.append(first ? " when matched then update set " : ", ");
+				buf.append(tableName).append('.').append(columnName)
+						.append('=');
+				if (incrementedColumns.contains(columnName)) {
+					buf.append(tableName).append('.').append(columnName)
+							.append('+');
+				}
+				buf.append("vals.").append(columnName);
+				first = false;
+			}
+		}
+		buf.append(" when not matched then insert (");
+		appendList(buf, columnNames, null);
+		buf.append(") values (");
+		for (int i = 0; i < columnNames.length; i++) {
+			if (i != 0)
+				buf.append(", ");
+			buf.append("vals.").append(columnNames[i]);
+		}
+		buf.append(')');
+		return buf.toString();
+	}
+
+}
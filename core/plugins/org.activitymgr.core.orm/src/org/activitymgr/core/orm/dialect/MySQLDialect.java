@@ -0,0 +1,160 @@
+package org.activitymgr.core.orm.dialect;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MySQL dialect (also used for MariaDB).
+ */
+public class MySQLDialect extends Dialect {
+
+	/** Connection property enabling server side cursors */
+	static final String CURSOR_FETCH_PROPERTY = "useCursorFetch=true";
+
+	/** Tells whether server side cursors are enabled */
+	private final boolean cursorFetch;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param cursorFetch
+	 *            <code>true</code> if the connection URL enables server side
+	 *            cursors (<code>useCursorFetch=true</code>).
+	 */
+	public MySQLDialect(boolean cursorFetch) {
+		this.cursorFetch = cursorFetch;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.orm.dialect.Dialect#getName()
+	 */
+	@Override
+	public String getName() {
+		return "MySQL";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#getLastGeneratedKeyRequest()
+	 */
+	@Override
+	public String getLastGeneratedKeyRequest() {
+		return "select last_insert_id()";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#supportsBatchGeneratedKeys()
+	 */
+	@Override
+	public boolean supportsBatchGeneratedKeys() {
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#buildUpsertRequest(java.lang
+	 * .String, java.lang.String[], java.lang.String[])
+	 */
+	@Override
+	public String buildUpsertRequest(String tableName, String[] columnNames,
+			String[] pkColumnNames) {
+		List<String> pkColumns = Arrays.asList(pkColumnNames);
+		StringBuffer buf = new StringBuffer(buildInsertRequest(tableName,
+				columnNames, 1));
+		boolean first = true;
+		for (String columnName : columnNames) {
+			if (!pkColumns.contains(columnName)) {
+				buf.append(first ? " on duplicate key update " : ", ");
+				buf.append(columnName).append("=values(").append(columnName)
+						.append(')');
+				first = false;
+			}
+		}
+		if (first) {
+			// Only primary key columns : nothing to update
+			buf.insert("insert".length(), " ignore");
+		}
+		return buf.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#buildIncrementRequest(java.
+	 * lang.String, java.lang.String[], java.lang.String[], java.lang.String[])
+	 */
+	@Override
+	public String buildIncrementRequest(String tableName,
+			String[] columnNames, String[] pkColumnNames,
+			String[] incrementedColumnNames) {
+		List<String> pkColumns = Arrays.asList(pkColumnNames);
+		List<String> incrementedColumns = Arrays.asList(incrementedColumnNames);
+		StringBuffer buf = new StringBuffer(buildInsertRequest(tableName,
+				columnNames, 1));
+		boolean first = true;
+		for (String columnName : columnNames) {
+			if (!pkColumns.contains(columnName)) {
+				buf.append(first ? " on duplicate key update " : ", ");
+				buf.append(columnName).append('=');
+				if (incrementedColumns.contains(columnName)) {
+					buf.append(columnName).append('+');
+				}
+				buf.append("values(").append(columnName).append(')');
+				first = false;
+			}
+		}
+		return buf.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.orm.dialect.Dialect#concat(java.lang.String[])
+	 */
+	@Override
+	public String concat(String... expressions) {
+		StringBuffer buf = new StringBuffer("concat(");
+		appendList(buf, expressions, null);
+		return buf.append(')').toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.orm.dialect.Dialect#left(java.lang.String,
+	 * java.lang.String)
+	 */
+	@Override
+	public String left(String expression, String length) {
+		return "left(" + expression + ", " + length + ")";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.orm.dialect.Dialect#setFetchSize(java.sql.PreparedStatement
+	 * , int)
+	 */
+	@Override
+	public void setFetchSize(PreparedStatement pStmt, int fetchSize)
+			throws SQLException {
+		// Without server side cursors, MySQL driver only streams the rows
+		// when the fetch size is Integer.MIN_VALUE
+		if (fetchSize > 0)
+			pStmt.setFetchSize(cursorFetch ? fetchSize : Integer.MIN_VALUE);
+	}
+
+}
@@ -12,6 +12,7 @@ import org.activitymgr.core.orm.annotation.ColumnNamePrefix;
 import org.activitymgr.core.orm.annotation.Converter;
 import org.activitymgr.core.orm.annotation.PrimaryKey;
 import org.activitymgr.core.orm.annotation.Table;
+import org.activitymgr.core.orm.annotation.Version;
 
 public class AnnotationBasedMappingConfiguration implements IMappgingConfiguration {
 
@@ -61,6 +62,16 @@ public class AnnotationBasedMappingConfiguration implements IMappgingConfigurati
 		return null;
 	}
 
+	@Override
+	public Field getVersionAttribute(Class<?> theClass) {
+		for (Field field : ReflectionHelper.getFields(theClass)) {
+			if (field.getAnnotation(Version.class) != null) {
+				return field;
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public Class<? extends IConverter<?>> getAttributeConverter(
 			Class<?> theClass, Field attribute) {
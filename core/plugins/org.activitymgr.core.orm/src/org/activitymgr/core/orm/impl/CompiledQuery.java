@@ -0,0 +1,183 @@
+package org.activitymgr.core.orm.impl;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.activitymgr.core.orm.IConverter;
+import org.activitymgr.core.orm.query.BetweenStatement;
+import org.activitymgr.core.orm.query.GreaterThanStatement;
+import org.activitymgr.core.orm.query.InStatement;
+import org.activitymgr.core.orm.query.LikeStatement;
+import org.activitymgr.core.orm.query.LowerThanStatement;
+
+/**
+ * Compiled dynamic request.
+ * <p>
+ * Holds the SQL request generated for a {@link QueryShape} and the
+ * converters of its where clause attributes, so that executing a request with
+ * an already known shape only binds the parameters.
+ * </p>
+ */
+final class CompiledQuery {
+
+	/** SQL request */
+	private final String sql;
+
+	/** Where clause value shapes */
+	private final int[] whereValueShapes;
+
+	/** Converters of the where clause attributes */
+	private final IConverter<Object>[] whereConverters;
+
+	/** Seek predicate attributes (order by clause of a keyset request) */
+	private final Field[] seekAttributes;
+
+	/** Converters of the seek predicate attributes */
+	private final IConverter<Object>[] seekConverters;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param sql
+	 *            the SQL request.
+	 * @param whereValueShapes
+	 *            the where clause value shapes.
+	 * @param whereConverters
+	 *            the converters of the where clause attributes.
+	 */
+	CompiledQuery(String sql, int[] whereValueShapes,
+			IConverter<Object>[] whereConverters) {
+		this(sql, whereValueShapes, whereConverters, null, null);
+	}
+
+	/**
+	 * Keyset request constructor.
+	 *
+	 * @param sql
+	 *            the SQL request.
+	 * @param whereValueShapes
+	 *            the where clause value shapes.
+	 * @param whereConverters
+	 *            the converters of the where clause attributes.
+	 * @param seekAttributes
+	 *            the seek predicate attributes.
+	 * @param seekConverters
+	 *            the converters of the seek predicate attributes.
+	 */
+	CompiledQuery(String sql, int[] whereValueShapes,
+			IConverter<Object>[] whereConverters, Field[] seekAttributes,
+			IConverter<Object>[] seekConverters) {
+		this.sql = sql;
+		this.whereValueShapes = whereValueShapes;
+		this.whereConverters = whereConverters;
+		this.seekAttributes = seekAttributes;
+		this.seekConverters = seekConverters;
+	}
+
+	/**
+	 * @return the SQL request.
+	 */
+	String getSQL() {
+		return sql;
+	}
+
+	/**
+	 * Binds the where clause values.
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param whereClauseAttributeValues
+	 *            the where clause values (with the compiled shape).
+	 * @return the index of the next parameter.
+	 * @throws SQLException
+	 *             thrown if a database access error occurs.
+	 */
+	int bind(PreparedStatement pStmt, Object[] whereClauseAttributeValues)
+			throws SQLException {
+		int parameterIdx = 1;
+		if (whereValueShapes != null) {
+			for (int i = 0; i < whereValueShapes.length; i++) {
+				Object value = whereClauseAttributeValues[i];
+				IConverter<Object> converter = whereConverters[i];
+				switch (whereValueShapes[i]) {
+				case QueryShape.NULL_VALUE:
+					break;
+				case QueryShape.SIMPLE_VALUE:
+					bind(pStmt, parameterIdx++, converter, value);
+					break;
+				case QueryShape.BETWEEN:
+					BetweenStatement bs = (BetweenStatement) value;
+					bind(pStmt, parameterIdx++, converter, bs.getLow());
+					bind(pStmt, parameterIdx++, converter, bs.getHigh());
+					break;
+				case QueryShape.GREATER_THAN:
+				case QueryShape.GREATER_THAN_OR_EQUALS:
+					bind(pStmt, parameterIdx++, converter,
+							((GreaterThanStatement) value).getValue());
+					break;
+				case QueryShape.LOWER_THAN:
+				case QueryShape.LOWER_THAN_OR_EQUALS:
+					bind(pStmt, parameterIdx++, converter,
+							((LowerThanStatement) value).getValue());
+					break;
+				case QueryShape.LIKE:
+					bind(pStmt, parameterIdx++, converter,
+							((LikeStatement) value).getValue());
+					break;
+				default:
+					for (Object inValue : ((InStatement) value).getValues()) {
+						bind(pStmt, parameterIdx++, converter, inValue);
+					}
+				}
+			}
+		}
+		return parameterIdx;
+	}
+
+	/**
+	 * Binds the seek predicate values of a keyset request. The predicate of
+	 * an order by clause <code>(a, b, c)</code> is
+	 * <code>(a&gt;?) or (a=? and b&gt;?) or (a=? and b=? and c&gt;?)</code>.
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param fromIndex
+	 *            the index of the first seek parameter.
+	 * @param lastSeen
+	 *            the last row of the previous page.
+	 * @return the index of the next parameter.
+	 * @throws SQLException
+	 *             thrown if a database access error occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	int bindSeek(PreparedStatement pStmt, int fromIndex, Object lastSeen)
+			throws SQLException, IllegalAccessException {
+		int parameterIdx = fromIndex;
+		for (int i = 0; i < seekAttributes.length; i++) {
+			for (int j = 0; j <= i; j++) {
+				seekConverters[j].bind(pStmt, parameterIdx++,
+						seekAttributes[j].get(lastSeen));
+			}
+		}
+		return parameterIdx;
+	}
+
+	/**
+	 * @return the seek predicate attributes.
+	 */
+	Field[] getSeekAttributes() {
+		return seekAttributes;
+	}
+
+	private static void bind(PreparedStatement pStmt, int parameterIdx,
+			IConverter<Object> converter, Object value) throws SQLException {
+		if (value == null) {
+			pStmt.setNull(parameterIdx, converter.getSQLType());
+		} else {
+			converter.bind(pStmt, parameterIdx, value);
+		}
+	}
+
+}
@@ -15,14 +15,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.activitymgr.core.orm.IConverter;
 import org.activitymgr.core.orm.IDAO;
+import org.activitymgr.core.orm.IRowHandler;
+import org.activitymgr.core.orm.OptimisticLockException;
+import org.activitymgr.core.orm.QueryCacheStatistics;
+import org.activitymgr.core.orm.dialect.Dialect;
+import org.activitymgr.core.orm.dialect.DialectResolver;
 import org.activitymgr.core.orm.impl.converters.BigDecimalConverter;
 import org.activitymgr.core.orm.impl.converters.BooleanConverter;
 import org.activitymgr.core.orm.impl.converters.ByteConverter;
@@ -35,14 +44,6 @@ import org.activitymgr.core.orm.impl.converters.LongConverter;
 import org.activitymgr.core.orm.impl.converters.ShortConverter;
 import org.activitymgr.core.orm.impl.converters.StringConverter;
 import org.activitymgr.core.orm.query.AbstractOrderByClause;
-import org.activitymgr.core.orm.query.AbstractStatement;
-import org.activitymgr.core.orm.query.AscendantOrderByClause;
-import org.activitymgr.core.orm.query.BetweenStatement;
-import org.activitymgr.core.orm.query.DescendantOrderByClause;
-import org.activitymgr.core.orm.query.GreaterThanStatement;
-import org.activitymgr.core.orm.query.InStatement;
-import org.activitymgr.core.orm.query.LikeStatement;
-import org.activitymgr.core.orm.query.LowerThanStatement;
 import org.apache.log4j.Logger;
 
 /**
@@ -59,6 +60,15 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	/** Logger */
 	private static Logger sqlLog = Logger.getLogger("dbClassMapper.logsqlrequests");
 
+	/** Default batch size (number of rows sent in each JDBC batch) */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	/** Maximum number of compiled dynamic requests kept by a DAO */
+	private static final int MAX_COMPILED_QUERIES = 256;
+
+	/** Maximum number of parameters of a multi-row insert request */
+	private static final int MAX_INSERT_PARAMETERS = 2000;
+
 	/** Default converters */
 	private static final Map<Class<?>, IConverter<?>> DEFAULT_CONVERTERS = new HashMap<Class<?>, IConverter<?>>();
 	
@@ -70,7 +80,7 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		DEFAULT_CONVERTERS.put(byte.class, new ByteConverter());
 		DEFAULT_CONVERTERS.put(Calendar.class, new CalendarConverter());
 		DEFAULT_CONVERTERS.put(Character.class, new CharacterConverter());
-		DEFAULT_CONVERTERS.put(char.class, new CalendarConverter());
+		DEFAULT_CONVERTERS.put(char.class, new CharacterConverter());
 		DEFAULT_CONVERTERS.put(Double.class, new DoubleConverter());
 		DEFAULT_CONVERTERS.put(double.class, new DoubleConverter());
 		DEFAULT_CONVERTERS.put(Float.class, new FloatConverter());
@@ -109,14 +119,27 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	/** Nom de l'attribut auto g�n�r�s par la BDD si il existe */
 	private Field autoGeneratedAttribute; 
 
+	/** Version attribute (optimistic locking), if any */
+	private Field versionAttribute;
+
+	/** Inserted column names */
+	private String[] insertColumnNames;
+
+	/** Primary key column names */
+	private String[] pkColumnNames;
+
 	/** Converters map */
 	private Map<Field, IConverter<?>> converters = new HashMap<Field, IConverter<?>>();
+
+	/** Row mapper (used to read rows and to bind instances) */
+	private RowMapper<TYPE> rowMapper;
 	
 	/** Requ�tes */
 	private String selectAllRequest;
 	private String selectWithPKRequest;
 	private String deletAllRequest;
 	private String deletWithPKRequest;
+	private String deleteInstanceRequest;
 	private String updateRequest;
 	private String insertRequest;
 	private String countAllRequest;
@@ -124,6 +147,27 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	/** Class constructor */
 	private Constructor<TYPE> constructor;
 
+	/** Number of rows sent in each JDBC batch */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/** Database dialect resolver */
+	private final DialectResolver dialectResolver;
+
+	/**
+	 * Requests built with the current dialect (replaced when the dialect
+	 * resolver is reset and returns another dialect)
+	 */
+	private volatile DialectRequests dialectRequests = new DialectRequests(null);
+
+	/** Partial update requests, indexed by updated attribute names */
+	private final ConcurrentMap<List<String>, PartialUpdate> partialUpdates = new ConcurrentHashMap<List<String>, PartialUpdate>();
+
+	/** Compiled requests cache hits */
+	private final AtomicLong compiledQueriesHits = new AtomicLong();
+
+	/** Compiled requests cache misses */
+	private final AtomicLong compiledQueriesMisses = new AtomicLong();
+
 	/**
 	 * Constructeur priv�.
 	 * @param mapping mapping de la classe mapp�e.
@@ -132,9 +176,20 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	 * 		mapping.
 	 */
 	public DAOImpl(IMappgingConfiguration mapping, Class<TYPE> theClass) {
+		this(mapping, theClass, new DialectResolver());
+	}
+
+	/**
+	 * Constructor sharing the dialect resolver of other DAOs.
+	 * @param mapping the mapping configuration.
+	 * @param theClass the mapped class.
+	 * @param dialectResolver the database dialect resolver.
+	 */
+	public DAOImpl(IMappgingConfiguration mapping, Class<TYPE> theClass, DialectResolver dialectResolver) {
 		if (log.isDebugEnabled())
 			log.debug("Descriptor loaded");
 		this.mappedClass = theClass;
+		this.dialectResolver = dialectResolver;
 		tableName = mapping.getSQLTableName(theClass);
 
 		// Retrieve mapped class constuctor
@@ -159,6 +214,13 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		autoGeneratedAttribute = mapping.getAutoGeneratedAttribute(theClass);
 		if (autoGeneratedAttribute != null)
 			autoGeneratedAttribute.setAccessible(true);
+		// Version attribute (optimistic locking)
+		versionAttribute = mapping.getVersionAttribute(theClass);
+		if (versionAttribute != null) {
+			if (versionAttribute.getType() != int.class && versionAttribute.getType() != long.class)
+				throw new IllegalArgumentException("Version attribute must be an int or a long : " + versionAttribute);
+			versionAttribute.setAccessible(true);
+		}
 		// R�cup�ration des attributs de la classe
 		attributes = ReflectionHelper.getFields(theClass);
 		// Parcours des attributs, construction du dictionnaire de colonnes et
@@ -195,6 +257,17 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 			}
 	
 		}
+		rowMapper = new RowMapper<TYPE>(attributes, pkAttributes, autoGeneratedAttribute, versionAttribute, converters);
+		List<String> insertColumns = new ArrayList<String>();
+		for (Field attribute : attributes) {
+			if (!attribute.equals(autoGeneratedAttribute))
+				insertColumns.add(columnNamesDictionnary.get(attribute));
+		}
+		insertColumnNames = insertColumns.toArray(new String[insertColumns.size()]);
+		pkColumnNames = new String[pkAttributes.size()];
+		for (i=0; i<pkColumnNames.length; i++) {
+			pkColumnNames[i] = columnNamesDictionnary.get(pkAttributes.get(i));
+		}
 		
 		// Construction de la requ�te de s�lection de toute les valeurs
 		// d'un table
@@ -231,6 +304,12 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		if (log.isInfoEnabled())
 			log.info("deletWithPKRequest='" + deletWithPKRequest + "'");
 
+		// Deletion of an instance (the version must match)
+		buf.append(getWhereVersion());
+		deleteInstanceRequest = buf.toString();
+		if (log.isInfoEnabled())
+			log.info("deleteInstanceRequest='" + deleteInstanceRequest + "'");
+
 		// Construction de la requ�te d'insertion
 		buf.setLength(0);
 		buf.append("insert into ").append(tableName).append(" (");
@@ -253,6 +332,7 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		buf.append("update ").append(tableName).append(" set ");
 		appendColumnNames(buf, null, false, false, true);
 		appendWherePK(buf);
+		buf.append(getWhereVersion());
 		updateRequest = buf.toString();
 		if (log.isInfoEnabled())
 			log.info("updateRequest='" + updateRequest + "'");
@@ -299,7 +379,7 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 				ResultSet rs = pStmt.executeQuery();
 				if (rs.next()) {
 					result = ReflectionHelper.newInstance(constructor);
-					resultSetToInstanceAttributes(rs, result, false);
+					rowMapper.read(rs, 1, result, false);
 					for (int i=0; i<pkValue.length; i++) {
 						Field pkAttribute = pkAttributes.get(i);
 						pkAttribute.set(result, pkValue[i]);
@@ -328,15 +408,12 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	@Override
 	public boolean delete(Connection con, TYPE instance) throws SQLException {
 		if (sqlLog.isDebugEnabled())
-			sqlLog.debug(deletWithPKRequest);
+			sqlLog.debug(deleteInstanceRequest);
 		PreparedStatement pStmt = null;
 		try {
-			pStmt = con.prepareStatement(deletWithPKRequest);
-			int parameterIdx = 1;
-			for (Field pkAttribute : pkAttributes) {
-				instanceAttributeToStatementColumn(instance, pkAttribute, pStmt, parameterIdx);
-				parameterIdx++;
-			}
+			pStmt = con.prepareStatement(deleteInstanceRequest);
+			int count = rowMapper.bindPK(pStmt, 1, instance);
+			rowMapper.bindVersion(pStmt, count + 1, instance);
 			// Construction du r�sultat
 			boolean deleted = pStmt.executeUpdate()==1;
 
@@ -396,15 +473,13 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	 */
 	@Override
 	public int delete(Connection con, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues) throws SQLException {
-		StringBuffer buf = new StringBuffer(deletAllRequest);
-		appendCustomWhereClause(buf, whereClauseAttributeNames, whereClauseAttributeValues);
-		String request = buf.toString();
+		CompiledQuery query = compile(dialectResolver.getDialect(con), QueryShape.DELETE, whereClauseAttributeNames, whereClauseAttributeValues, null, false);
 		if (sqlLog.isDebugEnabled())
-			sqlLog.debug("customDeleteRequest=" + request);
+			sqlLog.debug("customDeleteRequest=" + query.getSQL());
 		PreparedStatement pStmt = null;
 		try {
-			pStmt = con.prepareStatement(request);
-			bindAttributeValueToStatement(pStmt, whereClauseAttributeNames, whereClauseAttributeValues);
+			pStmt = con.prepareStatement(query.getSQL());
+			query.bind(pStmt, whereClauseAttributeValues);
 			int deleted = pStmt.executeUpdate();
 
 			// Fermeture du statement
@@ -444,7 +519,7 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 				result.add(newInstance);
 				if (log.isDebugEnabled())
 					log.debug("newInstance=" + newInstance);
-				resultSetToInstanceAttributes(rs, newInstance, true);
+				rowMapper.read(rs, 1, newInstance, true);
 			}
 			// Fermeture du statement
 			pStmt.close();
@@ -467,14 +542,14 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	@Override
 	public void dump(OutputStream out, String encoding, Connection con, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues, Object[] orderByClauseItems, int maxRows) throws SQLException {
 		// Pr�paration de la requ�te de s�lection
-		String request = builSelectRequest(whereClauseAttributeNames, whereClauseAttributeValues, orderByClauseItems, maxRows);
+		CompiledQuery query = compileSelect(dialectResolver.getDialect(con), whereClauseAttributeNames, whereClauseAttributeValues, orderByClauseItems, maxRows);
 		PreparedStatement pStmt = null;
 		try {
 			// G�n�ration du dump (script SQL contenant les insert)
 			PrintStream pOut = new PrintStream(out, true, encoding);
-			pStmt = con.prepareStatement(request);
+			pStmt = con.prepareStatement(query.getSQL());
 			// Binding de la clause where
-			int parametersCount = bindAttributeValueToStatement(pStmt, whereClauseAttributeNames, whereClauseAttributeValues);
+			int parametersCount = query.bind(pStmt, whereClauseAttributeValues);
 			// Binding de la clause limit
 			if (maxRows>0)
 				pStmt.setInt(parametersCount, maxRows);
@@ -520,40 +595,6 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
-	private String builSelectRequest(String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues, Object[] orderByClauseItems, int maxRows) throws SQLException {
-		StringBuffer buf = new StringBuffer(selectAllRequest);
-		appendCustomWhereClause(buf, whereClauseAttributeNames, whereClauseAttributeValues);
-		// Ajout de la clause 'order by'
-		if (orderByClauseItems!=null && orderByClauseItems.length>0) {
-			buf.append(" order by ");
-			for (int i=0; i<orderByClauseItems.length; i++) {
-				if (i!=0) buf.append(", ");
-				Object orderByClauseItem = orderByClauseItems[i];
-				if (!(orderByClauseItem instanceof AbstractOrderByClause)) {
-					Field attribute = getAttributeByName((String) orderByClauseItem);
-					buf.append(columnNamesDictionnary.get(attribute));
-				}
-				else {
-					String attributeName = ((AbstractOrderByClause) orderByClauseItem).getAttributeName();
-					Field attribute = getAttributeByName(attributeName);
-					buf.append(columnNamesDictionnary.get(attribute));
-					if (orderByClauseItem instanceof AscendantOrderByClause)
-						buf.append(" asc");
-					else if (orderByClauseItem instanceof DescendantOrderByClause)
-						buf.append(" desc");
-					else
-						throw new IllegalStateException("Unknown order by clause item type : '" + orderByClauseItem + "'", null);
-				}
-			}
-		}
-		// Ajout de la clause limit
-		if (maxRows>0)
-			buf.append(" limit ?");
-		String request = buf.toString();
-		if (sqlLog.isDebugEnabled())
-			sqlLog.debug("customSelectRequest=" + request);
-		return request;
-	}
 	
 	/* (non-Javadoc)
 	 * @see org.activitymgr.core.orm.impl.IDbClassMapper#select(java.sql.Connection, java.lang.String[], java.lang.Object[], java.lang.Object[], int)
@@ -561,12 +602,12 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	@Override
 	@SuppressWarnings("unchecked")
 	public TYPE[] select(Connection con, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues, Object[] orderByClauseItems, int maxRows) throws SQLException {
-		String request = builSelectRequest(whereClauseAttributeNames, whereClauseAttributeValues, orderByClauseItems, maxRows);
+		CompiledQuery query = compileSelect(dialectResolver.getDialect(con), whereClauseAttributeNames, whereClauseAttributeValues, orderByClauseItems, maxRows);
 		PreparedStatement pStmt = null;
 		try {
-			pStmt = con.prepareStatement(request);
+			pStmt = con.prepareStatement(query.getSQL());
 			// Binding de la clause where
-			int parametersCount = bindAttributeValueToStatement(pStmt, whereClauseAttributeNames, whereClauseAttributeValues);
+			int parametersCount = query.bind(pStmt, whereClauseAttributeValues);
 			// Binding de la clause limit
 			if (maxRows>0)
 				pStmt.setInt(parametersCount, maxRows);
@@ -577,7 +618,7 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 				result.add(newInstance);
 				if (log.isDebugEnabled())
 					log.debug("newInstance=" + newInstance);
-				resultSetToInstanceAttributes(rs, newInstance, true);
+				rowMapper.read(rs, 1, newInstance, true);
 			}
 			// Fermeture du statement
 			pStmt.close();
@@ -600,11 +641,168 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#selectPage(java.sql.Connection, java.lang.String[], java.lang.Object[], java.lang.Object[], java.lang.Object, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public TYPE[] selectPage(Connection con, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues, Object[] orderByClauseItems, TYPE lastSeen, int pageSize) throws SQLException {
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Invalid page size : " + pageSize);
+		// The primary key makes the order unique, which is required to
+		// resume after the last seen row
+		Object[] pageOrderByClauseItems = completeOrderByWithPK(orderByClauseItems);
+		CompiledQuery query = compile(dialectResolver.getDialect(con), lastSeen == null ? QueryShape.SELECT : QueryShape.SEEK, whereClauseAttributeNames, whereClauseAttributeValues, pageOrderByClauseItems, true);
+		if (sqlLog.isDebugEnabled())
+			sqlLog.debug("customSelectPageRequest=" + query.getSQL());
+		PreparedStatement pStmt = null;
+		try {
+			if (lastSeen != null) {
+				for (Field seekAttribute : query.getSeekAttributes()) {
+					if (seekAttribute.get(lastSeen) == null)
+						throw new IllegalArgumentException("Order by attribute '" + seekAttribute.getName() + "' of the last seen row is null");
+				}
+			}
+			pStmt = con.prepareStatement(query.getSQL());
+			// Binding de la clause where
+			int parametersCount = query.bind(pStmt, whereClauseAttributeValues);
+			// Binding du pr�dicat de reprise
+			if (lastSeen != null)
+				parametersCount = query.bindSeek(pStmt, parametersCount, lastSeen);
+			// Binding de la clause limit
+			pStmt.setInt(parametersCount, pageSize);
+			ResultSet rs = pStmt.executeQuery();
+			List<Object> result = new ArrayList<Object>();
+			while (rs.next()) {
+				TYPE newInstance = newInstance();
+				result.add(newInstance);
+				rowMapper.read(rs, 1, newInstance, true);
+			}
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+
+			// Retour du r�sultat
+			return result.toArray((TYPE[]) Array.newInstance(mappedClass, result.size()));
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
+	/**
+	 * Appends the primary key attributes that are missing in an order by
+	 * clause.
+	 * @param orderByClauseItems the order by clause items.
+	 * @return the completed order by clause items.
+	 */
+	private Object[] completeOrderByWithPK(Object[] orderByClauseItems) {
+		List<Object> items = new ArrayList<Object>();
+		List<String> attributeNames = new ArrayList<String>();
+		if (orderByClauseItems != null) {
+			for (Object orderByClauseItem : orderByClauseItems) {
+				items.add(orderByClauseItem);
+				attributeNames.add(orderByClauseItem instanceof AbstractOrderByClause ? ((AbstractOrderByClause) orderByClauseItem).getAttributeName() : (String) orderByClauseItem);
+			}
+		}
+		for (String pkAttributeName : pkAttributeNames) {
+			if (!attributeNames.contains(pkAttributeName))
+				items.add(pkAttributeName);
+		}
+		return items.toArray();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#forEach(java.sql.Connection, java.lang.String[], java.lang.Object[], java.lang.Object[], int, org.activitymgr.core.orm.IRowHandler)
+	 */
+	@Override
+	public <E extends Exception> int forEach(Connection con, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues, Object[] orderByClauseItems, int fetchSize, IRowHandler<TYPE, E> handler) throws SQLException, E {
+		Dialect dialect = dialectResolver.getDialect(con);
+		CompiledQuery query = compileSelect(dialect, whereClauseAttributeNames, whereClauseAttributeValues, orderByClauseItems, -1);
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			pStmt = con.prepareStatement(query.getSQL());
+			dialect.setFetchSize(pStmt, fetchSize);
+			// Binding de la clause where
+			query.bind(pStmt, whereClauseAttributeValues);
+			rs = pStmt.executeQuery();
+			int count = 0;
+			while (rs.next()) {
+				TYPE newInstance = newInstance();
+				rowMapper.read(rs, 1, newInstance, true);
+				handler.handle(newInstance);
+				count++;
+			}
+			// Fermeture du curseur (un curseur en streaming bloque la connexion)
+			rs.close();
+			rs = null;
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+
+			return count;
+		} catch (IllegalArgumentException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (rs!=null) try { rs.close(); } catch (SQLException ignored) {}
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
 	@Override
 	public TYPE newInstance() {
 		return ReflectionHelper.newInstance(constructor);
 	}
 
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#getMappedClass()
+	 */
+	@Override
+	public Class<TYPE> getMappedClass() {
+		return mappedClass;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#getPrimaryKey(java.lang.Object)
+	 */
+	@Override
+	public Object[] getPrimaryKey(TYPE instance) {
+		try {
+			Object[] pkValues = new Object[pkAttributes.size()];
+			for (int i=0; i<pkValues.length; i++) {
+				pkValues[i] = pkAttributes.get(i).get(instance);
+			}
+			return pkValues;
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#copy(java.lang.Object)
+	 */
+	@Override
+	public TYPE copy(TYPE instance) {
+		try {
+			TYPE copy = newInstance();
+			rowMapper.copy(instance, copy);
+			return copy;
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see org.activitymgr.core.orm.impl.IDbClassMapper#update(java.sql.Connection, TYPE)
 	 */
@@ -615,15 +813,9 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		PreparedStatement pStmt = null;
 		try {
 			pStmt = con.prepareStatement(updateRequest);
-			int mappedParametersNb = instanceAttributesToStatement(value, pStmt, false, false);
-			int parameterIdx = mappedParametersNb + 1;
-			for (Field pkAttribute : pkAttributes) {
-				instanceAttributeToStatementColumn(value, pkAttribute, pStmt, parameterIdx);
-				parameterIdx++;
-			}
-			int updated = pStmt.executeUpdate();
-			if (updated!=1)
-				throw new IllegalStateException("Row update failed");
+			rowMapper.bindUpdate(pStmt, value);
+			checkUpdateCount(pStmt.executeUpdate());
+			rowMapper.incrementVersion(value);
 			// Fermeture du statement
 			pStmt.close();
 			pStmt = null;
@@ -642,6 +834,73 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#update(java.sql.Connection, TYPE, java.lang.String[])
+	 */
+	@Override
+	public TYPE update(Connection con, TYPE value, String[] attributeNames) throws SQLException {
+		PartialUpdate partialUpdate = getPartialUpdate(attributeNames);
+		if (sqlLog.isDebugEnabled())
+			sqlLog.debug(partialUpdate.sql);
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = con.prepareStatement(partialUpdate.sql);
+			rowMapper.bindPartialUpdate(pStmt, partialUpdate.columnIndexes, value);
+			checkUpdateCount(pStmt.executeUpdate());
+			rowMapper.incrementVersion(value);
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+
+			// Retour du r�sultat
+			return value;
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
+	/**
+	 * Returns the partial update request of a set of attributes (the request
+	 * is only generated the first time the set is encountered).
+	 * @param attributeNames the updated attribute names.
+	 * @return the partial update request.
+	 */
+	private PartialUpdate getPartialUpdate(String[] attributeNames) {
+		List<String> key = Arrays.asList(attributeNames);
+		PartialUpdate partialUpdate = partialUpdates.get(key);
+		if (partialUpdate == null) {
+			if (attributeNames.length == 0)
+				throw new IllegalArgumentException("No attribute to update");
+			int[] columnIndexes = new int[attributeNames.length];
+			StringBuffer buf = new StringBuffer("update ").append(tableName).append(" set ");
+			for (int i=0; i<attributeNames.length; i++) {
+				Field attribute = getAttributeByName(attributeNames[i]);
+				if (pkAttributes.contains(attribute) || attribute.equals(autoGeneratedAttribute) || attribute.equals(versionAttribute))
+					throw new IllegalArgumentException("Attribute '" + attributeNames[i] + "' cannot be updated");
+				columnIndexes[i] = attributes.indexOf(attribute);
+				if (i!=0) buf.append(", ");
+				buf.append(columnNamesDictionnary.get(attribute)).append("=?");
+			}
+			if (versionAttribute != null) {
+				String versionColumnName = columnNamesDictionnary.get(versionAttribute);
+				buf.append(", ").append(versionColumnName).append('=').append(versionColumnName).append("+1");
+			}
+			appendWherePK(buf);
+			buf.append(getWhereVersion());
+			partialUpdate = new PartialUpdate(buf.toString(), columnIndexes);
+			if (log.isDebugEnabled())
+				log.debug("partialUpdateRequest='" + partialUpdate.sql + "'");
+			// The key is copied as the caller may reuse its array
+			if (partialUpdates.size() < MAX_COMPILED_QUERIES)
+				partialUpdates.putIfAbsent(new ArrayList<String>(key), partialUpdate);
+		}
+		return partialUpdate;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.activitymgr.core.orm.impl.IDbClassMapper#insert(java.sql.Connection, TYPE)
 	 */
@@ -649,14 +908,177 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	public TYPE insert(Connection con, TYPE value) throws SQLException {
 		if (sqlLog.isDebugEnabled())
 			sqlLog.debug(insertRequest);
+		Dialect dialect = dialectResolver.getDialect(con);
 		PreparedStatement pStmt = null;
 		try {
-			pStmt = con.prepareStatement(insertRequest, Statement.RETURN_GENERATED_KEYS);
-			instanceAttributesToStatement(value, pStmt, true, false);
+			pStmt = autoGeneratedAttribute != null && dialect.supportsGeneratedKeys() ? con
+					.prepareStatement(insertRequest, Statement.RETURN_GENERATED_KEYS) : con
+					.prepareStatement(insertRequest);
+			rowMapper.bindInsert(pStmt, value);
 			int updated = pStmt.executeUpdate();
 			if (updated!=1)
 				throw new IllegalStateException("Row insertion failed");
-			getAutoGeneratedKey(pStmt, value);
+			getAutoGeneratedKey(dialect, pStmt, value);
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+
+			// Retour du r�sultat
+			return value;
+		} catch (IllegalArgumentException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#insertAll(java.sql.Connection, TYPE[])
+	 */
+	@Override
+	public TYPE[] insertAll(Connection con, TYPE[] values) throws SQLException {
+		if (values.length == 0)
+			return values;
+		Dialect dialect = dialectResolver.getDialect(con);
+		if (autoGeneratedAttribute != null) {
+			// Without bulk generated keys support, rows are inserted one by one
+			// (the statement is still reused)
+			if (!dialect.supportsBatchGeneratedKeys()) {
+				for (TYPE value : values) {
+					insert(con, value);
+				}
+				return values;
+			}
+		}
+		// Without generated keys, the rows are sent in multi-row requests
+		else if (dialect.supportsMultiRowInsert() && values.length > 1) {
+			return insertAllInMultiRowRequests(con, dialect, values);
+		}
+		if (sqlLog.isDebugEnabled())
+			sqlLog.debug(insertRequest + " (x" + values.length + ")");
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = autoGeneratedAttribute != null ? con.prepareStatement(
+					insertRequest, Statement.RETURN_GENERATED_KEYS) : con
+					.prepareStatement(insertRequest);
+			int chunkStart = 0;
+			for (int i = 0; i < values.length; i++) {
+				rowMapper.bindInsert(pStmt, values[i]);
+				pStmt.addBatch();
+				if (i - chunkStart + 1 == batchSize || i == values.length - 1) {
+					checkBatchResult(pStmt.executeBatch(), i - chunkStart + 1, "Row insertion failed");
+					if (autoGeneratedAttribute != null) {
+						ResultSet rs = pStmt.getGeneratedKeys();
+						for (int j = chunkStart; j <= i; j++) {
+							if (!rs.next())
+								throw new IllegalStateException("Error while retrieving auto generated key");
+							rowMapper.readAutoGenerated(rs, 1, values[j]);
+						}
+						rs.close();
+					}
+					chunkStart = i + 1;
+				}
+			}
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+
+			return values;
+		} catch (IllegalArgumentException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
+	/**
+	 * Inserts rows with multi-row insert requests (one request for each chunk
+	 * of rows).
+	 * @param con the SQL connection.
+	 * @param dialect the database dialect.
+	 * @param values the instances to insert.
+	 * @return the inserted instances.
+	 * @throws SQLException thrown if a database access error occurs.
+	 */
+	private TYPE[] insertAllInMultiRowRequests(Connection con, Dialect dialect, TYPE[] values) throws SQLException {
+		int rowsPerRequest = Math.max(1, Math.min(batchSize, MAX_INSERT_PARAMETERS / insertColumnNames.length));
+		PreparedStatement pStmt = null;
+		try {
+			int chunkStart = 0;
+			while (chunkStart < values.length) {
+				int rows = Math.min(rowsPerRequest, values.length - chunkStart);
+				// Full chunks share the same request ; the statement is
+				// only prepared again for the last chunk
+				if (pStmt == null || rows != rowsPerRequest) {
+					if (pStmt != null)
+						pStmt.close();
+					pStmt = null;
+					String request = dialect.buildInsertRequest(tableName, insertColumnNames, rows);
+					if (sqlLog.isDebugEnabled())
+						sqlLog.debug(request);
+					pStmt = con.prepareStatement(request);
+				}
+				int parameterIdx = 1;
+				for (int i = chunkStart; i < chunkStart + rows; i++) {
+					parameterIdx += rowMapper.bindInsert(pStmt, parameterIdx, values[i]);
+				}
+				if (pStmt.executeUpdate() != rows)
+					throw new IllegalStateException("Row insertion failed");
+				chunkStart += rows;
+			}
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+
+			return values;
+		} catch (IllegalArgumentException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#merge(java.sql.Connection, TYPE)
+	 */
+	@Override
+	public TYPE merge(Connection con, TYPE value) throws SQLException {
+		// The key of an auto generated row is only known after its insertion
+		if (autoGeneratedAttribute != null)
+			throw new IllegalStateException("Merge is not supported for auto generated keys");
+		Dialect dialect = dialectResolver.getDialect(con);
+		DialectRequests requests = getDialectRequests(dialect);
+		String request = requests.upsertRequest;
+		if (request == null) {
+			request = dialect.buildUpsertRequest(tableName, insertColumnNames, pkColumnNames);
+			if (log.isInfoEnabled())
+				log.info("upsertRequest='" + request + "'");
+			requests.upsertRequest = request;
+		}
+		if (sqlLog.isDebugEnabled())
+			sqlLog.debug(request);
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = con.prepareStatement(request);
+			rowMapper.bindInsert(pStmt, value);
+			// The updated rows count is database specific (MySQL reports 2
+			// for an updated row, 0 for an unchanged one)
+			pStmt.executeUpdate();
 			// Fermeture du statement
 			pStmt.close();
 			pStmt = null;
@@ -675,6 +1097,128 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#updateAll(java.sql.Connection, TYPE[])
+	 */
+	@Override
+	public TYPE[] updateAll(Connection con, TYPE[] values) throws SQLException {
+		if (values.length == 0)
+			return values;
+		if (sqlLog.isDebugEnabled())
+			sqlLog.debug(updateRequest + " (x" + values.length + ")");
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = con.prepareStatement(updateRequest);
+			int chunkStart = 0;
+			for (int i = 0; i < values.length; i++) {
+				rowMapper.bindUpdate(pStmt, values[i]);
+				pStmt.addBatch();
+				if (i - chunkStart + 1 == batchSize || i == values.length - 1) {
+					int[] counts = pStmt.executeBatch();
+					if (counts.length != i - chunkStart + 1)
+						throw new IllegalStateException("Row update failed");
+					for (int count : counts) {
+						if (count != Statement.SUCCESS_NO_INFO)
+							checkUpdateCount(count);
+					}
+					for (int j = chunkStart; j <= i; j++) {
+						rowMapper.incrementVersion(values[j]);
+					}
+					chunkStart = i + 1;
+				}
+			}
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+
+			return values;
+		} catch (IllegalArgumentException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#deleteAll(java.sql.Connection, TYPE[])
+	 */
+	@Override
+	public int deleteAll(Connection con, TYPE[] values) throws SQLException {
+		if (values.length == 0)
+			return 0;
+		if (sqlLog.isDebugEnabled())
+			sqlLog.debug(deletWithPKRequest + " (x" + values.length + ")");
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = con.prepareStatement(deletWithPKRequest);
+			int deleted = 0;
+			int chunkStart = 0;
+			for (int i = 0; i < values.length; i++) {
+				rowMapper.bindPK(pStmt, 1, values[i]);
+				pStmt.addBatch();
+				if (i - chunkStart + 1 == batchSize || i == values.length - 1) {
+					for (int count : pStmt.executeBatch()) {
+						// The driver may not report the deleted rows count ;
+						// the row is then considered as deleted
+						deleted += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+					}
+					chunkStart = i + 1;
+				}
+			}
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+			
+			return deleted;
+		} catch (IllegalArgumentException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
+	/**
+	 * Checks that each request of a batch has modified exactly one row.
+	 * @param counts the batch execution result.
+	 * @param expected the number of requests in the batch.
+	 * @param errorMessage the error message.
+	 */
+	private static void checkBatchResult(int[] counts, int expected, String errorMessage) {
+		if (counts.length != expected)
+			throw new IllegalStateException(errorMessage);
+		for (int count : counts) {
+			if (count != 1 && count != Statement.SUCCESS_NO_INFO)
+				throw new IllegalStateException(errorMessage);
+		}
+	}
+
+	/**
+	 * @return the number of rows sent in each JDBC batch.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the number of rows sent in each JDBC batch.
+	 * @param batchSize the batch size.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Invalid batch size : " + batchSize);
+		this.batchSize = batchSize;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.activitymgr.core.orm.impl.IDbClassMapper#countAll(java.sql.Connection)
 	 */
@@ -707,15 +1251,13 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	 */
 	@Override
 	public long count(Connection con, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues) throws SQLException {
-		StringBuffer buf = new StringBuffer(countAllRequest).append(" ");
-		appendCustomWhereClause(buf, whereClauseAttributeNames, whereClauseAttributeValues);
-		String request = buf.toString();
+		CompiledQuery query = compile(dialectResolver.getDialect(con), QueryShape.COUNT, whereClauseAttributeNames, whereClauseAttributeValues, null, false);
 		if (sqlLog.isDebugEnabled())
-			sqlLog.debug("customCountRequest=" + request);
+			sqlLog.debug("customCountRequest=" + query.getSQL());
 		PreparedStatement pStmt = null;
 		try {
-			pStmt = con.prepareStatement(request);
-			bindAttributeValueToStatement(pStmt, whereClauseAttributeNames, whereClauseAttributeValues);
+			pStmt = con.prepareStatement(query.getSQL());
+			query.bind(pStmt, whereClauseAttributeValues);
 			ResultSet rs = pStmt.executeQuery();
 			if (!rs.next())
 				throw new IllegalStateException("Nothing returned form this count query!");
@@ -733,64 +1275,200 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
-	private int instanceAttributesToStatement(TYPE instance, PreparedStatement pStmt, boolean includePK, boolean includeAutoGenerated) throws SQLException, IllegalArgumentException, IllegalAccessException {
-		if (log.isDebugEnabled())
-			log.debug("instanceAttributesToStatement(" + instance + ", " + pStmt + ", " + includePK + ", " + includeAutoGenerated + ")");
-		int parameterIdx = 1;
-		for (Field attribute : attributes) {
-			if ((includePK || !pkAttributes.contains(attribute)) 
-					&& (includeAutoGenerated ||!attribute.equals(autoGeneratedAttribute))) {
-				instanceAttributeToStatementColumn(instance, attribute, pStmt, parameterIdx);
-				parameterIdx++;
-			}
-		}
-		return parameterIdx-1;
+	/**
+	 * Returns the compiled select request matching the given clauses.
+	 * @param dialect the database dialect.
+	 * @param whereClauseAttributeNames the where clause attribute names.
+	 * @param whereClauseAttributeValues the where clause attribute values.
+	 * @param orderByClauseItems the order by clause items.
+	 * @param maxRows the maximum number of rows (<code>-1</code> for no limit).
+	 * @return the compiled request.
+	 */
+	private CompiledQuery compileSelect(Dialect dialect, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues, Object[] orderByClauseItems, int maxRows) {
+		CompiledQuery query = compile(dialect, QueryShape.SELECT, whereClauseAttributeNames, whereClauseAttributeValues, orderByClauseItems, maxRows>0);
+		if (sqlLog.isDebugEnabled())
+			sqlLog.debug("customSelectRequest=" + query.getSQL());
+		return query;
 	}
 
-	private void instanceAttributeToStatementColumn(TYPE instance, Field attribute, PreparedStatement pStmt, int parameterIdx) throws SQLException, IllegalArgumentException, IllegalAccessException {
-		Object attributeValue = attribute.get(instance);
-		attributeValueToStatementColumn(attribute, attributeValue, pStmt, parameterIdx);
+	/**
+	 * Returns the compiled request matching the given clauses (the request is
+	 * only generated the first time a shape is encountered).
+	 * @param dialect the database dialect.
+	 * @param kind the request kind.
+	 * @param whereClauseAttributeNames the where clause attribute names.
+	 * @param whereClauseAttributeValues the where clause attribute values.
+	 * @param orderByClauseItems the order by clause items.
+	 * @param limit <code>true</code> if a limit clause must be added.
+	 * @return the compiled request.
+	 */
+	private CompiledQuery compile(Dialect dialect, int kind, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues, Object[] orderByClauseItems, boolean limit) {
+		QueryShape shape = new QueryShape(kind, whereClauseAttributeNames, whereClauseAttributeValues, orderByClauseItems, limit);
+		ConcurrentMap<QueryShape, CompiledQuery> compiledQueries = getDialectRequests(dialect).compiledQueries;
+		CompiledQuery query = compiledQueries.get(shape);
+		if (query != null) {
+			compiledQueriesHits.incrementAndGet();
+			return query;
+		}
+		compiledQueriesMisses.incrementAndGet();
+		query = compile(dialect, shape);
+		// The number of shapes is bounded by the calling code, except the IN
+		// lists sizes ; the cache is bounded to stay safe
+		if (compiledQueries.size() < MAX_COMPILED_QUERIES)
+			compiledQueries.putIfAbsent(shape, query);
+		return query;
 	}
 
-	private int bindAttributeValueToStatement(PreparedStatement pStmt, String[] attributeNames, Object[] attributeValues) throws SQLException {
-		int parameterIdx = 1;
-		if (attributeNames!=null) {
-			for (int i=0; i<attributeNames.length; i++) {
-				String attributeName = attributeNames[i];
-				Object attributeValue = attributeValues[i];
-				Field attribute = getAttributeByName(attributeName);
-				if (attributeValue instanceof AbstractStatement) {
-					if (attributeValue instanceof InStatement) {
-						for (Object value : ((InStatement) attributeValue).getValues()) {
-							attributeValueToStatementColumn(attribute, value, pStmt, parameterIdx++);
-						}
-					}
-					else if (attributeValue instanceof BetweenStatement) {
-						BetweenStatement bs = (BetweenStatement) attributeValue;
-						attributeValueToStatementColumn(attribute, bs.getLow(), pStmt, parameterIdx++);
-						attributeValueToStatementColumn(attribute, bs.getHigh(), pStmt, parameterIdx++);
-					}
-					else if (attributeValue instanceof GreaterThanStatement) {
-						GreaterThanStatement gts = (GreaterThanStatement) attributeValue;
-						attributeValueToStatementColumn(attribute, gts.getValue(), pStmt, parameterIdx++);
-					}
-					else if (attributeValue instanceof LowerThanStatement) {
-						LowerThanStatement lts = (LowerThanStatement) attributeValue;
-						attributeValueToStatementColumn(attribute, lts.getValue(), pStmt, parameterIdx++);
-					}
-					else if (attributeValue instanceof LikeStatement) {
-						LikeStatement lts = (LikeStatement) attributeValue;
-						attributeValueToStatementColumn(attribute, lts.getValue(), pStmt, parameterIdx++);
-					} else {
-						throw new IllegalStateException("Unknown statement type : " + attributeValue);
+	/**
+	 * Generates the request of a shape.
+	 * @param dialect the database dialect.
+	 * @param shape the request shape.
+	 * @return the compiled request.
+	 */
+	@SuppressWarnings("unchecked")
+	private CompiledQuery compile(Dialect dialect, QueryShape shape) {
+		StringBuffer buf = new StringBuffer();
+		switch (shape.getKind()) {
+		case QueryShape.SELECT :
+		case QueryShape.SEEK :
+			buf.append(selectAllRequest);
+			break;
+		case QueryShape.COUNT :
+			buf.append(countAllRequest);
+			break;
+		default :
+			buf.append(deletAllRequest);
+		}
+		// Ajout de la clause 'where'
+		String[] whereAttributeNames = shape.getWhereAttributeNames();
+		int[] whereValueShapes = shape.getWhereValueShapes();
+		IConverter<Object>[] whereConverters = null;
+		if (whereAttributeNames!=null) {
+			whereConverters = newConverters(whereAttributeNames.length);
+			buf.append(" where ");
+			for (int i=0; i<whereAttributeNames.length; i++) {
+				Field whereClauseAttribute = getAttributeByName(whereAttributeNames[i]);
+				whereConverters[i] = (IConverter<Object>) converters.get(whereClauseAttribute);
+				if (i!=0) buf.append(" and ");
+				buf.append(columnNamesDictionnary.get(whereClauseAttribute));
+				int valueShape = whereValueShapes[i];
+				switch (valueShape) {
+				case QueryShape.NULL_VALUE :
+					buf.append(" is null");
+					break;
+				case QueryShape.SIMPLE_VALUE :
+				case QueryShape.IN + 1 :
+					buf.append("=?");
+					break;
+				case QueryShape.BETWEEN :
+					buf.append(" between ? and ?");
+					break;
+				case QueryShape.GREATER_THAN :
+					buf.append(">?");
+					break;
+				case QueryShape.GREATER_THAN_OR_EQUALS :
+					buf.append(">=?");
+					break;
+				case QueryShape.LOWER_THAN :
+					buf.append("<?");
+					break;
+				case QueryShape.LOWER_THAN_OR_EQUALS :
+					buf.append("<=?");
+					break;
+				case QueryShape.LIKE :
+					buf.append(" like ?");
+					break;
+				default :
+					buf.append(" in (");
+					for (int j=QueryShape.IN; j<valueShape; j++) {
+						buf.append(j==QueryShape.IN ? "?" : ", ?");
 					}
-				} else if (attributeValue != null) {
-					attributeValueToStatementColumn(attribute, attributeValue, pStmt, parameterIdx++);
+					buf.append(")");
 				}
 			}
-			
 		}
-		return parameterIdx;
+		// Ajout du pr�dicat de reprise (pagination)
+		String[] orderByAttributeNames = shape.getOrderByAttributeNames();
+		Field[] seekAttributes = null;
+		IConverter<Object>[] seekConverters = null;
+		if (shape.getKind() == QueryShape.SEEK) {
+			int[] orderByDirections = shape.getOrderByDirections();
+			seekAttributes = new Field[orderByAttributeNames.length];
+			seekConverters = newConverters(orderByAttributeNames.length);
+			buf.append(whereAttributeNames!=null ? " and (" : " where (");
+			for (int i=0; i<orderByAttributeNames.length; i++) {
+				seekAttributes[i] = getAttributeByName(orderByAttributeNames[i]);
+				seekConverters[i] = (IConverter<Object>) converters.get(seekAttributes[i]);
+				if (i!=0) buf.append(" or ");
+				buf.append("(");
+				for (int j=0; j<i; j++) {
+					buf.append(columnNamesDictionnary.get(seekAttributes[j])).append("=? and ");
+				}
+				buf.append(columnNamesDictionnary.get(seekAttributes[i]));
+				buf.append(orderByDirections[i] == QueryShape.DESCENDANT ? "<?" : ">?");
+				buf.append(")");
+			}
+			buf.append(")");
+		}
+		// Ajout de la clause 'order by'
+		if (orderByAttributeNames!=null) {
+			int[] orderByDirections = shape.getOrderByDirections();
+			buf.append(" order by ");
+			for (int i=0; i<orderByAttributeNames.length; i++) {
+				if (i!=0) buf.append(", ");
+				Field attribute = getAttributeByName(orderByAttributeNames[i]);
+				buf.append(columnNamesDictionnary.get(attribute));
+				if (orderByDirections[i] == QueryShape.ASCENDANT)
+					buf.append(" asc");
+				else if (orderByDirections[i] == QueryShape.DESCENDANT)
+					buf.append(" desc");
+			}
+		}
+		// Ajout de la clause limit
+		if (shape.hasLimit())
+			dialect.appendLimit(buf, false);
+		String request = buf.toString();
+		if (log.isDebugEnabled())
+			log.debug("compiledRequest='" + request + "'");
+		return new CompiledQuery(request, whereValueShapes, whereConverters, seekAttributes, seekConverters);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#getQueryCacheStatistics()
+	 */
+	@Override
+	public QueryCacheStatistics getQueryCacheStatistics() {
+		return new QueryCacheStatistics(compiledQueriesHits.get(), compiledQueriesMisses.get(), dialectRequests.compiledQueries.size());
+	}
+
+	/**
+	 * Returns the requests built with a dialect.
+	 * <p>
+	 * The generated requests depend on the dialect (limit clause, upsert
+	 * syntax...) : when the dialect resolver returns another dialect (after a
+	 * switch to another database), the requests built with the previous one
+	 * are dropped.
+	 * </p>
+	 * @param dialect the database dialect.
+	 * @return the requests built with this dialect.
+	 */
+	private DialectRequests getDialectRequests(Dialect dialect) {
+		DialectRequests requests = dialectRequests;
+		if (requests.dialect != dialect) {
+			requests = new DialectRequests(dialect);
+			dialectRequests = requests;
+		}
+		return requests;
+	}
+
+	/**
+	 * @param length
+	 *            the array length.
+	 * @return a new converters array.
+	 */
+	@SuppressWarnings("unchecked")
+	private static IConverter<Object>[] newConverters(int length) {
+		return (IConverter<Object>[]) new IConverter<?>[length];
 	}
 
 	private Field getAttributeByName(String attributeName) {
@@ -821,7 +1499,7 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	public TYPE read(ResultSet rs, int fromIndex) {
 		try {
 			TYPE instance = ReflectionHelper.newInstance(constructor);
-			resultSetToInstanceAttributes(rs, fromIndex, instance, true);
+			rowMapper.read(rs, fromIndex, instance, true);
 			return instance;
 		} catch (IllegalArgumentException e) {
 			throw new IllegalStateException(e);
@@ -832,49 +1510,6 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
-	private void resultSetToInstanceAttributes(ResultSet rs, TYPE instance, boolean includePK) throws SQLException, IllegalArgumentException, IllegalAccessException {
-		resultSetToInstanceAttributes(rs, 1, instance, includePK);
-	}
-
-	private void resultSetToInstanceAttributes(ResultSet rs, int fromIndex, TYPE instance, boolean includePK) throws SQLException, IllegalArgumentException, IllegalAccessException {
-		int parameterIdx = fromIndex;
-		for (Field attribute : attributes) {
-			if (includePK || !pkAttributes.contains(attribute)) {
-				resultSetColumnToInstanceAttribute(rs, parameterIdx, instance, attribute);
-				parameterIdx++;
-			}
-		}
-	}
-	
-	private void resultSetColumnToInstanceAttribute(ResultSet rs, int rsColumnIdx, TYPE instance, Field attribute) throws SQLException, IllegalArgumentException, IllegalAccessException {
-		@SuppressWarnings("unchecked")
-		IConverter<Object> converter = (IConverter<Object>) converters.get(attribute);
-		Object attributeValue = converter.readValue(rs, rsColumnIdx);
-		// Test if the value was null
-		if (rs.wasNull()) {
-			attributeValue = null;
-		}
-		if (log.isDebugEnabled())
-			log.debug("    +-> '" + attribute.getName() + "'='" + attributeValue + "'");
-		// If the atttibute value is null, retrieve the default value for a
-		// primitive type
-		if (attributeValue == null) {
-			attribute.set(instance, defaultTypeValue(attribute.getType()));
-		} else {
-			attribute.set(instance, attributeValue);
-		}
-	}
-
-	private Object defaultTypeValue(Class<?> type) {
-		if (!type.isPrimitive()) {
-			return null;
-		} else if (type.equals(boolean.class)) {
-			return (boolean) false;
-		} else {
-			return 0;
-		}
-	}
-
 	@Override
 	public String getColumnNamesRequestFragment(String tableAliasToUse, boolean includePK) {
 		StringWriter w = new StringWriter();
@@ -901,7 +1536,11 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 					}
 					buf.append(columnName);
 					if (includeStamtementParameter) {
-						buf.append("=?");
+						// The version is incremented by the update itself
+						if (attribute.equals(versionAttribute))
+							buf.append('=').append(columnName).append("+1");
+						else
+							buf.append("=?");
 					}
 					firstItem = false;
 				}
@@ -912,6 +1551,29 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 	
+	/**
+	 * @return the version criteria of the update and delete requests (an
+	 *         empty string if the class is not versioned).
+	 */
+	private String getWhereVersion() {
+		return versionAttribute != null ? " and "
+				+ columnNamesDictionnary.get(versionAttribute) + "=?" : "";
+	}
+
+	/**
+	 * Checks the number of rows modified by an update.
+	 * @param updated the number of updated rows.
+	 * @throws OptimisticLockException thrown if the row of a versioned
+	 * 		instance has been updated or deleted since the instance was read.
+	 */
+	private void checkUpdateCount(int updated) throws OptimisticLockException {
+		if (updated != 1) {
+			if (versionAttribute != null)
+				throw new OptimisticLockException(tableName + " row has been updated or deleted by another transaction");
+			throw new IllegalStateException("Row update failed");
+		}
+	}
+
 	private void appendWherePK(StringBuffer buf) {
 		buf.append(" where ");
 		boolean first = true;
@@ -923,67 +1585,10 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
-	private void appendCustomWhereClause(StringBuffer buf, String[] whereClauseAttributeNames, Object[] whereClauseAttributesValues) {
-		if (whereClauseAttributeNames!=null) {
-			if (whereClauseAttributesValues==null || whereClauseAttributeNames.length!=whereClauseAttributesValues.length)
-				throw new IllegalStateException("Wrong argument number", null);
-			buf.append(" where ");
-			for (int i=0; i<whereClauseAttributeNames.length; i++) {
-				String whereClauseAttributeName = whereClauseAttributeNames[i];
-				Object whereClauseAttributeValue = whereClauseAttributesValues[i];
-				Field whereClauseAttribute = getAttributeByName(whereClauseAttributeName);
-				String whereClausColumnName = columnNamesDictionnary.get(whereClauseAttribute);
-				if (i!=0) buf.append(" and ");
-				buf.append(whereClausColumnName);
-				if (whereClauseAttributeValue instanceof AbstractStatement) {
-					if (whereClauseAttributeValue instanceof InStatement) {
-						InStatement stmt = (InStatement) whereClauseAttributeValue;
-						if (stmt.getValues().length == 1) {
-							buf.append("=?");
-						}
-						else {
-							buf.append(" in (");
-							boolean first = true;
-							for (@SuppressWarnings("unused") Object value : stmt.getValues()) {
-								buf.append(first ? "?" : ", ?");
-								first = false;
-							}
-							buf.append(")");
-						}
-					}
-					else if (whereClauseAttributeValue instanceof BetweenStatement) {
-						buf.append(" between ? and ?");
-					}
-					else if (whereClauseAttributeValue instanceof GreaterThanStatement) {
-						GreaterThanStatement gts = (GreaterThanStatement) whereClauseAttributeValue;
-						buf.append(">");
-						if (gts.getOrEquals())
-							buf.append("=");
-						buf.append("?");
-					}
-					else if (whereClauseAttributeValue instanceof LowerThanStatement) {
-						LowerThanStatement lts = (LowerThanStatement) whereClauseAttributeValue;
-						buf.append("<");
-						if (lts.getOrEquals())
-							buf.append("=");
-						buf.append("?");
-					}
-					else if (whereClauseAttributeValue instanceof LikeStatement) {
-						buf.append(" like ?");
-					}
-					else 
-						throw new IllegalStateException("Unknown statement type : " + whereClauseAttributeValue);
-				} else if (whereClauseAttributeValue != null) {
-					buf.append("=?");
-				} else {
-					buf.append(" is null");
-				}
-			}
-		}
-	}
 	
 	/**
 	 * Retourne l'identifiant g�n�r� automatiquement par la base de donn�es.
+	 * @param dialect the database dialect.
 	 * @param pStmt le statement SQL.
 	 * @return l'identifiant g�n�r�.
 	 * @throws SQLException lev� en cas d'incident technique d'acc�s � la base.
@@ -993,36 +1598,30 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	 * @throws IllegalArgumentException 
 	 * @throws DbClassMappingException 
 	 */
-	private void getAutoGeneratedKey(PreparedStatement pStmt, TYPE instance) throws SQLException, IllegalArgumentException, IllegalAccessException {
+	private void getAutoGeneratedKey(Dialect dialect, PreparedStatement pStmt, TYPE instance) throws SQLException, IllegalArgumentException, IllegalAccessException {
 		PreparedStatement pStmt1 = null;
 		try {
 			// Pas de g�n�ration si aucun attribut auto g�n�r� n'est sp�cifi�
 			if (autoGeneratedAttribute!=null) {
-				// R�cup�ration de la connexion
-				Connection con = pStmt.getConnection();
-				// Cas de HSQLDB
-				if (isHSQLDB(con)) {
-					if (log.isDebugEnabled())
-						log.debug("HSQL Database detected");
-					pStmt1 = con.prepareStatement("call identity()");
+				// Lecture directe de l'identifiant g�n�r�
+				if (dialect.supportsGeneratedKeys()) {
+					ResultSet rs = pStmt.getGeneratedKeys();
+					if (!rs.next())
+						throw new IllegalStateException("Error while retrieving auto generated key");
+					rowMapper.readAutoGenerated(rs, 1, instance);
+				}
+				// Databases without generated keys support need another request
+				else {
+					pStmt1 = pStmt.getConnection().prepareStatement(dialect.getLastGeneratedKeyRequest());
 					ResultSet rs = pStmt1.executeQuery();
 					if (!rs.next())
 						throw new IllegalStateException("Error while retrieving auto generated key");
-					resultSetColumnToInstanceAttribute(rs, 1, instance, autoGeneratedAttribute);
+					rowMapper.readAutoGenerated(rs, 1, instance);
 					
 					// Fermeture du statement
 					pStmt1.close();
 					pStmt1 = null;
 				}
-				else {
-					if (log.isDebugEnabled())
-						log.debug("Generic Database detected");
-					// R�cup�ration de l'identifiant g�n�r�
-					ResultSet rs = pStmt.getGeneratedKeys();
-					if (!rs.next())
-						throw new IllegalStateException("Error while retrieving auto generated key");
-					resultSetColumnToInstanceAttribute(rs, 1, instance, autoGeneratedAttribute);
-				}
 			}
 		}
 		finally {
@@ -1031,19 +1630,41 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 	}
 
 	/**
-	 * Indique si la BDD de donn�es est une base HSQLDB.
-	 * @param con la connexion SQL.
-	 * @return un bool�en indiquant si la BDD est de type HSQLDB.
-	 * @throws SQLException lev� en cas d'incident technique d'acc�s � la base.
+	 * Partial update request.
 	 */
-	private static boolean isHSQLDB(Connection con) throws SQLException {
-		// R�cup�ration du nom de la base de donn�es
-		String dbName = con.getMetaData().getDatabaseProductName();
-		if (log.isDebugEnabled())
-			log.debug("DbName=" + dbName);
-		return "HSQL Database Engine".equals(dbName);
+	private static final class PartialUpdate {
+
+		/** SQL request */
+		final String sql;
+
+		/** Indexes of the updated columns (in the mapping order) */
+		final int[] columnIndexes;
+
+		PartialUpdate(String sql, int[] columnIndexes) {
+			this.sql = sql;
+			this.columnIndexes = columnIndexes;
+		}
+
 	}
 
+	/**
+	 * Requests built with a dialect.
+	 */
+	private static final class DialectRequests {
+
+		/** Dialect used to build the requests */
+		final Dialect dialect;
+
+		/** Upsert request (built on first use) */
+		volatile String upsertRequest;
+
+		/** Compiled dynamic requests, indexed by shape */
+		final ConcurrentMap<QueryShape, CompiledQuery> compiledQueries = new ConcurrentHashMap<QueryShape, CompiledQuery>();
 
+		DialectRequests(Dialect dialect) {
+			this.dialect = dialect;
+		}
+
+	}
 
 }
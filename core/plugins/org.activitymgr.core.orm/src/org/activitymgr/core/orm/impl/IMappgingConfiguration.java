@@ -47,6 +47,16 @@ public interface IMappgingConfiguration {
 	 */
 	Field getAutoGeneratedAttribute(Class<?> theClass);
 
+	/**
+	 * Returns the version attribute used for optimistic locking (if any).
+	 * 
+	 * @param theClass
+	 *            the mapped class.
+	 * @return the version attribute, or <code>null</code> if the class is not
+	 *         versioned.
+	 */
+	Field getVersionAttribute(Class<?> theClass);
+
 	/**
 	 * Return the attribute converter.
 	 * 
@@ -98,6 +98,24 @@ public class PropertiesBasedMappingConfiguration implements
 				attributeName) : null;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.activitymgr.core.orm.impl.IMappgingConfiguration#getVersionAttribute
+	 * (java.lang.Class)
+	 */
+	@Override
+	public Field getVersionAttribute(Class<?> theClass) {
+		String className = theClass.getName();
+		int idx = className.lastIndexOf('.');
+		String name = className.substring(idx + 1);
+		String key = name + ".Version";
+		String attributeName = props.getProperty(key);
+		return attributeName != null ? ReflectionHelper.select(theClass,
+				attributeName) : null;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Class<? extends IConverter<?>> getAttributeConverter(
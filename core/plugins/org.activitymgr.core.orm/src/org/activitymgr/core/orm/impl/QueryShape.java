@@ -0,0 +1,227 @@
+package org.activitymgr.core.orm.impl;
+
+import java.util.Arrays;
+
+import org.activitymgr.core.orm.query.AbstractOrderByClause;
+import org.activitymgr.core.orm.query.AbstractStatement;
+import org.activitymgr.core.orm.query.AscendantOrderByClause;
+import org.activitymgr.core.orm.query.BetweenStatement;
+import org.activitymgr.core.orm.query.DescendantOrderByClause;
+import org.activitymgr.core.orm.query.GreaterThanStatement;
+import org.activitymgr.core.orm.query.InStatement;
+import org.activitymgr.core.orm.query.LikeStatement;
+import org.activitymgr.core.orm.query.LowerThanStatement;
+
+/**
+ * Shape of a dynamic request.
+ * <p>
+ * Two calls with the same shape (same request kind, same where clause
+ * attributes and statement types, same IN list sizes, same order by clause
+ * and limit usage) generate the same SQL request ; the shape is the key of
+ * the compiled requests cache.
+ * </p>
+ */
+final class QueryShape {
+
+	/** Select request */
+	static final int SELECT = 0;
+
+	/** Count request */
+	static final int COUNT = 1;
+
+	/** Delete request */
+	static final int DELETE = 2;
+
+	/**
+	 * Select request resuming after a given row of the order by clause
+	 * (keyset pagination)
+	 */
+	static final int SEEK = 3;
+
+	/** Where clause value shapes */
+	static final int NULL_VALUE = 0;
+	static final int SIMPLE_VALUE = 1;
+	static final int BETWEEN = 2;
+	static final int GREATER_THAN = 3;
+	static final int GREATER_THAN_OR_EQUALS = 4;
+	static final int LOWER_THAN = 5;
+	static final int LOWER_THAN_OR_EQUALS = 6;
+	static final int LIKE = 7;
+	/** IN statements are encoded as <code>IN + values count</code> */
+	static final int IN = 8;
+
+	/** Order by item directions */
+	static final int NO_DIRECTION = 0;
+	static final int ASCENDANT = 1;
+	static final int DESCENDANT = 2;
+
+	/** Request kind */
+	private final int kind;
+
+	/** Where clause attribute names */
+	private final String[] whereAttributeNames;
+
+	/** Where clause value shapes */
+	private final int[] whereValueShapes;
+
+	/** Order by attribute names */
+	private final String[] orderByAttributeNames;
+
+	/** Order by directions */
+	private final int[] orderByDirections;
+
+	/** <code>true</code> if the request has a limit clause */
+	private final boolean limit;
+
+	/** Hash code */
+	private final int hashCode;
+
+	/**
+	 * Builds the shape of a request.
+	 *
+	 * @param kind
+	 *            the request kind.
+	 * @param whereClauseAttributeNames
+	 *            the where clause attribute names.
+	 * @param whereClauseAttributeValues
+	 *            the where clause attribute values.
+	 * @param orderByClauseItems
+	 *            the order by clause items.
+	 * @param limit
+	 *            <code>true</code> if the request has a limit clause.
+	 */
+	QueryShape(int kind, String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			boolean limit) {
+		this.kind = kind;
+		this.limit = limit;
+		// Where clause
+		if (whereClauseAttributeNames != null) {
+			if (whereClauseAttributeValues == null
+					|| whereClauseAttributeNames.length != whereClauseAttributeValues.length)
+				throw new IllegalStateException("Wrong argument number", null);
+			whereAttributeNames = whereClauseAttributeNames.clone();
+			whereValueShapes = new int[whereClauseAttributeValues.length];
+			for (int i = 0; i < whereValueShapes.length; i++) {
+				whereValueShapes[i] = valueShape(whereClauseAttributeValues[i]);
+			}
+		} else {
+			whereAttributeNames = null;
+			whereValueShapes = null;
+		}
+		// Order by clause
+		if (orderByClauseItems != null && orderByClauseItems.length > 0) {
+			orderByAttributeNames = new String[orderByClauseItems.length];
+			orderByDirections = new int[orderByClauseItems.length];
+			for (int i = 0; i < orderByClauseItems.length; i++) {
+				Object orderByClauseItem = orderByClauseItems[i];
+				if (!(orderByClauseItem instanceof AbstractOrderByClause)) {
+					orderByAttributeNames[i] = (String) orderByClauseItem;
+					orderByDirections[i] = NO_DIRECTION;
+				} else {
+					orderByAttributeNames[i] = ((AbstractOrderByClause) orderByClauseItem)
+							.getAttributeName();
+					if (orderByClauseItem instanceof AscendantOrderByClause)
+						orderByDirections[i] = ASCENDANT;
+					else if (orderByClauseItem instanceof DescendantOrderByClause)
+						orderByDirections[i] = DESCENDANT;
+					else
+						throw new IllegalStateException("Unknown order by clause item type : '" + orderByClauseItem + "'", null);
+				}
+			}
+		} else {
+			orderByAttributeNames = null;
+			orderByDirections = null;
+		}
+		// Hash code
+		int hash = kind;
+		hash = 31 * hash + (limit ? 1 : 0);
+		hash = 31 * hash + Arrays.hashCode(whereAttributeNames);
+		hash = 31 * hash + Arrays.hashCode(whereValueShapes);
+		hash = 31 * hash + Arrays.hashCode(orderByAttributeNames);
+		hash = 31 * hash + Arrays.hashCode(orderByDirections);
+		this.hashCode = hash;
+	}
+
+	/**
+	 * @param value
+	 *            a where clause value.
+	 * @return the shape of the value.
+	 */
+	private static int valueShape(Object value) {
+		if (value == null) {
+			return NULL_VALUE;
+		} else if (!(value instanceof AbstractStatement)) {
+			return SIMPLE_VALUE;
+		} else if (value instanceof InStatement) {
+			return IN + ((InStatement) value).getValues().length;
+		} else if (value instanceof BetweenStatement) {
+			return BETWEEN;
+		} else if (value instanceof GreaterThanStatement) {
+			return ((GreaterThanStatement) value).getOrEquals() ? GREATER_THAN_OR_EQUALS
+					: GREATER_THAN;
+		} else if (value instanceof LowerThanStatement) {
+			return ((LowerThanStatement) value).getOrEquals() ? LOWER_THAN_OR_EQUALS
+					: LOWER_THAN;
+		} else if (value instanceof LikeStatement) {
+			return LIKE;
+		} else {
+			throw new IllegalStateException("Unknown statement type : " + value);
+		}
+	}
+
+	int getKind() {
+		return kind;
+	}
+
+	String[] getWhereAttributeNames() {
+		return whereAttributeNames;
+	}
+
+	int[] getWhereValueShapes() {
+		return whereValueShapes;
+	}
+
+	String[] getOrderByAttributeNames() {
+		return orderByAttributeNames;
+	}
+
+	int[] getOrderByDirections() {
+		return orderByDirections;
+	}
+
+	boolean hasLimit() {
+		return limit;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof QueryShape))
+			return false;
+		QueryShape other = (QueryShape) obj;
+		return hashCode == other.hashCode && kind == other.kind
+				&& limit == other.limit
+				&& Arrays.equals(whereAttributeNames, other.whereAttributeNames)
+				&& Arrays.equals(whereValueShapes, other.whereValueShapes)
+				&& Arrays.equals(orderByAttributeNames, other.orderByAttributeNames)
+				&& Arrays.equals(orderByDirections, other.orderByDirections);
+	}
+
+}
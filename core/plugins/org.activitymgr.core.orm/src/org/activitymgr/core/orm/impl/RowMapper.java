@@ -0,0 +1,676 @@
+package org.activitymgr.core.orm.impl;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.activitymgr.core.orm.IBooleanConverter;
+import org.activitymgr.core.orm.IByteConverter;
+import org.activitymgr.core.orm.IConverter;
+import org.activitymgr.core.orm.IDoubleConverter;
+import org.activitymgr.core.orm.IFloatConverter;
+import org.activitymgr.core.orm.IIntConverter;
+import org.activitymgr.core.orm.ILongConverter;
+import org.activitymgr.core.orm.IShortConverter;
+
+/**
+ * Row mapper of a mapped class.
+ * <p>
+ * Everything the ORM used to resolve for each column of each row (converter
+ * lookup, primary key membership, auto generated attribute detection, default
+ * value of primitive types) is resolved once when the mapper is built. Reading
+ * a row or binding an instance then only walks a pre-computed array of column
+ * mappers.
+ * </p>
+ * <p>
+ * Primitive attributes mapped with a primitive converter
+ * ({@link ILongConverter}, {@link IIntConverter}...) are read and bound
+ * without any boxing.
+ * </p>
+ *
+ * @param <TYPE>
+ *            the mapped class.
+ */
+class RowMapper<TYPE> {
+
+	/** All the columns, in the mapping order */
+	private final ColumnMapper[] allColumns;
+
+	/** Columns that are not part of the primary key */
+	private final ColumnMapper[] nonPKColumns;
+
+	/** Primary key columns */
+	private final ColumnMapper[] pkColumns;
+
+	/** Columns bound by an insert (all but the auto generated one) */
+	private final ColumnMapper[] insertColumns;
+
+	/** Columns bound by the set clause of an update */
+	private final ColumnMapper[] updateColumns;
+
+	/** Auto generated column (if any) */
+	private final ColumnMapper autoGeneratedColumn;
+
+	/** Version column (if any) */
+	private final ColumnMapper versionColumn;
+
+	/** Version attribute (if any) */
+	private final Field versionAttribute;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param attributes
+	 *            the mapped attributes (in the mapping order).
+	 * @param pkAttributes
+	 *            the primary key attributes.
+	 * @param autoGeneratedAttribute
+	 *            the auto generated attribute (may be <code>null</code>).
+	 * @param versionAttribute
+	 *            the version attribute (may be <code>null</code>).
+	 * @param converters
+	 *            the converters to use for each attribute.
+	 */
+	RowMapper(List<Field> attributes, List<Field> pkAttributes,
+			Field autoGeneratedAttribute, Field versionAttribute,
+			Map<Field, IConverter<?>> converters) {
+		List<ColumnMapper> all = new ArrayList<ColumnMapper>();
+		List<ColumnMapper> nonPK = new ArrayList<ColumnMapper>();
+		List<ColumnMapper> insert = new ArrayList<ColumnMapper>();
+		List<ColumnMapper> update = new ArrayList<ColumnMapper>();
+		ColumnMapper autoGenerated = null;
+		ColumnMapper version = null;
+		for (Field attribute : attributes) {
+			ColumnMapper column = newColumnMapper(attribute,
+					converters.get(attribute));
+			boolean isPK = pkAttributes.contains(attribute);
+			boolean isAutoGenerated = attribute.equals(autoGeneratedAttribute);
+			all.add(column);
+			if (!isPK)
+				nonPK.add(column);
+			if (!isAutoGenerated)
+				insert.add(column);
+			else
+				autoGenerated = column;
+			// The version column is incremented by the update request itself
+			if (attribute.equals(versionAttribute))
+				version = column;
+			else if (!isPK && !isAutoGenerated)
+				update.add(column);
+		}
+		// Primary key columns are bound in the primary key order (which may
+		// differ from the attributes order)
+		pkColumns = new ColumnMapper[pkAttributes.size()];
+		for (int i = 0; i < pkColumns.length; i++) {
+			Field pkAttribute = pkAttributes.get(i);
+			pkColumns[i] = all.get(attributes.indexOf(pkAttribute));
+		}
+		allColumns = all.toArray(new ColumnMapper[all.size()]);
+		nonPKColumns = nonPK.toArray(new ColumnMapper[nonPK.size()]);
+		insertColumns = insert.toArray(new ColumnMapper[insert.size()]);
+		updateColumns = update.toArray(new ColumnMapper[update.size()]);
+		autoGeneratedColumn = autoGenerated;
+		versionColumn = version;
+		this.versionAttribute = versionAttribute;
+	}
+
+	/**
+	 * Reads the current row of a result set into an instance.
+	 *
+	 * @param rs
+	 *            the result set.
+	 * @param fromIndex
+	 *            the index of the first column to read.
+	 * @param instance
+	 *            the instance to populate.
+	 * @param includePK
+	 *            <code>true</code> if the primary key columns are part of the
+	 *            result set.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	void read(ResultSet rs, int fromIndex, TYPE instance, boolean includePK)
+			throws SQLException, IllegalAccessException {
+		ColumnMapper[] columns = includePK ? allColumns : nonPKColumns;
+		for (int i = 0; i < columns.length; i++) {
+			columns[i].read(rs, fromIndex + i, instance);
+		}
+	}
+
+	/**
+	 * Copies the mapped attributes of an instance into another one.
+	 *
+	 * @param from
+	 *            the source instance.
+	 * @param to
+	 *            the target instance.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	void copy(TYPE from, TYPE to) throws IllegalAccessException {
+		for (int i = 0; i < allColumns.length; i++) {
+			Field attribute = allColumns[i].attribute;
+			attribute.set(to, attribute.get(from));
+		}
+	}
+
+	/**
+	 * Reads the auto generated key into an instance.
+	 *
+	 * @param rs
+	 *            the result set holding the generated key.
+	 * @param index
+	 *            the generated key column index.
+	 * @param instance
+	 *            the instance to update.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	void readAutoGenerated(ResultSet rs, int index, TYPE instance)
+			throws SQLException, IllegalAccessException {
+		autoGeneratedColumn.read(rs, index, instance);
+	}
+
+	/**
+	 * Binds the parameters of an insert statement.
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param instance
+	 *            the instance to insert.
+	 * @return the number of bound parameters.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	int bindInsert(PreparedStatement pStmt, TYPE instance)
+			throws SQLException, IllegalAccessException {
+		return bindInsert(pStmt, 1, instance);
+	}
+
+	/**
+	 * Binds the parameters of a row of an insert statement (a multi-row insert
+	 * statement holds several rows).
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param fromIndex
+	 *            the index of the first parameter of the row.
+	 * @param instance
+	 *            the instance to insert.
+	 * @return the number of bound parameters.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	int bindInsert(PreparedStatement pStmt, int fromIndex, TYPE instance)
+			throws SQLException, IllegalAccessException {
+		return bind(insertColumns, pStmt, fromIndex, instance);
+	}
+
+	/**
+	 * Binds the parameters of an update statement (set clause, primary key,
+	 * then version).
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param instance
+	 *            the instance to update.
+	 * @return the number of bound parameters.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	int bindUpdate(PreparedStatement pStmt, TYPE instance)
+			throws SQLException, IllegalAccessException {
+		int count = bind(updateColumns, pStmt, 1, instance);
+		count += bind(pkColumns, pStmt, count + 1, instance);
+		return count + bindVersion(pStmt, count + 1, instance);
+	}
+
+	/**
+	 * Binds the parameters of a partial update statement (set clause
+	 * restricted to some columns, primary key, then version).
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param columnIndexes
+	 *            the indexes of the updated columns (in the mapping order).
+	 * @param instance
+	 *            the instance to update.
+	 * @return the number of bound parameters.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	int bindPartialUpdate(PreparedStatement pStmt, int[] columnIndexes,
+			TYPE instance) throws SQLException, IllegalAccessException {
+		for (int i = 0; i < columnIndexes.length; i++) {
+			allColumns[columnIndexes[i]].bind(pStmt, i + 1, instance);
+		}
+		int count = columnIndexes.length
+				+ bind(pkColumns, pStmt, columnIndexes.length + 1, instance);
+		return count + bindVersion(pStmt, count + 1, instance);
+	}
+
+	/**
+	 * Binds the primary key of an instance.
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param fromIndex
+	 *            the index of the first parameter to bind.
+	 * @param instance
+	 *            the instance.
+	 * @return the number of bound parameters.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	int bindPK(PreparedStatement pStmt, int fromIndex, TYPE instance)
+			throws SQLException, IllegalAccessException {
+		return bind(pkColumns, pStmt, fromIndex, instance);
+	}
+
+	/**
+	 * Binds the version of an instance (if the class is versioned).
+	 *
+	 * @param pStmt
+	 *            the statement.
+	 * @param index
+	 *            the index of the parameter to bind.
+	 * @param instance
+	 *            the instance.
+	 * @return the number of bound parameters.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	int bindVersion(PreparedStatement pStmt, int index, TYPE instance)
+			throws SQLException, IllegalAccessException {
+		if (versionColumn == null)
+			return 0;
+		versionColumn.bind(pStmt, index, instance);
+		return 1;
+	}
+
+	/**
+	 * Increments the version of an instance once its row has been updated (if
+	 * the class is versioned).
+	 *
+	 * @param instance
+	 *            the instance.
+	 * @throws IllegalAccessException
+	 *             thrown if an attribute cannot be accessed.
+	 */
+	void incrementVersion(TYPE instance) throws IllegalAccessException {
+		if (versionAttribute == null)
+			return;
+		if (versionAttribute.getType() == int.class)
+			versionAttribute.setInt(instance, versionAttribute.getInt(instance) + 1);
+		else
+			versionAttribute.setLong(instance, versionAttribute.getLong(instance) + 1);
+	}
+
+	private static int bind(ColumnMapper[] columns, PreparedStatement pStmt,
+			int fromIndex, Object instance) throws SQLException,
+			IllegalAccessException {
+		for (int i = 0; i < columns.length; i++) {
+			columns[i].bind(pStmt, fromIndex + i, instance);
+		}
+		return columns.length;
+	}
+
+	/**
+	 * Returns the value to assign to an attribute of the given type when the
+	 * column is <code>null</code>.
+	 *
+	 * @param type
+	 *            the attribute type.
+	 * @return the value to assign.
+	 */
+	static Object defaultTypeValue(Class<?> type) {
+		if (!type.isPrimitive()) {
+			return null;
+		} else if (type == boolean.class) {
+			return Boolean.FALSE;
+		} else if (type == byte.class) {
+			return (byte) 0;
+		} else if (type == short.class) {
+			return (short) 0;
+		} else if (type == char.class) {
+			return (char) 0;
+		} else if (type == long.class) {
+			return 0l;
+		} else if (type == float.class) {
+			return 0f;
+		} else if (type == double.class) {
+			return 0d;
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * Builds the column mapper of an attribute.
+	 * <p>
+	 * A primitive attribute whose converter handles raw values gets a mapper
+	 * that never boxes the value. Other attributes get a generic mapper.
+	 * </p>
+	 *
+	 * @param attribute
+	 *            the attribute.
+	 * @param converter
+	 *            the attribute converter.
+	 * @return the column mapper.
+	 */
+	private static ColumnMapper newColumnMapper(Field attribute,
+			IConverter<?> converter) {
+		Class<?> type = attribute.getType();
+		if (type == long.class && converter instanceof ILongConverter) {
+			return new LongColumnMapper(attribute, (ILongConverter) converter);
+		} else if (type == int.class && converter instanceof IIntConverter) {
+			return new IntColumnMapper(attribute, (IIntConverter) converter);
+		} else if (type == short.class && converter instanceof IShortConverter) {
+			return new ShortColumnMapper(attribute,
+					(IShortConverter) converter);
+		} else if (type == byte.class && converter instanceof IByteConverter) {
+			return new ByteColumnMapper(attribute, (IByteConverter) converter);
+		} else if (type == boolean.class
+				&& converter instanceof IBooleanConverter) {
+			return new BooleanColumnMapper(attribute,
+					(IBooleanConverter) converter);
+		} else if (type == double.class
+				&& converter instanceof IDoubleConverter) {
+			return new DoubleColumnMapper(attribute,
+					(IDoubleConverter) converter);
+		} else if (type == float.class && converter instanceof IFloatConverter) {
+			return new FloatColumnMapper(attribute,
+					(IFloatConverter) converter);
+		} else {
+			return new ObjectColumnMapper(attribute, converter);
+		}
+	}
+
+	/**
+	 * Mapping between an attribute and a column.
+	 */
+	private static abstract class ColumnMapper {
+
+		/** The mapped attribute */
+		protected final Field attribute;
+
+		ColumnMapper(Field attribute) {
+			this.attribute = attribute;
+		}
+
+		/**
+		 * Reads the column value into the instance attribute.
+		 */
+		abstract void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException;
+
+		/**
+		 * Binds the instance attribute value to the statement parameter.
+		 */
+		abstract void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException;
+
+	}
+
+	/**
+	 * Generic column mapper (values are handled as objects).
+	 */
+	private static final class ObjectColumnMapper extends ColumnMapper {
+
+		/** The attribute converter */
+		private final IConverter<Object> converter;
+
+		/** SQL type to use to bind a <code>null</code> value */
+		private final int sqlType;
+
+		/** Value to assign when the column is <code>null</code> */
+		private final Object nullValue;
+
+		@SuppressWarnings("unchecked")
+		ObjectColumnMapper(Field attribute, IConverter<?> converter) {
+			super(attribute);
+			this.converter = (IConverter<Object>) converter;
+			this.sqlType = converter.getSQLType();
+			this.nullValue = defaultTypeValue(attribute.getType());
+		}
+
+		@Override
+		void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			Object value = converter.readValue(rs, index);
+			if (value == null || rs.wasNull()) {
+				value = nullValue;
+			}
+			attribute.set(instance, value);
+		}
+
+		@Override
+		void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			Object value = attribute.get(instance);
+			if (value == null) {
+				pStmt.setNull(index, sqlType);
+			} else {
+				converter.bind(pStmt, index, value);
+			}
+		}
+
+	}
+
+	/**
+	 * <code>long</code> column mapper.
+	 */
+	private static final class LongColumnMapper extends ColumnMapper {
+
+		/** The attribute converter */
+		private final ILongConverter converter;
+
+		LongColumnMapper(Field attribute, ILongConverter converter) {
+			super(attribute);
+			this.converter = converter;
+		}
+
+		@Override
+		void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			long value = converter.readLong(rs, index);
+			attribute.setLong(instance, rs.wasNull() ? 0 : value);
+		}
+
+		@Override
+		void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			converter.bindLong(pStmt, index, attribute.getLong(instance));
+		}
+
+	}
+
+	/**
+	 * <code>int</code> column mapper.
+	 */
+	private static final class IntColumnMapper extends ColumnMapper {
+
+		/** The attribute converter */
+		private final IIntConverter converter;
+
+		IntColumnMapper(Field attribute, IIntConverter converter) {
+			super(attribute);
+			this.converter = converter;
+		}
+
+		@Override
+		void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			int value = converter.readInt(rs, index);
+			attribute.setInt(instance, rs.wasNull() ? 0 : value);
+		}
+
+		@Override
+		void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			converter.bindInt(pStmt, index, attribute.getInt(instance));
+		}
+
+	}
+
+	/**
+	 * <code>short</code> column mapper.
+	 */
+	private static final class ShortColumnMapper extends ColumnMapper {
+
+		/** The attribute converter */
+		private final IShortConverter converter;
+
+		ShortColumnMapper(Field attribute, IShortConverter converter) {
+			super(attribute);
+			this.converter = converter;
+		}
+
+		@Override
+		void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			short value = converter.readShort(rs, index);
+			attribute.setShort(instance, rs.wasNull() ? 0 : value);
+		}
+
+		@Override
+		void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			converter.bindShort(pStmt, index, attribute.getShort(instance));
+		}
+
+	}
+
+	/**
+	 * <code>byte</code> column mapper.
+	 */
+	private static final class ByteColumnMapper extends ColumnMapper {
+
+		/** The attribute converter */
+		private final IByteConverter converter;
+
+		ByteColumnMapper(Field attribute, IByteConverter converter) {
+			super(attribute);
+			this.converter = converter;
+		}
+
+		@Override
+		void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			byte value = converter.readByte(rs, index);
+			attribute.setByte(instance, rs.wasNull() ? 0 : value);
+		}
+
+		@Override
+		void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			converter.bindByte(pStmt, index, attribute.getByte(instance));
+		}
+
+	}
+
+	/**
+	 * <code>boolean</code> column mapper.
+	 */
+	private static final class BooleanColumnMapper extends ColumnMapper {
+
+		/** The attribute converter */
+		private final IBooleanConverter converter;
+
+		BooleanColumnMapper(Field attribute, IBooleanConverter converter) {
+			super(attribute);
+			this.converter = converter;
+		}
+
+		@Override
+		void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			boolean value = converter.readBoolean(rs, index);
+			attribute.setBoolean(instance, rs.wasNull() ? false : value);
+		}
+
+		@Override
+		void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			converter.bindBoolean(pStmt, index, attribute.getBoolean(instance));
+		}
+
+	}
+
+	/**
+	 * <code>double</code> column mapper.
+	 */
+	private static final class DoubleColumnMapper extends ColumnMapper {
+
+		/** The attribute converter */
+		private final IDoubleConverter converter;
+
+		DoubleColumnMapper(Field attribute, IDoubleConverter converter) {
+			super(attribute);
+			this.converter = converter;
+		}
+
+		@Override
+		void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			double value = converter.readDouble(rs, index);
+			attribute.setDouble(instance, rs.wasNull() ? 0 : value);
+		}
+
+		@Override
+		void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			converter.bindDouble(pStmt, index, attribute.getDouble(instance));
+		}
+
+	}
+
+	/**
+	 * <code>float</code> column mapper.
+	 */
+	private static final class FloatColumnMapper extends ColumnMapper {
+
+		/** The attribute converter */
+		private final IFloatConverter converter;
+
+		FloatColumnMapper(Field attribute, IFloatConverter converter) {
+			super(attribute);
+			this.converter = converter;
+		}
+
+		@Override
+		void read(ResultSet rs, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			float value = converter.readFloat(rs, index);
+			attribute.setFloat(instance, rs.wasNull() ? 0 : value);
+		}
+
+		@Override
+		void bind(PreparedStatement pStmt, int index, Object instance)
+				throws SQLException, IllegalAccessException {
+			converter.bindFloat(pStmt, index, attribute.getFloat(instance));
+		}
+
+	}
+
+}
@@ -5,17 +5,27 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-import org.activitymgr.core.orm.IConverter;
+import org.activitymgr.core.orm.IByteConverter;
 
-public class ByteConverter implements IConverter<Byte> {
+public class ByteConverter implements IByteConverter {
 
 	@Override
 	public void bind(PreparedStatement stmt, int index, Byte value) throws SQLException {
+		bindByte(stmt, index, value);
+	}
+
+	@Override
+	public void bindByte(PreparedStatement stmt, int index, byte value) throws SQLException {
 		stmt.setByte(index, value);
 	}
 
 	@Override
 	public Byte readValue(ResultSet rs, int index) throws SQLException {
+		return readByte(rs, index);
+	}
+
+	@Override
+	public byte readByte(ResultSet rs, int index) throws SQLException {
 		return rs.getByte(index);
 	}
 	
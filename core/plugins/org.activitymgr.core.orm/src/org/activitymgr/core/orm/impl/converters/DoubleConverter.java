@@ -5,17 +5,27 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-import org.activitymgr.core.orm.IConverter;
+import org.activitymgr.core.orm.IDoubleConverter;
 
-public class DoubleConverter implements IConverter<Double> {
+public class DoubleConverter implements IDoubleConverter {
 
 	@Override
 	public void bind(PreparedStatement stmt, int index, Double value) throws SQLException {
+		bindDouble(stmt, index, value);
+	}
+
+	@Override
+	public void bindDouble(PreparedStatement stmt, int index, double value) throws SQLException {
 		stmt.setDouble(index, value);
 	}
 
 	@Override
 	public Double readValue(ResultSet rs, int index) throws SQLException {
+		return readDouble(rs, index);
+	}
+
+	@Override
+	public double readDouble(ResultSet rs, int index) throws SQLException {
 		return rs.getDouble(index);
 	}
 	
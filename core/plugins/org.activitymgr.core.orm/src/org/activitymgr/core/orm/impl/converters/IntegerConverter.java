@@ -5,17 +5,27 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-import org.activitymgr.core.orm.IConverter;
+import org.activitymgr.core.orm.IIntConverter;
 
-public class IntegerConverter implements IConverter<Integer> {
+public class IntegerConverter implements IIntConverter {
 
 	@Override
 	public void bind(PreparedStatement stmt, int index, Integer value) throws SQLException {
+		bindInt(stmt, index, value);
+	}
+
+	@Override
+	public void bindInt(PreparedStatement stmt, int index, int value) throws SQLException {
 		stmt.setInt(index, value);
 	}
 
 	@Override
 	public Integer readValue(ResultSet rs, int index) throws SQLException {
+		return readInt(rs, index);
+	}
+
+	@Override
+	public int readInt(ResultSet rs, int index) throws SQLException {
 		return rs.getInt(index);
 	}
 	
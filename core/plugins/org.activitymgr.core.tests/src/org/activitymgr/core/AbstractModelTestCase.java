@@ -9,17 +9,29 @@ import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 
+import javax.sql.DataSource;
+
 import junit.framework.TestCase;
 import junit.framework.TestResult;
 
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
 import org.activitymgr.core.dto.IDTOFactory;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.report.ReportIntervalType;
 import org.activitymgr.core.model.CoreModelModule;
 import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
 import org.activitymgr.core.util.DbHelper;
+import org.activitymgr.core.util.IdentityMap;
+import org.activitymgr.core.util.PreparedStatementCache;
+import org.activitymgr.core.util.TransactionHooks;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
@@ -91,6 +103,12 @@ public abstract class AbstractModelTestCase extends TestCase implements
 	/** The test transaction */
 	private Connection tx;
 
+	/** The identity map of the test transaction */
+	private IdentityMap identityMap;
+
+	/** The hooks of the test transaction */
+	private TransactionHooks transactionHooks;
+
 	/** Guice injector */
 	private Injector injector;
 
@@ -100,7 +118,10 @@ public abstract class AbstractModelTestCase extends TestCase implements
 	 * @see junit.framework.TestCase#setUp()
 	 */
 	protected void setUp() throws Exception {
-		tx = datasource.getConnection();
+		tx = PreparedStatementCache.wrap(datasource.getConnection(),
+				PreparedStatementCache.DEFAULT_SIZE);
+		identityMap = new IdentityMap();
+		transactionHooks = new TransactionHooks();
 
 		// Create Guice injector
 		List<Module> modules = getGuiceModules();
@@ -114,14 +135,19 @@ public abstract class AbstractModelTestCase extends TestCase implements
 					@Override
 					public Object invoke(Object proxy, Method method,
 							Object[] args) throws Throwable {
+						boolean committed = false;
 						try {
 							Object result = method.invoke(modelMgr, args);
 							tx.commit();
+							committed = true;
 							return result;
 						} catch (InvocationTargetException t) {
 							t.getCause().printStackTrace();
 							tx.rollback();
 							throw t.getCause();
+						} finally {
+							identityMap.clear();
+							transactionHooks.completed(committed);
 						}
 					}
 				});
@@ -150,6 +176,18 @@ public abstract class AbstractModelTestCase extends TestCase implements
 			protected void configure() {
 				bind(Connection.class).toProvider(
 						AbstractModelTestCase.this);
+				bind(IdentityMap.class).toProvider(new Provider<IdentityMap>() {
+					@Override
+					public IdentityMap get() {
+						return identityMap;
+					}
+				});
+				bind(TransactionHooks.class).toProvider(new Provider<TransactionHooks>() {
+					@Override
+					public TransactionHooks get() {
+						return transactionHooks;
+					}
+				});
 			}
 		});
 		return modules;
@@ -167,6 +205,13 @@ public abstract class AbstractModelTestCase extends TestCase implements
 		return tx;
 	}
 
+	/**
+	 * @return the test data source.
+	 */
+	protected DataSource getDataSource() {
+		return datasource;
+	}
+
 	/**
 	 * @see junit.framework.Test#run(junit.framework.TestResult)
 	 */
@@ -188,6 +233,20 @@ public abstract class AbstractModelTestCase extends TestCase implements
 		tx.close();
 	}
 
+	/**
+	 * @return the identity map of the test transaction.
+	 */
+	protected IdentityMap getIdentityMap() {
+		return identityMap;
+	}
+
+	/**
+	 * @return the hooks of the test transaction.
+	 */
+	protected TransactionHooks getTransactionHooks() {
+		return transactionHooks;
+	}
+
 	protected IModelMgr getModelMgr() {
 		return modelMgr;
 	}
@@ -204,4 +263,184 @@ public abstract class AbstractModelTestCase extends TestCase implements
 		return start;
 	}
 
+	protected Collaborator createCollaborator(String login)
+			throws ModelException {
+		Collaborator collaborator = getFactory().newCollaborator();
+		collaborator.setLogin(login);
+		collaborator.setFirstName("First");
+		collaborator.setLastName("Last");
+		return getModelMgr().createCollaborator(collaborator);
+	}
+
+	protected Task createTask(Task parent, String code) throws ModelException {
+		return createTask(parent, code, "Task " + code);
+	}
+
+	protected Task createTask(Task parent, String code, String name)
+			throws ModelException {
+		return createTask(parent, code, name, 0);
+	}
+
+	protected Task createTask(Task parent, String code, String name,
+			long budget) throws ModelException {
+		Task task = getFactory().newTask();
+		task.setCode(code);
+		task.setName(name);
+		task.setBudget(budget);
+		return getModelMgr().createTask(parent, task);
+	}
+
+	/**
+	 * @return the task as it is now in the database.
+	 */
+	protected Task reload(Task task) {
+		return getModelMgr().getTask(task.getId());
+	}
+
+	protected void createDurations(long... ids) throws ModelException {
+		for (long id : ids) {
+			Duration duration = getFactory().newDuration();
+			duration.setId(id);
+			getModelMgr().createDuration(duration);
+		}
+	}
+
+	/**
+	 * Creates a contribution.
+	 * 
+	 * @param month
+	 *            the month (0 for january, as in {@link Calendar}).
+	 */
+	protected void createContribution(Collaborator contributor, Task task,
+			int year, int month, int day, long duration) throws ModelException {
+		Contribution contribution = getFactory().newContribution();
+		contribution.setDate(new GregorianCalendar(year, month, day));
+		contribution.setContributorId(contributor.getId());
+		contribution.setDurationId(duration);
+		contribution.setTaskId(task.getId());
+		getModelMgr().createContribution(contribution, false);
+	}
+
+	/**
+	 * Returns a contribution (that must exist).
+	 * 
+	 * @param month
+	 *            the month (0 for january, as in {@link Calendar}).
+	 */
+	protected Contribution getContribution(Collaborator contributor, Task task,
+			int year, int month, int day) throws ModelException {
+		Calendar date = new GregorianCalendar(year, month, day);
+		Contribution[] contributions = getModelMgr().getContributions(
+				contributor, task, date, date);
+		assertEquals(1, contributions.length);
+		return contributions[0];
+	}
+
+	/**
+	 * Creates two collaborators, a root task with two sub tasks, the 25, 50
+	 * and 100 durations, and contributions around the ends of 2014 and 2015.
+	 * 
+	 * @return the created data.
+	 */
+	protected YearEndData createYearEndData() throws ModelException {
+		YearEndData data = new YearEndData();
+		data.collaborator1 = createCollaborator("login1");
+		data.collaborator2 = createCollaborator("login2");
+		data.root = getModelMgr().createNewTask(null);
+		data.task1 = getModelMgr().createNewTask(data.root);
+		data.task2 = getModelMgr().createNewTask(data.root);
+		createDurations(25, 50, 100);
+		createContribution(data.collaborator1, data.task1, 2014, 11, 30, 100);
+		createContribution(data.collaborator2, data.task1, 2014, 11, 31, 50);
+		createContribution(data.collaborator1, data.task1, 2015, 0, 1, 25);
+		createContribution(data.collaborator1, data.task2, 2015, 5, 15, 100);
+		createContribution(data.collaborator2, data.task2, 2015, 11, 31, 50);
+		createContribution(data.collaborator2, data.task1, 2016, 0, 2, 100);
+		return data;
+	}
+
+	/**
+	 * Runs the contributions read requests (lists, sums, counts,
+	 * contributors, years, intervals and reports) on several intervals, so
+	 * that two storages of the same contributions can be compared.
+	 * 
+	 * @param data
+	 *            the data created by {@link #createYearEndData()}.
+	 * @return the results of the read requests.
+	 */
+	protected List<String> readYearEndData(YearEndData data)
+			throws ModelException {
+		List<String> result = new ArrayList<String>();
+		Calendar[][] intervals = new Calendar[][] {
+				{ null, null },
+				{ new GregorianCalendar(2015, 0, 1), null },
+				{ null, new GregorianCalendar(2014, 11, 31) },
+				{ new GregorianCalendar(2014, 11, 31),
+						new GregorianCalendar(2015, 0, 1) },
+				{ new GregorianCalendar(2015, 0, 1),
+						new GregorianCalendar(2015, 11, 31) },
+				{ new GregorianCalendar(2015, 5, 1),
+						new GregorianCalendar(2015, 11, 31) },
+				{ new GregorianCalendar(2016, 0, 2),
+						new GregorianCalendar(2016, 0, 2) },
+				{ new GregorianCalendar(2020, 0, 1),
+						new GregorianCalendar(2020, 11, 31) } };
+		Task rootTask = getModelMgr().getTask(data.root.getId());
+		for (Calendar[] interval : intervals) {
+			Calendar fromDate = interval[0];
+			Calendar toDate = interval[1];
+			for (Task task : new Task[] { null, rootTask,
+					getModelMgr().getTask(data.task2.getId()) }) {
+				StringBuffer buf = new StringBuffer();
+				for (Contribution contribution : getModelMgr()
+						.getContributions(null, task, fromDate, toDate)) {
+					buf.append(contribution.getDateKey()).append('/')
+							.append(contribution.getContributorId())
+							.append('/').append(contribution.getTaskId())
+							.append('/').append(contribution.getDurationId())
+							.append(' ');
+				}
+				result.add(buf.toString());
+			}
+			result.add(getModelMgr().getContributionsSum(null, rootTask,
+					fromDate, toDate)
+					+ " / "
+					+ getModelMgr().getContributionsCount(data.collaborator2,
+							null, fromDate, toDate));
+			StringBuffer contributors = new StringBuffer();
+			for (Collaborator contributor : getModelMgr().getContributors(
+					rootTask, fromDate, toDate)) {
+				contributors.append(contributor.getLogin()).append(' ');
+			}
+			result.add(contributors.toString());
+		}
+		result.add(getModelMgr().getContributionYears().toString());
+		for (Task task : new Task[] { data.root, data.task2 }) {
+			Calendar[] interval = getModelMgr().getContributionsInterval(
+					task.getId());
+			result.add(interval != null ? interval[0].getTime() + " - "
+					+ interval[1].getTime() : null);
+		}
+		result.add(getModelMgr().buildReport(new GregorianCalendar(2014, 11,
+				20), ReportIntervalType.DAY, 20, null, 0, false, true, false,
+				null).toString());
+		result.add(getModelMgr().buildReport(new GregorianCalendar(2014, 11,
+				20), ReportIntervalType.DAY, 400, data.root.getId(), 1, false,
+				true, true, null).toString());
+		result.add(getModelMgr().buildReport(null, ReportIntervalType.MONTH,
+				null, null, 1, false, false, false, null).toString());
+		return result;
+	}
+
+	/**
+	 * Data created by {@link AbstractModelTestCase#createYearEndData()}.
+	 */
+	protected static class YearEndData {
+		protected Collaborator collaborator1;
+		protected Collaborator collaborator2;
+		protected Task root;
+		protected Task task1;
+		protected Task task2;
+	}
+
 }
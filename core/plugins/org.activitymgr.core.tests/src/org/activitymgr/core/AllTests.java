@@ -3,8 +3,18 @@ package org.activitymgr.core;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.activitymgr.core.orm.BatchTest;
+import org.activitymgr.core.orm.DialectTest;
+import org.activitymgr.core.orm.ForEachTest;
+import org.activitymgr.core.orm.PartialUpdateTest;
+import org.activitymgr.core.orm.QueryCacheTest;
+import org.activitymgr.core.orm.SelectPageTest;
 import org.activitymgr.core.report.ReportTest;
 import org.activitymgr.core.report.XLSReportTest;
+import org.activitymgr.core.util.DateHelperTest;
+import org.activitymgr.core.util.LazyConnectionTest;
+import org.activitymgr.core.util.PreparedStatementCacheTest;
+import org.activitymgr.core.util.SqlStatisticsTest;
 import org.activitymgr.core.util.StringHelperTest;
 import org.activitymgr.core.xml.XmlTest;
 
@@ -14,6 +24,7 @@ public class AllTests {
 		TestSuite suite = new TestSuite("Test for org.activitymgr");
 		//$JUnit-BEGIN$
 		suite.addTestSuite(StringHelperTest.class);
+		suite.addTestSuite(DateHelperTest.class);
 		suite.addTestSuite(ReportConfigurationsTest.class);
 		suite.addTestSuite(DurationTest.class);
 		suite.addTestSuite(CollaboratorsTest.class);
@@ -24,6 +35,26 @@ public class AllTests {
 		suite.addTestSuite(ReportTest.class);
 		suite.addTestSuite(XLSReportTest.class);
 		suite.addTestSuite(TaskCacheTest.class);
+		suite.addTestSuite(PreparedStatementCacheTest.class);
+		suite.addTestSuite(LazyConnectionTest.class);
+		suite.addTestSuite(BatchTest.class);
+		suite.addTestSuite(ForEachTest.class);
+		suite.addTestSuite(QueryCacheTest.class);
+		suite.addTestSuite(DialectTest.class);
+		suite.addTestSuite(SelectPageTest.class);
+		suite.addTestSuite(PartialUpdateTest.class);
+		suite.addTestSuite(IdentityMapTest.class);
+		suite.addTestSuite(SecondLevelCacheTest.class);
+		suite.addTestSuite(SqlStatisticsTest.class);
+		suite.addTestSuite(ContributionDateUpgradeTest.class);
+		suite.addTestSuite(TaskClosureTest.class);
+		suite.addTestSuite(ContributionRollupTest.class);
+		suite.addTestSuite(TaskSearchTest.class);
+		suite.addTestSuite(SubTasksCountTest.class);
+		suite.addTestSuite(ContributionPartitionTest.class);
+		suite.addTestSuite(ContributionArchiveTest.class);
+		suite.addTestSuite(TaskVersionTest.class);
+		suite.addTestSuite(BaselineUpgradeTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,121 @@
+package org.activitymgr.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+
+import org.activitymgr.core.dao.ICoreDAO;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+/**
+ * Opens a database created with the first schema of the application the way
+ * the web application does when it starts (tables existence check then
+ * upgrade, in one transaction), and checks that it can then be used.
+ */
+public class BaselineUpgradeTest extends AbstractModelTestCase {
+
+	/** Tasks identifiers */
+	private static final long ROOT_ID = 1;
+	private static final long TASK1_ID = 2;
+	private static final long TASK2_ID = 3;
+
+	@Inject
+	private ICoreDAO coreDAO;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// The tables that the baseline schema doesn't know are dropped
+		// before it is created again
+		coreDAO.executeScript("drop table if exists CONTRIBUTION_DAY;\n"
+				+ "drop table if exists CONTRIBUTION_MONTH;\n"
+				+ "drop table if exists TASK_TRIGRAM;\n"
+				+ "drop table if exists TASK_CLOSURE;\n");
+		coreDAO.executeScript(BaselineUpgradeTest.class
+				.getResourceAsStream("BaselineUpgradeTest.hsqldb.sql"));
+		execute("insert into COLLABORATOR (clb_id, clb_login, clb_first_name, clb_last_name, clb_is_active) values (1, 'login', 'First', 'Last', true)");
+		execute("insert into DURATION (dur_id, dur_is_active) values (100, true)");
+		execute("insert into DURATION (dur_id, dur_is_active) values (200, true)");
+		execute("insert into TASK (tsk_id, tsk_path, tsk_number, tsk_code, tsk_name, tsk_budget, tsk_initial_cons, tsk_todo) values (1, '', '01', 'R', 'Root', 0, 0, 0)");
+		execute("insert into TASK (tsk_id, tsk_path, tsk_number, tsk_code, tsk_name, tsk_budget, tsk_initial_cons, tsk_todo) values (2, '01', '01', 'T1', 'First task', 1000, 0, 1000)");
+		execute("insert into TASK (tsk_id, tsk_path, tsk_number, tsk_code, tsk_name, tsk_budget, tsk_initial_cons, tsk_todo) values (3, '01', '02', 'T2', 'Other task', 500, 0, 500)");
+		execute("insert into CONTRIBUTION (ctb_year, ctb_month, ctb_day, ctb_contributor, ctb_task, ctb_duration) values (2016, 1, 15, 1, 2, 100)");
+		execute("insert into CONTRIBUTION (ctb_year, ctb_month, ctb_day, ctb_contributor, ctb_task, ctb_duration) values (2016, 2, 1, 1, 2, 200)");
+		execute("insert into CONTRIBUTION (ctb_year, ctb_month, ctb_day, ctb_contributor, ctb_task, ctb_duration) values (2016, 2, 1, 1, 3, 100)");
+		get().commit();
+		getModelMgr().resetDatabaseCaches();
+
+		// Web application start
+		IModelMgr modelMgr = getInjector().getInstance(IModelMgr.class);
+		assertTrue(modelMgr.tablesExist());
+		modelMgr.upgradeTables();
+		get().commit();
+		getIdentityMap().clear();
+	}
+
+	public void testContributions() throws ModelException {
+		Collaborator collaborator = getModelMgr().getCollaborator(1);
+		Calendar from = new GregorianCalendar(2016, 0, 1);
+		Calendar to = new GregorianCalendar(2016, 11, 31);
+		assertEquals(3, getModelMgr().getContributions(collaborator, null,
+				from, to).length);
+		assertEquals(400, getModelMgr().getContributionsSum(collaborator,
+				getModelMgr().getTask(ROOT_ID), from, to));
+		Calendar[] interval = getModelMgr().getContributionsInterval(null);
+		assertEquals(new GregorianCalendar(2016, 0, 15), interval[0]);
+		assertEquals(new GregorianCalendar(2016, 1, 1), interval[1]);
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkContributionRollups());
+
+		// New contribution (the task estimated time to complete is updated)
+		Contribution contribution = getFactory().newContribution();
+		contribution.setDate(new GregorianCalendar(2016, 2, 1));
+		contribution.setContributorId(collaborator.getId());
+		contribution.setDurationId(200);
+		contribution.setTaskId(TASK1_ID);
+		getModelMgr().createContribution(contribution, true);
+		assertEquals(800, getModelMgr().getTask(TASK1_ID).getTodo());
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkContributionRollups());
+	}
+
+	public void testTasks() throws ModelException {
+		Task root = getModelMgr().getTask(ROOT_ID);
+		Task task1 = getModelMgr().getTask(TASK1_ID);
+		Task task2 = getModelMgr().getTask(TASK2_ID);
+		// Tree
+		assertEquals(Arrays.asList(root), Arrays.asList(getModelMgr()
+				.getSubTasks(null, "")));
+		assertEquals(Arrays.asList(task1, task2), Arrays.asList(getModelMgr()
+				.getSubTasks(ROOT_ID, "")));
+		assertEquals(2, getModelMgr().getSubTasksCount(ROOT_ID));
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkSubTasksCounts());
+		assertEquals(task2, getModelMgr().getTaskByCodePath("/R/T2"));
+		// Search
+		assertEquals(task2, getModelMgr().getFirstTaskMatching("other"));
+		assertEquals(Arrays.asList(task1), Arrays.asList(getModelMgr()
+				.getSubTasks(ROOT_ID, "first")));
+		// Update
+		task1.setName("Renamed");
+		task1 = getModelMgr().updateTask(task1);
+		assertEquals(1, task1.getVersion());
+		assertEquals(task1, getModelMgr().getFirstTaskMatching("renamed"));
+	}
+
+	private void execute(String sql) throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(sql);
+		pStmt.executeUpdate();
+		pStmt.close();
+	}
+
+}
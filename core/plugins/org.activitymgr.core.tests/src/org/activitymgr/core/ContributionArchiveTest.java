@@ -0,0 +1,289 @@
+package org.activitymgr.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Set;
+
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.model.CoreModelModule;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.model.impl.archive.ContributionSegment;
+import org.activitymgr.core.util.SqlStatistics;
+
+import com.google.inject.Module;
+
+public class ContributionArchiveTest extends AbstractModelTestCase {
+
+	/** Archived year */
+	private static final int YEAR = 2015;
+
+	/** Archive directory */
+	private File archiveDirectory;
+
+	/** Test data */
+	private YearEndData data;
+
+	@Override
+	protected void setUp() throws Exception {
+		archiveDirectory = File.createTempFile("archive", "");
+		archiveDirectory.delete();
+		super.setUp();
+		data = createYearEndData();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		File[] files = archiveDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		archiveDirectory.delete();
+	}
+
+	@Override
+	protected List<Module> getGuiceModules() {
+		List<Module> modules = super.getGuiceModules();
+		for (int i = 0; i < modules.size(); i++) {
+			if (modules.get(i) instanceof CoreModelModule) {
+				modules.set(i, new CoreModelModule(new SqlStatistics(),
+						archiveDirectory));
+			}
+		}
+		return modules;
+	}
+
+	public void testArchiveAndRestoreKeepResults() throws Exception {
+		List<String> expected = readYearEndData(data);
+		getModelMgr().archiveContributions(YEAR);
+		assertEquals(Arrays.asList(YEAR), new ArrayList<Integer>(getModelMgr()
+				.getArchivedYears()));
+		assertTrue(new File(archiveDirectory, "contributions-" + YEAR + ".seg")
+				.exists());
+		// The archived contributions are not in the database anymore
+		assertEquals(3, count());
+		assertEquals(expected, readYearEndData(data));
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkContributionRollups());
+
+		getModelMgr().restoreContributions(YEAR);
+		assertTrue(getModelMgr().getArchivedYears().isEmpty());
+		assertEquals(6, count());
+		assertEquals(expected, readYearEndData(data));
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkContributionRollups());
+	}
+
+	public void testRolledBackArchiveAndRestore() throws Exception {
+		List<String> expected = readYearEndData(data);
+		IModelMgr modelMgr = getInjector().getInstance(IModelMgr.class);
+		File segmentFile = new File(archiveDirectory, "contributions-" + YEAR
+				+ ".seg");
+
+		// The archive is only published once the deletion is committed
+		modelMgr.archiveContributions(YEAR);
+		assertFalse(segmentFile.exists());
+		get().rollback();
+		getIdentityMap().clear();
+		getTransactionHooks().completed(false);
+		assertTrue(getModelMgr().getArchivedYears().isEmpty());
+		assertEquals(0, archiveDirectory.list().length);
+		assertEquals(6, count());
+		assertEquals(expected, readYearEndData(data));
+
+		// Same thing for a nested call rolled back to a savepoint
+		Savepoint savepoint = get().setSavepoint();
+		int hooksSavepoint = getTransactionHooks().setSavepoint();
+		modelMgr.archiveContributions(YEAR);
+		get().rollback(savepoint);
+		getIdentityMap().clearInstances();
+		getTransactionHooks().rollbackToSavepoint(hooksSavepoint);
+		get().commit();
+		getIdentityMap().clear();
+		getTransactionHooks().completed(true);
+		assertTrue(getModelMgr().getArchivedYears().isEmpty());
+		assertEquals(0, archiveDirectory.list().length);
+		assertEquals(6, count());
+
+		// A rolled back restoration keeps the year archived
+		getModelMgr().archiveContributions(YEAR);
+		modelMgr.restoreContributions(YEAR);
+		get().rollback();
+		getIdentityMap().clear();
+		getTransactionHooks().completed(false);
+		assertEquals(Arrays.asList(YEAR), new ArrayList<Integer>(getModelMgr()
+				.getArchivedYears()));
+		assertTrue(segmentFile.exists());
+		assertEquals(3, count());
+		assertEquals(expected, readYearEndData(data));
+	}
+
+	public void testArchivedContributionsAreReadOnly() throws Exception {
+		getModelMgr().archiveContributions(YEAR);
+		try {
+			createContribution(data.collaborator1, data.task1, YEAR, 2, 1, 25);
+			fail("A contribution can't be created in an archived year");
+		} catch (ModelException expected) {
+		}
+		Contribution contribution = getContribution(data.collaborator1, data.task2,
+				YEAR, 5, 15);
+		contribution.setDurationId(50);
+		try {
+			getModelMgr().updateContribution(contribution, false);
+			fail("An archived contribution can't be updated");
+		} catch (ModelException expected) {
+		}
+		try {
+			getModelMgr().removeContributions(
+					new Contribution[] { contribution });
+			fail("An archived contribution can't be removed");
+		} catch (ModelException expected) {
+		}
+		try {
+			getModelMgr().changeContributionTask(
+					new Contribution[] { contribution }, data.task1);
+			fail("An archived contribution can't be moved");
+		} catch (ModelException expected) {
+		}
+		// Other years are still writable
+		createContribution(data.collaborator1, data.task1, YEAR + 1, 2, 1, 50);
+		// A duration only used by an archived contribution can't be removed
+		Duration duration = getModelMgr().getDuration(25);
+		try {
+			getModelMgr().removeDuration(duration);
+			fail("An archived duration can't be removed");
+		} catch (ModelException expected) {
+		}
+	}
+
+	public void testOnlyClosedYearsAreArchived() throws Exception {
+		int currentYear = Calendar.getInstance().get(Calendar.YEAR);
+		try {
+			getModelMgr().archiveContributions(currentYear);
+			fail("The current year can't be archived");
+		} catch (ModelException expected) {
+		}
+		getModelMgr().archiveContributions(YEAR);
+		try {
+			getModelMgr().archiveContributions(YEAR);
+			fail("A year can't be archived twice");
+		} catch (ModelException expected) {
+		}
+		try {
+			getModelMgr().restoreContributions(YEAR - 1);
+			fail("A year that is not archived can't be restored");
+		} catch (ModelException expected) {
+		}
+	}
+
+	public void testDatabaseSwitch() throws Exception {
+		List<String> expected = readYearEndData(data);
+		getModelMgr().archiveContributions(YEAR);
+		// The archive of the previous database is not used anymore
+		getModelMgr().resetDatabaseCaches();
+		assertTrue(getModelMgr().getArchivedYears().isEmpty());
+		assertNull(getModelMgr().getContributionsInterval(data.task2.getId()));
+		try {
+			getModelMgr().archiveContributions(YEAR);
+			fail("No archive is configured");
+		} catch (ModelException expected1) {
+		}
+		// Until the archive directory is set again
+		getModelMgr().setArchiveDirectory(archiveDirectory);
+		assertEquals(Arrays.asList(YEAR), new ArrayList<Integer>(getModelMgr()
+				.getArchivedYears()));
+		assertEquals(expected, readYearEndData(data));
+	}
+
+	public void testRollupsRebuild() throws Exception {
+		List<String> expected = readYearEndData(data);
+		getModelMgr().archiveContributions(YEAR);
+		getModelMgr().rebuildContributionRollups();
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkContributionRollups());
+		assertEquals(expected, readYearEndData(data));
+	}
+
+	public void testSegmentRoundTrip() throws Exception {
+		Calendar from = new GregorianCalendar(YEAR, 0, 1);
+		Calendar to = new GregorianCalendar(YEAR, 11, 31);
+		Contribution[] contributions = getModelMgr().getContributions(null,
+				null, from, to);
+		ContributionSegment segment = ContributionSegment.build(YEAR,
+				Arrays.asList(contributions));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		segment.write(out);
+		ContributionSegment read = ContributionSegment
+				.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(YEAR, read.getYear());
+		assertEquals(contributions.length, read.size());
+		for (int i = 0; i < read.size(); i++) {
+			assertEquals(segment.getDateKey(i), read.getDateKey(i));
+			assertEquals(segment.getContributorId(i), read.getContributorId(i));
+			assertEquals(segment.getTaskId(i), read.getTaskId(i));
+			assertEquals(segment.getDurationId(i), read.getDurationId(i));
+		}
+		assertEquals(0, read.indexOf(20150101));
+		assertEquals(1, read.indexOf(20150102));
+		assertEquals(read.size(), read.indexOf(20160101));
+		try {
+			ContributionSegment.build(YEAR + 1, Arrays.asList(contributions));
+			fail("A segment only holds the contributions of its year");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testSegmentQueries() throws Exception {
+		Contribution[] contributions = getModelMgr().getContributions(null,
+				null, new GregorianCalendar(YEAR, 0, 1),
+				new GregorianCalendar(YEAR, 11, 31));
+		ContributionSegment segment = ContributionSegment.build(YEAR,
+				Arrays.asList(contributions));
+		Set<Long> task2Ids = Collections.singleton(data.task2.getId());
+		// Count and sum
+		assertEquals(3, segment.count(0, Integer.MAX_VALUE, null, null));
+		assertEquals(2, segment.count(20150102, 20151231, null, null));
+		assertEquals(2, segment.count(0, Integer.MAX_VALUE, data.collaborator1.getId(), null));
+		assertEquals(1, segment.count(0, 20151230, null, task2Ids));
+		assertEquals(175, segment.sum(0, Integer.MAX_VALUE, null, null));
+		assertEquals(150, segment.sum(0, Integer.MAX_VALUE, null, task2Ids));
+		assertEquals(50, segment.sum(0, Integer.MAX_VALUE, data.collaborator2.getId(), task2Ids));
+		// Durations
+		assertTrue(segment.containsDuration(25));
+		assertFalse(segment.containsDuration(75));
+		// Date range
+		assertTrue(Arrays.equals(new int[] { 20150101, 20151231 },
+				segment.getDateRange(null)));
+		assertTrue(Arrays.equals(new int[] { 20150615, 20151231 },
+				segment.getDateRange(task2Ids)));
+		assertNull(segment.getDateRange(Collections.singleton(data.root.getId())));
+	}
+
+	private int count() throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(
+				"select count(*) from CONTRIBUTION");
+		try {
+			ResultSet rs = pStmt.executeQuery();
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			pStmt.close();
+		}
+	}
+
+}
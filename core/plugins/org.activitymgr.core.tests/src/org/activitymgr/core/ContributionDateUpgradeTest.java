@@ -0,0 +1,105 @@
+package org.activitymgr.core;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.activitymgr.core.dao.ICoreDAO;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+public class ContributionDateUpgradeTest extends AbstractModelTestCase {
+
+	@Inject
+	private ICoreDAO coreDAO;
+
+	private Collaborator collaborator;
+
+	private Task task;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		collaborator = getFactory().newCollaborator();
+		collaborator.setLogin("login");
+		collaborator.setFirstName("First");
+		collaborator.setLastName("Last");
+		collaborator = getModelMgr().createCollaborator(collaborator);
+		task = getModelMgr().createNewTask(null);
+		Duration duration = getFactory().newDuration();
+		duration.setId(100);
+		getModelMgr().createDuration(duration);
+
+		// Rebuild the CONTRIBUTION table as it was before the CTB_DATE column
+		coreDAO.executeScript("create index CTB_CONTRIBUTOR_IDX on CONTRIBUTION (CTB_CONTRIBUTOR);\n"
+				+ "create index CTB_TASK_IDX on CONTRIBUTION (CTB_TASK);\n"
+				+ "drop index CTB_CONTRIBUTOR_DATE_IDX;\n"
+				+ "drop index CTB_TASK_DATE_IDX;\n"
+				+ "alter table CONTRIBUTION drop column CTB_DATE;\n");
+		insertLegacyContribution(2015, 12, 31);
+		insertLegacyContribution(2016, 1, 1);
+		insertLegacyContribution(2016, 2, 15);
+		get().commit();
+	}
+
+	public void testUpgrade() throws ModelException, SQLException {
+		getModelMgr().upgradeTables();
+		assertEquals(20151231, getMinDateKey());
+
+		// Interval requests rely on the new column
+		Calendar[] interval = getModelMgr().getContributionsInterval(null);
+		assertEquals(new GregorianCalendar(2015, 11, 31), interval[0]);
+		assertEquals(new GregorianCalendar(2016, 1, 15), interval[1]);
+		assertEquals(200, getModelMgr().getContributionsSum(collaborator,
+				null, new GregorianCalendar(2016, 0, 1),
+				new GregorianCalendar(2016, 11, 31)));
+		assertEquals(1, getModelMgr().getContributionsCount(collaborator,
+				null, new GregorianCalendar(2015, 0, 1),
+				new GregorianCalendar(2015, 11, 31)));
+
+		// The column is mandatory once filled
+		try {
+			insertLegacyContribution(2014, 6, 1);
+			fail("The column must not be nullable");
+		} catch (SQLException expected) {
+			get().rollback();
+		}
+	}
+
+	public void testUpgradeIsIdempotent() throws SQLException {
+		getModelMgr().upgradeTables();
+		getModelMgr().upgradeTables();
+		assertEquals(20151231, getMinDateKey());
+	}
+
+	private void insertLegacyContribution(int year, int month, int day)
+			throws SQLException {
+		PreparedStatement pStmt = get()
+				.prepareStatement(
+						"insert into CONTRIBUTION (ctb_year, ctb_month, ctb_day, ctb_contributor, ctb_task, ctb_duration) values (?, ?, ?, ?, ?, 100)");
+		pStmt.setInt(1, year);
+		pStmt.setInt(2, month);
+		pStmt.setInt(3, day);
+		pStmt.setLong(4, collaborator.getId());
+		pStmt.setLong(5, task.getId());
+		pStmt.executeUpdate();
+		pStmt.close();
+	}
+
+	private int getMinDateKey() throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(
+				"select min(ctb_date) from CONTRIBUTION");
+		ResultSet rs = pStmt.executeQuery();
+		assertTrue(rs.next());
+		int result = rs.getInt(1);
+		pStmt.close();
+		return result;
+	}
+
+}
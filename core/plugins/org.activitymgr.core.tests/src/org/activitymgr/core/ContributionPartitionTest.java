@@ -0,0 +1,162 @@
+package org.activitymgr.core;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.activitymgr.core.dao.IContributionDAO;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+public class ContributionPartitionTest extends AbstractModelTestCase {
+
+	/** Year without partition (stored in the default partition) */
+	private static final int FAR_YEAR = 2040;
+
+	@Inject
+	private IContributionDAO contributionDAO;
+
+	/** Test data */
+	private YearEndData data;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		data = createYearEndData();
+	}
+
+	public void testMigrationKeepsResults() throws Exception {
+		assertFalse(contributionDAO.isPartitioned());
+		List<String> expected = readYearEndData(data);
+		getModelMgr().partitionContributions();
+		assertTrue(contributionDAO.isPartitioned());
+		assertTrue(contributionDAO.getPartitionYears().containsAll(
+				Arrays.asList(2014, 2015, 2016)));
+		assertEquals(expected, readYearEndData(data));
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkContributionRollups());
+		// The rows have been moved to the year tables
+		assertEquals(2, count("CONTRIBUTION_2014"));
+		assertEquals(3, count("CONTRIBUTION_2015"));
+		assertEquals(1, count("CONTRIBUTION_2016"));
+		assertEquals(0, count("CONTRIBUTION_DEFAULT"));
+	}
+
+	public void testWritesMatchUnpartitionedDatabase() throws Exception {
+		write();
+		List<String> expected = readYearEndData(data);
+
+		// Same data & writes on a partitioned database
+		getModelMgr().createTables(true);
+		assertTrue(contributionDAO.isPartitioned());
+		data = createYearEndData();
+		write();
+		assertEquals(expected, readYearEndData(data));
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkContributionRollups());
+		// The tables have been partitioned before the data was created : only
+		// the current and next years have their partition
+		assertFalse(contributionDAO.getPartitionYears().contains(2015));
+		assertEquals(5, count("CONTRIBUTION_DEFAULT"));
+		assertEquals(5, count("CONTRIBUTION"));
+	}
+
+	public void testNewYearPartition() throws Exception {
+		getModelMgr().partitionContributions();
+		createContribution(data.collaborator1, data.task1, FAR_YEAR, 5, 1, 100);
+		assertFalse(contributionDAO.getPartitionYears().contains(FAR_YEAR));
+		assertEquals(1, count("CONTRIBUTION_DEFAULT"));
+		List<String> expected = readYearEndData(data);
+
+		// A new call creates the far year partition
+		getModelMgr().partitionContributions();
+		assertTrue(contributionDAO.getPartitionYears().contains(FAR_YEAR));
+		assertEquals(0, count("CONTRIBUTION_DEFAULT"));
+		assertEquals(1, count("CONTRIBUTION_" + FAR_YEAR));
+		assertEquals(expected, readYearEndData(data));
+	}
+
+	public void testDatabaseChangeResetsPartitions() throws Exception {
+		assertFalse(contributionDAO.isPartitioned());
+		// Same data in another database, which is partitioned
+		Statement stmt = get().createStatement();
+		stmt.executeUpdate("alter table CONTRIBUTION rename to CONTRIBUTION_DEFAULT");
+		stmt.executeUpdate("create view CONTRIBUTION as select * from CONTRIBUTION_DEFAULT");
+		stmt.close();
+		get().commit();
+		getModelMgr().resetDatabaseCaches();
+		assertTrue(contributionDAO.isPartitioned());
+		// The writes are routed to the default partition
+		createContribution(data.collaborator1, data.task1, FAR_YEAR, 5, 1, 100);
+		assertEquals(7, count("CONTRIBUTION_DEFAULT"));
+		assertEquals(7, count("CONTRIBUTION"));
+	}
+
+	public void testIntervalRequestsPruneYears() throws Exception {
+		assertEquals("CONTRIBUTION", contributionDAO.getTableExpression(null,
+				null));
+		getModelMgr().partitionContributions();
+		String expression = contributionDAO.getTableExpression(
+				new GregorianCalendar(2015, 2, 1), new GregorianCalendar(2015,
+						3, 1));
+		assertEquals("CONTRIBUTION_2015 CONTRIBUTION", expression);
+		expression = contributionDAO.getTableExpression(new GregorianCalendar(
+				2014, 11, 1), new GregorianCalendar(2015, 0, 31));
+		assertTrue(expression, expression.contains("CONTRIBUTION_2014"));
+		assertTrue(expression, expression.contains("CONTRIBUTION_2015"));
+		assertFalse(expression, expression.contains("CONTRIBUTION_2016"));
+		assertFalse(expression, expression.contains("CONTRIBUTION_DEFAULT"));
+		// Once written, the default partition years are read too
+		createContribution(data.collaborator1, data.task1, FAR_YEAR, 5, 1, 100);
+		expression = contributionDAO.getTableExpression(new GregorianCalendar(
+				2016, 0, 1), null);
+		assertTrue(expression, expression.contains("CONTRIBUTION_DEFAULT"));
+		assertFalse(expression, expression.contains("CONTRIBUTION_2015"));
+	}
+
+	/**
+	 * Writes contributions of several years.
+	 */
+	private void write() throws ModelException {
+		createContribution(data.collaborator1, data.task2, 2016, 2, 1, 50);
+		createContribution(data.collaborator2, data.task2, FAR_YEAR, 0, 1, 25);
+		Contribution contribution = getContribution(data.collaborator1, data.task1, 2015,
+				0, 1);
+		contribution.setDurationId(50);
+		getModelMgr().updateContribution(contribution, true);
+		Task task3 = getModelMgr().createNewTask(data.root);
+		getModelMgr().changeContributionTask(
+				new Contribution[] {
+						getContribution(data.collaborator2, data.task1, 2014, 11, 31),
+						getContribution(data.collaborator2, data.task2, 2015, 11, 31),
+						getContribution(data.collaborator2, data.task1, 2016, 0, 2) },
+				task3);
+		getModelMgr().removeContributions(
+				new Contribution[] {
+						getContribution(data.collaborator1, data.task1, 2014, 11, 30),
+						getContribution(data.collaborator1, data.task2, 2016, 2, 1) });
+		getModelMgr().removeContribution(
+				getContribution(data.collaborator1, data.task2, 2015, 5, 15), true);
+	}
+
+	private int count(String table) throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(
+				"select count(*) from " + table);
+		try {
+			ResultSet rs = pStmt.executeQuery();
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			pStmt.close();
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package org.activitymgr.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+
+import org.activitymgr.core.dao.IContributionDAO;
+import org.activitymgr.core.dao.ICoreDAO;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskContributionsSums;
+import org.activitymgr.core.dto.misc.TaskSums;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+public class ContributionRollupTest extends AbstractModelTestCase {
+
+	@Inject
+	private ICoreDAO coreDAO;
+
+	@Inject
+	private IContributionDAO contributionDAO;
+
+	/** Test data */
+	private Collaborator collaborator1;
+	private Collaborator collaborator2;
+	private Task root;
+	private Task task1;
+	private Task task2;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		collaborator1 = createCollaborator("login1");
+		collaborator2 = createCollaborator("login2");
+		root = getModelMgr().createNewTask(null);
+		task1 = getModelMgr().createNewTask(root);
+		task2 = getModelMgr().createNewTask(root);
+		createDurations(25, 50, 100);
+		// Contributions around the end of january & february
+		createContribution(collaborator1, task1, 2016, 0, 28, 100);
+		createContribution(collaborator1, task1, 2016, 0, 31, 50);
+		createContribution(collaborator2, task1, 2016, 0, 31, 25);
+		createContribution(collaborator1, task2, 2016, 1, 1, 100);
+		createContribution(collaborator2, task2, 2016, 1, 29, 50);
+		createContribution(collaborator2, task1, 2016, 2, 1, 100);
+	}
+
+	public void testRollupsAreMaintained() throws ModelException {
+		assertConsistent();
+		assertSumsMatchContributions();
+
+		// Update
+		Contribution contribution = getContribution(collaborator1, task1,
+				2016, 0, 31);
+		contribution.setDurationId(100);
+		getModelMgr().updateContribution(contribution, false);
+		assertConsistent();
+		contribution = getContribution(collaborator1, task1, 2016, 0, 31);
+		contribution.setDurationId(25);
+		getModelMgr().updateContribution(contribution, true);
+		assertConsistent();
+		assertSumsMatchContributions();
+
+		// Task change
+		Task task3 = getModelMgr().createNewTask(root);
+		getModelMgr().changeContributionTask(
+				new Contribution[] {
+						getContribution(collaborator2, task1, 2016, 0, 31),
+						getContribution(collaborator2, task2, 2016, 1, 29) },
+				task3);
+		assertConsistent();
+		assertSumsMatchContributions();
+
+		// Removal
+		getModelMgr().removeContribution(
+				getContribution(collaborator1, task1, 2016, 0, 28), false);
+		getModelMgr().removeContribution(
+				getContribution(collaborator1, task2, 2016, 1, 1), true);
+		getModelMgr().removeContributions(
+				new Contribution[] { getContribution(collaborator2, task1,
+						2016, 2, 1) });
+		assertConsistent();
+		assertSumsMatchContributions();
+	}
+
+	public void testSums() throws ModelException {
+		// Whole months (monthly rollup)
+		assertSumsMatchContributions(new GregorianCalendar(2016, 0, 1),
+				new GregorianCalendar(2016, 1, 29));
+		assertSumsMatchContributions(new GregorianCalendar(2016, 1, 1), null);
+		assertSumsMatchContributions(null, new GregorianCalendar(2016, 0, 31));
+		// Other intervals (daily rollup)
+		assertSumsMatchContributions(new GregorianCalendar(2016, 0, 29),
+				new GregorianCalendar(2016, 1, 28));
+		assertSumsMatchContributions(new GregorianCalendar(2016, 0, 31),
+				new GregorianCalendar(2016, 0, 31));
+		assertSumsMatchContributions(new GregorianCalendar(2016, 1, 2), null);
+	}
+
+	public void testSumsMatchSeparateRequests() throws ModelException,
+			SQLException {
+		Task task = getModelMgr().getTask(task1.getId());
+		task.setInitiallyConsumed(200);
+		task.setTodo(300);
+		getModelMgr().updateTask(task);
+		Calendar[][] intervals = new Calendar[][] {
+				{ null, null },
+				{ new GregorianCalendar(2016, 0, 31), null },
+				{ null, new GregorianCalendar(2016, 0, 31) },
+				{ new GregorianCalendar(2016, 0, 29),
+						new GregorianCalendar(2016, 1, 1) },
+				{ new GregorianCalendar(2016, 1, 1),
+						new GregorianCalendar(2016, 1, 29) },
+				{ new GregorianCalendar(2016, 0, 31),
+						new GregorianCalendar(2016, 0, 31) } };
+		List<TaskSums> allTimeSums = getModelMgr().getSubTasksSums(
+				getModelMgr().getTask(root.getId()), null, null);
+		for (Calendar[] interval : intervals) {
+			Calendar fromDate = interval[0];
+			Calendar toDate = interval[1];
+			List<TaskSums> sums = getModelMgr().getSubTasksSums(
+					getModelMgr().getTask(root.getId()), fromDate, toDate);
+			assertEquals(allTimeSums.size(), sums.size());
+
+			// Former computation : one request for the interval, one for the
+			// contributions before it and one for the contributions after it
+			Map<Long, TaskContributionsSums> expected = contributionDAO
+					.getTasksSums(null, root.getFullPath(), fromDate, toDate);
+			Map<Long, TaskContributionsSums> past = null;
+			if (fromDate != null) {
+				Calendar date = (Calendar) fromDate.clone();
+				date.add(Calendar.DATE, -1);
+				past = contributionDAO.getTasksSums(null, root.getFullPath(),
+						null, date);
+			}
+			Map<Long, TaskContributionsSums> future = null;
+			if (toDate != null) {
+				Calendar date = (Calendar) toDate.clone();
+				date.add(Calendar.DATE, 1);
+				future = contributionDAO.getTasksSums(null, root.getFullPath(),
+						date, null);
+			}
+			get().commit();
+			for (int i = 0; i < sums.size(); i++) {
+				TaskSums taskSums = sums.get(i);
+				TaskSums allTimeTaskSums = allTimeSums.get(i);
+				long taskId = taskSums.getTask().getId();
+				assertEquals(allTimeTaskSums.getTask(), taskSums.getTask());
+				assertEquals(allTimeTaskSums.getBudgetSum(),
+						taskSums.getBudgetSum());
+				assertEquals(expected.get(taskId).getConsumedSum(), taskSums
+						.getContributionsSums().getConsumedSum());
+				assertEquals(expected.get(taskId).getContributionsNb(),
+						taskSums.getContributionsSums().getContributionsNb());
+				assertEquals(allTimeTaskSums.getInitiallyConsumedSum()
+						+ (past != null ? past.get(taskId).getConsumedSum() : 0),
+						taskSums.getInitiallyConsumedSum());
+				assertEquals(allTimeTaskSums.getTodoSum()
+						+ (future != null ? future.get(taskId).getConsumedSum() : 0),
+						taskSums.getTodoSum());
+			}
+		}
+	}
+
+	public void testCheckAndRebuild() throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(
+				"update CONTRIBUTION_MONTH set ctm_duration=ctm_duration+1 where ctm_task=?");
+		pStmt.setLong(1, task2.getId());
+		pStmt.executeUpdate();
+		pStmt.close();
+		pStmt = get().prepareStatement("delete from CONTRIBUTION_DAY where ctd_task=?");
+		pStmt.setLong(1, task1.getId());
+		pStmt.executeUpdate();
+		pStmt.close();
+		pStmt = get().prepareStatement("insert into CONTRIBUTION_DAY (ctd_task, ctd_year, ctd_month, ctd_day, ctd_date, ctd_duration, ctd_count) values (?, 2015, 6, 1, 20150601, 100, 1)");
+		pStmt.setLong(1, task2.getId());
+		pStmt.executeUpdate();
+		pStmt.close();
+		get().commit();
+
+		List<String> errors = getModelMgr().checkContributionRollups();
+		// 2 wrong monthly rows, 3 missing daily rows & 1 orphan daily row
+		assertEquals(errors.toString(), 6, errors.size());
+		getModelMgr().rebuildContributionRollups();
+		assertConsistent();
+	}
+
+	public void testUpgrade() throws SQLException, ModelException {
+		coreDAO.executeScript("drop table CONTRIBUTION_DAY;\n"
+				+ "drop table CONTRIBUTION_MONTH;\n");
+		get().commit();
+		getModelMgr().upgradeTables();
+		assertConsistent();
+		assertSumsMatchContributions();
+	}
+
+	private void assertConsistent() {
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkContributionRollups());
+	}
+
+	private void assertSumsMatchContributions() throws ModelException {
+		assertSumsMatchContributions(null, null);
+	}
+
+	private void assertSumsMatchContributions(Calendar fromDate,
+			Calendar toDate) throws ModelException {
+		for (TaskSums sums : getModelMgr().getSubTasksSums(
+				getModelMgr().getTask(root.getId()), fromDate, toDate)) {
+			Task task = sums.getTask();
+			assertEquals(task.getCode(),
+					getModelMgr().getContributionsSum(null, task, fromDate,
+							toDate), sums.getContributionsSums()
+							.getConsumedSum());
+			assertEquals(task.getCode(),
+					getModelMgr().getContributionsCount(null, task, fromDate,
+							toDate), sums.getContributionsSums()
+							.getContributionsNb());
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package org.activitymgr.core;
+
+import org.activitymgr.core.dao.DAOException;
+import org.activitymgr.core.dao.ICollaboratorDAO;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.util.IdentityMap;
+
+import com.google.inject.Inject;
+
+public class IdentityMapTest extends AbstractModelTestCase {
+
+	@Inject
+	private ICollaboratorDAO collaboratorDAO;
+
+	private Collaborator collaborator;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		collaborator = getFactory().newCollaborator();
+		collaborator.setLogin("login");
+		collaborator.setFirstName("First");
+		collaborator.setLastName("Last");
+		collaboratorDAO.insert(collaborator);
+	}
+
+	public void testRepeatedSelectIsSaved() throws DAOException {
+		IdentityMap identityMap = getIdentityMap();
+		identityMap.clear();
+		long hits = identityMap.getHits();
+		long misses = identityMap.getMisses();
+		Collaborator first = collaboratorDAO.selectByPK(collaborator.getId());
+		Collaborator second = collaboratorDAO.selectByPK(collaborator.getId());
+		assertEquals(misses + 1, identityMap.getMisses());
+		assertEquals(hits + 1, identityMap.getHits());
+		assertEquals("login", second.getLogin());
+		// Each call returns its own instance
+		assertNotSame(first, second);
+	}
+
+	public void testWritesUpdateTheMap() throws DAOException {
+		// The inserted row is served by the map
+		long hits = getIdentityMap().getHits();
+		assertEquals("First",
+				collaboratorDAO.selectByPK(collaborator.getId()).getFirstName());
+		assertEquals(hits + 1, getIdentityMap().getHits());
+
+		collaborator.setFirstName("Updated");
+		collaboratorDAO.update(collaborator);
+		assertEquals("Updated",
+				collaboratorDAO.selectByPK(collaborator.getId()).getFirstName());
+
+		// The cached copy is not altered by the caller's instance
+		collaborator.setFirstName("NotSaved");
+		assertEquals("Updated",
+				collaboratorDAO.selectByPK(collaborator.getId()).getFirstName());
+
+		// Partial updates evict the row
+		collaborator.setLastName("UpdatedLast");
+		collaboratorDAO.update(collaborator, new String[] { "lastName" });
+		Collaborator selected = collaboratorDAO.selectByPK(collaborator.getId());
+		assertEquals("Updated", selected.getFirstName());
+		assertEquals("UpdatedLast", selected.getLastName());
+	}
+
+	public void testDeleteEvictsTheRow() throws DAOException {
+		assertNotNull(collaboratorDAO.selectByPK(collaborator.getId()));
+		collaboratorDAO.delete(collaborator);
+		assertNull(collaboratorDAO.selectByPK(collaborator.getId()));
+	}
+
+	public void testModelCallsClearTheMap() throws Exception {
+		assertNotNull(collaboratorDAO.selectByPK(collaborator.getId()));
+		getModelMgr().getCollaborators();
+		// Committed : the next read goes to the database
+		long misses = getIdentityMap().getMisses();
+		collaboratorDAO.selectByPK(collaborator.getId());
+		assertEquals(misses + 1, getIdentityMap().getMisses());
+	}
+
+}
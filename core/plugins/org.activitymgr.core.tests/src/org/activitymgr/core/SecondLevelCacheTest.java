@@ -0,0 +1,197 @@
+package org.activitymgr.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+import org.activitymgr.core.dao.ICollaboratorDAO;
+import org.activitymgr.core.dao.SecondLevelCache;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+public class SecondLevelCacheTest extends AbstractModelTestCase {
+
+	/** Duration used by the tests (not in the default durations) */
+	private static final long DURATION_ID = 1234;
+
+	@Inject
+	private SecondLevelCache secondLevelCache;
+
+	@Inject
+	private ICollaboratorDAO collaboratorDAO;
+
+	private Collaborator collaborator;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		collaborator = getFactory().newCollaborator();
+		collaborator.setLogin("login");
+		collaborator.setFirstName("First");
+		collaborator.setLastName("Last");
+		collaborator = getModelMgr().createCollaborator(collaborator);
+	}
+
+	public void testReadsAreShared() {
+		Class<?> theClass = collaborator.getClass();
+		getModelMgr().getCollaborator("login");
+		long hits = secondLevelCache.getHits(theClass);
+		// Each model call is a new transaction
+		assertEquals("First", getModelMgr().getCollaborator("login")
+				.getFirstName());
+		assertEquals("First", getModelMgr().getCollaborator("login")
+				.getFirstName());
+		assertEquals(hits + 2, secondLevelCache.getHits(theClass));
+		assertTrue(secondLevelCache.getHitRatio(theClass) > 0);
+	}
+
+	public void testNoStaleCollaborator() throws ModelException {
+		assertEquals("First",
+				getModelMgr().getCollaborator(collaborator.getId())
+						.getFirstName());
+		assertEquals("First", getModelMgr().getCollaborator("login")
+				.getFirstName());
+
+		collaborator.setFirstName("Updated");
+		getModelMgr().updateCollaborator(collaborator);
+		assertEquals("Updated",
+				getModelMgr().getCollaborator(collaborator.getId())
+						.getFirstName());
+		assertEquals("Updated", getModelMgr().getCollaborator("login")
+				.getFirstName());
+
+		getModelMgr().removeCollaborator(collaborator);
+		assertNull(getModelMgr().getCollaborator(collaborator.getId()));
+		assertNull(getModelMgr().getCollaborator("login"));
+	}
+
+	public void testNoStaleReadAfterRollback() {
+		getModelMgr().getCollaborator(collaborator.getId());
+
+		// Write in the test transaction (committed by the model call)
+		Collaborator updated = collaboratorDAO.selectByPK(collaborator.getId());
+		updated.setFirstName("Committed");
+		collaboratorDAO.update(updated);
+		assertEquals("Committed",
+				getModelMgr().getCollaborator(collaborator.getId())
+						.getFirstName());
+		// Write again, then rollback
+		updated.setFirstName("RolledBack");
+		collaboratorDAO.update(updated);
+		collaboratorDAO.selectByPK(collaborator.getId());
+		try {
+			get().rollback();
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+		getIdentityMap().clear();
+		assertEquals("Committed",
+				getModelMgr().getCollaborator(collaborator.getId())
+						.getFirstName());
+	}
+
+	public void testNoUncommittedRowAfterSavepointRollback()
+			throws SQLException {
+		Collaborator updated = collaboratorDAO.selectByPK(collaborator.getId());
+		updated.setFirstName("Uncommitted");
+		collaboratorDAO.update(updated);
+		// A nested call fails, the outer transaction goes on
+		Savepoint savepoint = get().setSavepoint();
+		get().rollback(savepoint);
+		getIdentityMap().clearInstances();
+		assertEquals("Uncommitted",
+				collaboratorDAO.selectByPK(collaborator.getId())
+						.getFirstName());
+		// The uncommitted row must not have been shared
+		get().rollback();
+		getIdentityMap().clear();
+		assertEquals("First",
+				getModelMgr().getCollaborator(collaborator.getId())
+						.getFirstName());
+	}
+
+	public void testDatabaseChangeInvalidatesTheCache() throws SQLException {
+		assertEquals("First",
+				getModelMgr().getCollaborator(collaborator.getId())
+						.getFirstName());
+		// Same row in another database
+		PreparedStatement pStmt = get().prepareStatement(
+				"update COLLABORATOR set CLB_FIRST_NAME='Other' where CLB_ID=?");
+		pStmt.setLong(1, collaborator.getId());
+		pStmt.executeUpdate();
+		pStmt.close();
+		get().commit();
+		getModelMgr().resetDatabaseCaches();
+		assertEquals("Other",
+				getModelMgr().getCollaborator(collaborator.getId())
+						.getFirstName());
+	}
+
+	public void testNoStaleTask() throws ModelException {
+		Task rootTask = getModelMgr().createNewTask(null);
+		rootTask.setCode("RT");
+		rootTask.setName("Root task");
+		rootTask = getModelMgr().updateTask(rootTask);
+		Task otherRootTask = getModelMgr().createNewTask(null);
+		otherRootTask.setCode("ORT");
+		otherRootTask.setName("Other root task");
+		otherRootTask = getModelMgr().updateTask(otherRootTask);
+		Task task = getFactory().newTask();
+		task.setCode("T");
+		task.setName("Task");
+		task = getModelMgr().createTask(rootTask, task);
+		assertEquals("/RT/T", getModelMgr().getTaskCodePath(task));
+		assertEquals(task.getId(), getModelMgr().getTaskByCodePath("/RT/T")
+				.getId());
+
+		// Update
+		rootTask.setCode("RT2");
+		getModelMgr().updateTask(rootTask);
+		assertEquals("RT2", getModelMgr().getTask(rootTask.getId()).getCode());
+		assertEquals("/RT2/T", getModelMgr().getTaskCodePath(task));
+		assertUnknownCodePath("/RT/T");
+
+		// Move
+		getModelMgr().moveTask(task, otherRootTask);
+		task = getModelMgr().getTask(task.getId());
+		assertEquals(otherRootTask.getId(),
+				getModelMgr().getParentTask(task).getId());
+		assertEquals("/ORT/T", getModelMgr().getTaskCodePath(task));
+		assertUnknownCodePath("/RT2/T");
+	}
+
+	public void testNoStaleDuration() throws ModelException {
+		int count = getModelMgr().getDurations().length;
+		int activeCount = getModelMgr().getActiveDurations().length;
+
+		Duration duration = getFactory().newDuration();
+		duration.setId(DURATION_ID);
+		duration.setIsActive(true);
+		getModelMgr().createDuration(duration);
+		assertEquals(count + 1, getModelMgr().getDurations().length);
+		assertEquals(activeCount + 1,
+				getModelMgr().getActiveDurations().length);
+
+		duration.setIsActive(false);
+		getModelMgr().updateDuration(duration);
+		assertFalse(getModelMgr().getDuration(DURATION_ID).getIsActive());
+		assertEquals(activeCount, getModelMgr().getActiveDurations().length);
+
+		getModelMgr().removeDuration(duration);
+		assertNull(getModelMgr().getDuration(DURATION_ID));
+		assertEquals(count, getModelMgr().getDurations().length);
+	}
+
+	private void assertUnknownCodePath(String codePath) {
+		try {
+			getModelMgr().getTaskByCodePath(codePath);
+			fail("Task code path '" + codePath + "' must be unknown");
+		} catch (ModelException expected) {
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package org.activitymgr.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import org.activitymgr.core.dao.ICoreDAO;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskSums;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+public class SubTasksCountTest extends AbstractModelTestCase {
+
+	@Inject
+	private ICoreDAO coreDAO;
+
+	/** Test tasks */
+	private Task root1;
+	private Task taskA;
+	private Task taskA1;
+	private Task taskA2;
+	private Task taskB;
+	private Task root2;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// R1
+		// + A
+		// | + A1
+		// | + A2
+		// + B
+		// R2
+		root1 = createTask(null, "R1");
+		taskA = createTask(root1, "A");
+		taskA1 = createTask(taskA, "A1");
+		taskA2 = createTask(taskA, "A2");
+		taskB = createTask(root1, "B");
+		root2 = createTask(null, "R2");
+	}
+
+	public void testCreate() {
+		assertConsistent();
+		assertSubTasksCount(2, root1);
+		assertSubTasksCount(2, taskA);
+		assertSubTasksCount(0, taskA1);
+		assertSubTasksCount(0, root2);
+		assertEquals(0, taskA2.getSubTasksCount());
+		assertTrue(getModelMgr().isLeaf(taskB.getId()));
+		assertFalse(getModelMgr().isLeaf(root1.getId()));
+	}
+
+	public void testMove() throws ModelException {
+		getModelMgr().moveTask(reload(taskA), reload(root2));
+		assertConsistent();
+		assertSubTasksCount(1, root1);
+		assertSubTasksCount(1, root2);
+		getModelMgr().moveTask(reload(taskA1), null);
+		assertConsistent();
+		assertSubTasksCount(1, taskA);
+		getModelMgr().moveUpTask(reload(taskA1));
+		assertConsistent();
+	}
+
+	public void testRemove() throws ModelException {
+		getModelMgr().removeTask(reload(taskA2));
+		assertConsistent();
+		assertSubTasksCount(1, taskA);
+		getModelMgr().removeTask(reload(taskA));
+		assertConsistent();
+		assertSubTasksCount(1, root1);
+	}
+
+	public void testUpdateKeepsCount() throws ModelException {
+		// A stale copy must not overwrite the count
+		Task staleRoot = reload(root1);
+		createTask(root1, "C");
+		staleRoot.setName("New name");
+		Task task = getModelMgr().updateTask(staleRoot);
+		assertEquals(3, task.getSubTasksCount());
+		assertConsistent();
+	}
+
+	public void testSums() throws ModelException {
+		List<TaskSums> sums = getModelMgr().getSubTasksSums(reload(root1),
+				null, null);
+		assertEquals(2, sums.size());
+		assertFalse(sums.get(0).isLeaf());
+		assertEquals(2, sums.get(0).getTask().getSubTasksCount());
+		assertTrue(sums.get(1).isLeaf());
+	}
+
+	public void testCheckAndRebuild() throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(
+				"update TASK set tsk_subtasks_count=5 where tsk_id=? or tsk_id=?");
+		pStmt.setLong(1, taskA.getId());
+		pStmt.setLong(2, taskB.getId());
+		pStmt.executeUpdate();
+		pStmt.close();
+		get().commit();
+
+		List<String> errors = getModelMgr().checkSubTasksCounts();
+		assertEquals(errors.toString(), 2, errors.size());
+		getModelMgr().rebuildSubTasksCounts();
+		assertConsistent();
+		assertSubTasksCount(2, taskA);
+		assertSubTasksCount(0, taskB);
+	}
+
+	public void testUpgrade() throws SQLException {
+		coreDAO.executeScript("alter table TASK drop column TSK_SUBTASKS_COUNT;");
+		get().commit();
+		getModelMgr().upgradeTables();
+		assertConsistent();
+		assertSubTasksCount(2, root1);
+	}
+
+	private void assertSubTasksCount(int expected, Task task) {
+		assertEquals(task.getCode(), expected, reload(task).getSubTasksCount());
+		assertEquals(task.getCode(), expected,
+				getModelMgr().getSubTasksCount(task.getId()));
+	}
+
+	private void assertConsistent() {
+		assertEquals(Collections.EMPTY_LIST, getModelMgr()
+				.checkSubTasksCounts());
+	}
+
+}
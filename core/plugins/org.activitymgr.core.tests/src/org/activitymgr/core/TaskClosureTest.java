@@ -0,0 +1,257 @@
+package org.activitymgr.core;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.activitymgr.core.dao.ICoreDAO;
+import org.activitymgr.core.dao.ITaskDAO;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskSums;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+public class TaskClosureTest extends AbstractModelTestCase {
+
+	@Inject
+	private ITaskDAO taskDAO;
+
+	@Inject
+	private ICoreDAO coreDAO;
+
+	/** Test tasks */
+	private Task root1;
+	private Task taskA;
+	private Task taskA1;
+	private Task taskA2;
+	private Task taskB;
+	private Task taskB1;
+	private Task taskB11;
+	private Task root2;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// R1
+		// + A
+		// | + A1
+		// | + A2
+		// + B
+		//   + B1
+		//     + B11
+		// R2
+		root1 = createTask(null, "R1", "Root 1", 0);
+		taskA = createTask(root1, "A", "Alpha", 0);
+		taskA1 = createTask(taskA, "A1", "Alpha one", 10);
+		taskA2 = createTask(taskA, "A2", "Alpha two", 20);
+		taskB = createTask(root1, "B", "Beta", 0);
+		taskB1 = createTask(taskB, "B1", "Beta one", 0);
+		taskB11 = createTask(taskB1, "B11", "Beta one one", 40);
+		root2 = createTask(null, "R2", "Root 2", 0);
+
+		Collaborator collaborator = getModelMgr().createNewCollaborator();
+		Duration duration = getFactory().newDuration();
+		duration.setId(100);
+		getModelMgr().createDuration(duration);
+		Calendar date = new GregorianCalendar(2016, 0, 1);
+		for (Task task : new Task[] { taskA1, taskA2, taskB11, taskA1 }) {
+			Contribution contribution = getFactory().newContribution();
+			contribution.setDate(date);
+			contribution.setContributorId(collaborator.getId());
+			contribution.setDurationId(duration.getId());
+			contribution.setTaskId(task.getId());
+			getModelMgr().createContribution(contribution, false);
+			date.add(Calendar.DATE, 1);
+		}
+	}
+
+	public void testClosureMatchesPaths() throws SQLException, ModelException {
+		assertClosureMatchesPaths();
+		assertSumsMatchPaths();
+	}
+
+	public void testMove() throws SQLException, ModelException {
+		getModelMgr().moveTask(reload(taskB1), reload(root2));
+		assertClosureMatchesPaths();
+		assertSumsMatchPaths();
+		getModelMgr().moveTask(reload(taskA), null);
+		assertClosureMatchesPaths();
+		assertSumsMatchPaths();
+	}
+
+	public void testRemove() throws SQLException, ModelException {
+		Task task = createTask(reload(root2), "C", "Gamma", 0);
+		createTask(task, "C1", "Gamma one", 5);
+		getModelMgr().removeTask(reload(task));
+		assertClosureMatchesPaths();
+		assertSumsMatchPaths();
+	}
+
+	public void testRebuild() throws SQLException {
+		Set<String> closure = getClosure();
+		PreparedStatement pStmt = get().prepareStatement(
+				"delete from TASK_CLOSURE");
+		pStmt.executeUpdate();
+		pStmt.close();
+		taskDAO.rebuildClosure();
+		get().commit();
+		assertEquals(closure, getClosure());
+		assertClosureMatchesPaths();
+	}
+
+	public void testUpgrade() throws SQLException {
+		Set<String> closure = getClosure();
+		coreDAO.executeScript("drop table TASK_CLOSURE;");
+		get().commit();
+		getModelMgr().upgradeTables();
+		assertEquals(closure, getClosure());
+	}
+
+	public void testFilteredSubTasks() throws SQLException {
+		assertFilteredSubTasksMatchPaths(null, "one");
+		assertFilteredSubTasksMatchPaths(null, "Alpha");
+		assertFilteredSubTasksMatchPaths(root1.getId(), "one");
+		assertFilteredSubTasksMatchPaths(root1.getId(), "B11");
+		assertFilteredSubTasksMatchPaths(taskB.getId(), "Beta");
+		assertFilteredSubTasksMatchPaths(root1.getId(), "unknown");
+	}
+
+	/**
+	 * @return the tasks full paths, by task identifier.
+	 */
+	private Map<Long, String> getFullPaths() throws SQLException {
+		Map<Long, String> result = new HashMap<Long, String>();
+		PreparedStatement pStmt = get().prepareStatement(
+				"select tsk_id, tsk_path, tsk_number from TASK");
+		ResultSet rs = pStmt.executeQuery();
+		while (rs.next()) {
+			result.put(rs.getLong(1), rs.getString(2) + rs.getString(3));
+		}
+		pStmt.close();
+		return result;
+	}
+
+	/**
+	 * @return the closure table rows (as 'ancestor/descendant/depth').
+	 */
+	private Set<String> getClosure() throws SQLException {
+		Set<String> result = new HashSet<String>();
+		PreparedStatement pStmt = get().prepareStatement(
+				"select tcl_ancestor, tcl_descendant, tcl_depth from TASK_CLOSURE");
+		ResultSet rs = pStmt.executeQuery();
+		while (rs.next()) {
+			result.add(rs.getLong(1) + "/" + rs.getLong(2) + "/" + rs.getInt(3));
+		}
+		pStmt.close();
+		return result;
+	}
+
+	private void assertClosureMatchesPaths() throws SQLException {
+		// Expected closure (path prefixes, as the former requests did)
+		Map<Long, String> fullPaths = getFullPaths();
+		Set<String> expected = new HashSet<String>();
+		for (Long ancestorId : fullPaths.keySet()) {
+			String ancestorPath = fullPaths.get(ancestorId);
+			for (Long descendantId : fullPaths.keySet()) {
+				String descendantPath = fullPaths.get(descendantId);
+				if (descendantPath.startsWith(ancestorPath)) {
+					expected.add(ancestorId + "/" + descendantId + "/"
+							+ (descendantPath.length() - ancestorPath.length()) / 2);
+				}
+			}
+		}
+		assertEquals(expected, getClosure());
+	}
+
+	private void assertSumsMatchPaths() throws SQLException, ModelException {
+		Map<Long, String> fullPaths = getFullPaths();
+		Map<Long, Long> budgets = new HashMap<Long, Long>();
+		PreparedStatement pStmt = get().prepareStatement(
+				"select tsk_id, tsk_budget from TASK");
+		ResultSet rs = pStmt.executeQuery();
+		while (rs.next()) {
+			budgets.put(rs.getLong(1), rs.getLong(2));
+		}
+		pStmt.close();
+		Map<Long, Long> consumed = new HashMap<Long, Long>();
+		pStmt = get().prepareStatement(
+				"select ctb_task, sum(ctb_duration) from CONTRIBUTION group by ctb_task");
+		rs = pStmt.executeQuery();
+		while (rs.next()) {
+			consumed.put(rs.getLong(1), rs.getLong(2));
+		}
+		pStmt.close();
+
+		for (Long taskId : fullPaths.keySet()) {
+			Task task = getModelMgr().getTask(taskId);
+			List<TaskSums> sums = getModelMgr().getSubTasksSums(task, null,
+					null);
+			assertEquals(getModelMgr().getSubTasksCount(taskId), sums.size());
+			for (TaskSums taskSums : sums) {
+				String path = taskSums.getTask().getFullPath();
+				long expectedBudget = 0;
+				long expectedConsumed = 0;
+				for (Long id : fullPaths.keySet()) {
+					if (fullPaths.get(id).startsWith(path)) {
+						expectedBudget += budgets.get(id);
+						if (consumed.containsKey(id))
+							expectedConsumed += consumed.get(id);
+					}
+				}
+				assertEquals(path, expectedBudget, taskSums.getBudgetSum());
+				assertEquals(path, expectedConsumed, taskSums
+						.getContributionsSums().getConsumedSum());
+			}
+		}
+	}
+
+	private void assertFilteredSubTasksMatchPaths(Long parentTaskId,
+			String filter) throws SQLException {
+		Map<Long, String> fullPaths = getFullPaths();
+		String parentPath = parentTaskId != null ? fullPaths.get(parentTaskId)
+				: "";
+		Set<String> matchingPaths = new HashSet<String>();
+		PreparedStatement pStmt = get().prepareStatement(
+				"select tsk_path, tsk_number from TASK where tsk_name like ? or tsk_code like ?");
+		pStmt.setString(1, "%" + filter + "%");
+		pStmt.setString(2, "%" + filter + "%");
+		ResultSet rs = pStmt.executeQuery();
+		while (rs.next()) {
+			matchingPaths.add(rs.getString(1) + rs.getString(2));
+		}
+		pStmt.close();
+
+		// A sub task is expected if it is a prefix of a matching task or if
+		// a matching task is a prefix of it
+		Set<Long> expected = new HashSet<Long>();
+		for (Long id : fullPaths.keySet()) {
+			String path = fullPaths.get(id);
+			if (path.length() != parentPath.length() + 2
+					|| !path.startsWith(parentPath))
+				continue;
+			for (String matchingPath : matchingPaths) {
+				if (matchingPath.startsWith(path)
+						|| path.startsWith(matchingPath)) {
+					expected.add(id);
+				}
+			}
+		}
+		Set<Long> actual = new HashSet<Long>();
+		for (Task task : getModelMgr().getSubTasks(parentTaskId, filter)) {
+			actual.add(task.getId());
+		}
+		assertEquals(filter, expected, actual);
+	}
+
+}
@@ -0,0 +1,190 @@
+package org.activitymgr.core;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.activitymgr.core.dao.ICoreDAO;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskSearchFilter;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+public class TaskSearchTest extends AbstractModelTestCase {
+
+	@Inject
+	private ICoreDAO coreDAO;
+
+	/** Test tasks */
+	private Task root1;
+	private Task network;
+	private Task summer;
+	private Task root2;
+	private Task winter;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// R1 (Équipe projet)
+		// + NET (Réseau & Sécurité)
+		// + ETE (Été 2016)
+		// R2 (Maintenance)
+		// + HIV (Hiver)
+		root1 = createTask(null, "R1", "Équipe projet");
+		network = createTask(root1, "NET", "Réseau & Sécurité");
+		summer = createTask(root1, "ETE", "Été 2016");
+		root2 = createTask(null, "R2", "Maintenance");
+		winter = createTask(root2, "HIV", "Hiver");
+	}
+
+	public void testCaseFolding() {
+		assertEquals(network, getModelMgr().getFirstTaskMatching("réseau"));
+		assertEquals(network, getModelMgr().getFirstTaskMatching("RÉSEAU"));
+		assertEquals(root2, getModelMgr().getFirstTaskMatching("mAiNt"));
+		assertEquals(winter, getModelMgr().getFirstTaskMatching("hiv"));
+		assertNull(getModelMgr().getFirstTaskMatching("automne"));
+	}
+
+	public void testAccents() {
+		assertEquals(network, getModelMgr().getFirstTaskMatching("securite"));
+		assertEquals(root1, getModelMgr().getFirstTaskMatching("equipe"));
+		assertEquals(summer, getModelMgr().getFirstTaskMatching("ete 2"));
+		// Accents are ignored in the filter too
+		assertEquals(winter, getModelMgr().getFirstTaskMatching("hìvèr"));
+	}
+
+	public void testShortFilters() {
+		// Filters shorter than a trigram are looked up as is in the index
+		assertEquals(root1, getModelMgr().getFirstTaskMatching("É"));
+		assertEquals(winter, getModelMgr().getFirstTaskMatching("hi"));
+		assertEquals(root1, getModelMgr().getFirstTaskMatching(""));
+		// ... which also holds the codes that are too short to have trigrams
+		assertEquals(root2, getModelMgr().getFirstTaskMatching("r2"));
+		// The LIKE wildcards are plain characters
+		assertNull(getModelMgr().getFirstTaskMatching("%"));
+		assertNull(getModelMgr().getFirstTaskMatching("_"));
+		assertNull(getModelMgr().getFirstTaskMatching("!"));
+	}
+
+	public void testSubTasks() {
+		// Matching sub task
+		assertSubTasks(null, "securite", root1);
+		assertSubTasks(root1, "securite", network);
+		// Matching parent
+		assertSubTasks(root1, "EQUIPE", network, summer);
+		// Matching sub tasks in several trees
+		assertSubTasks(null, "e", root1, root2);
+		assertSubTasks(root1, "et", network, summer);
+		assertSubTasks(root2, "unknown");
+		// Every sub task matches an empty filter
+		assertSubTasks(null, "", root1, root2);
+		assertSubTasks(root1, null, network, summer);
+	}
+
+	public void testTaskIds() {
+		assertTasks(TaskSearchFilter.TASK_NAME_FIELD_IDX,
+				TaskSearchFilter.CONTAINS_CRITERIA_IDX, "ÉT", root1, summer);
+		assertTasks(TaskSearchFilter.TASK_NAME_FIELD_IDX,
+				TaskSearchFilter.STARTS_WITH_CRITERIA_IDX, "ete", summer);
+		assertTasks(TaskSearchFilter.TASK_NAME_FIELD_IDX,
+				TaskSearchFilter.ENDS_WITH_CRITERIA_IDX, "TE", network);
+		assertTasks(TaskSearchFilter.TASK_CODE_FIELD_IDX,
+				TaskSearchFilter.CONTAINS_CRITERIA_IDX, "e", network, summer);
+		assertTasks(TaskSearchFilter.TASK_CODE_FIELD_IDX,
+				TaskSearchFilter.IS_EQUAL_TO_CRITERIA_IDX, "HIV", winter);
+	}
+
+	public void testIndexMaintenance() throws ModelException, SQLException {
+		Task task = getModelMgr().getTask(winter.getId());
+		task.setName("Automne");
+		getModelMgr().updateTask(task);
+		assertNull(getModelMgr().getFirstTaskMatching("hiver"));
+		assertEquals(winter, getModelMgr().getFirstTaskMatching("automne"));
+
+		getModelMgr().removeTask(getModelMgr().getTask(root2.getId()));
+		assertNull(getModelMgr().getFirstTaskMatching("automne"));
+		assertEquals(getExpectedTrigrams(), getTrigrams());
+	}
+
+	public void testUpgrade() throws SQLException {
+		Set<String> trigrams = getTrigrams();
+		assertEquals(getExpectedTrigrams(), trigrams);
+		coreDAO.executeScript("drop table TASK_TRIGRAM;");
+		get().commit();
+		getModelMgr().upgradeTables();
+		assertEquals(trigrams, getTrigrams());
+		assertEquals(network, getModelMgr().getFirstTaskMatching("securite"));
+
+		// An index that only holds the trigrams is rebuilt
+		PreparedStatement pStmt = get().prepareStatement(
+				"delete from TASK_TRIGRAM where char_length(ttg_trigram)<3");
+		pStmt.executeUpdate();
+		pStmt.close();
+		get().commit();
+		getModelMgr().upgradeTables();
+		assertEquals(trigrams, getTrigrams());
+		assertEquals(root2, getModelMgr().getFirstTaskMatching("r2"));
+	}
+
+	private void assertSubTasks(Task parent, String filter, Task... expected) {
+		assertEquals(filter, Arrays.asList(expected), Arrays.asList(getModelMgr()
+				.getSubTasks(parent != null ? parent.getId() : null, filter)));
+	}
+
+	private void assertTasks(int fieldIndex, int criteriaIndex, String value,
+			Task... expected) {
+		TaskSearchFilter filter = new TaskSearchFilter();
+		filter.setFieldIndex(fieldIndex);
+		filter.setCriteriaIndex(criteriaIndex);
+		filter.setFieldValue(value);
+		assertEquals(value, new HashSet<Task>(Arrays.asList(expected)),
+				new HashSet<Task>(Arrays.asList(getModelMgr().getTasks(filter))));
+	}
+
+	/**
+	 * @return the trigram index rows (as 'task/trigram').
+	 */
+	private Set<String> getTrigrams() throws SQLException {
+		Set<String> result = new HashSet<String>();
+		PreparedStatement pStmt = get().prepareStatement(
+				"select ttg_task, ttg_trigram from TASK_TRIGRAM");
+		ResultSet rs = pStmt.executeQuery();
+		while (rs.next()) {
+			result.add(rs.getLong(1) + "/" + rs.getString(2));
+		}
+		pStmt.close();
+		return result;
+	}
+
+	/**
+	 * @return the sequences of 1 to 3 characters of the task codes and names
+	 *         (as 'task/key').
+	 */
+	private Set<String> getExpectedTrigrams() throws SQLException {
+		Set<String> result = new HashSet<String>();
+		PreparedStatement pStmt = get().prepareStatement(
+				"select tsk_id, tsk_code, tsk_name from TASK");
+		ResultSet rs = pStmt.executeQuery();
+		while (rs.next()) {
+			for (int i = 2; i <= 3; i++) {
+				String key = rs.getString(i).toLowerCase()
+						.replace('é', 'e').replace('è', 'e');
+				for (int length = 1; length <= 3; length++) {
+					for (int j = 0; j + length <= key.length(); j++) {
+						String sequence = key.substring(j, j + length);
+						if (!sequence.endsWith(" ")) {
+							result.add(rs.getLong(1) + "/" + sequence);
+						}
+					}
+				}
+			}
+		}
+		pStmt.close();
+		return result;
+	}
+
+}
@@ -0,0 +1,138 @@
+package org.activitymgr.core;
+
+import java.util.GregorianCalendar;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.ModelException;
+
+public class TaskVersionTest extends AbstractModelTestCase {
+
+	/** Test data */
+	private Task root;
+	private Task task1;
+	private Task task2;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		root = getModelMgr().createNewTask(null);
+		task1 = getModelMgr().createNewTask(root);
+		task2 = getModelMgr().createNewTask(root);
+	}
+
+	public void testVersionIsIncremented() throws Exception {
+		assertEquals(0, getModelMgr().getTask(task1.getId()).getVersion());
+		task1.setName("Renamed");
+		task1 = getModelMgr().updateTask(task1);
+		assertEquals(1, task1.getVersion());
+		assertEquals(1, getModelMgr().getTask(task1.getId()).getVersion());
+		// A parent version doesn't change when a sub task is created
+		int rootVersion = getModelMgr().getTask(root.getId()).getVersion();
+		getModelMgr().createNewTask(root);
+		assertEquals(rootVersion, getModelMgr().getTask(root.getId())
+				.getVersion());
+		// The up to date copy may be updated again
+		task1.setName("Renamed again");
+		task1 = getModelMgr().updateTask(task1);
+		assertEquals(2, task1.getVersion());
+	}
+
+	public void testStaleUpdate() throws Exception {
+		Task stale = getModelMgr().getTask(task1.getId());
+		task1.setName("Renamed");
+		getModelMgr().updateTask(task1);
+		stale.setName("Concurrent rename");
+		try {
+			getModelMgr().updateTask(stale);
+			fail("A stale task can't be updated");
+		} catch (ModelException expected) {
+		}
+		assertEquals("Renamed", getModelMgr().getTask(task1.getId())
+				.getName());
+	}
+
+	public void testStaleMove() throws Exception {
+		Task stale = getModelMgr().getTask(task2.getId());
+		getModelMgr().moveUpTask(getModelMgr().getTask(task2.getId()));
+		try {
+			getModelMgr().moveDownTask(stale);
+			fail("A stale task can't be moved");
+		} catch (ModelException expected) {
+		}
+		try {
+			getModelMgr().moveTask(stale, task1);
+			fail("A stale task can't be moved");
+		} catch (ModelException expected) {
+		}
+		assertEquals(1, getModelMgr().getTask(task2.getId()).getNumber());
+	}
+
+	public void testStaleRemove() throws Exception {
+		Task stale = getModelMgr().getTask(task1.getId());
+		task1.setName("Renamed");
+		getModelMgr().updateTask(task1);
+		try {
+			getModelMgr().removeTask(stale);
+			fail("A stale task can't be removed");
+		} catch (ModelException expected) {
+		}
+		assertNotNull(getModelMgr().getTask(task1.getId()));
+		getModelMgr().removeTask(getModelMgr().getTask(task1.getId()));
+		assertNull(getModelMgr().getTask(task1.getId()));
+	}
+
+	public void testStaleRemoveAfterMove() throws Exception {
+		Task task3 = getModelMgr().createNewTask(root);
+		Task subTask = getModelMgr().createNewTask(task3);
+		Task stale = getModelMgr().getTask(task2.getId());
+		// The third task takes the place of the second one : the stale copy
+		// path is now the path of the third task sub tasks
+		getModelMgr().moveDownTask(getModelMgr().getTask(task2.getId()));
+		try {
+			getModelMgr().removeTask(stale);
+			fail("A stale task can't be removed");
+		} catch (ModelException expected) {
+		}
+		assertNotNull(getModelMgr().getTask(task2.getId()));
+		assertNotNull(getModelMgr().getTask(subTask.getId()));
+	}
+
+	public void testTodoUpdateIncrementsVersion() throws Exception {
+		Collaborator collaborator = getFactory().newCollaborator();
+		collaborator.setLogin("login");
+		collaborator.setFirstName("First");
+		collaborator.setLastName("Last");
+		collaborator = getModelMgr().createCollaborator(collaborator);
+		Duration duration = getFactory().newDuration();
+		duration.setId(100);
+		getModelMgr().createDuration(duration);
+		task1.setBudget(1000);
+		task1.setTodo(1000);
+		task1 = getModelMgr().updateTask(task1);
+
+		// The contribution updates the estimated time to complete
+		Task stale = getModelMgr().getTask(task1.getId());
+		Contribution contribution = getFactory().newContribution();
+		contribution.setDate(new GregorianCalendar(2017, 0, 16));
+		contribution.setContributorId(collaborator.getId());
+		contribution.setDurationId(duration.getId());
+		contribution.setTaskId(task1.getId());
+		getModelMgr().createContribution(contribution, true);
+		assertEquals(900, getModelMgr().getTask(task1.getId()).getTodo());
+		assertEquals(stale.getVersion() + 1,
+				getModelMgr().getTask(task1.getId()).getVersion());
+
+		// The copy read before the contribution can't overwrite it
+		stale.setName("Renamed");
+		try {
+			getModelMgr().updateTask(stale);
+			fail("A stale task can't be updated");
+		} catch (ModelException expected) {
+		}
+		assertEquals(900, getModelMgr().getTask(task1.getId()).getTodo());
+	}
+
+}
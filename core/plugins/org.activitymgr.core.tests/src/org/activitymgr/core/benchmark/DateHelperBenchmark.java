@@ -0,0 +1,105 @@
+package org.activitymgr.core.benchmark;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import junit.framework.TestCase;
+
+import org.activitymgr.core.util.DateHelper;
+import org.activitymgr.core.util.StringHelper;
+
+/**
+ * Date helpers micro benchmark.
+ * <p>
+ * Measures {@link DateHelper#countDaysBetween(Calendar, Calendar)} (called
+ * for each interval of a report), {@link DateHelper#moveToFirstDayOfWeek}
+ * and {@link StringHelper#toYYYYMMDD(Calendar)} on the days of a ten years
+ * range.
+ * </p>
+ * <p>
+ * This benchmark is not part of the {@link org.activitymgr.core.AllTests}
+ * suite ; it is meant to be launched manually before and after a change in
+ * the date helpers.
+ * </p>
+ */
+public class DateHelperBenchmark extends TestCase {
+
+	/** Number of days */
+	private static final int DAYS = 3650;
+
+	/** Warm up iterations */
+	private static final int WARMUP_ITERATIONS = 20;
+
+	/** Measured iterations */
+	private static final int ITERATIONS = 50;
+
+	/** Reference date */
+	private Calendar origin;
+
+	/** Dates */
+	private Calendar[] dates;
+
+	/** Prevents the JIT from removing the measured calls */
+	private long sink;
+
+	@Override
+	protected void setUp() throws Exception {
+		origin = new GregorianCalendar(2010, 0, 1);
+		dates = new Calendar[DAYS];
+		for (int i = 0; i < DAYS; i++) {
+			dates[i] = (Calendar) origin.clone();
+			dates[i].add(Calendar.DATE, i);
+		}
+	}
+
+	public void testCountDaysBetween() {
+		run("countDaysBetween", new Runnable() {
+			@Override
+			public void run() {
+				for (Calendar date : dates) {
+					sink += DateHelper.countDaysBetween(origin, date);
+				}
+			}
+		});
+	}
+
+	public void testMoveToFirstDayOfWeek() {
+		run("moveToFirstDayOfWeek", new Runnable() {
+			@Override
+			public void run() {
+				for (Calendar date : dates) {
+					sink += DateHelper.moveToFirstDayOfWeek(date).get(
+							Calendar.DATE);
+				}
+			}
+		});
+	}
+
+	public void testToYYYYMMDD() {
+		run("toYYYYMMDD", new Runnable() {
+			@Override
+			public void run() {
+				for (Calendar date : dates) {
+					sink += StringHelper.toYYYYMMDD(date).length();
+				}
+			}
+		});
+	}
+
+	private void run(String name, Runnable runnable) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			runnable.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			runnable.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(name + " : "
+				+ (elapsed / ((long) ITERATIONS * DAYS)) + " ns/call ("
+				+ (ITERATIONS * DAYS) + " calls in " + (elapsed / 1000000)
+				+ " ms)");
+		assertTrue(sink != 0);
+	}
+
+}
@@ -0,0 +1,150 @@
+package org.activitymgr.core.benchmark;
+
+import java.sql.Connection;
+import java.util.GregorianCalendar;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.report.Report;
+import org.activitymgr.core.dto.report.ReportIntervalType;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.orm.IDAO;
+
+import com.google.inject.Inject;
+
+/**
+ * Report construction micro benchmark.
+ * <p>
+ * Builds day, week and month reports over two years of daily contributions
+ * (10 tasks, 2 contributors), by contributor so that every contribution row
+ * is read and dispatched in the report intervals.
+ * </p>
+ * <p>
+ * This benchmark is not part of the {@link org.activitymgr.core.AllTests}
+ * suite ; it is meant to be launched manually (with the <code>h2mem</code>
+ * configuration) before and after a change in the report builder.
+ * </p>
+ */
+public class ReportBenchmark extends AbstractModelTestCase {
+
+	/** First contributions year */
+	private static final int YEAR = 2014;
+
+	/** Number of contributed days */
+	private static final int DAYS = 730;
+
+	/** Number of tasks */
+	private static final int TASKS = 10;
+
+	/** Number of contributors */
+	private static final int CONTRIBUTORS = 2;
+
+	/** Warm up iterations */
+	private static final int WARMUP_ITERATIONS = 10;
+
+	/** Measured iterations */
+	private static final int ITERATIONS = 30;
+
+	@Inject
+	private IDAO<Contribution> contributionDAO;
+
+	/** Root task */
+	private Task root;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.AbstractModelTestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Duration duration = getFactory().newDuration();
+		duration.setId(100);
+		getModelMgr().createDuration(duration);
+		long[] collaboratorIds = new long[CONTRIBUTORS];
+		for (int i = 0; i < CONTRIBUTORS; i++) {
+			Collaborator collaborator = getFactory().newCollaborator();
+			collaborator.setLogin("login" + i);
+			collaborator.setFirstName("First" + i);
+			collaborator.setLastName("Last" + i);
+			collaboratorIds[i] = getModelMgr().createCollaborator(collaborator)
+					.getId();
+		}
+		root = getModelMgr().createNewTask(null);
+		long[] taskIds = new long[TASKS];
+		for (int i = 0; i < TASKS; i++) {
+			taskIds[i] = getModelMgr().createNewTask(root).getId();
+		}
+		Connection con = get();
+		GregorianCalendar date = new GregorianCalendar(YEAR, 0, 1);
+		for (int day = 0; day < DAYS; day++) {
+			for (long taskId : taskIds) {
+				for (long collaboratorId : collaboratorIds) {
+					Contribution contribution = getFactory().newContribution();
+					contribution.setDate(date);
+					contribution.setContributorId(collaboratorId);
+					contribution.setTaskId(taskId);
+					contribution.setDurationId(100);
+					contributionDAO.insert(con, contribution);
+				}
+			}
+			date.add(GregorianCalendar.DATE, 1);
+		}
+		con.commit();
+		getModelMgr().rebuildContributionRollups();
+	}
+
+	public void testDayReport() throws ModelException {
+		run(ReportIntervalType.DAY, DAYS);
+	}
+
+	public void testWeekReport() throws ModelException {
+		run(ReportIntervalType.WEEK, DAYS / 7);
+	}
+
+	public void testMonthReport() throws ModelException {
+		run(ReportIntervalType.MONTH, 24);
+	}
+
+	private void run(ReportIntervalType intervalType, int intervalCount)
+			throws ModelException {
+		long expected = (long) DAYS * TASKS * CONTRIBUTORS * 100;
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			build(intervalType, intervalCount);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			Report report = build(intervalType, intervalCount);
+			assertEquals(TASKS * CONTRIBUTORS, report.getItems().size());
+			if (intervalType != ReportIntervalType.WEEK) {
+				assertEquals(expected, sum(report));
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(intervalType + " report : "
+				+ (elapsed / ITERATIONS / 1000) + " us/report ("
+				+ ITERATIONS + " reports in " + (elapsed / 1000000) + " ms)");
+	}
+
+	private Report build(ReportIntervalType intervalType, int intervalCount)
+			throws ModelException {
+		return getModelMgr().buildReport(new GregorianCalendar(YEAR, 0, 1),
+				intervalType, intervalCount, root.getId(), 1, false, true,
+				false, null);
+	}
+
+	private static long sum(Report report) {
+		long sum = 0;
+		for (int i = 0; i < report.getItems().size(); i++) {
+			for (int j = 0; j < report.getIntervalCount(); j++) {
+				sum += report.getItems().get(i).getContributionSum(j);
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,189 @@
+package org.activitymgr.core.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.orm.IDAO;
+
+import com.google.inject.Inject;
+
+/**
+ * Row mapping micro benchmark.
+ * <p>
+ * Measures how many rows per second the ORM is able to turn into
+ * {@link Task}, {@link Contribution} and {@link Collaborator} instances, and
+ * how many bytes are allocated per row. The rows are read from an already
+ * executed query so that the measure is mostly driven by the ORM mapping cost.
+ * </p>
+ * <p>
+ * The allocation count relies on the HotSpot specific
+ * <code>com.sun.management.ThreadMXBean</code> ; it is not reported on other
+ * JVMs.
+ * </p>
+ * <p>
+ * This benchmark is not part of the {@link org.activitymgr.core.AllTests}
+ * suite ; it is meant to be launched manually (with the <code>h2mem</code>
+ * configuration) before and after a change in the ORM.
+ * </p>
+ */
+public class RowMappingBenchmark extends AbstractModelTestCase {
+
+	/** Number of rows to create in each table */
+	private static final int ROWS = 5000;
+
+	/** Warm up iterations */
+	private static final int WARMUP_ITERATIONS = 20;
+
+	/** Measured iterations */
+	private static final int ITERATIONS = 50;
+
+	/** Per thread allocation counter (HotSpot only) */
+	private static Method getThreadAllocatedBytes;
+	static {
+		try {
+			Class<?> c = ClassLoader.getSystemClassLoader().loadClass(
+					"com.sun.management.ThreadMXBean");
+			if (c.isInstance(ManagementFactory.getThreadMXBean())) {
+				getThreadAllocatedBytes = c.getMethod(
+						"getThreadAllocatedBytes", long.class);
+			}
+		} catch (ClassNotFoundException ignored) {
+		} catch (NoSuchMethodException ignored) {
+		}
+	}
+
+	@Inject
+	private IDAO<Collaborator> collaboratorDAO;
+
+	@Inject
+	private IDAO<Task> taskDAO;
+
+	@Inject
+	private IDAO<Duration> durationDAO;
+
+	@Inject
+	private IDAO<Contribution> contributionDAO;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.AbstractModelTestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Connection con = get();
+		Duration duration = getFactory().newDuration();
+		duration.setId(100);
+		durationDAO.insert(con, duration);
+		long[] collaboratorIds = new long[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			Collaborator collaborator = getFactory().newCollaborator();
+			collaborator.setLogin("login" + i);
+			collaborator.setFirstName("First" + i);
+			collaborator.setLastName("Last" + i);
+			collaboratorIds[i] = collaboratorDAO.insert(con, collaborator)
+					.getId();
+		}
+		long[] taskIds = new long[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			Task task = getFactory().newTask();
+			task.setPath("01" + (i / 100));
+			task.setNumber((byte) (i % 100 + 1));
+			task.setCode("T" + i);
+			task.setName("Task " + i);
+			task.setBudget(i);
+			task.setInitiallyConsumed(i * 2);
+			task.setTodo(i * 3);
+			task.setComment(i % 2 == 0 ? null : "Comment " + i);
+			taskIds[i] = taskDAO.insert(con, task).getId();
+		}
+		for (int i = 0; i < ROWS; i++) {
+			Contribution contribution = getFactory().newContribution();
+			contribution.setYear(2000 + i / 336);
+			contribution.setMonth((i % 336) / 28 + 1);
+			contribution.setDay(i % 28 + 1);
+			contribution.setContributorId(collaboratorIds[i % 10]);
+			contribution.setTaskId(taskIds[i % 10]);
+			contribution.setDurationId(100);
+			contributionDAO.insert(con, contribution);
+		}
+		con.commit();
+	}
+
+	public void testCollaboratorRowMapping() throws SQLException {
+		run("COLLABORATOR", collaboratorDAO);
+	}
+
+	public void testTaskRowMapping() throws SQLException {
+		run("TASK", taskDAO);
+	}
+
+	public void testContributionRowMapping() throws SQLException {
+		run("CONTRIBUTION", contributionDAO);
+	}
+
+	private void run(String table, IDAO<?> dao) throws SQLException {
+		String request = "select "
+				+ dao.getColumnNamesRequestFragment(null, true) + " from "
+				+ table;
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			assertEquals(ROWS, readAll(request, dao));
+		}
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		long rows = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			rows += readAll(request, dao);
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBytes() - allocatedBefore;
+		System.out.println(table + " : " + (rows * 1000000000l / elapsed)
+				+ " rows/s (" + rows + " rows in " + (elapsed / 1000000)
+				+ " ms)"
+				+ (allocatedBefore < 0 ? "" : ", " + (allocated / rows)
+						+ " bytes allocated/row"));
+	}
+
+	/**
+	 * @return the number of bytes allocated so far by the current thread, or
+	 *         <code>-1</code> if the JVM does not provide that information.
+	 */
+	private static long allocatedBytes() {
+		if (getThreadAllocatedBytes == null) {
+			return -1;
+		}
+		try {
+			return (Long) getThreadAllocatedBytes.invoke(
+					ManagementFactory.getThreadMXBean(), Thread
+							.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	private int readAll(String request, IDAO<?> dao) throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(request);
+		try {
+			ResultSet rs = pStmt.executeQuery();
+			int count = 0;
+			while (rs.next()) {
+				assertNotNull(dao.read(rs, 1));
+				count++;
+			}
+			return count;
+		} finally {
+			pStmt.close();
+		}
+	}
+
+}
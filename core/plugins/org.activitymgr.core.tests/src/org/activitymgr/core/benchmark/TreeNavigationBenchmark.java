@@ -0,0 +1,305 @@
+package org.activitymgr.core.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import javax.sql.DataSource;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskSums;
+import org.activitymgr.core.util.LazyConnection;
+import org.activitymgr.core.util.PreparedStatementCache;
+
+/**
+ * Task tree navigation JDBC round trips benchmark.
+ * <p>
+ * Replays the logic calls that the web task tree table issues while a user
+ * expands the tree (<code>getRootElements</code>, <code>getChildren</code>,
+ * <code>hasChildren</code> and <code>getCell</code> on
+ * <code>TaskTreeCellProvider</code>), plus a task update that nests a few
+ * tree reads, and counts the JDBC calls that reach the driver :
+ * <ul>
+ * <li>with the former transaction handling of the web logic wrapper (a
+ * connection borrowed for every call, a commit for every outermost call and a
+ * savepoint before and after every nested call) ;</li>
+ * <li>with the current one (lazy connection, read only calls run on a read
+ * only connection without commit, savepoints only for nested calls that may
+ * write).</li>
+ * </ul>
+ * The logic wrapper itself belongs to the web bundle ; the benchmark
+ * reproduces the JDBC calls it issues around the model calls made by the
+ * tree provider.
+ * </p>
+ * <p>
+ * This benchmark is not part of the {@link org.activitymgr.core.AllTests}
+ * suite ; it is meant to be launched manually.
+ * </p>
+ */
+public class TreeNavigationBenchmark extends AbstractModelTestCase {
+
+	/** Number of sub tasks of each task (on three levels) */
+	private static final int WIDTH = 5;
+
+	/** Number of cells displayed for each task */
+	private static final int COLUMNS = 8;
+
+	/** Number of nested reads in an update call */
+	private static final int NESTED_READS = 3;
+
+	/** Transaction handling */
+	private static enum Policy {
+		FORMER, CURRENT
+	}
+
+	/** Policy of the current run */
+	private Policy policy;
+
+	/** Connection of the current logic call */
+	private Connection callConnection;
+
+	/** JDBC calls counters, by kind */
+	private Map<String, Integer> counters = new TreeMap<String, Integer>();
+
+	/** Number of replayed logic calls */
+	private int calls;
+
+	/** Counting data source */
+	private DataSource ds;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.AbstractModelTestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		createTasks(null, 0);
+		get().commit();
+		final DataSource wrapped = getDataSource();
+		ds = (DataSource) Proxy.newProxyInstance(
+				TreeNavigationBenchmark.class.getClassLoader(),
+				new Class<?>[] { DataSource.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						Object result = delegate(wrapped, method, args);
+						if (result instanceof Connection) {
+							count("borrow");
+							result = counting((Connection) result,
+									Connection.class);
+						}
+						return result;
+					}
+				});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.AbstractModelTestCase#get()
+	 */
+	@Override
+	public Connection get() {
+		// The model uses the connection of the replayed call
+		return callConnection != null ? callConnection : super.get();
+	}
+
+	public void testTreeNavigation() throws Exception {
+		for (Policy policy : Policy.values()) {
+			run(policy);
+		}
+	}
+
+	private void run(Policy policy) throws Exception {
+		this.policy = policy;
+		counters.clear();
+		calls = 0;
+		// Expand the two first levels of the tree, then update a task
+		List<Task> roots = getChildren(null);
+		for (Task root : roots) {
+			for (Task task : getChildren(root)) {
+				getChildren(task);
+			}
+		}
+		final Task task = roots.get(0);
+		logicCall(false, new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				for (int i = 0; i < NESTED_READS; i++) {
+					logicCall(true, new Callable<Object>() {
+						@Override
+						public Object call() throws Exception {
+							return getModelMgr().getSubTasksSums(task, null,
+									null);
+						}
+					});
+				}
+				Task toUpdate = getModelMgr().getTask(task.getId());
+				toUpdate.setComment("Updated");
+				return getModelMgr().updateTask(toUpdate);
+			}
+		});
+		int total = 0;
+		for (int count : counters.values()) {
+			total += count;
+		}
+		System.out.println(policy + " : " + calls + " logic calls, " + total
+				+ " JDBC calls (" + (total * 100 / calls) + " per 100 calls) "
+				+ counters);
+	}
+
+	/**
+	 * Replays the expansion of a tree node : <code>getChildren</code>, then
+	 * <code>hasChildren</code> and the cells for each child.
+	 */
+	private List<Task> getChildren(final Task parentTask) throws Exception {
+		List<Task> children = new ArrayList<Task>();
+		@SuppressWarnings("unchecked")
+		List<TaskSums> sums = (List<TaskSums>) logicCall(true,
+				new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						return getModelMgr().getSubTasksSums(parentTask, null,
+								null);
+					}
+				});
+		Callable<Object> cached = new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				// Served by the provider caches
+				return null;
+			}
+		};
+		for (TaskSums taskSums : sums) {
+			children.add(taskSums.getTask());
+			logicCall(true, cached);
+			for (int i = 0; i < COLUMNS; i++) {
+				logicCall(true, cached);
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Replays a logic call with the transaction handling of the current run.
+	 *
+	 * @param readOnly
+	 *            <code>true</code> if the logic method is read only.
+	 * @param body
+	 *            the logic method body.
+	 * @return the logic method result.
+	 */
+	private Object logicCall(boolean readOnly, Callable<Object> body)
+			throws Exception {
+		calls++;
+		if (callConnection != null) {
+			// Nested call
+			if (policy == Policy.FORMER || (!readOnly && !callConnection.isReadOnly())) {
+				callConnection.setSavepoint();
+			}
+			Object result = body.call();
+			if (policy == Policy.FORMER) {
+				callConnection.setSavepoint();
+			}
+			return result;
+		}
+		Connection con = null;
+		try {
+			if (policy == Policy.FORMER) {
+				con = PreparedStatementCache.wrap(ds.getConnection(),
+						PreparedStatementCache.DEFAULT_SIZE);
+			} else {
+				con = LazyConnection.wrap(ds,
+						PreparedStatementCache.DEFAULT_SIZE);
+				if (readOnly) {
+					con.setReadOnly(true);
+				}
+			}
+			callConnection = con;
+			Object result = body.call();
+			if (policy == Policy.FORMER || !readOnly) {
+				con.commit();
+			}
+			getIdentityMap().clear();
+			return result;
+		} finally {
+			callConnection = null;
+			if (con != null) {
+				con.close();
+			}
+		}
+	}
+
+	private void createTasks(Task parentTask, int depth) throws Exception {
+		for (int i = 0; i < WIDTH; i++) {
+			Task task = getFactory().newTask();
+			task.setCode("T" + depth + i);
+			task.setName("Task " + depth + "." + i);
+			if (depth == 2) {
+				// Only leaf tasks accept a budget
+				task.setBudget(i);
+			}
+			task = getModelMgr().createTask(parentTask, task);
+			if (depth < 2) {
+				createTasks(task, depth + 1);
+			}
+		}
+	}
+
+	/**
+	 * Wraps a JDBC object so that the calls that reach the driver are
+	 * counted.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T counting(final T target, Class<T> theInterface) {
+		return (T) Proxy.newProxyInstance(
+				TreeNavigationBenchmark.class.getClassLoader(),
+				new Class<?>[] { theInterface }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.startsWith("execute")
+								|| "commit".equals(name)
+								|| "rollback".equals(name)
+								|| "setSavepoint".equals(name)
+								|| "setReadOnly".equals(name)) {
+							count(name);
+						}
+						Object result = delegate(target, method, args);
+						if (result instanceof Statement
+								&& method.getReturnType().isInterface()) {
+							result = counting(result,
+									(Class<Object>) method.getReturnType());
+						}
+						return result;
+					}
+				});
+	}
+
+	private void count(String kind) {
+		Integer count = counters.get(kind);
+		counters.put(kind, count != null ? count + 1 : 1);
+	}
+
+	private static Object delegate(Object target, Method method,
+			Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+}
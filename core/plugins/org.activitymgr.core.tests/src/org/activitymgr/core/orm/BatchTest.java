@@ -0,0 +1,115 @@
+package org.activitymgr.core.orm;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.ModelException;
+
+import com.google.inject.Inject;
+
+public class BatchTest extends AbstractModelTestCase {
+
+	/** Number of rows (greater than the default batch size) */
+	private static final int ROWS = 250;
+
+	@Inject
+	private IDAO<Collaborator> collaboratorDAO;
+
+	@Inject
+	private IDAO<Contribution> contributionDAO;
+
+	public void testInsertAllWithGeneratedKeys() throws SQLException {
+		Collaborator[] collaborators = newCollaborators();
+		assertSame(collaborators, collaboratorDAO.insertAll(get(), collaborators));
+		assertEquals(ROWS, collaboratorDAO.countAll(get()));
+		Set<Long> ids = new HashSet<Long>();
+		for (Collaborator collaborator : collaborators) {
+			ids.add(collaborator.getId());
+			Collaborator selected = collaboratorDAO.selectByPK(get(),
+					collaborator.getId());
+			assertEquals(collaborator.getLogin(), selected.getLogin());
+		}
+		assertEquals(ROWS, ids.size());
+	}
+
+	public void testInsertAllWithoutValues() throws SQLException {
+		assertEquals(0, collaboratorDAO.insertAll(get(), new Collaborator[0]).length);
+		assertEquals(0, collaboratorDAO.updateAll(get(), new Collaborator[0]).length);
+		assertEquals(0, collaboratorDAO.deleteAll(get(), new Collaborator[0]));
+	}
+
+	public void testUpdateAll() throws SQLException {
+		Collaborator[] collaborators = collaboratorDAO.insertAll(get(),
+				newCollaborators());
+		for (Collaborator collaborator : collaborators) {
+			collaborator.setFirstName("Updated" + collaborator.getId());
+		}
+		collaboratorDAO.updateAll(get(), collaborators);
+		for (Collaborator collaborator : collaborators) {
+			assertEquals("Updated" + collaborator.getId(), collaboratorDAO
+					.selectByPK(get(), collaborator.getId()).getFirstName());
+		}
+	}
+
+	public void testUpdateAllWithUnknownRow() throws SQLException {
+		Collaborator[] collaborators = collaboratorDAO.insertAll(get(),
+				newCollaborators());
+		collaborators[ROWS - 1].setId(-1);
+		try {
+			collaboratorDAO.updateAll(get(), collaborators);
+			fail("The update of an unknown row should fail");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	public void testInsertAndDeleteAllContributions() throws SQLException,
+			ModelException {
+		Contribution[] contributions = newContributions();
+		contributionDAO.insertAll(get(), contributions);
+		assertEquals(ROWS, contributionDAO.countAll(get()));
+
+		Contribution[] toDelete = new Contribution[ROWS / 2];
+		System.arraycopy(contributions, 0, toDelete, 0, toDelete.length);
+		assertEquals(toDelete.length, contributionDAO.deleteAll(get(), toDelete));
+		assertEquals(ROWS - toDelete.length, contributionDAO.countAll(get()));
+		// Already deleted rows are ignored
+		assertEquals(0, contributionDAO.deleteAll(get(), toDelete));
+	}
+
+	private Collaborator[] newCollaborators() {
+		Collaborator[] collaborators = new Collaborator[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			collaborators[i] = getFactory().newCollaborator();
+			collaborators[i].setLogin("login" + i);
+			collaborators[i].setFirstName("First" + i);
+			collaborators[i].setLastName("Last" + i);
+		}
+		return collaborators;
+	}
+
+	private Contribution[] newContributions() throws ModelException {
+		Collaborator collaborator = getModelMgr().createNewCollaborator();
+		Task task = getModelMgr().createNewTask(null);
+		Duration duration = getFactory().newDuration();
+		duration.setId(100);
+		duration = getModelMgr().createDuration(duration);
+		Contribution[] contributions = new Contribution[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			contributions[i] = getFactory().newContribution();
+			contributions[i].setYear(2000 + i / 336);
+			contributions[i].setMonth((i % 336) / 28 + 1);
+			contributions[i].setDay(i % 28 + 1);
+			contributions[i].setContributorId(collaborator.getId());
+			contributions[i].setTaskId(task.getId());
+			contributions[i].setDurationId(duration.getId());
+		}
+		return contributions;
+	}
+
+}
@@ -0,0 +1,139 @@
+package org.activitymgr.core.orm;
+
+import java.sql.SQLException;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.orm.dialect.Dialect;
+import org.activitymgr.core.orm.dialect.DialectResolver;
+import org.activitymgr.core.orm.dialect.H2Dialect;
+import org.activitymgr.core.orm.dialect.HSQLDBDialect;
+import org.activitymgr.core.orm.dialect.MySQLDialect;
+
+import com.google.inject.Inject;
+
+public class DialectTest extends AbstractModelTestCase {
+
+	/** Number of rows (greater than the default batch size) */
+	private static final int ROWS = 250;
+
+	/** First duration id used by the tests */
+	private static final long FIRST_ID = 100000;
+
+	@Inject
+	private DialectResolver dialectResolver;
+
+	@Inject
+	private IDAO<Duration> durationDAO;
+
+	@Inject
+	private IDAO<Collaborator> collaboratorDAO;
+
+	public void testDialectIsResolvedOnce() throws SQLException {
+		Dialect dialect = dialectResolver.getDialect(get());
+		assertSame(dialect, dialectResolver.getDialect(get()));
+		assertTrue(dialect.isHsqlOrH2() == get().getMetaData()
+				.getDatabaseProductName().toLowerCase().matches(".*(hsql|h2).*"));
+	}
+
+	public void testDialectIsResolvedAgainOnDatabaseChange()
+			throws SQLException {
+		Dialect dialect = dialectResolver.getDialect(get());
+		getModelMgr().resetDatabaseCaches();
+		Dialect resolved = dialectResolver.getDialect(get());
+		assertNotSame(dialect, resolved);
+		assertEquals(dialect.getName(), resolved.getName());
+	}
+
+	public void testMultiRowInsert() throws SQLException {
+		long count = durationDAO.countAll(get());
+		Duration[] durations = new Duration[ROWS];
+		for (int i = 0; i < durations.length; i++) {
+			durations[i] = getFactory().newDuration();
+			durations[i].setId(FIRST_ID + i);
+			durations[i].setIsActive(i % 2 == 0);
+		}
+		durationDAO.insertAll(get(), durations);
+		assertEquals(count + ROWS, durationDAO.countAll(get()));
+		for (Duration duration : durations) {
+			assertEquals(duration.getIsActive(),
+					durationDAO.selectByPK(get(), duration.getId())
+							.getIsActive());
+		}
+	}
+
+	public void testMerge() throws SQLException {
+		Duration duration = getFactory().newDuration();
+		duration.setId(FIRST_ID);
+		duration.setIsActive(true);
+		long count = durationDAO.countAll(get());
+		// First merge inserts the row
+		durationDAO.merge(get(), duration);
+		assertEquals(count + 1, durationDAO.countAll(get()));
+		assertTrue(durationDAO.selectByPK(get(), FIRST_ID).getIsActive());
+		// Second merge updates it
+		duration.setIsActive(false);
+		durationDAO.merge(get(), duration);
+		assertEquals(count + 1, durationDAO.countAll(get()));
+		assertFalse(durationDAO.selectByPK(get(), FIRST_ID).getIsActive());
+	}
+
+	public void testMergeWithGeneratedKey() throws SQLException {
+		try {
+			collaboratorDAO.merge(get(), getFactory().newCollaborator());
+			fail("Merge must be rejected for auto generated keys");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	public void testGeneratedRequests() {
+		String[] columns = new String[] { "ID", "NAME" };
+		String[] pk = new String[] { "ID" };
+		Dialect h2 = new H2Dialect();
+		Dialect hsqldb = new HSQLDBDialect(2);
+		Dialect mysql = new MySQLDialect(false);
+		assertEquals("insert into T (ID, NAME) values (?, ?), (?, ?)",
+				h2.buildInsertRequest("T", columns, 2));
+		assertEquals("merge into T (ID, NAME) key (ID) values (?, ?)",
+				h2.buildUpsertRequest("T", columns, pk));
+		assertEquals(
+				"merge into T using (values (?, ?)) as vals (ID, NAME) on T.ID=vals.ID"
+						+ " when matched then update set T.NAME=vals.NAME"
+						+ " when not matched then insert (ID, NAME) values (vals.ID, vals.NAME)",
+				hsqldb.buildUpsertRequest("T", columns, pk));
+		assertEquals(
+				"insert into T (ID, NAME) values (?, ?) on duplicate key update NAME=values(NAME)",
+				mysql.buildUpsertRequest("T", columns, pk));
+		assertEquals("insert ignore into T (ID) values (?)",
+				mysql.buildUpsertRequest("T", pk, pk));
+		String[] counters = new String[] { "ID", "YEAR", "CNT" };
+		String[] incremented = new String[] { "CNT" };
+		assertEquals(
+				"merge into T (ID, YEAR, CNT) key (ID) select vals.ID, vals.YEAR, vals.CNT+coalesce(T.CNT, 0)"
+						+ " from (select cast(? as bigint) ID, cast(? as bigint) YEAR, cast(? as bigint) CNT) vals"
+						+ " left join T on T.ID=vals.ID",
+				h2.buildIncrementRequest("T", counters, pk, incremented));
+		assertEquals(
+				"merge into T using (values (cast(? as bigint), cast(? as bigint), cast(? as bigint))) as vals (ID, YEAR, CNT) on T.ID=vals.ID"
+						+ " when matched then update set T.YEAR=vals.YEAR, T.CNT=T.CNT+vals.CNT"
+						+ " when not matched then insert (ID, YEAR, CNT) values (vals.ID, vals.YEAR, vals.CNT)",
+				hsqldb.buildIncrementRequest("T", counters, pk, incremented));
+		assertEquals(
+				"insert into T (ID, YEAR, CNT) values (?, ?, ?) on duplicate key update YEAR=values(YEAR), CNT=CNT+values(CNT)",
+				mysql.buildIncrementRequest("T", counters, pk, incremented));
+		assertEquals("(A || B || '%')", h2.concat("A", "B", "'%'"));
+		assertEquals("concat(A, B, '%')", mysql.concat("A", "B", "'%'"));
+		assertEquals("substring(A, 1, ?)", hsqldb.left("A", "?"));
+		assertEquals("left(A, ?)", mysql.left("A", "?"));
+		assertTrue(hsqldb.supportsGeneratedKeys());
+		assertFalse(new HSQLDBDialect(1).supportsGeneratedKeys());
+		assertEquals("call identity()", h2.getLastGeneratedKeyRequest());
+		assertEquals("call identity()", hsqldb.getLastGeneratedKeyRequest());
+		assertEquals("select last_insert_id()",
+				mysql.getLastGeneratedKeyRequest());
+		assertTrue(mysql.supportsBatchGeneratedKeys());
+		assertFalse(h2.supportsBatchGeneratedKeys());
+	}
+
+}
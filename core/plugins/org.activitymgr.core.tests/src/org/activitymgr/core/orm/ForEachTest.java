@@ -0,0 +1,83 @@
+package org.activitymgr.core.orm;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.orm.query.DescendantOrderByClause;
+
+import com.google.inject.Inject;
+
+public class ForEachTest extends AbstractModelTestCase {
+
+	/** Number of rows */
+	private static final int ROWS = 50;
+
+	@Inject
+	private IDAO<Collaborator> collaboratorDAO;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Collaborator[] collaborators = new Collaborator[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			collaborators[i] = getFactory().newCollaborator();
+			collaborators[i].setLogin("login" + (char) ('A' + i % 26) + i);
+			collaborators[i].setFirstName("First" + i);
+			collaborators[i].setLastName(i % 2 == 0 ? "Even" : "Odd");
+		}
+		collaboratorDAO.insertAll(get(), collaborators);
+	}
+
+	public void testForEachStreamsAllRows() throws SQLException {
+		final List<Collaborator> rows = new ArrayList<Collaborator>();
+		int count = collaboratorDAO.forEach(get(), null, null, null, 10,
+				new IRowHandler<Collaborator, RuntimeException>() {
+					@Override
+					public void handle(Collaborator collaborator) {
+						rows.add(collaborator);
+					}
+				});
+		assertEquals(ROWS, count);
+		assertEquals(ROWS, rows.size());
+	}
+
+	public void testForEachWithWhereAndOrderByClauses() throws SQLException {
+		final List<String> logins = new ArrayList<String>();
+		int count = collaboratorDAO.forEach(get(),
+				new String[] { "lastName" }, new Object[] { "Even" },
+				new Object[] { new DescendantOrderByClause("login") }, 10,
+				new IRowHandler<Collaborator, RuntimeException>() {
+					@Override
+					public void handle(Collaborator collaborator) {
+						assertEquals("Even", collaborator.getLastName());
+						logins.add(collaborator.getLogin());
+					}
+				});
+		assertEquals(ROWS / 2, count);
+		assertEquals(ROWS / 2, logins.size());
+		for (int i = 1; i < logins.size(); i++) {
+			assertTrue(logins.get(i - 1).compareTo(logins.get(i)) > 0);
+		}
+	}
+
+	public void testHandlerExceptionIsPropagated() throws SQLException {
+		try {
+			collaboratorDAO.forEach(get(), null, null, null, 10,
+					new IRowHandler<Collaborator, IOException>() {
+						@Override
+						public void handle(Collaborator collaborator)
+								throws IOException {
+							throw new IOException("stop");
+						}
+					});
+			fail("The handler exception should be propagated");
+		} catch (IOException expected) {
+			assertEquals("stop", expected.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+package org.activitymgr.core.orm;
+
+import java.sql.SQLException;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+
+import com.google.inject.Inject;
+
+public class PartialUpdateTest extends AbstractModelTestCase {
+
+	@Inject
+	private IDAO<Collaborator> collaboratorDAO;
+
+	private Collaborator collaborator;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		collaborator = getFactory().newCollaborator();
+		collaborator.setLogin("login");
+		collaborator.setFirstName("First");
+		collaborator.setLastName("Last");
+		collaboratorDAO.insert(get(), collaborator);
+	}
+
+	public void testOnlyGivenAttributesAreUpdated() throws SQLException {
+		collaborator.setFirstName("UpdatedFirst");
+		collaborator.setLastName("UpdatedLast");
+		collaboratorDAO.update(get(), collaborator,
+				new String[] { "firstName" });
+		Collaborator selected = collaboratorDAO.selectByPK(get(),
+				collaborator.getId());
+		assertEquals("UpdatedFirst", selected.getFirstName());
+		assertEquals("Last", selected.getLastName());
+		assertEquals("login", selected.getLogin());
+	}
+
+	public void testAttributesOrder() throws SQLException {
+		collaborator.setFirstName("UpdatedFirst");
+		collaborator.setLastName("UpdatedLast");
+		collaboratorDAO.update(get(), collaborator, new String[] { "lastName",
+				"firstName" });
+		Collaborator selected = collaboratorDAO.selectByPK(get(),
+				collaborator.getId());
+		assertEquals("UpdatedFirst", selected.getFirstName());
+		assertEquals("UpdatedLast", selected.getLastName());
+	}
+
+	public void testPrimaryKeyCannotBeUpdated() throws SQLException {
+		try {
+			collaboratorDAO.update(get(), collaborator, new String[] { "id" });
+			fail("The primary key must not be updatable");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testUnknownRow() throws SQLException {
+		Collaborator unknown = getFactory().newCollaborator();
+		unknown.setId(collaborator.getId() + 1000);
+		unknown.setFirstName("First");
+		try {
+			collaboratorDAO.update(get(), unknown, new String[] { "firstName" });
+			fail("Updating an unknown row must fail");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+}
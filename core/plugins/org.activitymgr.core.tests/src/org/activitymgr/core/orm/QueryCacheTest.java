@@ -0,0 +1,105 @@
+package org.activitymgr.core.orm;
+
+import java.sql.SQLException;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.orm.query.AscendantOrderByClause;
+import org.activitymgr.core.orm.query.BetweenStatement;
+import org.activitymgr.core.orm.query.GreaterThanStatement;
+import org.activitymgr.core.orm.query.InStatement;
+import org.activitymgr.core.orm.query.LikeStatement;
+
+import com.google.inject.Inject;
+
+public class QueryCacheTest extends AbstractModelTestCase {
+
+	@Inject
+	private IDAO<Collaborator> collaboratorDAO;
+
+	private Collaborator[] collaborators;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		collaborators = new Collaborator[10];
+		for (int i = 0; i < collaborators.length; i++) {
+			collaborators[i] = getFactory().newCollaborator();
+			collaborators[i].setLogin("login" + i);
+			collaborators[i].setFirstName("First" + i);
+			collaborators[i].setLastName("Last" + i);
+		}
+		collaboratorDAO.insertAll(get(), collaborators);
+	}
+
+	public void testSameShapeIsCompiledOnce() throws SQLException {
+		QueryCacheStatistics before = collaboratorDAO.getQueryCacheStatistics();
+		for (int i = 0; i < collaborators.length; i++) {
+			Collaborator[] result = collaboratorDAO.select(get(),
+					new String[] { "login" }, new Object[] { "login" + i },
+					null, -1);
+			assertEquals(1, result.length);
+			assertEquals(collaborators[i].getId(), result[0].getId());
+		}
+		QueryCacheStatistics after = collaboratorDAO.getQueryCacheStatistics();
+		assertTrue(after.getMisses() - before.getMisses() <= 1);
+		assertTrue(after.getHits() - before.getHits() >= collaborators.length - 1);
+	}
+
+	public void testInListSizeChangesTheShape() throws SQLException {
+		QueryCacheStatistics before = collaboratorDAO.getQueryCacheStatistics();
+		assertEquals(2, collaboratorDAO.select(get(), new String[] { "id" },
+				new Object[] { new InStatement(new Object[] {
+						collaborators[0].getId(), collaborators[1].getId() }) },
+				null, -1).length);
+		assertEquals(3, collaboratorDAO.select(get(), new String[] { "id" },
+				new Object[] { new InStatement(new Object[] {
+						collaborators[0].getId(), collaborators[1].getId(),
+						collaborators[2].getId() }) }, null, -1).length);
+		assertEquals(1, collaboratorDAO.count(get(), new String[] { "id" },
+				new Object[] { new InStatement(new Object[] { collaborators[0]
+						.getId() }) }));
+		QueryCacheStatistics after = collaboratorDAO.getQueryCacheStatistics();
+		assertEquals(3, after.getSize() - before.getSize());
+	}
+
+	public void testDatabaseChangeDropsTheCompiledRequests() throws SQLException {
+		String[] names = new String[] { "login" };
+		Object[] values = new Object[] { "login0" };
+		collaboratorDAO.select(get(), names, values, null, -1);
+		// The requests are built with the dialect of the previous database
+		getModelMgr().resetDatabaseCaches();
+		QueryCacheStatistics before = collaboratorDAO.getQueryCacheStatistics();
+		assertEquals(1, collaboratorDAO.select(get(), names, values, null, -1).length);
+		QueryCacheStatistics after = collaboratorDAO.getQueryCacheStatistics();
+		assertEquals(1, after.getMisses() - before.getMisses());
+		assertEquals(1, after.getSize());
+	}
+
+	public void testStatementTypes() throws SQLException {
+		assertEquals(3, collaboratorDAO.count(get(),
+				new String[] { "login" }, new Object[] { new BetweenStatement(
+						"login2", "login4") }));
+		assertEquals(7, collaboratorDAO.count(get(),
+				new String[] { "login" },
+				new Object[] { new GreaterThanStatement("login3", true) }));
+		assertEquals(6, collaboratorDAO.count(get(),
+				new String[] { "login" },
+				new Object[] { new GreaterThanStatement("login3", false) }));
+		assertEquals(10, collaboratorDAO.count(get(),
+				new String[] { "login" }, new Object[] { new LikeStatement(
+						"login%") }));
+		Collaborator[] result = collaboratorDAO.select(get(),
+				new String[] { "login" }, new Object[] { new LikeStatement(
+						"login%") }, new Object[] { new AscendantOrderByClause(
+						"login") }, 2);
+		assertEquals(2, result.length);
+		assertEquals("login0", result[0].getLogin());
+		assertEquals("login1", result[1].getLogin());
+		assertEquals(2, collaboratorDAO.delete(get(),
+				new String[] { "login" }, new Object[] { new BetweenStatement(
+						"login0", "login1") }));
+		assertEquals(8, collaboratorDAO.countAll(get()));
+	}
+
+}
@@ -0,0 +1,110 @@
+package org.activitymgr.core.orm;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.orm.query.AscendantOrderByClause;
+import org.activitymgr.core.orm.query.DescendantOrderByClause;
+import org.activitymgr.core.orm.query.LikeStatement;
+
+import com.google.inject.Inject;
+
+public class SelectPageTest extends AbstractModelTestCase {
+
+	/** Number of rows */
+	private static final int ROWS = 25;
+
+	/** Page size */
+	private static final int PAGE_SIZE = 10;
+
+	@Inject
+	private IDAO<Collaborator> collaboratorDAO;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Collaborator[] collaborators = new Collaborator[ROWS];
+		for (int i = 0; i < collaborators.length; i++) {
+			collaborators[i] = getFactory().newCollaborator();
+			collaborators[i].setLogin("login" + (i < 10 ? "0" : "") + i);
+			collaborators[i].setFirstName("First" + i);
+			// Only 3 distinct last names
+			collaborators[i].setLastName("Last" + (i % 3));
+		}
+		collaboratorDAO.insertAll(get(), collaborators);
+	}
+
+	public void testPagesFollowTheOrder() throws SQLException {
+		List<Collaborator> all = readAllPages(null, null,
+				new Object[] { new AscendantOrderByClause("login") });
+		assertEquals(ROWS, all.size());
+		for (int i = 0; i < ROWS; i++) {
+			assertEquals("login" + (i < 10 ? "0" : "") + i, all.get(i)
+					.getLogin());
+		}
+	}
+
+	public void testPagesWithDuplicateOrderByValues() throws SQLException {
+		// Last names are not unique : the primary key breaks the ties
+		List<Collaborator> all = readAllPages(null, null,
+				new Object[] { new DescendantOrderByClause("lastName") });
+		assertEquals(ROWS, all.size());
+		Set<Long> ids = new HashSet<Long>();
+		for (int i = 0; i < all.size(); i++) {
+			ids.add(all.get(i).getId());
+			if (i > 0) {
+				Collaborator previous = all.get(i - 1);
+				int cmp = previous.getLastName().compareTo(
+						all.get(i).getLastName());
+				assertTrue(cmp > 0
+						|| (cmp == 0 && previous.getId() < all.get(i).getId()));
+			}
+		}
+		assertEquals(ROWS, ids.size());
+	}
+
+	public void testPagesWithWhereClause() throws SQLException {
+		List<Collaborator> all = readAllPages(new String[] { "login" },
+				new Object[] { new LikeStatement("login1%") }, new Object[] {
+						"lastName", new AscendantOrderByClause("login") });
+		// login1, login10..login19
+		assertEquals(10, all.size());
+		for (Collaborator collaborator : all) {
+			assertTrue(collaborator.getLogin().startsWith("login1"));
+		}
+	}
+
+	public void testInvalidPageSize() throws SQLException {
+		try {
+			collaboratorDAO.selectPage(get(), null, null, null, null, 0);
+			fail("A page must contain at least one row");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	private List<Collaborator> readAllPages(String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems)
+			throws SQLException {
+		List<Collaborator> result = new ArrayList<Collaborator>();
+		Collaborator lastSeen = null;
+		Collaborator[] page;
+		do {
+			page = collaboratorDAO.selectPage(get(), whereClauseAttributeNames,
+					whereClauseAttributeValues, orderByClauseItems, lastSeen,
+					PAGE_SIZE);
+			assertTrue(page.length <= PAGE_SIZE);
+			for (Collaborator collaborator : page) {
+				result.add(collaborator);
+			}
+			if (page.length > 0)
+				lastSeen = page[page.length - 1];
+		} while (page.length == PAGE_SIZE);
+		return result;
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.activitymgr.core.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the closed-form date helpers with the {@link Calendar} based
+ * computations on random dates between 1900 and 2100.
+ */
+public class DateHelperTest extends TestCase {
+
+	/** Random dates count */
+	private static final int ITERATIONS = 20000;
+
+	/** First day of the tested range (1900-01-01) */
+	private static final long FIRST_DAY = new GregorianCalendar(1900, 0, 1)
+			.getTimeInMillis();
+
+	/** Last day of the tested range (2099-12-31) */
+	private static final long LAST_DAY = new GregorianCalendar(2099, 11, 31)
+			.getTimeInMillis();
+
+	/** Random generator (fixed seed to be able to reproduce a failure) */
+	private Random random;
+
+	@Override
+	protected void setUp() throws Exception {
+		random = new Random(20170117);
+	}
+
+	public void testEpochDay() {
+		for (int i = 0; i < ITERATIONS; i++) {
+			Calendar date = randomDate();
+			int day = EpochDay.of(date);
+			Calendar cal = EpochDay.toCalendar(day);
+			assertEquals(date.get(Calendar.YEAR), cal.get(Calendar.YEAR));
+			assertEquals(date.get(Calendar.MONTH), cal.get(Calendar.MONTH));
+			assertEquals(date.get(Calendar.DATE), cal.get(Calendar.DATE));
+			assertEquals(date.get(Calendar.DAY_OF_WEEK),
+					EpochDay.getDayOfWeek(day));
+			assertEquals(day, EpochDay.fromDateKey(EpochDay.toDateKey(day)));
+			for (int field : new int[] { Calendar.DATE,
+					Calendar.WEEK_OF_YEAR, Calendar.MONTH, Calendar.YEAR }) {
+				int amount = random.nextInt(200) - 100;
+				Calendar expected = (Calendar) date.clone();
+				expected.add(field, amount);
+				assertEquals(EpochDay.of(expected),
+						EpochDay.add(day, field, amount));
+			}
+		}
+	}
+
+	public void testCountDaysBetween() {
+		for (int i = 0; i < ITERATIONS; i++) {
+			Calendar date1 = randomDate();
+			Calendar date2 = randomDate();
+			int expected = countDaysBetween(date1, date2);
+			assertEquals(expected, DateHelper.countDaysBetween(date1, date2));
+			assertEquals(expected, DateHelper.countDaysBetween(date2, date1));
+		}
+	}
+
+	public void testMoveToFirstDayOfWeek() {
+		for (int i = 0; i < ITERATIONS; i++) {
+			Calendar date = randomDate();
+			date.set(Calendar.HOUR_OF_DAY, random.nextInt(24));
+			date.set(Calendar.MINUTE, random.nextInt(60));
+			Calendar expected = moveToFirstDayOfWeek(date);
+			Calendar monday = DateHelper.moveToFirstDayOfWeek(date);
+			assertNotSame(date, monday);
+			assertEquals(expected, monday);
+			assertEquals(EpochDay.getFirstDayOfWeek(EpochDay.of(date)),
+					EpochDay.of(monday));
+		}
+	}
+
+	public void testYYYYMMDD() throws ParseException, StringFormatException {
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd"); //$NON-NLS-1$
+		for (int i = 0; i < ITERATIONS; i++) {
+			Calendar date = randomDate();
+			String str = StringHelper.toYYYYMMDD(date);
+			assertEquals(sdf.format(date.getTime()), str);
+			assertEquals(sdf.parse(str), StringHelper.fromYYYYMMDD(str)
+					.getTime());
+		}
+	}
+
+	public void testInvalidYYYYMMDD() {
+		for (String str : new String[] { null, "", "2017011", "201701177",
+				"2017-1-17", "20171301", "20170001", "20170100", "20170230",
+				"20170229", "2017011a" }) {
+			try {
+				StringHelper.fromYYYYMMDD(str);
+				fail(str + " is not a valid date");
+			} catch (StringFormatException expected) {
+			}
+		}
+	}
+
+	/**
+	 * @return a random date (at midnight) between 1900 and 2100.
+	 */
+	private Calendar randomDate() {
+		long millis = FIRST_DAY
+				+ (long) (random.nextDouble() * (LAST_DAY - FIRST_DAY));
+		Calendar date = new GregorianCalendar();
+		date.setTimeInMillis(millis);
+		return new GregorianCalendar(date.get(Calendar.YEAR),
+				date.get(Calendar.MONTH), date.get(Calendar.DATE));
+	}
+
+	/**
+	 * Reference implementation (year by year count).
+	 */
+	private static int countDaysBetween(Calendar date1, Calendar date2) {
+		Calendar from = date1;
+		Calendar to = date2;
+		if (date1.after(date2)) {
+			from = date2;
+			to = date1;
+		}
+		int result = 0;
+		Calendar fromClone = (Calendar) from.clone();
+		while (fromClone.get(Calendar.YEAR) != to.get(Calendar.YEAR)) {
+			int dayOfYear = fromClone.get(Calendar.DAY_OF_YEAR);
+			fromClone.set(Calendar.MONTH, 11);
+			fromClone.set(Calendar.DAY_OF_MONTH, 31);
+			result += fromClone.get(Calendar.DAY_OF_YEAR) - dayOfYear;
+			fromClone.add(Calendar.DATE, 1);
+			result++;
+		}
+		return result + to.get(Calendar.DAY_OF_YEAR)
+				- fromClone.get(Calendar.DAY_OF_YEAR);
+	}
+
+	/**
+	 * Reference implementation (day by day move).
+	 */
+	private static Calendar moveToFirstDayOfWeek(Calendar date) {
+		Calendar dateCursor = (Calendar) date.clone();
+		while (dateCursor.get(Calendar.DAY_OF_WEEK) != Calendar.MONDAY) {
+			dateCursor.add(Calendar.DATE, -1);
+		}
+		return dateCursor;
+	}
+
+}
@@ -0,0 +1,191 @@
+package org.activitymgr.core.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.util.SqlStatistics.StatementStatistics;
+
+public class LazyConnectionTest extends AbstractModelTestCase {
+
+	private static final String COUNT_REQUEST = "select count(*) from DURATION";
+
+	/** Number of connections borrowed from the data source */
+	private int borrows;
+
+	/** Read only flags set on the borrowed connections */
+	private List<Boolean> readOnlyFlags = new ArrayList<Boolean>();
+
+	/** Counting data source */
+	private DataSource ds;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		final DataSource wrapped = getDataSource();
+		ds = (DataSource) Proxy.newProxyInstance(
+				LazyConnectionTest.class.getClassLoader(),
+				new Class<?>[] { DataSource.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						if ("getConnection".equals(method.getName())) {
+							borrows++;
+							return recording((Connection) delegate(wrapped,
+									method, args));
+						}
+						return delegate(wrapped, method, args);
+					}
+				});
+	}
+
+	private Connection recording(final Connection con) {
+		return (Connection) Proxy.newProxyInstance(
+				LazyConnectionTest.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						if ("setReadOnly".equals(method.getName())) {
+							readOnlyFlags.add((Boolean) args[0]);
+						}
+						return delegate(con, method, args);
+					}
+				});
+	}
+
+	public void testUnusedConnectionIsNotBorrowed() throws SQLException {
+		Connection con = LazyConnection.wrap(ds, 0);
+		LazyConnection lazy = LazyConnection.getLazyConnection(con);
+		assertNotNull(lazy);
+		Savepoint sp = con.setSavepoint();
+		con.rollback(sp);
+		con.releaseSavepoint(sp);
+		con.commit();
+		con.rollback();
+		assertFalse(con.isClosed());
+		con.close();
+		assertTrue(con.isClosed());
+		assertFalse(lazy.isBorrowed());
+		assertEquals(0, borrows);
+	}
+
+	public void testConnectionIsBorrowedOnFirstUse() throws SQLException {
+		Connection con = LazyConnection.wrap(ds, PreparedStatementCache.DEFAULT_SIZE);
+		try {
+			con.commit();
+			assertEquals(0, borrows);
+			assertEquals(0, count(con));
+			assertTrue(LazyConnection.getLazyConnection(con).isBorrowed());
+			assertEquals(0, count(con));
+			con.commit();
+			assertEquals(1, borrows);
+		} finally {
+			con.close();
+		}
+		assertTrue(con.isClosed());
+	}
+
+	public void testPlaceholderRollback() throws SQLException {
+		Connection con = LazyConnection.wrap(ds, 0);
+		try {
+			// The savepoint is taken before the connection is borrowed
+			Savepoint sp = con.setSavepoint();
+			PreparedStatement pStmt = con.prepareStatement("insert into DURATION (dur_id, dur_is_active) values (?, ?)");
+			pStmt.setLong(1, 1234);
+			pStmt.setBoolean(2, true);
+			pStmt.executeUpdate();
+			pStmt.close();
+			assertEquals(1, count(con));
+			con.rollback(sp);
+			assertEquals(0, count(con));
+			// Real savepoints once the connection has been borrowed
+			assertNotSame(sp, con.setSavepoint());
+		} finally {
+			con.rollback();
+			con.close();
+		}
+	}
+
+	public void testReadOnly() throws SQLException {
+		Connection con = LazyConnection.wrap(ds, 0);
+		try {
+			con.setReadOnly(true);
+			assertTrue(con.isReadOnly());
+			assertEquals(0, borrows);
+			assertEquals(Collections.EMPTY_LIST, readOnlyFlags);
+			// The flag is applied when the connection is borrowed
+			assertEquals(0, count(con));
+			assertEquals(Arrays.asList(true), readOnlyFlags);
+		} finally {
+			con.close();
+		}
+		// ... and reset before the connection is given back
+		assertEquals(Arrays.asList(true, false), readOnlyFlags);
+	}
+
+	public void testSqlStatistics() throws SQLException {
+		SqlStatistics statistics = getInjector().getInstance(
+				SqlStatistics.class);
+		statistics.setEnabled(true);
+		Connection con = LazyConnection.wrap(ds,
+				PreparedStatementCache.DEFAULT_SIZE, statistics);
+		try {
+			assertEquals(0, count(con));
+			assertEquals(0, count(con));
+		} finally {
+			con.close();
+		}
+		// The statistics are read through the model manager
+		List<StatementStatistics> snapshot = getModelMgr().getSqlStatistics();
+		assertEquals(1, snapshot.size());
+		assertEquals(COUNT_REQUEST, snapshot.get(0).getShape());
+		assertEquals(2, snapshot.get(0).getCalls());
+		assertEquals(2, snapshot.get(0).getRows());
+	}
+
+	public void testClosedConnection() throws SQLException {
+		Connection con = LazyConnection.wrap(ds, 0);
+		con.close();
+		try {
+			con.prepareStatement(COUNT_REQUEST);
+			fail("A closed connection must not be borrowed");
+		} catch (SQLException expected) {
+		}
+		assertEquals(0, borrows);
+	}
+
+	private static Object delegate(Object target, Method method,
+			Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static int count(Connection con) throws SQLException {
+		PreparedStatement pStmt = con.prepareStatement(COUNT_REQUEST);
+		try {
+			ResultSet rs = pStmt.executeQuery();
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			pStmt.close();
+		}
+	}
+
+}
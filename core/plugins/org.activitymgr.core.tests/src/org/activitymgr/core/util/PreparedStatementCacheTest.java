@@ -0,0 +1,119 @@
+package org.activitymgr.core.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.model.ModelException;
+
+public class PreparedStatementCacheTest extends AbstractModelTestCase {
+
+	private static final String COUNT_REQUEST = "select count(*) from COLLABORATOR";
+
+	public void testConnectionIsWrapped() {
+		assertNotNull(PreparedStatementCache.getCache(get()));
+	}
+
+	public void testStatementIsReused() throws SQLException {
+		PreparedStatementCache cache = PreparedStatementCache.getCache(get());
+		long hits = cache.getHits();
+		long misses = cache.getMisses();
+
+		PreparedStatement pStmt = get().prepareStatement(COUNT_REQUEST);
+		assertEquals(0, count(pStmt));
+		pStmt.close();
+		assertTrue(pStmt.isClosed());
+		assertEquals(misses + 1, cache.getMisses());
+
+		pStmt = get().prepareStatement(COUNT_REQUEST);
+		assertFalse(pStmt.isClosed());
+		assertEquals(0, count(pStmt));
+		pStmt.close();
+		assertEquals(hits + 1, cache.getHits());
+		assertEquals(misses + 1, cache.getMisses());
+	}
+
+	public void testStatementInUseIsNotShared() throws SQLException {
+		PreparedStatementCache cache = PreparedStatementCache.getCache(get());
+		long misses = cache.getMisses();
+
+		PreparedStatement pStmt1 = get().prepareStatement(COUNT_REQUEST);
+		PreparedStatement pStmt2 = get().prepareStatement(COUNT_REQUEST);
+		assertNotSame(pStmt1, pStmt2);
+		assertEquals(misses + 2, cache.getMisses());
+		assertEquals(0, count(pStmt1));
+		assertEquals(0, count(pStmt2));
+		pStmt2.close();
+		pStmt1.close();
+	}
+
+	public void testLeastRecentlyUsedStatementIsEvicted() throws SQLException {
+		Connection con = PreparedStatementCache.wrap(get(), 2);
+		PreparedStatementCache cache = PreparedStatementCache.getCache(con);
+		con.prepareStatement("select count(*) from COLLABORATOR").close();
+		con.prepareStatement("select count(*) from TASK").close();
+		con.prepareStatement("select count(*) from COLLABORATOR").close();
+		con.prepareStatement("select count(*) from DURATION").close();
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2, cache.size());
+		// TASK request has been evicted, COLLABORATOR one is still there
+		con.prepareStatement("select count(*) from COLLABORATOR").close();
+		assertEquals(2, cache.getHits());
+		con.prepareStatement("select count(*) from TASK").close();
+		assertEquals(4, cache.getMisses());
+	}
+
+	public void testStatementConnectionIsTheWrappedOne() throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(COUNT_REQUEST);
+		assertSame(get(), pStmt.getConnection());
+		pStmt.close();
+	}
+
+	public void testFetchSizeIsResetOnCachedStatements() throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(COUNT_REQUEST);
+		int defaultFetchSize = pStmt.getFetchSize();
+		pStmt.setFetchSize(defaultFetchSize + 10);
+		pStmt.close();
+		pStmt = get().prepareStatement(COUNT_REQUEST);
+		assertEquals(defaultFetchSize, pStmt.getFetchSize());
+		pStmt.close();
+	}
+
+	public void testResultSetsAreClosedWithTheStatement() throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(COUNT_REQUEST);
+		ResultSet rs = pStmt.executeQuery();
+		assertFalse(rs.isClosed());
+		pStmt.close();
+		assertTrue(rs.isClosed());
+		// The statement is reused and gives new result sets
+		pStmt = get().prepareStatement(COUNT_REQUEST);
+		assertEquals(0, count(pStmt));
+		pStmt.close();
+	}
+
+	public void testModelCallsHitTheCache() throws ModelException {
+		PreparedStatementCache cache = PreparedStatementCache.getCache(get());
+		Collaborator collaborator = getFactory().newCollaborator();
+		collaborator.setLogin("login1");
+		collaborator.setFirstName("First");
+		collaborator.setLastName("Last");
+		getModelMgr().createCollaborator(collaborator);
+		long hits = cache.getHits();
+		collaborator = getFactory().newCollaborator();
+		collaborator.setLogin("login2");
+		collaborator.setFirstName("First");
+		collaborator.setLastName("Last");
+		getModelMgr().createCollaborator(collaborator);
+		assertTrue(cache.getHits() > hits);
+	}
+
+	private static int count(PreparedStatement pStmt) throws SQLException {
+		ResultSet rs = pStmt.executeQuery();
+		assertTrue(rs.next());
+		return rs.getInt(1);
+	}
+
+}
@@ -0,0 +1,170 @@
+package org.activitymgr.core.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.activitymgr.core.util.SqlStatistics.StatementStatistics;
+import org.apache.commons.dbcp.BasicDataSource;
+
+public class SqlStatisticsTest extends TestCase {
+
+	private static final String SELECT_REQUEST = "select id, name from SQLSTATS where id>=?";
+
+	private BasicDataSource datasource;
+
+	private SqlStatistics statistics;
+
+	private Connection con;
+
+	@Override
+	protected void setUp() throws Exception {
+		datasource = new BasicDataSource();
+		datasource.setDriverClassName("org.hsqldb.jdbcDriver");
+		datasource.setUrl("jdbc:hsqldb:mem:sqlstatistics");
+		datasource.setUsername("sa");
+		datasource.setPassword("");
+		statistics = new SqlStatistics();
+		statistics.setEnabled(true);
+		statistics.setSlowQueryThreshold(-1);
+		con = statistics.wrap(datasource.getConnection());
+		Statement stmt = con.createStatement();
+		stmt.executeUpdate("create table SQLSTATS (id integer primary key, name varchar(20))");
+		for (int i = 0; i < 10; i++) {
+			stmt.executeUpdate("insert into SQLSTATS values (" + i + ", 'name"
+					+ i + "')");
+		}
+		stmt.close();
+		statistics.reset();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Statement stmt = con.createStatement();
+		stmt.executeUpdate("drop table SQLSTATS");
+		stmt.close();
+		con.close();
+		datasource.close();
+	}
+
+	public void testDisabledStatisticsDoNotWrap() throws SQLException {
+		SqlStatistics disabled = new SqlStatistics();
+		Connection raw = datasource.getConnection();
+		assertSame(raw, disabled.wrap(raw));
+		raw.close();
+	}
+
+	public void testShape() {
+		assertEquals("select * from T where A=? and B=? and C like ?",
+				SqlStatistics.getShape("select *\n  from T where A=12 and B=?"
+						+ " and C like 'it''s%'"));
+		assertEquals("select * from T2 where ID in (?, ...)",
+				SqlStatistics.getShape("select * from T2 where ID in (1, 2, ?)"));
+		assertEquals("insert into T (A, B) values (?, ...), ...",
+				SqlStatistics.getShape("insert into T (A, B) values (?, ?), (?, ?), (?, ?)"));
+	}
+
+	public void testPreparedStatement() throws SQLException {
+		PreparedStatement pStmt = con.prepareStatement(SELECT_REQUEST);
+		pStmt.setInt(1, 0);
+		assertEquals(10, count(pStmt.executeQuery()));
+		pStmt.setInt(1, 7);
+		assertEquals(3, count(pStmt.executeQuery()));
+		pStmt.close();
+
+		StatementStatistics stats = get(SELECT_REQUEST);
+		assertEquals(2, stats.getCalls());
+		assertEquals(0, stats.getErrors());
+		assertEquals(13, stats.getRows());
+		assertTrue(stats.getMaxMillis() <= stats.getTotalMillis());
+		long histogramCalls = 0;
+		for (long bucket : stats.getHistogram()) {
+			histogramCalls += bucket;
+		}
+		assertEquals(2, histogramCalls);
+		assertEquals(SqlStatistics.getHistogramBounds().length + 1,
+				stats.getHistogram().length);
+	}
+
+	public void testLiteralsShareTheSameShape() throws SQLException {
+		Statement stmt = con.createStatement();
+		for (int i = 0; i < 3; i++) {
+			ResultSet rs = stmt.executeQuery("select name from SQLSTATS where id="
+					+ i);
+			assertEquals(1, count(rs));
+		}
+		stmt.close();
+		StatementStatistics stats = get("select name from SQLSTATS where id=?");
+		assertEquals(3, stats.getCalls());
+		assertEquals(3, stats.getRows());
+		assertEquals(1, statistics.snapshot().size());
+	}
+
+	public void testUpdatesAndErrors() throws SQLException {
+		PreparedStatement pStmt = con
+				.prepareStatement("update SQLSTATS set name=? where id=?");
+		pStmt.setString(1, "updated");
+		pStmt.setInt(2, 1);
+		assertEquals(1, pStmt.executeUpdate());
+		pStmt.close();
+		Statement stmt = con.createStatement();
+		try {
+			stmt.executeQuery("select unknown from SQLSTATS");
+			fail("The request must fail");
+		} catch (SQLException expected) {
+		}
+		stmt.close();
+		assertEquals(1, get("update SQLSTATS set name=? where id=?").getCalls());
+		StatementStatistics failed = get("select unknown from SQLSTATS");
+		assertEquals(1, failed.getCalls());
+		assertEquals(1, failed.getErrors());
+	}
+
+	public void testSlowQueries() throws SQLException {
+		// Every request is slow with a zero threshold
+		statistics.setSlowQueryThreshold(0);
+		PreparedStatement pStmt = con.prepareStatement(SELECT_REQUEST);
+		pStmt.setInt(1, 5);
+		count(pStmt.executeQuery());
+		count(pStmt.executeQuery());
+		pStmt.close();
+		assertEquals(2, get(SELECT_REQUEST).getSlowCalls());
+	}
+
+	public void testSnapshotIsACopy() throws SQLException {
+		PreparedStatement pStmt = con.prepareStatement(SELECT_REQUEST);
+		pStmt.setInt(1, 5);
+		count(pStmt.executeQuery());
+		StatementStatistics stats = get(SELECT_REQUEST);
+		count(pStmt.executeQuery());
+		pStmt.close();
+		assertEquals(1, stats.getCalls());
+		assertEquals(2, get(SELECT_REQUEST).getCalls());
+	}
+
+	private StatementStatistics get(String shape) {
+		List<StatementStatistics> snapshot = statistics.snapshot();
+		for (StatementStatistics stats : snapshot) {
+			if (shape.equals(stats.getShape())) {
+				return stats;
+			}
+		}
+		fail("No statistics for '" + shape + "' in " + snapshot);
+		return null;
+	}
+
+	private static int count(ResultSet rs) throws SQLException {
+		int count = 0;
+		while (rs.next()) {
+			count++;
+		}
+		rs.close();
+		return count;
+	}
+
+}
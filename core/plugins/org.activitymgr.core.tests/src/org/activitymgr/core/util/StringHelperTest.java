@@ -1,5 +1,7 @@
 package org.activitymgr.core.util;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -133,4 +135,38 @@ public class StringHelperTest extends TestCase {
 				StringHelper.camelCaseToPhrase(" My  Taylor   Is   Rich  "));
 	}
 
+	public void testSearchKey() {
+		assertEquals("equipe reseau", StringHelper.toSearchKey("Équipe RÉSEAU"));
+		assertEquals("ca marche", StringHelper.toSearchKey("Ça MARCHE"));
+		assertEquals("naive", StringHelper.toSearchKey("naïve"));
+		assertNull(StringHelper.toSearchKey(null));
+	}
+
+	public void testTrigrams() {
+		assertEquals(new HashSet<String>(Arrays.asList("abc", "bcd")),
+				StringHelper.getTrigrams("abcd"));
+		assertEquals(Collections.singleton("aaa"),
+				StringHelper.getTrigrams("aaaaa"));
+		assertTrue(StringHelper.getTrigrams("ab").isEmpty());
+	}
+
+	public void testIndexKeys() {
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c", "ab",
+				"bc", "abc")), StringHelper.getIndexKeys("abc"));
+		assertEquals(Collections.singleton("a"), StringHelper.getIndexKeys("a"));
+		assertTrue(StringHelper.getIndexKeys("").isEmpty());
+		// The trailing spaces are removed
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", " b", "a b")),
+				StringHelper.getIndexKeys("a b"));
+		// A key shorter than a trigram is looked up as is
+		assertEquals(Collections.singleton("ab"),
+				StringHelper.getLookupKeys("ab"));
+		assertEquals(new HashSet<String>(Arrays.asList("abc", "bcd")),
+				StringHelper.getLookupKeys("abcd"));
+		assertEquals(new HashSet<String>(Arrays.asList("te", "e 2")),
+				StringHelper.getLookupKeys("te 2"));
+		assertTrue(StringHelper.getLookupKeys("").isEmpty());
+		assertTrue(StringHelper.getLookupKeys(" ").isEmpty());
+	}
+
 }
@@ -186,7 +186,8 @@ public class XmlTest extends AbstractModelTestCase {
 
 		// Supression des objets de test
 		getModelMgr().removeContribution(contribution, true);
-		getModelMgr().removeTask(task);
+		// The estimated time to complete update has changed the task version
+		getModelMgr().removeTask(getModelMgr().getTask(task.getId()));
 		getModelMgr().removeTask(parentTask);
 		getModelMgr().removeCollaborator(collaborator);
 		getModelMgr().removeDuration(duration);
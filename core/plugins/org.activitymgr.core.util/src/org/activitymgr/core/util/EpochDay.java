@@ -0,0 +1,319 @@
+package org.activitymgr.core.util;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Compact date representation.
+ * <p>
+ * A date is represented by an <code>int</code> : the number of days since
+ * 1970-01-01 (negative before). Unlike {@link Calendar}, such a date needs no
+ * allocation, two dates are compared with the usual operators and the days
+ * count between two dates is a simple difference.
+ * </p>
+ * <p>
+ * The conversions use closed formulas of the proleptic gregorian calendar
+ * (they match {@link GregorianCalendar} from 1583). The months are numbered
+ * from 1 to 12, like in the contributions and unlike {@link Calendar}.
+ * </p>
+ *
+ * @see <a href="http://howardhinnant.github.io/date_algorithms.html">Date
+ *      algorithms</a>
+ */
+public final class EpochDay {
+
+	/** Days count of a 400 years era */
+	private static final int DAYS_PER_ERA = 146097;
+
+	/** Days count between 0000-03-01 and 1970-01-01 */
+	private static final int DAYS_0000_TO_1970 = 719468;
+
+	/**
+	 * Private constructor (static methods only).
+	 */
+	private EpochDay() {
+	}
+
+	/**
+	 * @param year
+	 *            the year.
+	 * @param month
+	 *            the month (1 to 12).
+	 * @param day
+	 *            the day of month (1 to 31).
+	 * @return the date.
+	 */
+	public static int of(int year, int month, int day) {
+		// Years start in March, so that the leap day is the last one
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5
+				+ day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+		return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+	}
+
+	/**
+	 * @param date
+	 *            the date (only its year, month and day of month fields are
+	 *            used).
+	 * @return the date.
+	 */
+	public static int of(Calendar date) {
+		return of(date.get(Calendar.YEAR), date.get(Calendar.MONTH) + 1,
+				date.get(Calendar.DAY_OF_MONTH));
+	}
+
+	/**
+	 * @param dateKey
+	 *            the date in the <code>yyyyMMdd</code> format.
+	 * @return the date.
+	 */
+	public static int fromDateKey(int dateKey) {
+		return of(dateKey / 10000, (dateKey / 100) % 100, dateKey % 100);
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the date in the <code>yyyyMMdd</code> format.
+	 */
+	public static int toDateKey(int epochDay) {
+		int[] fields = toFields(epochDay);
+		return fields[0] * 10000 + fields[1] * 100 + fields[2];
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the date as a calendar (at midnight, in the default time
+	 *         zone).
+	 */
+	public static Calendar toCalendar(int epochDay) {
+		int[] fields = toFields(epochDay);
+		return new GregorianCalendar(fields[0], fields[1] - 1, fields[2]);
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the year.
+	 */
+	public static int getYear(int epochDay) {
+		return toFields(epochDay)[0];
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the month (1 to 12).
+	 */
+	public static int getMonth(int epochDay) {
+		return toFields(epochDay)[1];
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the day of month (1 to 31).
+	 */
+	public static int getDayOfMonth(int epochDay) {
+		return toFields(epochDay)[2];
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the day of week ({@link Calendar#SUNDAY} to
+	 *         {@link Calendar#SATURDAY}).
+	 */
+	public static int getDayOfWeek(int epochDay) {
+		// 1970-01-01 was a thursday
+		return floorMod(epochDay + 4, 7) + Calendar.SUNDAY;
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the monday of the date week.
+	 */
+	public static int getFirstDayOfWeek(int epochDay) {
+		return epochDay - floorMod(epochDay + 3, 7);
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the first day of the date month.
+	 */
+	public static int getFirstDayOfMonth(int epochDay) {
+		return epochDay - getDayOfMonth(epochDay) + 1;
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the first day of the date year.
+	 */
+	public static int getFirstDayOfYear(int epochDay) {
+		return of(getYear(epochDay), 1, 1);
+	}
+
+	/**
+	 * Truncates a date.
+	 *
+	 * @param epochDay
+	 *            the date.
+	 * @param field
+	 *            the truncation field ({@link Calendar#DATE},
+	 *            {@link Calendar#WEEK_OF_YEAR}, {@link Calendar#MONTH} or
+	 *            {@link Calendar#YEAR}).
+	 * @return the first day of the date day, week, month or year.
+	 */
+	public static int truncate(int epochDay, int field) {
+		switch (field) {
+		case Calendar.DATE:
+			return epochDay;
+		case Calendar.WEEK_OF_YEAR:
+			return getFirstDayOfWeek(epochDay);
+		case Calendar.MONTH:
+			return getFirstDayOfMonth(epochDay);
+		case Calendar.YEAR:
+			return getFirstDayOfYear(epochDay);
+		default:
+			throw new IllegalArgumentException("Unsupported field : " + field);
+		}
+	}
+
+	/**
+	 * Adds an amount of days, weeks, months or years to a date, like
+	 * {@link Calendar#add(int, int)} does : when months or years are added,
+	 * the day of month is kept unless it is too large for the resulting
+	 * month (in which case the last day of that month is returned).
+	 *
+	 * @param epochDay
+	 *            the date.
+	 * @param field
+	 *            the amount field ({@link Calendar#DATE},
+	 *            {@link Calendar#WEEK_OF_YEAR}, {@link Calendar#MONTH} or
+	 *            {@link Calendar#YEAR}).
+	 * @param amount
+	 *            the amount to add (negative to subtract).
+	 * @return the resulting date.
+	 */
+	public static int add(int epochDay, int field, int amount) {
+		switch (field) {
+		case Calendar.DATE:
+			return epochDay + amount;
+		case Calendar.WEEK_OF_YEAR:
+			return epochDay + amount * 7;
+		case Calendar.MONTH:
+			return addMonths(epochDay, amount);
+		case Calendar.YEAR:
+			return addMonths(epochDay, amount * 12);
+		default:
+			throw new IllegalArgumentException("Unsupported field : " + field);
+		}
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @param months
+	 *            the months count to add (negative to subtract).
+	 * @return the resulting date.
+	 */
+	public static int addMonths(int epochDay, int months) {
+		int[] fields = toFields(epochDay);
+		int monthIndex = fields[0] * 12 + fields[1] - 1 + months;
+		int year = floorDiv(monthIndex, 12);
+		int month = monthIndex - year * 12 + 1;
+		return of(year, month,
+				Math.min(fields[2], getMonthLength(year, month)));
+	}
+
+	/**
+	 * @param year
+	 *            the year.
+	 * @param month
+	 *            the month (1 to 12).
+	 * @return the days count of the month.
+	 */
+	public static int getMonthLength(int year, int month) {
+		switch (month) {
+		case 2:
+			return isLeapYear(year) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/**
+	 * @param year
+	 *            the year.
+	 * @return <code>true</code> if the year is a leap year.
+	 */
+	public static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the date in the ISO 8601 format (<code>yyyy-MM-dd</code>).
+	 */
+	public static String format(int epochDay) {
+		int[] fields = toFields(epochDay);
+		StringBuilder buf = new StringBuilder(10);
+		String year = String.valueOf(fields[0]);
+		for (int i = year.length(); i < 4; i++) {
+			buf.append('0');
+		}
+		buf.append(year).append('-');
+		if (fields[1] < 10) {
+			buf.append('0');
+		}
+		buf.append(fields[1]).append('-');
+		if (fields[2] < 10) {
+			buf.append('0');
+		}
+		return buf.append(fields[2]).toString();
+	}
+
+	/**
+	 * @param epochDay
+	 *            the date.
+	 * @return the year, month (1 to 12) and day of month of the date.
+	 */
+	private static int[] toFields(int epochDay) {
+		int z = epochDay + DAYS_0000_TO_1970;
+		int era = (z >= 0 ? z : z - DAYS_PER_ERA + 1) / DAYS_PER_ERA;
+		int dayOfEra = z - era * DAYS_PER_ERA;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra
+				/ (DAYS_PER_ERA - 1)) / 365;
+		int dayOfYear = dayOfEra
+				- (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return new int[] { year, month, day };
+	}
+
+	private static int floorDiv(int x, int y) {
+		int q = x / y;
+		return (x % y != 0 && (x ^ y) < 0) ? q - 1 : q;
+	}
+
+	private static int floorMod(int x, int y) {
+		return x - floorDiv(x, y) * y;
+	}
+
+}
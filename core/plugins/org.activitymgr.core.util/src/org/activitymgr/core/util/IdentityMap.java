@@ -0,0 +1,201 @@
+package org.activitymgr.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Identity map bound to a transaction (first level cache).
+ * <p>
+ * Keeps the rows read or written during a transaction, keyed by their class
+ * and primary key, so that reading the same row several times only costs one
+ * request. The transaction owner creates a map for each transaction and
+ * {@link #clear() clears} it on commit and rollback, since the cached rows
+ * may no longer match the database afterwards. A rollback to a savepoint
+ * only {@link #clearInstances() forgets the instances} : the transaction
+ * goes on, and so does the record of the classes it has written.
+ * </p>
+ * <p>
+ * Like the transaction it is bound to, the map is not meant to be used by
+ * several threads concurrently.
+ * </p>
+ */
+public class IdentityMap {
+
+	/** Cached instances, by class then by primary key */
+	private final Map<Class<?>, Map<Object, Object>> instances = new HashMap<Class<?>, Map<Object, Object>>();
+
+	/** Lookups served by the map (i.e. saved requests) */
+	private long hits;
+
+	/** Lookups that had to be sent to the database */
+	private long misses;
+
+	/** Classes written during the transaction */
+	private final Set<Class<?>> writtenClasses = new HashSet<Class<?>>();
+
+	/** Tasks to run at the end of the transaction */
+	private final List<Runnable> endOfTransactionTasks = new ArrayList<Runnable>();
+
+	/**
+	 * Looks up an instance.
+	 *
+	 * @param theClass
+	 *            the instance class.
+	 * @param pkValues
+	 *            the primary key values.
+	 * @return the cached instance or <code>null</code> if it is unknown.
+	 */
+	public Object get(Class<?> theClass, Object[] pkValues) {
+		Map<Object, Object> classInstances = instances.get(theClass);
+		Object instance = classInstances != null ? classInstances
+				.get(key(pkValues)) : null;
+		if (instance != null)
+			hits++;
+		else
+			misses++;
+		return instance;
+	}
+
+	/**
+	 * Registers an instance.
+	 *
+	 * @param theClass
+	 *            the instance class.
+	 * @param pkValues
+	 *            the primary key values.
+	 * @param instance
+	 *            the instance.
+	 */
+	public void put(Class<?> theClass, Object[] pkValues, Object instance) {
+		Map<Object, Object> classInstances = instances.get(theClass);
+		if (classInstances == null) {
+			classInstances = new HashMap<Object, Object>();
+			instances.put(theClass, classInstances);
+		}
+		classInstances.put(key(pkValues), instance);
+	}
+
+	/**
+	 * Forgets an instance.
+	 *
+	 * @param theClass
+	 *            the instance class.
+	 * @param pkValues
+	 *            the primary key values.
+	 */
+	public void remove(Class<?> theClass, Object[] pkValues) {
+		Map<Object, Object> classInstances = instances.get(theClass);
+		if (classInstances != null)
+			classInstances.remove(key(pkValues));
+	}
+
+	/**
+	 * Forgets all the instances of a class.
+	 *
+	 * @param theClass
+	 *            the class.
+	 */
+	public void clear(Class<?> theClass) {
+		instances.remove(theClass);
+	}
+
+	/**
+	 * Records that instances of a class have been written during the
+	 * transaction.
+	 * 
+	 * @param theClass
+	 *            the class.
+	 * @return <code>true</code> if it is the first write of this class.
+	 */
+	public boolean markWritten(Class<?> theClass) {
+		return writtenClasses.add(theClass);
+	}
+
+	/**
+	 * @param theClass
+	 *            the class.
+	 * @return <code>true</code> if instances of the class have been written
+	 *         during the transaction (i.e. the rows read by the transaction
+	 *         may not be committed).
+	 */
+	public boolean isWritten(Class<?> theClass) {
+		return writtenClasses.contains(theClass);
+	}
+
+	/**
+	 * Registers a task to run when the map is cleared, that is to say at the
+	 * end of the transaction.
+	 * 
+	 * @param task
+	 *            the task.
+	 */
+	public void runAtEndOfTransaction(Runnable task) {
+		endOfTransactionTasks.add(task);
+	}
+
+	/**
+	 * Forgets all the instances, but keeps the written classes and the end
+	 * of transaction tasks (the transaction is not over).
+	 */
+	public void clearInstances() {
+		instances.clear();
+	}
+
+	/**
+	 * Forgets all the instances and written classes (the statistics are
+	 * kept), then runs the end of transaction tasks.
+	 */
+	public void clear() {
+		instances.clear();
+		writtenClasses.clear();
+		if (!endOfTransactionTasks.isEmpty()) {
+			Runnable[] tasks = endOfTransactionTasks
+					.toArray(new Runnable[endOfTransactionTasks.size()]);
+			endOfTransactionTasks.clear();
+			for (Runnable task : tasks) {
+				task.run();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of lookups served by the map, i.e. the number of
+	 *         saved requests.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that had to be sent to the database.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "saved requests=" + hits + ", misses=" + misses;
+	}
+
+	/**
+	 * @param pkValues
+	 *            the primary key values.
+	 * @return the map key of a primary key.
+	 */
+	private static Object key(Object[] pkValues) {
+		return pkValues.length == 1 ? pkValues[0] : Arrays.asList(pkValues
+				.clone());
+	}
+
+}
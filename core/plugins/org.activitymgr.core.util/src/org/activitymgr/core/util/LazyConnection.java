@@ -0,0 +1,263 @@
+package org.activitymgr.core.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Connection that is only borrowed from its data source when it is really
+ * used.
+ * <p>
+ * {@link #wrap(DataSource, int)} returns a connection proxy that doesn't hold
+ * any pooled connection until a method that needs the database is invoked
+ * (statement preparation, metadata access, ...). Until then :
+ * <ul>
+ * <li><code>commit</code>, <code>rollback</code> and
+ * <code>releaseSavepoint</code> do nothing (no work has been done) ;</li>
+ * <li><code>setSavepoint</code> returns a placeholder ; rolling back to it
+ * once the connection has been borrowed rolls back the whole transaction,
+ * which is exactly the work done since the placeholder was taken ;</li>
+ * <li><code>close</code> only marks the proxy as closed ;</li>
+ * <li><code>setReadOnly</code> is recorded and applied to the connection
+ * when it is borrowed (the flag is reset before the connection is given back
+ * to the data source).</li>
+ * </ul>
+ * The borrowed connection is wrapped with a {@link PreparedStatementCache}
+ * and, if they are given, with the {@link SqlStatistics} (once per borrowed
+ * connection).
+ * </p>
+ * <p>
+ * Like the connection it wraps, the proxy is not meant to be used by several
+ * threads concurrently.
+ * </p>
+ */
+public class LazyConnection implements InvocationHandler {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(LazyConnection.class);
+
+	/** Savepoint returned while the connection is not borrowed */
+	private static final Savepoint PLACEHOLDER = new Savepoint() {
+		@Override
+		public int getSavepointId() throws SQLException {
+			return 0;
+		}
+
+		@Override
+		public String getSavepointName() throws SQLException {
+			return "lazy"; //$NON-NLS-1$
+		}
+	};
+
+	/** Data source */
+	private final DataSource ds;
+
+	/** Prepared statements cache size */
+	private final int statementCacheSize;
+
+	/** SQL statistics (<code>null</code> if the requests are not instrumented) */
+	private final SqlStatistics sqlStatistics;
+
+	/** Connection proxy */
+	private final Connection proxy;
+
+	/** Borrowed connection (<code>null</code> until the first real use) */
+	private Connection con;
+
+	/** <code>true</code> once the proxy has been closed */
+	private boolean closed;
+
+	/** Read only flag (applied when the connection is borrowed) */
+	private boolean readOnly;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param ds
+	 *            the data source.
+	 * @param statementCacheSize
+	 *            the prepared statements cache size.
+	 * @param sqlStatistics
+	 *            the SQL statistics (<code>null</code> if the requests are not
+	 *            instrumented).
+	 */
+	private LazyConnection(DataSource ds, int statementCacheSize,
+			SqlStatistics sqlStatistics) {
+		this.ds = ds;
+		this.statementCacheSize = statementCacheSize;
+		this.sqlStatistics = sqlStatistics;
+		this.proxy = (Connection) Proxy.newProxyInstance(
+				LazyConnection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, this);
+	}
+
+	/**
+	 * Builds a lazy connection.
+	 *
+	 * @param ds
+	 *            the data source from which the connection is borrowed.
+	 * @param statementCacheSize
+	 *            the prepared statements cache size (<code>0</code> disables
+	 *            the cache).
+	 * @return the connection proxy.
+	 */
+	public static Connection wrap(DataSource ds, int statementCacheSize) {
+		return wrap(ds, statementCacheSize, null);
+	}
+
+	/**
+	 * Builds a lazy connection whose requests are instrumented.
+	 *
+	 * @param ds
+	 *            the data source from which the connection is borrowed.
+	 * @param statementCacheSize
+	 *            the prepared statements cache size (<code>0</code> disables
+	 *            the cache).
+	 * @param sqlStatistics
+	 *            the SQL statistics that record the requests of the borrowed
+	 *            connection (<code>null</code> if the requests are not
+	 *            instrumented).
+	 * @return the connection proxy.
+	 */
+	public static Connection wrap(DataSource ds, int statementCacheSize,
+			SqlStatistics sqlStatistics) {
+		return new LazyConnection(ds, statementCacheSize, sqlStatistics).proxy;
+	}
+
+	/**
+	 * Returns the handler of a lazy connection.
+	 *
+	 * @param con
+	 *            the connection.
+	 * @return the handler or <code>null</code> if the connection is not a
+	 *         lazy connection.
+	 */
+	public static LazyConnection getLazyConnection(Connection con) {
+		if (con != null && Proxy.isProxyClass(con.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(con);
+			if (handler instanceof LazyConnection) {
+				return (LazyConnection) handler;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return <code>true</code> if the connection has been borrowed from the
+	 *         data source.
+	 */
+	public boolean isBorrowed() {
+		return con != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+	 * java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		String name = method.getName();
+		if ("equals".equals(name)) {
+			return proxy == args[0];
+		} else if ("hashCode".equals(name)) {
+			return System.identityHashCode(proxy);
+		} else if ("toString".equals(name)) {
+			return "LazyConnection[" + (con != null ? con : "not borrowed") + "]";
+		} else if ("isClosed".equals(name)) {
+			return closed || (con != null && con.isClosed());
+		} else if ("close".equals(name)) {
+			if (!closed) {
+				closed = true;
+				if (con != null) {
+					close();
+				}
+			}
+			return null;
+		}
+		if (closed) {
+			throw new SQLException("Connection is closed");
+		}
+		if ("setReadOnly".equals(name)) {
+			readOnly = (Boolean) args[0];
+		}
+		if (con == null) {
+			// Calls that don't need the database
+			if ("commit".equals(name) || "rollback".equals(name)
+					|| "releaseSavepoint".equals(name)) {
+				return null;
+			} else if ("setSavepoint".equals(name)) {
+				return PLACEHOLDER;
+			} else if ("setReadOnly".equals(name)) {
+				return null;
+			} else if ("isReadOnly".equals(name)) {
+				return readOnly;
+			}
+			borrow();
+			log.debug("Connection borrowed by " + name + "()");
+		}
+		if (args != null && args.length == 1 && args[0] == PLACEHOLDER) {
+			if ("rollback".equals(name)) {
+				// Nothing was done before the placeholder was taken
+				con.rollback();
+			}
+			return null;
+		}
+		try {
+			return method.invoke(con, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Borrows the connection from the data source.
+	 *
+	 * @throws SQLException
+	 *             thrown if the connection cannot be borrowed.
+	 */
+	private void borrow() throws SQLException {
+		Connection borrowed = ds.getConnection();
+		if (readOnly) {
+			try {
+				borrowed.setReadOnly(true);
+			} catch (SQLException e) {
+				borrowed.close();
+				throw e;
+			}
+		}
+		if (sqlStatistics != null) {
+			borrowed = sqlStatistics.wrap(borrowed);
+		}
+		con = PreparedStatementCache.wrap(borrowed, statementCacheSize);
+	}
+
+	/**
+	 * Gives the connection back to the data source.
+	 *
+	 * @throws SQLException
+	 *             thrown if the connection cannot be closed.
+	 */
+	private void close() throws SQLException {
+		try {
+			if (readOnly && !con.isClosed()) {
+				// The transaction must be ended before the flag is reset
+				con.rollback();
+				con.setReadOnly(false);
+			}
+		} finally {
+			con.close();
+		}
+	}
+
+}
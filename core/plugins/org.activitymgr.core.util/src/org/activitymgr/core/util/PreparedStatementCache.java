@@ -0,0 +1,369 @@
+package org.activitymgr.core.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Prepared statements cache bound to a connection.
+ * <p>
+ * {@link #wrap(Connection, int)} returns a connection that keeps the
+ * prepared statements it creates open, keyed by their SQL text, so that a
+ * DAO preparing the same request several times during a transaction only
+ * pays the preparation once. Closing a statement obtained from the wrapped
+ * connection gives it back to the cache (the result sets it has opened are
+ * closed, its parameters, batch and fetch size are reset) ; closing the wrapped connection closes every cached
+ * statement, then the connection itself.
+ * </p>
+ * <p>
+ * The cache is bounded : the least recently used statement is closed when
+ * the size limit is reached. If a statement is requested while the cached
+ * one is still in use (nested calls), a non cached statement is returned.
+ * </p>
+ * <p>
+ * Like the connection it wraps, the cache is not meant to be used by several
+ * threads concurrently.
+ * </p>
+ */
+public class PreparedStatementCache implements InvocationHandler {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(PreparedStatementCache.class);
+
+	/** Default cache size */
+	public static final int DEFAULT_SIZE = 50;
+
+	/** Wrapped connection */
+	private final Connection con;
+
+	/** Connection proxy */
+	private final Connection proxy;
+
+	/** Cached statements (in access order) */
+	private final Map<String, CachedStatement> statements;
+
+	/** Cache hits */
+	private long hits;
+
+	/** Cache misses */
+	private long misses;
+
+	/** Evicted statements */
+	private long evictions;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param con
+	 *            the connection to wrap.
+	 * @param size
+	 *            the maximum number of cached statements.
+	 */
+	private PreparedStatementCache(Connection con, final int size) {
+		this.con = con;
+		this.proxy = (Connection) Proxy.newProxyInstance(
+				PreparedStatementCache.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, this);
+		this.statements = new LinkedHashMap<String, CachedStatement>(16,
+				0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, CachedStatement> eldest) {
+				if (size() > size) {
+					evictions++;
+					eldest.getValue().evict();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Wraps a connection with a prepared statements cache.
+	 *
+	 * @param con
+	 *            the connection to wrap.
+	 * @param size
+	 *            the maximum number of cached statements (<code>0</code>
+	 *            disables the cache).
+	 * @return the wrapped connection (or the connection itself if the cache
+	 *         is disabled).
+	 */
+	public static Connection wrap(Connection con, int size) {
+		return size > 0 ? new PreparedStatementCache(con, size).proxy : con;
+	}
+
+	/**
+	 * Returns the cache of a connection.
+	 *
+	 * @param con
+	 *            the connection.
+	 * @return the cache or <code>null</code> if the connection has not been
+	 *         wrapped.
+	 */
+	public static PreparedStatementCache getCache(Connection con) {
+		if (con != null && Proxy.isProxyClass(con.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(con);
+			if (handler instanceof PreparedStatementCache) {
+				return (PreparedStatementCache) handler;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of statements served from the cache.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of statements that had to be prepared.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of statements closed to respect the cache size.
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of cached statements.
+	 */
+	public int size() {
+		return statements.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+	 * java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		String name = method.getName();
+		if ("prepareStatement".equals(name)) {
+			Class<?>[] types = method.getParameterTypes();
+			if (types.length == 1) {
+				return prepareStatement((String) args[0], method, args);
+			} else if (types.length == 2 && types[1] == int.class) {
+				return prepareStatement(args[1] + ":" + args[0], method, args);
+			}
+		} else if ("close".equals(name)) {
+			closeStatements();
+		} else if ("equals".equals(name)) {
+			return proxy == args[0];
+		} else if ("hashCode".equals(name)) {
+			return System.identityHashCode(proxy);
+		}
+		return delegate(con, method, args);
+	}
+
+	/**
+	 * Returns a prepared statement from the cache, or prepares it.
+	 *
+	 * @param key
+	 *            the cache key (the SQL request, prefixed with the generated
+	 *            keys flag if specified).
+	 * @param method
+	 *            the invoked <code>prepareStatement</code> method.
+	 * @param args
+	 *            the method arguments.
+	 * @return the prepared statement.
+	 * @throws Throwable
+	 *             thrown if the preparation fails.
+	 */
+	private PreparedStatement prepareStatement(String key, Method method,
+			Object[] args) throws Throwable {
+		CachedStatement cached = statements.get(key);
+		if (cached != null && !cached.inUse) {
+			hits++;
+			cached.inUse = true;
+			return cached.proxy;
+		}
+		misses++;
+		PreparedStatement stmt = (PreparedStatement) delegate(con, method, args);
+		// If the cached statement is in use, the new one is not cached
+		if (cached != null) {
+			return stmt;
+		}
+		cached = new CachedStatement(stmt);
+		cached.inUse = true;
+		statements.put(key, cached);
+		return cached.proxy;
+	}
+
+	/**
+	 * Closes all the cached statements.
+	 */
+	private void closeStatements() {
+		if (log.isDebugEnabled()) {
+			log.debug("Closing statements cache (hits=" + hits + ", misses="
+					+ misses + ", evictions=" + evictions + ")");
+		}
+		List<CachedStatement> toClose = new ArrayList<CachedStatement>(
+				statements.values());
+		statements.clear();
+		for (CachedStatement cached : toClose) {
+			cached.evict();
+		}
+	}
+
+	private static Object delegate(Object target, Method method, Object[] args)
+			throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Cached statement.
+	 */
+	private class CachedStatement implements InvocationHandler {
+
+		/** The real statement */
+		private final PreparedStatement stmt;
+
+		/** Statement proxy (handed to the caller) */
+		private final PreparedStatement proxy;
+
+		/** <code>true</code> while a caller owns the statement */
+		private boolean inUse;
+
+		/** <code>true</code> if a batch has been started */
+		private boolean batchStarted;
+
+		/** Fetch size to restore (if the caller has changed it) */
+		private Integer defaultFetchSize;
+
+		/** <code>true</code> once the statement has left the cache */
+		private boolean evicted;
+
+		/** Result sets opened by the current caller */
+		private final List<ResultSet> resultSets = new ArrayList<ResultSet>();
+
+		CachedStatement(PreparedStatement stmt) {
+			this.stmt = stmt;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+					PreparedStatementCache.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name)) {
+				release();
+				return null;
+			} else if ("isClosed".equals(name)) {
+				return !inUse || stmt.isClosed();
+			} else if ("getConnection".equals(name)) {
+				return PreparedStatementCache.this.proxy;
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("addBatch".equals(name)) {
+				batchStarted = true;
+			} else if ("setFetchSize".equals(name) && defaultFetchSize == null) {
+				defaultFetchSize = stmt.getFetchSize();
+			}
+			Object result = delegate(stmt, method, args);
+			if (result instanceof ResultSet) {
+				// executeQuery, getResultSet, getGeneratedKeys
+				resultSets.add((ResultSet) result);
+			}
+			return result;
+		}
+
+		/**
+		 * Gives the statement back to the cache.
+		 */
+		private void release() {
+			if (!inUse) {
+				return;
+			}
+			inUse = false;
+			closeResultSets();
+			if (evicted) {
+				closeQuietly();
+			} else {
+				try {
+					stmt.clearParameters();
+					if (batchStarted) {
+						stmt.clearBatch();
+						batchStarted = false;
+					}
+					if (defaultFetchSize != null) {
+						stmt.setFetchSize(defaultFetchSize);
+						defaultFetchSize = null;
+					}
+				} catch (SQLException e) {
+					log.debug("Unable to reset a cached statement", e);
+					statements.values().remove(this);
+					closeQuietly();
+				}
+			}
+		}
+
+		/**
+		 * Removes the statement from the cache (the statement is closed right
+		 * now if it is not in use, or when the caller closes it).
+		 */
+		private void evict() {
+			evicted = true;
+			if (!inUse) {
+				closeQuietly();
+			}
+		}
+
+		/**
+		 * Closes the result sets opened by the caller (closing the statement
+		 * would have closed them).
+		 */
+		private void closeResultSets() {
+			for (ResultSet rs : resultSets) {
+				try {
+					rs.close();
+				} catch (SQLException e) {
+					log.debug("Unable to close a result set", e);
+				}
+			}
+			resultSets.clear();
+		}
+
+		private void closeQuietly() {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+				log.debug("Unable to close a cached statement", e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,620 @@
+package org.activitymgr.core.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+/**
+ * SQL requests statistics.
+ * <p>
+ * {@link #wrap(Connection)} returns a connection whose statements record,
+ * for each request shape (the SQL text without its literals, see
+ * {@link #getShape(String)}), the number of executions and failures, the
+ * execution latency (total, maximum and histogram), and the number of rows
+ * read from the result sets. The executions that last longer than the slow
+ * query threshold are logged.
+ * </p>
+ * <p>
+ * The latency only covers the <code>execute*</code> calls (the rows fetch
+ * is not included). The statistics are shared by all the wrapped
+ * connections and may be read at any time with {@link #snapshot()}.
+ * </p>
+ */
+public class SqlStatistics {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(SqlStatistics.class);
+
+	/** Default slow query threshold (ms) */
+	public static final long DEFAULT_SLOW_QUERY_THRESHOLD = 1000;
+
+	/** Upper bounds of the latency histogram buckets (ms, the last bucket has no bound) */
+	private static final long[] HISTOGRAM_BOUNDS = new long[] { 1, 5, 10, 50,
+			100, 500, 1000 };
+
+	/** Maximum number of request shapes */
+	private static final int MAX_SHAPES = 500;
+
+	/** Shape of the requests exceeding the maximum number of shapes */
+	static final String OTHER_REQUESTS = "(other requests)";
+
+	/** String literals */
+	private static final Pattern STRING_LITERAL = Pattern.compile("'([^']|'')*'");
+
+	/** Numeric literals */
+	private static final Pattern NUMERIC_LITERAL = Pattern
+			.compile("(?<![\\w.])\\d+(\\.\\d+)?(?![\\w.])");
+
+	/** White spaces */
+	private static final Pattern WHITE_SPACES = Pattern.compile("\\s+");
+
+	/** Parameters lists (<code>in</code> clauses or inserted rows) */
+	private static final Pattern PARAMETERS_LIST = Pattern
+			.compile("\\( ?\\?( ?, ?\\?)+ ?\\)");
+
+	/** Repeated parameters lists (multi rows inserts) */
+	private static final Pattern PARAMETERS_LISTS = Pattern
+			.compile("\\(\\?, \\.\\.\\.\\)( ?, ?\\(\\?, \\.\\.\\.\\))+");
+
+	/** Statistics by request shape */
+	private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<String, Counters>();
+
+	/** <code>true</code> if the requests are instrumented */
+	private volatile boolean enabled;
+
+	/** Slow query threshold (ms) */
+	private volatile long slowQueryThreshold = DEFAULT_SLOW_QUERY_THRESHOLD;
+
+	/**
+	 * @return <code>true</code> if the requests are instrumented.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables the instrumentation (it only applies to the
+	 * connections wrapped afterwards).
+	 *
+	 * @param enabled
+	 *            <code>true</code> to instrument the requests.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return the slow query threshold (ms).
+	 */
+	public long getSlowQueryThreshold() {
+		return slowQueryThreshold;
+	}
+
+	/**
+	 * Sets the slow query threshold.
+	 *
+	 * @param slowQueryThreshold
+	 *            the duration (ms) from which an execution is logged
+	 *            (<code>0</code> logs all the executions, a negative value
+	 *            disables the log).
+	 */
+	public void setSlowQueryThreshold(long slowQueryThreshold) {
+		this.slowQueryThreshold = slowQueryThreshold;
+	}
+
+	/**
+	 * Wraps a connection so that its requests are instrumented.
+	 *
+	 * @param con
+	 *            the connection to wrap.
+	 * @return the wrapped connection (or the connection itself if the
+	 *         instrumentation is disabled).
+	 */
+	public Connection wrap(Connection con) {
+		if (!enabled || con == null) {
+			return con;
+		}
+		return (Connection) Proxy.newProxyInstance(
+				SqlStatistics.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new ConnectionHandler(
+						con));
+	}
+
+	/**
+	 * @return a snapshot of the statistics, the most time consuming request
+	 *         shapes first.
+	 */
+	public List<StatementStatistics> snapshot() {
+		List<StatementStatistics> result = new ArrayList<StatementStatistics>();
+		for (Counters shapeCounters : counters.values()) {
+			result.add(shapeCounters.snapshot());
+		}
+		Collections.sort(result, new Comparator<StatementStatistics>() {
+			@Override
+			public int compare(StatementStatistics s1, StatementStatistics s2) {
+				return s1.totalNanos < s2.totalNanos ? 1
+						: (s1.totalNanos == s2.totalNanos ? 0 : -1);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Forgets all the statistics.
+	 */
+	public void reset() {
+		counters.clear();
+	}
+
+	/**
+	 * @return the upper bounds (ms) of the latency histogram buckets (the
+	 *         last bucket, which has no upper bound, is not included).
+	 */
+	public static long[] getHistogramBounds() {
+		return HISTOGRAM_BOUNDS.clone();
+	}
+
+	/**
+	 * Computes the shape of a SQL request : the literals are replaced by
+	 * <code>?</code>, the white spaces are normalized, and the parameters
+	 * lists are collapsed, so that the requests only differing by their
+	 * values share the same shape.
+	 *
+	 * @param sql
+	 *            the SQL request.
+	 * @return the request shape.
+	 */
+	public static String getShape(String sql) {
+		String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+		shape = NUMERIC_LITERAL.matcher(shape).replaceAll("?");
+		shape = WHITE_SPACES.matcher(shape).replaceAll(" ").trim();
+		shape = PARAMETERS_LIST.matcher(shape).replaceAll("(?, ...)");
+		shape = PARAMETERS_LISTS.matcher(shape).replaceAll("(?, ...), ...");
+		return shape;
+	}
+
+	/**
+	 * @param sql
+	 *            the SQL request.
+	 * @return the counters of the request shape.
+	 */
+	private Counters counters(String sql) {
+		String shape = getShape(sql);
+		Counters result = counters.get(shape);
+		if (result == null) {
+			if (counters.size() >= MAX_SHAPES) {
+				shape = OTHER_REQUESTS;
+			}
+			result = new Counters(shape);
+			Counters previous = counters.putIfAbsent(shape, result);
+			if (previous != null) {
+				result = previous;
+			}
+		}
+		return result;
+	}
+
+	private static Object delegate(Object target, Method method, Object[] args)
+			throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Statistics snapshot of a request shape.
+	 */
+	public static class StatementStatistics {
+
+		/** Request shape */
+		private final String shape;
+
+		/** Executions */
+		private final long calls;
+
+		/** Failed executions */
+		private final long errors;
+
+		/** Executions slower than the threshold */
+		private final long slowCalls;
+
+		/** Rows read */
+		private final long rows;
+
+		/** Total latency (ns) */
+		private final long totalNanos;
+
+		/** Maximum latency (ns) */
+		private final long maxNanos;
+
+		/** Latency histogram */
+		private final long[] histogram;
+
+		StatementStatistics(String shape, long calls, long errors,
+				long slowCalls, long rows, long totalNanos, long maxNanos,
+				long[] histogram) {
+			this.shape = shape;
+			this.calls = calls;
+			this.errors = errors;
+			this.slowCalls = slowCalls;
+			this.rows = rows;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.histogram = histogram;
+		}
+
+		/**
+		 * @return the request shape.
+		 */
+		public String getShape() {
+			return shape;
+		}
+
+		/**
+		 * @return the number of executions.
+		 */
+		public long getCalls() {
+			return calls;
+		}
+
+		/**
+		 * @return the number of failed executions.
+		 */
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return the number of executions slower than the threshold.
+		 */
+		public long getSlowCalls() {
+			return slowCalls;
+		}
+
+		/**
+		 * @return the number of rows read from the result sets.
+		 */
+		public long getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return the total latency (ms).
+		 */
+		public double getTotalMillis() {
+			return totalNanos / 1000000d;
+		}
+
+		/**
+		 * @return the mean latency (ms).
+		 */
+		public double getMeanMillis() {
+			return calls > 0 ? getTotalMillis() / calls : 0;
+		}
+
+		/**
+		 * @return the maximum latency (ms).
+		 */
+		public double getMaxMillis() {
+			return maxNanos / 1000000d;
+		}
+
+		/**
+		 * @return the number of executions of each latency bucket (see
+		 *         {@link SqlStatistics#getHistogramBounds()}).
+		 */
+		public long[] getHistogram() {
+			return histogram.clone();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			StringBuffer buf = new StringBuffer();
+			buf.append(shape);
+			buf.append(" : calls=").append(calls);
+			buf.append(", errors=").append(errors);
+			buf.append(", slow=").append(slowCalls);
+			buf.append(", rows=").append(rows);
+			buf.append(", total=").append(Math.round(getTotalMillis()))
+					.append("ms");
+			buf.append(", max=").append(Math.round(getMaxMillis()))
+					.append("ms");
+			buf.append(", histogram=");
+			for (int i = 0; i < histogram.length; i++) {
+				buf.append(i == 0 ? "[" : ", ");
+				buf.append(i < HISTOGRAM_BOUNDS.length ? "<"
+						+ HISTOGRAM_BOUNDS[i] : ">=" + HISTOGRAM_BOUNDS[i - 1]);
+				buf.append("ms:").append(histogram[i]);
+			}
+			return buf.append("]").toString();
+		}
+
+	}
+
+	/**
+	 * Statistics of a request shape.
+	 */
+	private class Counters {
+
+		/** Request shape */
+		private final String shape;
+
+		private long calls;
+
+		private long errors;
+
+		private long slowCalls;
+
+		private long rows;
+
+		private long totalNanos;
+
+		private long maxNanos;
+
+		private final long[] histogram = new long[HISTOGRAM_BOUNDS.length + 1];
+
+		Counters(String shape) {
+			this.shape = shape;
+		}
+
+		/**
+		 * Records an execution.
+		 *
+		 * @param sql
+		 *            the SQL request.
+		 * @param nanos
+		 *            the execution latency (ns).
+		 * @param failed
+		 *            <code>true</code> if the execution has failed.
+		 */
+		void record(String sql, long nanos, boolean failed) {
+			long millis = nanos / 1000000;
+			long threshold = slowQueryThreshold;
+			boolean slow = threshold >= 0 && millis >= threshold;
+			int bucket = 0;
+			while (bucket < HISTOGRAM_BOUNDS.length
+					&& millis >= HISTOGRAM_BOUNDS[bucket]) {
+				bucket++;
+			}
+			synchronized (this) {
+				calls++;
+				if (failed)
+					errors++;
+				if (slow)
+					slowCalls++;
+				totalNanos += nanos;
+				if (nanos > maxNanos)
+					maxNanos = nanos;
+				histogram[bucket]++;
+			}
+			if (slow) {
+				log.warn("Slow query (" + millis + " ms) : " + sql);
+			}
+		}
+
+		/**
+		 * Records rows read from a result set.
+		 *
+		 * @param count
+		 *            the number of rows.
+		 */
+		synchronized void addRows(long count) {
+			rows += count;
+		}
+
+		/**
+		 * @return a snapshot of the counters.
+		 */
+		synchronized StatementStatistics snapshot() {
+			return new StatementStatistics(shape, calls, errors, slowCalls,
+					rows, totalNanos, maxNanos, histogram.clone());
+		}
+
+	}
+
+	/**
+	 * Instrumented connection.
+	 */
+	private class ConnectionHandler implements InvocationHandler {
+
+		/** Wrapped connection */
+		private final Connection con;
+
+		ConnectionHandler(Connection con) {
+			this.con = con;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if ("prepareStatement".equals(name) || "prepareCall".equals(name)) {
+				Statement stmt = (Statement) delegate(con, method, args);
+				return new StatementHandler((Connection) proxy, stmt,
+						(String) args[0]).proxy;
+			} else if ("createStatement".equals(name)) {
+				Statement stmt = (Statement) delegate(con, method, args);
+				return new StatementHandler((Connection) proxy, stmt, null).proxy;
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			}
+			return delegate(con, method, args);
+		}
+
+	}
+
+	/**
+	 * Instrumented statement.
+	 */
+	private class StatementHandler implements InvocationHandler {
+
+		/** Connection proxy */
+		private final Connection con;
+
+		/** Wrapped statement */
+		private final Statement stmt;
+
+		/** Statement proxy */
+		private final Statement proxy;
+
+		/** SQL request (<code>null</code> until known for simple statements) */
+		private String sql;
+
+		/** Counters of the request shape */
+		private Counters counters;
+
+		/** Rows read from the current result set */
+		private long rows;
+
+		StatementHandler(Connection con, Statement stmt, String sql) {
+			this.con = con;
+			this.stmt = stmt;
+			this.sql = sql;
+			if (sql != null) {
+				counters = counters(sql);
+			}
+			Class<?> type = stmt instanceof CallableStatement ? CallableStatement.class
+					: (stmt instanceof PreparedStatement ? PreparedStatement.class
+							: Statement.class);
+			this.proxy = (Statement) Proxy.newProxyInstance(
+					SqlStatistics.class.getClassLoader(),
+					new Class<?>[] { type }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if (name.startsWith("execute")) {
+				return execute(method, args);
+			} else if ("addBatch".equals(name) && args != null
+					&& args.length == 1 && sql == null) {
+				// The first request of a simple statement batch names it
+				sql = (String) args[0];
+				counters = counters(sql);
+			} else if ("getResultSet".equals(name)) {
+				return wrap((ResultSet) delegate(stmt, method, args));
+			} else if ("close".equals(name)) {
+				flushRows();
+			} else if ("getConnection".equals(name)) {
+				return con;
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			}
+			return delegate(stmt, method, args);
+		}
+
+		/**
+		 * Executes the request and records its latency.
+		 *
+		 * @param method
+		 *            the <code>execute*</code> method.
+		 * @param args
+		 *            the method arguments.
+		 * @return the execution result.
+		 * @throws Throwable
+		 *             thrown if the execution fails.
+		 */
+		private Object execute(Method method, Object[] args) throws Throwable {
+			flushRows();
+			String executedSql = sql;
+			Counters executedCounters = counters;
+			// Simple statements receive the request at execution time
+			if (args != null && args.length > 0 && args[0] instanceof String) {
+				executedSql = (String) args[0];
+				executedCounters = counters(executedSql);
+			}
+			boolean failed = true;
+			long start = System.nanoTime();
+			try {
+				Object result = delegate(stmt, method, args);
+				failed = false;
+				return result instanceof ResultSet ? wrap((ResultSet) result)
+						: result;
+			} finally {
+				if (executedCounters != null) {
+					executedCounters.record(executedSql, System.nanoTime()
+							- start, failed);
+					counters = executedCounters;
+				}
+			}
+		}
+
+		/**
+		 * Wraps a result set so that its rows are counted.
+		 *
+		 * @param rs
+		 *            the result set.
+		 * @return the wrapped result set.
+		 */
+		private ResultSet wrap(final ResultSet rs) {
+			if (rs == null) {
+				return null;
+			}
+			return (ResultSet) Proxy.newProxyInstance(
+					SqlStatistics.class.getClassLoader(),
+					new Class<?>[] { ResultSet.class },
+					new InvocationHandler() {
+						@Override
+						public Object invoke(Object rsProxy, Method method,
+								Object[] args) throws Throwable {
+							String name = method.getName();
+							if ("next".equals(name)) {
+								Boolean hasNext = (Boolean) delegate(rs,
+										method, args);
+								if (hasNext)
+									rows++;
+								return hasNext;
+							} else if ("close".equals(name)) {
+								flushRows();
+							} else if ("getStatement".equals(name)) {
+								return proxy;
+							} else if ("equals".equals(name)) {
+								return rsProxy == args[0];
+							} else if ("hashCode".equals(name)) {
+								return System.identityHashCode(rsProxy);
+							}
+							return delegate(rs, method, args);
+						}
+					});
+		}
+
+		/**
+		 * Adds the rows read from the current result set to the statistics.
+		 */
+		private void flushRows() {
+			if (rows > 0 && counters != null) {
+				counters.addRows(rows);
+			}
+			rows = 0;
+		}
+
+	}
+
+}
@@ -33,9 +33,13 @@ import java.io.InputStream;
 import java.io.LineNumberReader;
 import java.io.StringReader;
 import java.math.BigDecimal;
-import java.text.SimpleDateFormat;
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -60,8 +64,12 @@ public class StringHelper extends StringUtils {
 		'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
 		'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V' };
 
-	/** Formatteur de date */
-	private static SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd"); //$NON-NLS-1$
+	/** Combining diacritical marks (left by the decomposition of accents) */
+	private static final Pattern DIACRITICAL_MARKS = Pattern
+			.compile("\\p{InCombiningDiacriticalMarks}+"); //$NON-NLS-1$
+
+	/** Trigram length */
+	public static final int TRIGRAM_LENGTH = 3;
 
 	/**
 	 * Convertit un octet en hexadécimal.
@@ -142,7 +150,45 @@ public class StringHelper extends StringUtils {
 	 * @return la date convertie.
 	 */
 	public static String toYYYYMMDD(Calendar cal) {
-		return sdf.format(cal.getTime());
+		int dateKey = EpochDay.toDateKey(EpochDay.of(cal));
+		StringBuffer buf = new StringBuffer(String.valueOf(dateKey));
+		while (buf.length() < 8) {
+			buf.insert(0, '0');
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Convertit une chaine de caractère au format <code>yyyyMMdd</code> en
+	 * date.
+	 * 
+	 * @param str
+	 *            la chaine à convertir.
+	 * @return la date convertie (à minuit).
+	 * @throws StringFormatException
+	 *             levé si la chaine n'est pas une date valide.
+	 */
+	public static Calendar fromYYYYMMDD(String str)
+			throws StringFormatException {
+		if (str == null || str.length() != 8) {
+			throw new StringFormatException("Invalid date : " + str); //$NON-NLS-1$
+		}
+		int dateKey = 0;
+		for (int i = 0; i < 8; i++) {
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new StringFormatException("Invalid date : " + str); //$NON-NLS-1$
+			}
+			dateKey = dateKey * 10 + (c - '0');
+		}
+		int year = dateKey / 10000;
+		int month = (dateKey / 100) % 100;
+		int day = dateKey % 100;
+		if (month < 1 || month > 12 || day < 1
+				|| day > EpochDay.getMonthLength(year, month)) {
+			throw new StringFormatException("Invalid date : " + str); //$NON-NLS-1$
+		}
+		return EpochDay.toCalendar(EpochDay.of(year, month, day));
 	}
 
 	/**
@@ -359,4 +405,106 @@ public class StringHelper extends StringUtils {
 		return result;
 	}
 
+	/**
+	 * Converts a string into a search key : accents are removed and the
+	 * string is turned to lower case, so that searches are case and accent
+	 * insensitive.
+	 * 
+	 * @param str
+	 *            the string to convert.
+	 * @return the search key.
+	 */
+	public static String toSearchKey(String str) {
+		String result = null;
+		if (str != null) {
+			result = DIACRITICAL_MARKS.matcher(
+					Normalizer.normalize(str, Normalizer.Form.NFD))
+					.replaceAll("").toLowerCase(Locale.ENGLISH); //$NON-NLS-1$
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the trigrams (sequences of 3 consecutive characters) of a
+	 * search key.
+	 * 
+	 * @param searchKey
+	 *            the search key.
+	 * @return the trigrams (empty if the key is shorter than 3 characters).
+	 * @see #toSearchKey(String)
+	 */
+	public static Set<String> getTrigrams(String searchKey) {
+		Set<String> result = new LinkedHashSet<String>();
+		for (int i = 0; i + TRIGRAM_LENGTH <= searchKey.length(); i++) {
+			result.add(searchKey.substring(i, i + TRIGRAM_LENGTH));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the keys under which a value is stored in a trigram index : its
+	 * trigrams, and its sequences of 1 and 2 consecutive characters so that
+	 * the search keys shorter than a trigram can be looked up too.
+	 * <p>
+	 * Some databases ignore the trailing spaces when they compare strings :
+	 * they are removed from the keys (the shortened key is one of the shorter
+	 * sequences).
+	 * </p>
+	 * 
+	 * @param searchKey
+	 *            the indexed value, as a search key.
+	 * @return the index keys.
+	 * @see #getLookupKeys(String)
+	 */
+	public static Set<String> getIndexKeys(String searchKey) {
+		Set<String> result = new LinkedHashSet<String>();
+		for (int length = 1; length <= TRIGRAM_LENGTH; length++) {
+			for (int i = 0; i + length <= searchKey.length(); i++) {
+				addIndexKey(result, searchKey.substring(i, i + length));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the keys to look up in a trigram index to find the values that
+	 * contain a search key : the search key itself if it is shorter than a
+	 * trigram, its trigrams otherwise (without their trailing spaces, as in
+	 * {@link #getIndexKeys(String)}).
+	 * 
+	 * @param searchKey
+	 *            the search key.
+	 * @return the keys (empty if the search key is empty or blank).
+	 * @see #getIndexKeys(String)
+	 */
+	public static Set<String> getLookupKeys(String searchKey) {
+		Set<String> result = new LinkedHashSet<String>();
+		if (searchKey.length() < TRIGRAM_LENGTH) {
+			addIndexKey(result, searchKey);
+		} else {
+			for (String trigram : getTrigrams(searchKey)) {
+				addIndexKey(result, trigram);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a key without its trailing spaces to a set of trigram index keys.
+	 * 
+	 * @param keys
+	 *            the keys.
+	 * @param key
+	 *            the key to add (ignored if it is blank).
+	 */
+	private static void addIndexKey(Set<String> keys, String key) {
+		int length = key.length();
+		while (length > 0 && key.charAt(length - 1) == ' ') {
+			length--;
+		}
+		if (length > 0) {
+			keys.add(key.substring(0, length));
+		}
+	}
+
 }
@@ -0,0 +1,90 @@
+package org.activitymgr.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hooks bound to a transaction.
+ * <p>
+ * Holds the tasks that must run once the outcome of the transaction is
+ * known, for instance to publish or discard a file written along with the
+ * transaction rows. The transaction owner creates the hooks with the
+ * transaction and {@link #completed(boolean) completes} them once it is
+ * committed or rolled back. A rollback to a savepoint
+ * {@link #rollbackToSavepoint(int) runs the rollback tasks} registered
+ * since the savepoint : the transaction goes on without them.
+ * </p>
+ * <p>
+ * Like the transaction it is bound to, the hooks are not meant to be used
+ * by several threads concurrently.
+ * </p>
+ */
+public class TransactionHooks {
+
+	/**
+	 * Tasks to run after the commit (first item) or after the rollback
+	 * (second item) of the transaction, in registration order
+	 */
+	private final List<Runnable[]> tasks = new ArrayList<Runnable[]>();
+
+	/**
+	 * Registers tasks to run at the end of the transaction, depending on its
+	 * outcome.
+	 *
+	 * @param afterCommit
+	 *            the task to run if the transaction is committed.
+	 * @param afterRollback
+	 *            the task to run if the transaction is rolled back (or if
+	 *            the registration is rolled back to a savepoint).
+	 */
+	public void register(Runnable afterCommit, Runnable afterRollback) {
+		tasks.add(new Runnable[] { afterCommit, afterRollback });
+	}
+
+	/**
+	 * Marks a savepoint of the transaction.
+	 *
+	 * @return the savepoint.
+	 * @see #rollbackToSavepoint(int)
+	 */
+	public int setSavepoint() {
+		return tasks.size();
+	}
+
+	/**
+	 * Runs the rollback tasks registered since a savepoint (in reverse
+	 * order). The other tasks are kept (the transaction is not over).
+	 *
+	 * @param savepoint
+	 *            the savepoint.
+	 */
+	public void rollbackToSavepoint(int savepoint) {
+		List<Runnable[]> rolledBack = tasks.subList(savepoint, tasks.size());
+		Runnable[][] rolledBackTasks = rolledBack
+				.toArray(new Runnable[rolledBack.size()][]);
+		rolledBack.clear();
+		for (int i = rolledBackTasks.length - 1; i >= 0; i--) {
+			rolledBackTasks[i][1].run();
+		}
+	}
+
+	/**
+	 * Runs the tasks that match the transaction outcome, in registration
+	 * order, and forgets all the tasks.
+	 *
+	 * @param committed
+	 *            <code>true</code> if the transaction has been committed,
+	 *            <code>false</code> if it has been rolled back.
+	 */
+	public void completed(boolean committed) {
+		if (!tasks.isEmpty()) {
+			Runnable[][] completedTasks = tasks.toArray(new Runnable[tasks
+					.size()][]);
+			tasks.clear();
+			for (Runnable[] task : completedTasks) {
+				task[committed ? 0 : 1].run();
+			}
+		}
+	}
+
+}
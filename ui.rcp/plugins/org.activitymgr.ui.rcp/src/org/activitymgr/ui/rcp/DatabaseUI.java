@@ -50,8 +50,10 @@ import org.activitymgr.ui.rcp.util.UITechException;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.log4j.Logger;
 import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.preference.DirectoryFieldEditor;
 import org.eclipse.jface.preference.FileFieldEditor;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.StringButtonFieldEditor;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.swt.SWT;
@@ -143,6 +145,7 @@ public class DatabaseUI implements ModifyListener {
 	private Label jdbcPasswordLabel;
 	private Text jdbcPasswordText;
 	private Label jdbcPasswordWarning;
+	private DirectoryFieldEditor archiveDirectoryText;
 	private Button openDbButton;
 	private Button closeDbButton;
 	private Button resetDbDataButton;
@@ -323,6 +326,10 @@ public class DatabaseUI implements ModifyListener {
 		jdbcPasswordWarning.setText(Strings
 				.getString("DatabaseUI.labels.PASSWORD_WARNING")); //$NON-NLS-1$
 
+		// Répertoire d'archive des contributions
+		archiveDirectoryText = new DirectoryFieldEditor(
+				"archiveDirectory", Strings.getString("DatabaseUI.labels.ARCHIVE_DIRECTORY"), conectionPanel); //$NON-NLS-1$ //$NON-NLS-2$
+
 		// Panneau contenant les boutons d'ouverture/fermeture de la BDD
 		Composite openCloseDbButtonsPanel = new Composite(conectionPanel,
 				SWT.NONE);
@@ -466,6 +473,7 @@ public class DatabaseUI implements ModifyListener {
 		String jdbcUrl = cfg.getString(PreferenceManager.JDBC_URL);
 		String jdbcUser = cfg.getString(PreferenceManager.JDBC_USER);
 		String jdbcPassword = cfg.getString(PreferenceManager.JDBC_PASSWORD);
+		String archiveDirectory = cfg.getString(PreferenceManager.ARCHIVE_DIRECTORY);
 		dbTypeCombo.select(databaseType);
 		dbHostText.setText(dbHost != null ? dbHost : ""); //$NON-NLS-1$
 		dbPortText.setText(dbPort != null ? dbPort : ""); //$NON-NLS-1$
@@ -475,6 +483,7 @@ public class DatabaseUI implements ModifyListener {
 		jdbcUrlText.setText(jdbcUrl != null ? jdbcUrl : ""); //$NON-NLS-1$
 		jdbcUserIdText.setText(jdbcUser != null ? jdbcUser : ""); //$NON-NLS-1$
 		jdbcPasswordText.setText(jdbcPassword != null ? jdbcPassword : ""); //$NON-NLS-1$
+		archiveDirectoryText.setStringValue(archiveDirectory != null ? archiveDirectory : ""); //$NON-NLS-1$
 		// Mise à jour des données
 		dbTypeChanged();
 	}
@@ -493,6 +502,7 @@ public class DatabaseUI implements ModifyListener {
 		disableField(jdbcUrlText);
 		disableField(jdbcUserIdText);
 		disableField(jdbcPasswordText);
+		disableField(archiveDirectoryText, conectionPanel);
 		switch (dbTypeCombo.getSelectionIndex()) {
 		// Cas d'une connexion JDBC HSQL embarqué
 		case STANDALONE_MODE:
@@ -523,6 +533,8 @@ public class DatabaseUI implements ModifyListener {
 			throw new Error(
 					Strings.getString("DatabaseUI.errors.UNKNOWN_DATABASE_TYPE")); //$NON-NLS-1$
 		}
+		// Archive des contributions (quel que soit le type de BDD)
+		enabledField(archiveDirectoryText, conectionPanel, "", false); //$NON-NLS-1$
 		// Activation/désactivation des labels
 		jdbcDriverLabel.setEnabled(jdbcDriverText.getEnabled());
 		dbHostLabel.setEnabled(dbHostText.getEnabled());
@@ -577,8 +589,8 @@ public class DatabaseUI implements ModifyListener {
 	 * @param parent
 	 *            le composant parent.
 	 */
-	private void disableField(FileFieldEditor field, Composite parent) {
-		FileFieldEditor fileFieldEditor = (FileFieldEditor) field;
+	private void disableField(StringButtonFieldEditor field, Composite parent) {
+		StringButtonFieldEditor fileFieldEditor = (StringButtonFieldEditor) field;
 		fileFieldEditor.setEnabled(false, parent);
 		fileFieldEditor.setPropertyChangeListener(null);
 	}
@@ -616,7 +628,7 @@ public class DatabaseUI implements ModifyListener {
 	 *            booléen indiquant si la valeur par défaut doit être forcée
 	 *            même quand le champ a déja une valeur.
 	 */
-	private void enabledField(FileFieldEditor field, Composite parent,
+	private void enabledField(StringButtonFieldEditor field, Composite parent,
 			String defaultValue, boolean forceDefaultValue) {
 		field.setEnabled(true, parent);
 		if (forceDefaultValue || "".equals(field.getStringValue())) //$NON-NLS-1$
@@ -708,6 +720,7 @@ public class DatabaseUI implements ModifyListener {
 		String jdbcUrl = jdbcUrlText.getText().trim();
 		String jdbcUser = jdbcUserIdText.getText().trim();
 		String jdbcPassword = jdbcPasswordText.getText();
+		String archiveDirectory = archiveDirectoryText.getStringValue().trim();
 
 		// Sauvagarde de la config
 		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
@@ -720,6 +733,7 @@ public class DatabaseUI implements ModifyListener {
 		store.setValue(PreferenceManager.JDBC_URL, jdbcUrl);
 		store.setValue(PreferenceManager.JDBC_USER, jdbcUser);
 		store.setValue(PreferenceManager.JDBC_PASSWORD, jdbcPassword);
+		store.setValue(PreferenceManager.ARCHIVE_DIRECTORY, archiveDirectory);
 
 		// Changement des paramètres de connexion
 		datasource = new BasicDataSource();
@@ -728,9 +742,17 @@ public class DatabaseUI implements ModifyListener {
 		datasource.setUsername(jdbcUser);
 		datasource.setPassword(jdbcPassword);
 		datasource.setDefaultAutoCommit(false);
+		// Les informations de la base précédente ne sont plus valables
+		modelMgr.resetDatabaseCaches();
+		// L'archive des contributions est propre à la base
+		modelMgr.setArchiveDirectory(!"".equals(archiveDirectory) ? new File( //$NON-NLS-1$
+				archiveDirectory) : null);
 
 		// Test de l'existence du modèle en base
 		boolean dbModelOk = modelMgr.tablesExist();
+		// Mise à jour des tables créées par une version antérieure
+		if (dbModelOk)
+			modelMgr.upgradeTables();
 		// Si le modèle n'est pas installé et que l'utilisateur
 		// le désire, l'application créée automatiquement les tables
 		if (!dbModelOk) {
@@ -771,6 +793,7 @@ public class DatabaseUI implements ModifyListener {
 			disableField(jdbcPasswordLabel);
 			disableField(jdbcPasswordText);
 			disableField(jdbcPasswordWarning);
+			disableField(archiveDirectoryText, conectionPanel);
 			openDbButton.setEnabled(false);
 			closeDbButton.setEnabled(true);
 			resetDbDataButton.setEnabled(true);
@@ -795,6 +818,7 @@ public class DatabaseUI implements ModifyListener {
 		// Changement des paramétres de connexion
 		try {
 			if (datasource != null) {
+				modelMgr.resetDatabaseCaches();
 				Connection con = datasource.getConnection();
 				if (DbHelper.isEmbeddedHsqlOrH2(con, jdbcUrlText.getText().trim())) {
 					DbHelper.shutdowHsqlOrH2(con);
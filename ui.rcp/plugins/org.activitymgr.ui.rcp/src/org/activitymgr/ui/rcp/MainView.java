@@ -37,7 +37,10 @@ import java.sql.SQLException;
 import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.model.CoreModelModule;
 import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.util.IdentityMap;
+import org.activitymgr.core.util.PreparedStatementCache;
 import org.activitymgr.core.util.Strings;
+import org.activitymgr.core.util.TransactionHooks;
 import org.activitymgr.ui.rcp.DatabaseUI.IDbStatusListener;
 import org.activitymgr.ui.rcp.util.UITechException;
 import org.apache.commons.dbcp.BasicDataSource;
@@ -181,6 +184,8 @@ public class MainView extends ViewPart {
 	private void initialize() {
 		// Create Guice injector
 		final ThreadLocal<Connection> dbTxs = new ThreadLocal<Connection>();
+		final ThreadLocal<IdentityMap> identityMaps = new ThreadLocal<IdentityMap>();
+		final ThreadLocal<TransactionHooks> transactionHooks = new ThreadLocal<TransactionHooks>();
 		final Injector injector = Guice.createInjector(
 				new CoreModelModule(),
 				new AbstractModule() {
@@ -193,6 +198,20 @@ public class MainView extends ViewPart {
 										return dbTxs.get();
 									}
 								});
+						bind(IdentityMap.class).toProvider(
+								new Provider<IdentityMap>() {
+									@Override
+									public IdentityMap get() {
+										return identityMaps.get();
+									}
+								});
+						bind(TransactionHooks.class).toProvider(
+								new Provider<TransactionHooks>() {
+									@Override
+									public TransactionHooks get() {
+										return transactionHooks.get();
+									}
+								});
 					}
 				});
 		// Creates a new model manager wrapper (managing the transaction)
@@ -203,19 +222,30 @@ public class MainView extends ViewPart {
 					public Object invoke(Object proxy, Method method,
 							Object[] args) throws Throwable {
 						Connection tx = null;
+						IdentityMap identityMap = null;
+						TransactionHooks hooks = null;
+						boolean committed = false;
 						try {
 							// Open the transaction
 							BasicDataSource datasource = databaseUI.getDatasource();
 							if (datasource == null) {
 								throw new IllegalStateException("Database is closed");
 							}
-							tx = datasource.getConnection();
+							tx = PreparedStatementCache.wrap(
+									datasource.getConnection(),
+									PreparedStatementCache.DEFAULT_SIZE);
 							dbTxs.set(tx);
+							// The identity map lives as long as the transaction
+							identityMap = new IdentityMap();
+							identityMaps.set(identityMap);
+							hooks = new TransactionHooks();
+							transactionHooks.set(hooks);
 							// Call the real model manager
 							IModelMgr wrappedModelMgr = injector.getInstance(IModelMgr.class);
 							Object result = method.invoke(wrappedModelMgr, args);
 							// Commit the transaction
 							tx.commit();
+							committed = true;
 							return result;
 						} catch (SQLException e) {
 							throw new IllegalStateException("Database connection failed", e);
@@ -226,11 +256,24 @@ public class MainView extends ViewPart {
 							}
 							throw t.getCause();
 						} finally {
-							// Release the transaction
+							// Release the transaction (closing the connection
+							// also closes the cached statements)
 							dbTxs.remove();
+							identityMaps.remove();
+							transactionHooks.remove();
+							// End of the transaction (committed or rolled
+							// back) : the written classes are invalidated in
+							// the second level cache
+							if (identityMap != null) {
+								identityMap.clear();
+							}
 							if (tx != null) {
 								tx.close();
 							}
+							// The hooks follow the transaction outcome
+							if (hooks != null) {
+								hooks.completed(committed);
+							}
 						}
 					}
 				});
@@ -47,6 +47,7 @@ public class PreferenceManager extends AbstractPreferenceInitializer {
 	public static final String JDBC_URL = "jdbc.url"; //$NON-NLS-1$
 	public static final String JDBC_USER = "jdbc.user"; //$NON-NLS-1$
 	public static final String JDBC_PASSWORD = "jdbc.password"; //$NON-NLS-1$
+	public static final String ARCHIVE_DIRECTORY = "archive.directory"; //$NON-NLS-1$
 
 	public void initializeDefaultPreferences() {
 //		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
@@ -152,7 +152,7 @@ public class TasksChooserTree extends AbstractTableMgr implements
 	public boolean hasChildren(Object element) {
 		log.debug("ITreeContentProvider.getChildren(" + element + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 		Task task = (Task) element;
-		return modelMgr.getSubTasksCount(task.getId()) > 0;
+		return task.getSubTasksCount() > 0;
 	}
 
 	/*
@@ -7,18 +7,25 @@ import org.activitymgr.ui.web.logic.ILogic.IView;
 
 public interface ITableCellProviderCallback<ITEM_ID_TYPE> {
 	
+	@ReadOnly
 	IView<?> getCell(ITEM_ID_TYPE itemId, String propertyId);
 	
+	@ReadOnly
 	Integer getColumnWidth(String propertyId);
 
+	@ReadOnly
 	Align getColumnAlign(String propertyId);
 
+	@ReadOnly
 	String getFooter(String propertyId);
 
+	@ReadOnly
 	Collection<String> getPropertyIds();
 
+	@ReadOnly
 	List<ITEM_ID_TYPE> getRootElements();
 	
+	@ReadOnly
 	boolean contains(ITEM_ID_TYPE element);
 	
 	void dispose();
@@ -4,12 +4,16 @@ import java.util.Collection;
 
 public interface ITreeContentProviderCallback<ITEM_ID_TYPE> extends ITableCellProviderCallback<ITEM_ID_TYPE> {
 
+	@ReadOnly
 	Collection<ITEM_ID_TYPE> getChildren(ITEM_ID_TYPE element);
 
+	@ReadOnly
 	boolean hasChildren(ITEM_ID_TYPE element);
 
+	@ReadOnly
 	ITEM_ID_TYPE getParent(ITEM_ID_TYPE element);
 
+	@ReadOnly
 	boolean isRoot(ITEM_ID_TYPE element);
 
 	void dispose();
@@ -18,12 +18,17 @@ import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.model.CoreModelModule;
 import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.util.IdentityMap;
+import org.activitymgr.core.util.PreparedStatementCache;
+import org.activitymgr.core.util.SqlStatistics;
+import org.activitymgr.core.util.TransactionHooks;
 import org.activitymgr.ui.web.logic.impl.CollaboratorsCellLogicFatory;
 import org.activitymgr.ui.web.logic.impl.ContributionsCellLogicFatory;
 import org.activitymgr.ui.web.logic.impl.TasksCellLogicFatory;
 import org.activitymgr.ui.web.logic.impl.internal.CollaboratorsTabLogicImpl;
 import org.activitymgr.ui.web.logic.impl.internal.ConfigurationImpl;
 import org.activitymgr.ui.web.logic.impl.internal.ContributionsTabLogicImpl;
+import org.activitymgr.ui.web.logic.impl.internal.DatabaseUpgrader;
 import org.activitymgr.ui.web.logic.impl.internal.DefaultConstraintsValidator;
 import org.activitymgr.ui.web.logic.impl.internal.NewContributionTaskButtonLogic;
 import org.activitymgr.ui.web.logic.impl.internal.ReportsTabLogicImpl;
@@ -75,13 +80,21 @@ public class LogicModule extends AbstractModule {
 		ConfigurationImpl cfg = new ConfigurationImpl(props);
 		bind(IConfiguration.class).toInstance(cfg);
 
-		// Install core module
-		install(new CoreModelModule());
+		// Install core module (with the SQL statistics if enabled and the
+		// contributions archive of the database if configured)
+		IConfiguration jdbcCfg = cfg.getScoped("activitymgr.jdbc",
+				null);
+		SqlStatistics sqlStatistics = new SqlStatistics();
+		sqlStatistics.setEnabled(jdbcCfg.getBoolean("sqlStatistics", false));
+		sqlStatistics.setSlowQueryThreshold(jdbcCfg.getInt(
+				"slowQueryThreshold",
+				(int) SqlStatistics.DEFAULT_SLOW_QUERY_THRESHOLD));
+		String archiveDirectory = jdbcCfg.get("archiveDirectory");
+		install(new CoreModelModule(sqlStatistics,
+				archiveDirectory != null ? new File(archiveDirectory) : null));
 		
 		// Create the datasource
 		BasicDataSource datasource = new BasicDataSource();
-		IConfiguration jdbcCfg = cfg.getScoped("activitymgr.jdbc",
-				null);
 		datasource.setDriverClassName(jdbcCfg.get("driver",
 				"com.mysql.jdbc.Driver"));
 		datasource.setUrl(jdbcCfg.get("url",
@@ -90,7 +103,9 @@ public class LogicModule extends AbstractModule {
 		datasource.setPassword(jdbcCfg
 				.get("password", "taskmgr"));
 		datasource.setDefaultAutoCommit(false);
-		final ThreadLocalizedDbTransactionProviderImpl dbTxProvider = new ThreadLocalizedDbTransactionProviderImpl(datasource);
+		final ThreadLocalizedDbTransactionProviderImpl dbTxProvider = new ThreadLocalizedDbTransactionProviderImpl(
+				datasource, jdbcCfg.getInt("statementCacheSize",
+						PreparedStatementCache.DEFAULT_SIZE), sqlStatistics);
 		bind(ThreadLocalizedDbTransactionProviderImpl.class).toInstance(dbTxProvider);
 		bind(Connection.class).toProvider(new Provider<Connection>() {
 			@Override
@@ -98,6 +113,22 @@ public class LogicModule extends AbstractModule {
 				return dbTxProvider.get().getTx();
 			}
 		});
+		bind(IdentityMap.class).toProvider(new Provider<IdentityMap>() {
+			@Override
+			public IdentityMap get() {
+				return dbTxProvider.get().getIdentityMap();
+			}
+		});
+		bind(TransactionHooks.class).toProvider(new Provider<TransactionHooks>() {
+			@Override
+			public TransactionHooks get() {
+				return dbTxProvider.get().getTransactionHooks();
+			}
+		});
+
+		// Upgrade the tables created by a previous version before the first
+		// transaction
+		bind(DatabaseUpgrader.class).in(Singleton.class);
 		
 		// Default SPI implementations
 		bind(IFeatureAccessManager.class).toInstance(new DefaultFeatureAccessManager());
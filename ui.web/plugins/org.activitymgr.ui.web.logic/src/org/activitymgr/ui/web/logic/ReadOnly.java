@@ -0,0 +1,23 @@
+package org.activitymgr.ui.web.logic;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a logic method that doesn't write in the database.
+ * <p>
+ * When such a method opens the transaction, the transaction runs on a read
+ * only connection and is not committed. When it is called by another logic
+ * method, no savepoint is created for it. A method without this annotation
+ * called by a read only one runs in its own read-write transaction.
+ * </p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadOnly {
+
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.sql.Connection;
 
 import org.activitymgr.core.model.ModelException;
+import org.activitymgr.ui.web.logic.impl.internal.DatabaseUpgrader;
 import org.activitymgr.ui.web.logic.impl.internal.DbTransactionContext;
 import org.activitymgr.ui.web.logic.impl.internal.ThreadLocalizedDbTransactionProviderImpl;
 import org.activitymgr.ui.web.logic.spi.IRESTServiceLogic;
@@ -33,13 +34,17 @@ public abstract class AbstractServiceWithDbAccessLogic implements IRESTServiceLo
 	@Inject
 	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
 
+	@Inject
+	private DatabaseUpgrader databaseUpgrader;
+
 	@Override
 	public final void service(Request request, Response response)
 			throws IOException {
 		boolean ctxReleased = true;
 		try {
-			// Init tx
-			DbTransactionContext ctx = dbTxProvider.newCtx();
+			// Upgrade the tables first (once), then init tx
+			databaseUpgrader.upgradeTables();
+			DbTransactionContext ctx = dbTxProvider.newCtx(getClass().getSimpleName() + ".service", false);
 			ctxReleased = false;
 			Connection tx = ctx.getTx();
 
@@ -16,6 +16,7 @@ import org.activitymgr.core.dto.misc.IntervalContributions;
 import org.activitymgr.core.dto.misc.TaskContributions;
 import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.util.EpochDay;
 import org.activitymgr.core.util.StringFormatException;
 import org.activitymgr.core.util.StringHelper;
 import org.activitymgr.ui.web.logic.Align;
@@ -120,9 +121,7 @@ public class ContributionsCellLogicFatory implements IContributionsCellLogicFact
 					contribution.setContributorId(contributor.getId());
 					contribution.setDurationId(durationId);
 					contribution.setTaskId(weekContributions.getTask().getId());
-					Calendar clone = (Calendar) firstDayOfWeek.clone();
-					clone.add(Calendar.DATE, dayOfWeek);
-					contribution.setDate(clone);
+					contribution.setEpochDay(EpochDay.of(firstDayOfWeek) + dayOfWeek);
 					modelMgr.createContribution(contribution, true);
 					weekContributions.getContributions()[dayOfWeek] = contribution;
 				}
@@ -184,10 +183,9 @@ public class ContributionsCellLogicFatory implements IContributionsCellLogicFact
 		// pour la semaine courante (et la semaine passée pour
 		// réafficher automatiquement les taches de la semaine
 		// passée)
-		Calendar fromDate = (Calendar) firstDayOfWeek.clone();
-		fromDate.add(Calendar.DATE, -7);
-		Calendar toDate = (Calendar) firstDayOfWeek.clone();
-		toDate.add(Calendar.DATE, 6);
+		int monday = EpochDay.of(firstDayOfWeek);
+		Calendar fromDate = EpochDay.toCalendar(monday - 7);
+		Calendar toDate = EpochDay.toCalendar(monday + 6);
 		IntervalContributions intervalContributions = modelMgr.getIntervalContributions(contributor, null, fromDate,
 						toDate);
 		TaskContributions[] weekContributions = intervalContributions.getTaskContributions();
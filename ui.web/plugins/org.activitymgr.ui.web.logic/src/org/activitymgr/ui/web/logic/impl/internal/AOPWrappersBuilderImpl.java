@@ -12,6 +12,7 @@ import org.activitymgr.ui.web.logic.IAOPWrappersBuilder;
 import org.activitymgr.ui.web.logic.ILogic.IView;
 import org.activitymgr.ui.web.logic.IRootLogic;
 import org.activitymgr.ui.web.logic.IUINotificationsBlockingViewWrapper;
+import org.activitymgr.ui.web.logic.ReadOnly;
 
 import com.google.inject.Inject;
 
@@ -24,6 +25,9 @@ final class AOPWrappersBuilderImpl implements
 	@Inject
 	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
 	
+	@Inject
+	private DatabaseUpgrader databaseUpgrader;
+	
 	private ThreadLocal<Boolean> viewNotificationsDisabled = new ThreadLocal<Boolean>();
 
 	@SuppressWarnings("unchecked")
@@ -82,15 +86,27 @@ final class AOPWrappersBuilderImpl implements
 						}
 						else {
 							DbTransactionContext txCtx = dbTxProvider.get();
+							// Read only calls need neither a savepoint nor a
+							// commit ; calls that may write nested in a read
+							// only call have their own transaction
+							boolean readOnly = method.isAnnotationPresent(ReadOnly.class);
 							Savepoint sp = null;
+							int hooksSp = 0;
 							try {
-								// Open the transaction if required and push a savepoint
+								// Open the transaction if required, or push a
+								// savepoint if the nested call may write
 								if (txCtx == null) {
+									// Upgrade the tables first (once)
+									databaseUpgrader.upgradeTables();
 									// Bind TX provider
-									txCtx = dbTxProvider.newCtx();
+									txCtx = dbTxProvider.newCtx(interfaceToWrapp.getSimpleName() + "." + method.getName(), readOnly);
 								}
-								else {
+								else if (!readOnly && txCtx.isReadOnly()) {
+									txCtx = dbTxProvider.newNestedCtx(interfaceToWrapp.getSimpleName() + "." + method.getName());
+								}
+								else if (!readOnly) {
 									sp = txCtx.getTx().setSavepoint();
+									hooksSp = txCtx.getTransactionHooks().setSavepoint();
 								}
 								txCtx.getCalls().push(method);
 
@@ -119,21 +135,32 @@ final class AOPWrappersBuilderImpl implements
 									}
 								}
 	
-								// Commit the transaction (or put a save point)
-								if (txCtx.getCalls().size() > 1) {
-									sp = txCtx.getTx().setSavepoint();
-								}
-								else {
-									txCtx.getTx().commit();
+								// Commit the transaction (nested calls are
+								// committed by the outermost one)
+								if (txCtx.getCalls().size() == 1) {
+									if (!txCtx.isReadOnly()) {
+										txCtx.getTx().commit();
+									}
+									txCtx.getIdentityMap().clear();
+									txCtx.getTransactionHooks().completed(true);
 								}
 								return result;
 							} catch (InvocationTargetException t) {
 								// Rollback the transaction in case of failure
+								// The cached rows may have been rolled back
 								if (txCtx.getCalls().size() > 1) {
-									txCtx.getTx().rollback(sp);
+									if (sp != null) {
+										txCtx.getTx().rollback(sp);
+										txCtx.getTransactionHooks().rollbackToSavepoint(hooksSp);
+									}
+									// The outer transaction goes on with its
+									// previous writes
+									txCtx.getIdentityMap().clearInstances();
 								}
 								else {
 									txCtx.getTx().rollback();
+									txCtx.getIdentityMap().clear();
+									txCtx.getTransactionHooks().completed(false);
 								}
 								Throwable exception = t.getTargetException();
 								exception.printStackTrace();
@@ -16,7 +16,7 @@ import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.TaskContributions;
 import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
-import org.activitymgr.core.util.DateHelper;
+import org.activitymgr.core.util.EpochDay;
 import org.activitymgr.core.util.StringHelper;
 import org.activitymgr.ui.web.logic.ILabelLogic;
 import org.activitymgr.ui.web.logic.ILogic;
@@ -110,14 +110,16 @@ class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCa
 	}
 	
 	protected void changeFirstDayOfWeek(Calendar newDay) throws ModelException {
-		firstDayOfWeek = DateHelper.moveToFirstDayOfWeek(newDay);
-		loadContributions();
+		setFirstDayOfWeek(EpochDay.of(newDay));
 	}
 	
 	protected void changeFirstDayOfWeek(int amountType, int amount) throws ModelException {
 		// Update date
-		firstDayOfWeek.add(amountType, amount);
-		firstDayOfWeek = DateHelper.moveToFirstDayOfWeek(firstDayOfWeek);
+		setFirstDayOfWeek(EpochDay.add(EpochDay.of(firstDayOfWeek), amountType, amount));
+	}
+
+	private void setFirstDayOfWeek(int day) throws ModelException {
+		firstDayOfWeek = EpochDay.toCalendar(EpochDay.getFirstDayOfWeek(day));
 		loadContributions();
 	}
 	
@@ -1,6 +1,5 @@
 package org.activitymgr.ui.web.logic.impl.internal;
 
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
@@ -9,6 +8,7 @@ import java.util.Set;
 
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.util.EpochDay;
 import org.activitymgr.ui.web.logic.IContributionsTabLogic;
 import org.activitymgr.ui.web.logic.IEventListener;
 import org.activitymgr.ui.web.logic.ITabFolderLogic;
@@ -131,16 +131,15 @@ public class ContributionsTabLogicImpl extends AbstractContributionTabLogicImpl
 
 	private void updateUI() {
 		getView().setDate(contributionsProvider.getFirstDayOfWeek());
-		Calendar cursor = (Calendar) contributionsProvider.getFirstDayOfWeek()
-				.clone();
-		SimpleDateFormat sdf = new SimpleDateFormat("dd");
+		int cursor = EpochDay.of(contributionsProvider.getFirstDayOfWeek());
 		Collection<String> propertyIds = contributionsProvider.getPropertyIds();
 		for (String dayPropertyId : IContributionsCellLogicFactory.DAY_COLUMNS_IDENTIFIERS) {
 			if (propertyIds.contains(dayPropertyId)) {
+				int dayOfMonth = EpochDay.getDayOfMonth(cursor);
 				getView().setColumnTitle(dayPropertyId,
-						dayPropertyId.charAt(0) + sdf.format(cursor.getTime()));
+						dayPropertyId.charAt(0) + (dayOfMonth < 10 ? "0" : "") + dayOfMonth);
 			}
-			cursor.add(Calendar.DATE, 1);
+			cursor++;
 		}
 
 		getView().reloadContributionTableItems();
@@ -0,0 +1,82 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.sql.SQLException;
+
+import org.activitymgr.core.model.IModelMgr;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Upgrades the tables created by a previous version of the application.
+ * <p>
+ * The upgrade runs lazily, in its own transaction, before the first
+ * transaction of the web application (logic call or REST service). If it
+ * fails, for instance because the database is not reachable yet, the error
+ * is logged and the upgrade is attempted again before the next transaction.
+ * </p>
+ */
+public class DatabaseUpgrader {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(DatabaseUpgrader.class);
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	@Inject
+	private IModelMgr modelMgr;
+
+	/** <code>true</code> once the tables have been upgraded */
+	private volatile boolean upgraded;
+
+	/**
+	 * Upgrades the tables if it has not been done yet. Must be called before
+	 * the transaction context of the current thread is opened.
+	 *
+	 * @throws SQLException
+	 *             thrown if the upgrade fails (it is attempted again by the
+	 *             next call).
+	 */
+	public void upgradeTables() throws SQLException {
+		if (!upgraded) {
+			synchronized (this) {
+				if (!upgraded) {
+					try {
+						doUpgradeTables();
+					} catch (SQLException e) {
+						log.error("Database upgrade failed, it will be attempted again", e);
+						throw e;
+					} catch (RuntimeException e) {
+						log.error("Database upgrade failed, it will be attempted again", e);
+						throw e;
+					}
+					upgraded = true;
+				}
+			}
+		}
+	}
+
+	private void doUpgradeTables() throws SQLException {
+		DbTransactionContext txCtx = dbTxProvider.newCtx("DatabaseUpgrader.upgradeTables", false);
+		boolean committed = false;
+		try {
+			if (modelMgr.tablesExist()) {
+				modelMgr.upgradeTables();
+			}
+			else {
+				log.warn("The database tables don't exist");
+			}
+			txCtx.getTx().commit();
+			committed = true;
+		} finally {
+			if (!committed) {
+				txCtx.getTx().rollback();
+			}
+			txCtx.getIdentityMap().clear();
+			txCtx.getTransactionHooks().completed(committed);
+			dbTxProvider.release();
+		}
+	}
+
+}
@@ -4,22 +4,63 @@ import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.util.Stack;
 
+import org.activitymgr.core.util.IdentityMap;
+import org.activitymgr.core.util.TransactionHooks;
+
 public class DbTransactionContext {
 	
+	private String callName;
+
+	private boolean readOnly;
+
 	private Connection tx;
 	
+	private IdentityMap identityMap = new IdentityMap();
+	
+	private TransactionHooks transactionHooks = new TransactionHooks();
+	
 	private Stack<Method> calls = new Stack<Method>();
 	
-	public DbTransactionContext(Connection con) {
+	/** Read only context suspended by this one (if any) */
+	private DbTransactionContext outerCtx;
+	
+	public DbTransactionContext(String callName, boolean readOnly, Connection con) {
+		this(callName, readOnly, con, null);
+	}
+	
+	public DbTransactionContext(String callName, boolean readOnly, Connection con, DbTransactionContext outerCtx) {
+		this.callName = callName;
+		this.readOnly = readOnly;
 		tx = con;
+		this.outerCtx = outerCtx;
+	}
+	
+	public String getCallName() {
+		return callName;
+	}
+	
+	public boolean isReadOnly() {
+		return readOnly;
 	}
 	
 	public Connection getTx() {
 		return tx;
 	}
 	
+	public IdentityMap getIdentityMap() {
+		return identityMap;
+	}
+	
+	public TransactionHooks getTransactionHooks() {
+		return transactionHooks;
+	}
+	
 	public Stack<Method> getCalls() {
 		return calls;
 	}
+	
+	public DbTransactionContext getOuterCtx() {
+		return outerCtx;
+	}
 
 }
\ No newline at end of file
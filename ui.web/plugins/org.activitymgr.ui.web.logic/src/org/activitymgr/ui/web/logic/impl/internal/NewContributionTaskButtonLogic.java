@@ -1,9 +1,8 @@
 package org.activitymgr.ui.web.logic.impl.internal;
 
-import java.util.Calendar;
-
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.util.EpochDay;
 import org.activitymgr.ui.web.logic.IContributionsTabLogic;
 import org.activitymgr.ui.web.logic.impl.AbstractContributionTabLogicImpl;
 import org.activitymgr.ui.web.logic.impl.AbstractSafeContributionTabStandardButtonLogicImpl;
@@ -28,13 +27,9 @@ public class NewContributionTaskButtonLogic extends AbstractSafeContributionTabS
 		Collaborator contributor = contributionTabLogic.getContributor();
 
 		// Retrieve recent tasks labels
-		Calendar monday = contributionTabLogic.getFirstDayOfWeek();
-		Calendar from = (Calendar) monday.clone();
-		from.add(Calendar.DATE, -7);
-		Calendar to = (Calendar) monday.clone();
-		to.add(Calendar.DATE, 6);
+		int monday = EpochDay.of(contributionTabLogic.getFirstDayOfWeek());
 		Task[] recentTasks = getModelMgr().getContributedTasks(contributor,
-				from, to);
+				EpochDay.toCalendar(monday - 7), EpochDay.toCalendar(monday + 6));
 
 		new ContributionTaskChooserLogicImpl(contributionTabLogic,
 				contributionTabLogic.getLastSelectedTaskId(),
@@ -5,7 +5,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,6 +23,7 @@ import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.report.ReportIntervalType;
 import org.activitymgr.core.model.ModelException;
 import org.activitymgr.core.util.DateHelper;
+import org.activitymgr.core.util.StringFormatException;
 import org.activitymgr.core.util.StringHelper;
 import org.activitymgr.ui.web.logic.IReportsLogic;
 import org.activitymgr.ui.web.logic.impl.AbstractLogicImpl;
@@ -71,9 +71,6 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 
 	private static final String SERVICE_REPORT_HTML_URI = "/service/report/html";
 
-	private static final SimpleDateFormat YYYYMMDD_SDF = new SimpleDateFormat(
-			"yyyyMMdd");
-
 	private static final String TASK = Task.class.getSimpleName().toLowerCase();
 	
 	protected static final String COLLABORATOR = Collaborator.class
@@ -456,8 +453,7 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 					reportParameters.getIntervalType().toString());
 			if (reportParameters.getStart() != null) {
 				appendUrlParam(sw, AbstractReportServiceLogic.START_PARAMETER,
-						new SimpleDateFormat("yyyyMMdd")
-								.format(reportParameters.getStart().getTime()));
+						StringHelper.toYYYYMMDD(reportParameters.getStart()));
 			}
 			if (reportParameters.getIntervalCount() != null) {
 				appendUrlParam(sw,
@@ -780,7 +776,7 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 		json.addProperty(INTERVAL_BOUNDS_MODE,
 				String.valueOf(intervalBoundsMode));
 		if (intervalBoundsMode != ReportIntervalBoundsMode.AUTOMATIC) {
-			json.addProperty(START, YYYYMMDD_SDF.format(start.getTime()));
+			json.addProperty(START, StringHelper.toYYYYMMDD(start));
 		}
 		if (intervalBoundsMode == ReportIntervalBoundsMode.BOTH_BOUNDS) {
 			json.addProperty(INTERVAL_COUNT, intervalCount);
@@ -842,9 +838,9 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 			if (intervalBoundsMode != ReportIntervalBoundsMode.AUTOMATIC
 					&& jsonObject.has(START)) {
 				try {
-					start.setTime(YYYYMMDD_SDF.parse(jsonObject.get(START)
-							.getAsString()));
-				} catch (ParseException e) {
+					start.setTime(StringHelper.fromYYYYMMDD(
+							jsonObject.get(START).getAsString()).getTime());
+				} catch (StringFormatException e) {
 					throw new IllegalStateException(e);
 				}
 			}
@@ -1,34 +1,162 @@
 package org.activitymgr.ui.web.logic.impl.internal;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
+import org.activitymgr.core.util.LazyConnection;
+import org.activitymgr.core.util.PreparedStatementCache;
+import org.activitymgr.core.util.SqlStatistics;
+import org.apache.log4j.Logger;
+
 import com.google.inject.Provider;
 
 public class ThreadLocalizedDbTransactionProviderImpl implements Provider<DbTransactionContext> {
-	
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ThreadLocalizedDbTransactionProviderImpl.class);
+
 	private DataSource ds;
 
+	private int statementCacheSize;
+
+	/** SQL statistics (<code>null</code> if the requests are not instrumented) */
+	private SqlStatistics sqlStatistics;
+
 	private ThreadLocal<DbTransactionContext> transactions = new ThreadLocal<DbTransactionContext>();
 
+	/** Connection borrow statistics, by call name */
+	private ConcurrentMap<String, BorrowStatistics> borrowStatistics = new ConcurrentHashMap<String, BorrowStatistics>();
+
 	public ThreadLocalizedDbTransactionProviderImpl(DataSource ds) {
+		this(ds, PreparedStatementCache.DEFAULT_SIZE);
+	}
+
+	public ThreadLocalizedDbTransactionProviderImpl(DataSource ds, int statementCacheSize) {
+		this(ds, statementCacheSize, null);
+	}
+
+	public ThreadLocalizedDbTransactionProviderImpl(DataSource ds, int statementCacheSize, SqlStatistics sqlStatistics) {
 		this.ds = ds;
+		this.statementCacheSize = statementCacheSize;
+		this.sqlStatistics = sqlStatistics;
 	}
 
-	public DbTransactionContext newCtx() throws SQLException {
+	/**
+	 * Opens a transaction context for the current thread.
+	 * <p>
+	 * The context connection is lazy : it is only borrowed from the data
+	 * source when a request is sent to the database (it is then instrumented
+	 * with the SQL statistics, if any).
+	 * </p>
+	 *
+	 * @param callName
+	 *            the name of the call that opens the transaction (used for the
+	 *            borrow statistics).
+	 * @param readOnly
+	 *            <code>true</code> if the transaction doesn't write in the
+	 *            database (the connection is then put in read only mode).
+	 * @return the transaction context.
+	 * @throws SQLException
+	 *             thrown if the connection cannot be put in read only mode.
+	 */
+	public DbTransactionContext newCtx(String callName, boolean readOnly) throws SQLException {
 		DbTransactionContext dbTransactionContext = transactions.get();
 		if (dbTransactionContext != null) {
 			throw new IllegalStateException("Previous database context not released for the current thread");
 		}
-		dbTransactionContext = new DbTransactionContext(ds.getConnection());
+		Connection con = LazyConnection.wrap(ds, statementCacheSize, sqlStatistics);
+		if (readOnly) {
+			con.setReadOnly(true);
+		}
+		dbTransactionContext = new DbTransactionContext(callName, readOnly, con);
 		transactions.set(dbTransactionContext);
 		return dbTransactionContext;
 	}
-	
+
+	/**
+	 * Opens a read-write transaction context for a call nested in a read only
+	 * one.
+	 * <p>
+	 * A read only transaction is never committed (and some databases ignore
+	 * the read only mode), so a nested call that writes must have its own
+	 * transaction, on another connection. The read only context is suspended
+	 * until the nested one is {@link #release() released}.
+	 * </p>
+	 *
+	 * @param callName
+	 *            the name of the nested call.
+	 * @return the nested transaction context.
+	 */
+	public DbTransactionContext newNestedCtx(String callName) {
+		DbTransactionContext outerCtx = transactions.get();
+		if (outerCtx == null || !outerCtx.isReadOnly()) {
+			throw new IllegalStateException("No read only database context for the current thread");
+		}
+		Connection con = LazyConnection.wrap(ds, statementCacheSize, sqlStatistics);
+		DbTransactionContext dbTransactionContext = new DbTransactionContext(callName, false, con, outerCtx);
+		transactions.set(dbTransactionContext);
+		return dbTransactionContext;
+	}
+
 	public void release() throws SQLException {
-		transactions.get().getTx().close();
-		transactions.remove();
+		try {
+			DbTransactionContext txCtx = transactions.get();
+			// Requests saved by the identity map during the call
+			if (log.isDebugEnabled()) {
+				log.debug("Identity map : " + txCtx.getIdentityMap());
+			}
+			boolean borrowed = LazyConnection.getLazyConnection(txCtx.getTx()).isBorrowed();
+			BorrowStatistics stats = getBorrowStatistics(txCtx.getCallName());
+			stats.record(borrowed);
+			if (log.isDebugEnabled()) {
+				log.debug(txCtx.getCallName() + " : connection " + (borrowed ? "borrowed" : "not borrowed") + " (" + stats + ")");
+			}
+			// Closes the cached statements, then the connection (if it has
+			// been borrowed)
+			txCtx.getTx().close();
+		} finally {
+			DbTransactionContext txCtx = transactions.get();
+			if (txCtx.getOuterCtx() != null) {
+				// Resume the read only context ; the rows it has cached may
+				// have been updated by the nested transaction
+				txCtx.getOuterCtx().getIdentityMap().clear();
+				transactions.set(txCtx.getOuterCtx());
+			}
+			else {
+				transactions.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param callName
+	 *            the call name.
+	 * @return the borrow statistics of the call.
+	 */
+	private BorrowStatistics getBorrowStatistics(String callName) {
+		BorrowStatistics stats = borrowStatistics.get(callName);
+		if (stats == null) {
+			stats = new BorrowStatistics();
+			BorrowStatistics previous = borrowStatistics.putIfAbsent(callName, stats);
+			if (previous != null) {
+				stats = previous;
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * @return the connection borrow statistics, by call name.
+	 */
+	public Map<String, BorrowStatistics> getBorrowStatistics() {
+		return new TreeMap<String, BorrowStatistics>(borrowStatistics);
 	}
 
 	@Override
@@ -36,4 +164,52 @@ public class ThreadLocalizedDbTransactionProviderImpl implements Provider<DbTran
 		return transactions.get();
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Connection borrow statistics of a call.
+	 */
+	public static class BorrowStatistics {
+
+		/** Number of transactions */
+		private AtomicLong calls = new AtomicLong();
+
+		/** Number of transactions that have borrowed a connection */
+		private AtomicLong borrows = new AtomicLong();
+
+		private void record(boolean borrowed) {
+			calls.incrementAndGet();
+			if (borrowed) {
+				borrows.incrementAndGet();
+			}
+		}
+
+		/**
+		 * @return the number of transactions.
+		 */
+		public long getCalls() {
+			return calls.get();
+		}
+
+		/**
+		 * @return the number of transactions that have borrowed a
+		 *         connection.
+		 */
+		public long getBorrows() {
+			return borrows.get();
+		}
+
+		/**
+		 * @return the ratio of transactions that have borrowed a connection.
+		 */
+		public double getBorrowRate() {
+			long callsCount = calls.get();
+			return callsCount != 0 ? (double) borrows.get() / callsCount : 0;
+		}
+
+		@Override
+		public String toString() {
+			return borrows + "/" + calls;
+		}
+
+	}
+
+}
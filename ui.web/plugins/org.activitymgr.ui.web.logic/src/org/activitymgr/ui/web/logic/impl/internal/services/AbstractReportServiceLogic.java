@@ -1,8 +1,6 @@
 package org.activitymgr.ui.web.logic.impl.internal.services;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
 import org.activitymgr.core.dto.Collaborator;
@@ -10,6 +8,8 @@ import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.report.ReportIntervalType;
 import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.util.StringFormatException;
+import org.activitymgr.core.util.StringHelper;
 import org.activitymgr.ui.web.logic.IReportsTabLogic;
 import org.activitymgr.ui.web.logic.impl.AbstractServiceWithAuthenticationLogic;
 import org.activitymgr.ui.web.logic.spi.IFeatureAccessManager;
@@ -49,11 +49,10 @@ public abstract class AbstractReportServiceLogic extends
 		Calendar start = null;
 		String startParam = parameters.getParameter(START_PARAMETER);
 		if (startParam != null) {
-			SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
 			start = Calendar.getInstance();
 			try {
-				start.setTime(sdf.parse(startParam));
-			} catch (ParseException e) {
+				start.setTime(StringHelper.fromYYYYMMDD(startParam).getTime());
+			} catch (StringFormatException e) {
 				throw new IllegalArgumentException("start date is invalid", e);
 			}
 		}